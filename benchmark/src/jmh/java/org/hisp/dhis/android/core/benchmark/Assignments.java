@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.benchmark;
+
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class Assignments {
+
+    private Assignments() {
+        // no instances
+    }
+
+    /**
+     * Picks evenly spaced organisation units from a breadth first hierarchy. Most picks are leaves,
+     * with some of their ancestors in between, which is what assignments of national users look like.
+     */
+    static List<OrganisationUnit> assigned(List<OrganisationUnit> hierarchy, int count) {
+        int size = Math.min(count, hierarchy.size());
+        List<OrganisationUnit> assigned = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            assigned.add(hierarchy.get((int) ((long) i * hierarchy.size() / size)));
+        }
+        return assigned;
+    }
+
+    static List<String> paths(List<OrganisationUnit> organisationUnits) {
+        List<String> paths = new ArrayList<>(organisationUnits.size());
+        for (OrganisationUnit organisationUnit : organisationUnits) {
+            paths.add(organisationUnit.path());
+        }
+        return paths;
+    }
+}
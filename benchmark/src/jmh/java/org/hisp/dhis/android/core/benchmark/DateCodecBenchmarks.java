@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.benchmark;
+
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.DateCodec;
+import org.hisp.dhis.android.core.common.SafeDateFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting and parsing of dates with {@link DateCodec} and with the {@link SafeDateFormat} it
+ * replaces on the hot paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateCodecBenchmarks {
+    private static final int DATE_COUNT = 1024;
+
+    private final SafeDateFormat dateFormat = BaseIdentifiableObject.DATE_FORMAT;
+    private final DateCodec dateCodec = BaseIdentifiableObject.DATE_CODEC;
+
+    private Date[] dates;
+    private String[] sources;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dates = new Date[DATE_COUNT];
+        sources = new String[DATE_COUNT];
+        for (int i = 0; i < DATE_COUNT; i++) {
+            // a spread of instants over roughly 16 years
+            dates[i] = new Date(1262304000000L + i * 487000037L);
+            sources[i] = dateFormat.format(dates[i]);
+        }
+    }
+
+    @Benchmark
+    public String formatWithDateFormat() {
+        return dateFormat.format(dates[nextIndex()]);
+    }
+
+    @Benchmark
+    public String formatWithDateCodec() {
+        return dateCodec.format(dates[nextIndex()]);
+    }
+
+    @Benchmark
+    public Date parseWithDateFormat() throws ParseException {
+        return dateFormat.parse(sources[nextIndex()]);
+    }
+
+    @Benchmark
+    public Date parseWithDateCodec() throws ParseException {
+        return dateCodec.parse(sources[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (DATE_COUNT - 1);
+        return next;
+    }
+}
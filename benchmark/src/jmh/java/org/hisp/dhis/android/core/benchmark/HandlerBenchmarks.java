@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.benchmark;
+
+import org.hisp.dhis.android.core.common.PersistedUidRegistry;
+import org.hisp.dhis.android.core.dataelement.DataElementHandler;
+import org.hisp.dhis.android.core.dataelement.DataElementStore;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.option.OptionHandler;
+import org.hisp.dhis.android.core.option.OptionSet;
+import org.hisp.dhis.android.core.option.OptionSetHandler;
+import org.hisp.dhis.android.core.option.OptionSetStore;
+import org.hisp.dhis.android.core.option.OptionStore;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitHandler;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitStore;
+import org.hisp.dhis.android.core.program.Program;
+import org.hisp.dhis.android.core.program.ProgramHandler;
+import org.hisp.dhis.android.core.program.ProgramIndicatorHandler;
+import org.hisp.dhis.android.core.program.ProgramIndicatorStore;
+import org.hisp.dhis.android.core.program.ProgramRuleActionHandler;
+import org.hisp.dhis.android.core.program.ProgramRuleActionStore;
+import org.hisp.dhis.android.core.program.ProgramRuleHandler;
+import org.hisp.dhis.android.core.program.ProgramRuleStore;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableHandler;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModelStore;
+import org.hisp.dhis.android.core.program.ProgramStageDataElementHandler;
+import org.hisp.dhis.android.core.program.ProgramStageDataElementStore;
+import org.hisp.dhis.android.core.program.ProgramStageHandler;
+import org.hisp.dhis.android.core.program.ProgramStageSectionHandler;
+import org.hisp.dhis.android.core.program.ProgramStageSectionProgramIndicatorLinkStore;
+import org.hisp.dhis.android.core.program.ProgramStageSectionStore;
+import org.hisp.dhis.android.core.program.ProgramStageStore;
+import org.hisp.dhis.android.core.program.ProgramStore;
+import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttributeHandler;
+import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttributeStore;
+import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
+import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.systeminfo.SystemInfo;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoHandler;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeHandler;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityHandler;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
+import org.hisp.dhis.android.core.user.User;
+import org.hisp.dhis.android.core.user.UserCredentialsHandler;
+import org.hisp.dhis.android.core.user.UserCredentialsStore;
+import org.hisp.dhis.android.core.user.UserHandler;
+import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkStore;
+import org.hisp.dhis.android.core.user.UserRoleHandler;
+import org.hisp.dhis.android.core.user.UserRoleProgramLinkStore;
+import org.hisp.dhis.android.core.user.UserRoleStore;
+import org.hisp.dhis.android.core.user.UserStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upsert paths of all handlers, wired the same way as in the calls, against {@link InMemoryStores}.
+ * rowsExist=false measures a first sync (update, then insert), rowsExist=true a re-sync (update only).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@SuppressWarnings("PMD.ExcessiveImports")
+public class HandlerBenchmarks {
+
+    @Param({"SMALL", "NATIONAL"})
+    Scale scale;
+
+    @Param({"false", "true"})
+    boolean rowsExist;
+
+    private List<Program> programs;
+    private List<OrganisationUnit> organisationUnits;
+    private List<OptionSet> optionSets;
+    private List<TrackedEntity> trackedEntities;
+    private User user;
+    private SystemInfo systemInfo;
+
+    private InMemoryStores stores;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stores = new InMemoryStores(rowsExist);
+
+        MetadataGenerator generator = new MetadataGenerator();
+        programs = generator.items(generator.programs(
+                scale.programs, scale.stagesPerProgram, scale.dataElementsPerStage), Program.class);
+        organisationUnits = generator.items(generator.organisationUnits(scale.hierarchy), OrganisationUnit.class);
+        optionSets = generator.items(generator.optionSets(scale.optionSets, scale.optionsPerSet), OptionSet.class);
+        trackedEntities = generator.items(generator.trackedEntities(scale.trackedEntities), TrackedEntity.class);
+        user = generator.value(generator.user(Assignments.paths(Assignments.assigned(
+                organisationUnits, scale.assignedOrganisationUnits)), scale.userRoles), User.class);
+        systemInfo = generator.value(generator.systemInfo(), SystemInfo.class);
+    }
+
+    @Benchmark
+    public long programs() {
+        // a registry lives as long as a single metadata sync
+        PersistedUidRegistry persistedUidRegistry = new PersistedUidRegistry();
+        ProgramHandler programHandler = programHandler(persistedUidRegistry);
+        for (int i = 0, size = programs.size(); i < size; i++) {
+            programHandler.handleProgram(programs.get(i));
+        }
+        return stores.boundArguments();
+    }
+
+    @Benchmark
+    public long organisationUnits() {
+        new OrganisationUnitHandler(stores.store(OrganisationUnitStore.class),
+                stores.store(UserOrganisationUnitLinkStore.class), null).handleOrganisationUnits(
+                organisationUnits, OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE, user.uid());
+        return stores.boundArguments();
+    }
+
+    @Benchmark
+    public long optionSets() {
+        PersistedUidRegistry persistedUidRegistry = new PersistedUidRegistry();
+        MetadataChanges metadataChanges = new MetadataChanges();
+        OptionHandler optionHandler = new OptionHandler(stores.store(OptionStore.class), persistedUidRegistry,
+                null, metadataChanges);
+        new OptionSetHandler(stores.store(OptionSetStore.class), optionHandler, persistedUidRegistry, metadataChanges)
+                .handleOptionSets(optionSets);
+        return stores.boundArguments();
+    }
+
+    @Benchmark
+    public long trackedEntities() {
+        TrackedEntityHandler trackedEntityHandler = new TrackedEntityHandler(stores.store(TrackedEntityStore.class));
+        for (int i = 0, size = trackedEntities.size(); i < size; i++) {
+            trackedEntityHandler.handleTrackedEntity(trackedEntities.get(i));
+        }
+        return stores.boundArguments();
+    }
+
+    /**
+     * The user call: the user, its credentials and roles, and all of its assigned organisation units.
+     */
+    @Benchmark
+    public long user() {
+        new UserHandler(stores.store(UserStore.class)).handleUser(user);
+        new UserCredentialsHandler(stores.store(UserCredentialsStore.class))
+                .handleUserCredentials(user.userCredentials(), user);
+        new UserRoleHandler(stores.store(UserRoleStore.class), stores.store(UserRoleProgramLinkStore.class))
+                .handleUserRoles(user.userCredentials().userRoles());
+        new OrganisationUnitHandler(stores.store(OrganisationUnitStore.class),
+                stores.store(UserOrganisationUnitLinkStore.class), null).handleOrganisationUnits(
+                user.organisationUnits(), OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE, user.uid());
+        return stores.boundArguments();
+    }
+
+    @Benchmark
+    public long systemInfoAndResources() {
+        new SystemInfoHandler(stores.store(SystemInfoStore.class)).handleSystemInfo(systemInfo);
+        ResourceHandler resourceHandler = new ResourceHandler(stores.store(ResourceStore.class));
+        Date serverDate = systemInfo.serverDate();
+        for (ResourceModel.Type type : ResourceModel.Type.values()) {
+            resourceHandler.handleResource(type, serverDate);
+        }
+        return stores.boundArguments();
+    }
+
+    private ProgramHandler programHandler(PersistedUidRegistry persistedUidRegistry) {
+        MetadataChanges metadataChanges = new MetadataChanges();
+        TrackedEntityAttributeHandler trackedEntityAttributeHandler =
+                new TrackedEntityAttributeHandler(stores.store(TrackedEntityAttributeStore.class));
+        ProgramTrackedEntityAttributeHandler programTrackedEntityAttributeHandler =
+                new ProgramTrackedEntityAttributeHandler(stores.store(ProgramTrackedEntityAttributeStore.class),
+                        trackedEntityAttributeHandler);
+        ProgramRuleVariableHandler programRuleVariableHandler =
+                new ProgramRuleVariableHandler(stores.store(ProgramRuleVariableModelStore.class));
+        ProgramIndicatorHandler programIndicatorHandler = new ProgramIndicatorHandler(
+                stores.store(ProgramIndicatorStore.class),
+                stores.store(ProgramStageSectionProgramIndicatorLinkStore.class));
+        ProgramRuleHandler programRuleHandler = new ProgramRuleHandler(stores.store(ProgramRuleStore.class),
+                new ProgramRuleActionHandler(stores.store(ProgramRuleActionStore.class)), metadataChanges);
+
+        DataElementHandler dataElementHandler = new DataElementHandler(stores.store(DataElementStore.class),
+                persistedUidRegistry, metadataChanges);
+        ProgramStageDataElementHandler programStageDataElementHandler = new ProgramStageDataElementHandler(
+                stores.store(ProgramStageDataElementStore.class), dataElementHandler, metadataChanges);
+        ProgramStageSectionHandler programStageSectionHandler = new ProgramStageSectionHandler(
+                stores.store(ProgramStageSectionStore.class), programStageDataElementHandler,
+                programIndicatorHandler);
+        ProgramStageHandler programStageHandler = new ProgramStageHandler(stores.store(ProgramStageStore.class),
+                programStageSectionHandler, programStageDataElementHandler, metadataChanges);
+
+        return new ProgramHandler(stores.store(ProgramStore.class), programRuleVariableHandler,
+                programStageHandler, programIndicatorHandler, programRuleHandler,
+                programTrackedEntityAttributeHandler,
+                new RelationshipTypeHandler(stores.store(RelationshipTypeStore.class)), metadataChanges);
+    }
+}
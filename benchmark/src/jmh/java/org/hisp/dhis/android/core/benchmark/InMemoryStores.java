@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQLite stand-ins for the store interfaces, so that handler benchmarks measure the handlers
+ * themselves rather than the disk. A stand-in touches every bound argument, the way binding a
+ * statement does, and answers updates as if the rows either all exist or are all missing:
+ * <ul>
+ * <li>first sync: every update hits no row, so handlers fall through to insert</li>
+ * <li>re-sync: every update hits one row, so handlers stop after the update</li>
+ * </ul>
+ */
+public final class InMemoryStores {
+    private final boolean rowsExist;
+    private final Map<Class<?>, Object> stores;
+
+    private long statements;
+    private long boundArguments;
+
+    public InMemoryStores(boolean rowsExist) {
+        this.rowsExist = rowsExist;
+        this.stores = new HashMap<>();
+    }
+
+    /**
+     * @return stand-in for the store interface, created once and shared by all callers.
+     */
+    public <T> T store(Class<T> storeType) {
+        Object store = stores.get(storeType);
+        if (store == null) {
+            store = Proxy.newProxyInstance(storeType.getClassLoader(),
+                    new Class<?>[]{storeType}, new StoreInvocationHandler());
+            stores.put(storeType, store);
+        }
+        return storeType.cast(store);
+    }
+
+    public long statements() {
+        return statements;
+    }
+
+    /**
+     * @return number of non-null arguments bound so far, which benchmarks consume to keep the calls alive.
+     */
+    public long boundArguments() {
+        return boundArguments;
+    }
+
+    private final class StoreInvocationHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+
+            statements++;
+            if (args != null) {
+                for (Object arg : args) {
+                    if (arg != null) {
+                        boundArguments++;
+                    }
+                }
+            }
+
+            String name = method.getName();
+            Class<?> returnType = method.getReturnType();
+            if (name.startsWith("insert")) {
+                return result(returnType, statements);
+            } else if (name.startsWith("update")) {
+                return result(returnType, rowsExist ? 1 : 0);
+            } else if (name.startsWith("upsert") && args != null && args[0] instanceof List) {
+                return result(returnType, ((List<?>) args[0]).size());
+            } else if (name.startsWith("delete")) {
+                return result(returnType, 1);
+            }
+
+            // queries: nothing is actually stored
+            return result(returnType, 0);
+        }
+
+        private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+
+            return "InMemoryStore@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+
+        private Object result(Class<?> returnType, long value) {
+            if (returnType == long.class) {
+                return value;
+            } else if (returnType == int.class) {
+                return (int) value;
+            } else if (returnType == boolean.class) {
+                return value > 0;
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.data.api.DateCodecModule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Generates synthetic web api payloads in the shape the sdk requests them, so that benchmarks
+ * can be run against metadata of any size, up to a national organisation unit hierarchy.
+ */
+public final class MetadataGenerator {
+
+    /* country, 10 provinces, 100 districts, 1000 chiefdoms and 50000 facilities */
+    public static final int[] NATIONAL_HIERARCHY = {10, 10, 10, 50};
+
+    private static final long BASE_TIME = 1483228800000L;
+    private static final int OPTION_SET_POOL_SIZE = 12;
+
+    private final JsonFactory jsonFactory;
+    private final ObjectMapper objectMapper;
+
+    public MetadataGenerator() {
+        this.objectMapper = objectMapper();
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * @return object mapper configured the same way as the one built by D2.
+     */
+    public static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .setDateFormat(BaseIdentifiableObject.DATE_FORMAT.raw())
+                .registerModule(DateCodecModule.create(BaseIdentifiableObject.DATE_CODEC))
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * @return valid looking, unique uid: a prefix letter followed by the zero padded index.
+     */
+    public static String uid(char prefix, int index) {
+        String digits = Integer.toString(index);
+        StringBuilder builder = new StringBuilder(11).append(prefix);
+        for (int i = digits.length(); i < 10; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits).toString();
+    }
+
+    public <T> ObjectReader payloadReader(Class<T> type) {
+        return objectMapper.readerFor(objectMapper.getTypeFactory().constructParametricType(Payload.class, type));
+    }
+
+    public <T> List<T> items(byte[] payload, Class<T> type) throws IOException {
+        Payload<T> parsed = payloadReader(type).readValue(payload);
+        return parsed.items();
+    }
+
+    public <T> T value(byte[] json, Class<T> type) throws IOException {
+        return objectMapper.readValue(json, type);
+    }
+
+    /**
+     * Organisation unit hierarchy with a single root, where each unit on level n has
+     * branching[n - 1] children. Units are listed breadth first.
+     */
+    public byte[] organisationUnits(int... branching) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(output);
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("organisationUnits");
+
+        List<String> parentPaths = new ArrayList<>();
+        int index = 0;
+        String rootUid = uid('O', index++);
+        writeOrganisationUnit(generator, rootUid, null, "/" + rootUid, 1);
+        parentPaths.add("/" + rootUid);
+
+        for (int level = 0; level < branching.length; level++) {
+            List<String> paths = new ArrayList<>(parentPaths.size() * branching[level]);
+            for (String parentPath : parentPaths) {
+                String parentUid = parentPath.substring(parentPath.lastIndexOf('/') + 1);
+                for (int child = 0; child < branching[level]; child++) {
+                    String uid = uid('O', index++);
+                    String path = parentPath + "/" + uid;
+                    writeOrganisationUnit(generator, uid, parentUid, path, level + 2);
+                    paths.add(path);
+                }
+            }
+            parentPaths = paths;
+        }
+
+        generator.writeEndArray();
+        writePager(generator, index);
+        generator.writeEndObject();
+        generator.close();
+        return output.toByteArray();
+    }
+
+    /**
+     * Programs with the given number of stages and data elements per stage. Every third data element
+     * has an option set, and each program carries rules, variables, indicators and attributes in
+     * proportion to its data elements.
+     */
+    public byte[] programs(int programCount, int stagesPerProgram, int dataElementsPerStage) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(output);
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("programs");
+        for (int program = 0; program < programCount; program++) {
+            writeProgram(generator, program, stagesPerProgram, dataElementsPerStage);
+        }
+        generator.writeEndArray();
+        writePager(generator, programCount);
+        generator.writeEndObject();
+        generator.close();
+        return output.toByteArray();
+    }
+
+    public byte[] optionSets(int optionSetCount, int optionsPerSet) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(output);
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("optionSets");
+        for (int optionSet = 0; optionSet < optionSetCount; optionSet++) {
+            String uid = uid('S', optionSet);
+            generator.writeStartObject();
+            writeIdentifiable(generator, uid, "Option set " + optionSet, optionSet);
+            generator.writeNumberField("version", 1);
+            generator.writeStringField("valueType", "TEXT");
+            generator.writeArrayFieldStart("options");
+            for (int option = 0; option < optionsPerSet; option++) {
+                generator.writeStartObject();
+                writeIdentifiable(generator, uid('Q', optionSet * optionsPerSet + option),
+                        "Option " + option, option);
+                writeReference(generator, "optionSet", uid);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        writePager(generator, optionSetCount);
+        generator.writeEndObject();
+        generator.close();
+        return output.toByteArray();
+    }
+
+    public byte[] trackedEntities(int trackedEntityCount) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(output);
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("trackedEntities");
+        for (int trackedEntity = 0; trackedEntity < trackedEntityCount; trackedEntity++) {
+            generator.writeStartObject();
+            writeNameable(generator, uid('E', trackedEntity), "Tracked entity " + trackedEntity, trackedEntity);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        writePager(generator, trackedEntityCount);
+        generator.writeEndObject();
+        generator.close();
+        return output.toByteArray();
+    }
+
+    /**
+     * User assigned to the given organisation units, with a number of user roles which each grant
+     * access to a few programs.
+     */
+    public byte[] user(List<String> assignedPaths, int userRoleCount) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(output);
+
+        generator.writeStartObject();
+        writeIdentifiable(generator, uid('U', 0), "Benchmark user", 0);
+        generator.writeStringField("firstName", "Benchmark");
+        generator.writeStringField("surname", "User");
+        generator.writeStringField("email", "benchmark@dhis2.org");
+
+        generator.writeObjectFieldStart("userCredentials");
+        writeIdentifiable(generator, uid('C', 0), "Benchmark user", 0);
+        generator.writeStringField("username", "benchmark");
+        generator.writeArrayFieldStart("userRoles");
+        for (int userRole = 0; userRole < userRoleCount; userRole++) {
+            generator.writeStartObject();
+            writeIdentifiable(generator, uid('R', userRole), "User role " + userRole, userRole);
+            generator.writeArrayFieldStart("programs");
+            for (int program = 0; program < 3; program++) {
+                generator.writeStartObject();
+                generator.writeStringField("id", uid('P', userRole * 3 + program));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        generator.writeArrayFieldStart("organisationUnits");
+        for (int i = 0; i < assignedPaths.size(); i++) {
+            String path = assignedPaths.get(i);
+            String[] segments = path.split("/");
+            String parentUid = segments.length > 2 ? segments[segments.length - 2] : null;
+            writeOrganisationUnit(generator, segments[segments.length - 1], parentUid, path, segments.length - 1);
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+        generator.close();
+        return output.toByteArray();
+    }
+
+    public byte[] systemInfo() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(output);
+
+        generator.writeStartObject();
+        writeDate(generator, "serverDate", 0);
+        generator.writeStringField("dateFormat", "yyyy-mm-dd");
+        generator.writeStringField("version", "2.26");
+        generator.writeStringField("contextPath", "https://play.dhis2.org/demo");
+        generator.writeEndObject();
+        generator.close();
+        return output.toByteArray();
+    }
+
+    private void writeProgram(JsonGenerator generator, int program,
+            int stagesPerProgram, int dataElementsPerStage) throws IOException {
+        String programUid = uid('P', program);
+        int dataElementCount = stagesPerProgram * dataElementsPerStage;
+
+        generator.writeStartObject();
+        writeNameable(generator, programUid, "Program " + program, program);
+        generator.writeNumberField("version", 1);
+        generator.writeBooleanField("onlyEnrollOnce", true);
+        generator.writeStringField("enrollmentDateLabel", "Enrollment date");
+        generator.writeBooleanField("displayIncidentDate", true);
+        generator.writeStringField("incidentDateLabel", "Incident date");
+        generator.writeBooleanField("registration", true);
+        generator.writeBooleanField("selectEnrollmentDatesInFuture", false);
+        generator.writeBooleanField("dataEntryMethod", false);
+        generator.writeBooleanField("ignoreOverdueEvents", false);
+        generator.writeBooleanField("relationshipFromA", false);
+        generator.writeBooleanField("selectIncidentDatesInFuture", false);
+        generator.writeBooleanField("captureCoordinates", true);
+        generator.writeBooleanField("useFirstStageDuringRegistration", false);
+        generator.writeBooleanField("displayFrontPageList", true);
+        generator.writeStringField("programType", "WITH_REGISTRATION");
+        writeReference(generator, "trackedEntity", uid('E', 0));
+
+        generator.writeArrayFieldStart("programStages");
+        for (int stage = 0; stage < stagesPerProgram; stage++) {
+            writeProgramStage(generator, program * stagesPerProgram + stage, dataElementsPerStage);
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("programRules");
+        for (int rule = 0; rule < dataElementCount / 2; rule++) {
+            int index = program * dataElementCount + rule;
+            String ruleUid = uid('L', index);
+            generator.writeStartObject();
+            writeIdentifiable(generator, ruleUid, "Rule " + rule, index);
+            generator.writeNumberField("priority", rule);
+            generator.writeStringField("condition", "#{variable" + rule + "} > " + rule);
+            writeReference(generator, "program", programUid);
+            generator.writeArrayFieldStart("programRuleActions");
+            for (int action = 0; action < 2; action++) {
+                generator.writeStartObject();
+                writeIdentifiable(generator, uid('A', index * 2 + action), "Action " + action, index);
+                generator.writeStringField("programRuleActionType", action == 0 ? "HIDEFIELD" : "SHOWWARNING");
+                generator.writeStringField("content", "Value is out of range");
+                writeReference(generator, "dataElement", uid('D', program * dataElementCount + rule));
+                writeReference(generator, "programRule", ruleUid);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("programRuleVariables");
+        for (int variable = 0; variable < dataElementCount / 2; variable++) {
+            int index = program * dataElementCount + variable;
+            generator.writeStartObject();
+            writeIdentifiable(generator, uid('V', index), "variable" + variable, index);
+            generator.writeBooleanField("useCodeForOptionSet", false);
+            generator.writeStringField("programRuleVariableSourceType", "DATAELEMENT_CURRENT_EVENT");
+            writeReference(generator, "program", programUid);
+            writeReference(generator, "dataElement", uid('D', index));
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("programIndicators");
+        for (int indicator = 0; indicator < stagesPerProgram * 2; indicator++) {
+            int index = program * stagesPerProgram * 2 + indicator;
+            generator.writeStartObject();
+            writeNameable(generator, uid('I', index), "Indicator " + indicator, index);
+            generator.writeBooleanField("displayInForm", true);
+            generator.writeStringField("expression",
+                    "#{" + uid('T', program * stagesPerProgram) + "." + uid('D', index) + "}");
+            generator.writeNumberField("decimals", 2);
+            writeReference(generator, "program", programUid);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("programTrackedEntityAttributes");
+        for (int attribute = 0; attribute < 10; attribute++) {
+            int index = program * 10 + attribute;
+            generator.writeStartObject();
+            writeNameable(generator, uid('G', index), "Program attribute " + attribute, index);
+            generator.writeBooleanField("mandatory", attribute < 3);
+            generator.writeBooleanField("displayInList", attribute < 5);
+            generator.writeNumberField("sortOrder", attribute);
+            writeReference(generator, "program", programUid);
+            generator.writeObjectFieldStart("trackedEntityAttribute");
+            writeNameable(generator, uid('H', attribute), "Attribute " + attribute, attribute);
+            generator.writeStringField("valueType", "TEXT");
+            generator.writeStringField("searchScope", "SEARCH_ORG_UNITS");
+            generator.writeBooleanField("unique", attribute == 0);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    private void writeProgramStage(JsonGenerator generator, int stage, int dataElementsPerStage) throws IOException {
+        String stageUid = uid('T', stage);
+
+        generator.writeStartObject();
+        writeIdentifiable(generator, stageUid, "Stage " + stage, stage);
+        generator.writeStringField("executionDateLabel", "Visit date");
+        generator.writeBooleanField("allowGenerateNextVisit", false);
+        generator.writeBooleanField("validCompleteOnly", false);
+        generator.writeBooleanField("openAfterEnrollment", false);
+        generator.writeBooleanField("repeatable", true);
+        generator.writeBooleanField("captureCoordinates", false);
+        generator.writeStringField("formType", "SECTION");
+        generator.writeBooleanField("displayGenerateEventBox", true);
+        generator.writeBooleanField("generatedByEnrollmentDate", false);
+        generator.writeBooleanField("autoGenerateEvent", true);
+        generator.writeNumberField("sortOrder", stage);
+        generator.writeBooleanField("hideDueDate", false);
+        generator.writeBooleanField("blockEntryForm", false);
+        generator.writeNumberField("minDaysFromStart", 0);
+        generator.writeNumberField("standardInterval", 0);
+
+        generator.writeArrayFieldStart("programStageDataElements");
+        for (int element = 0; element < dataElementsPerStage; element++) {
+            int index = stage * dataElementsPerStage + element;
+            String dataElementUid = uid('D', index);
+            generator.writeStartObject();
+            writeIdentifiable(generator, uid('X', index), null, index);
+            generator.writeBooleanField("displayInReports", true);
+            generator.writeBooleanField("compulsory", element % 4 == 0);
+            generator.writeBooleanField("allowProvidedElsewhere", false);
+            generator.writeNumberField("sortOrder", element);
+            generator.writeBooleanField("allowFutureDate", false);
+            writeReference(generator, "programStage", stageUid);
+
+            generator.writeObjectFieldStart("dataElement");
+            writeNameable(generator, dataElementUid, "Data element " + index, index);
+            generator.writeStringField("valueType", element % 3 == 0 ? "TEXT" : "INTEGER");
+            generator.writeBooleanField("zeroIsSignificant", false);
+            generator.writeStringField("aggregationType", "SUM");
+            generator.writeStringField("domainType", "TRACKER");
+            generator.writeStringField("formName", "Data element " + index);
+            if (element % 3 == 0) {
+                // data elements share a pool of option sets, like in real metadata
+                generator.writeObjectFieldStart("optionSet");
+                generator.writeStringField("id", uid('S', index % OPTION_SET_POOL_SIZE));
+                generator.writeNumberField("version", 1);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("programStageSections");
+        int sectionSize = Math.max(1, dataElementsPerStage / 4);
+        for (int section = 0; section * sectionSize < dataElementsPerStage; section++) {
+            int index = stage * dataElementsPerStage + section;
+            generator.writeStartObject();
+            writeIdentifiable(generator, uid('Z', index), "Section " + section, index);
+            generator.writeNumberField("sortOrder", section);
+            generator.writeArrayFieldStart("programStageDataElements");
+            for (int element = section * sectionSize;
+                    element < Math.min(dataElementsPerStage, (section + 1) * sectionSize); element++) {
+                // the handlers need the data element and stage references of section elements too
+                int elementIndex = stage * dataElementsPerStage + element;
+                generator.writeStartObject();
+                generator.writeStringField("id", uid('X', elementIndex));
+                generator.writeNumberField("sortOrder", element);
+                writeReference(generator, "programStage", stageUid);
+                writeReference(generator, "dataElement", uid('D', elementIndex));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("programIndicators");
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    private void writeOrganisationUnit(JsonGenerator generator, String uid, String parentUid,
+            String path, int level) throws IOException {
+        generator.writeStartObject();
+        writeNameable(generator, uid, "Organisation unit " + uid, level);
+        generator.writeStringField("path", path);
+        writeDate(generator, "openingDate", level);
+        generator.writeNumberField("level", level);
+        if (parentUid != null) {
+            writeReference(generator, "parent", parentUid);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeNameable(JsonGenerator generator, String uid, String name, int seed) throws IOException {
+        writeIdentifiable(generator, uid, name, seed);
+        generator.writeStringField("shortName", name);
+        generator.writeStringField("displayShortName", name);
+        generator.writeStringField("description", "Generated " + name);
+        generator.writeStringField("displayDescription", "Generated " + name);
+    }
+
+    private void writeIdentifiable(JsonGenerator generator, String uid, String name, int seed) throws IOException {
+        generator.writeStringField("id", uid);
+        generator.writeStringField("code", uid.toLowerCase());
+        if (name != null) {
+            generator.writeStringField("name", name);
+            generator.writeStringField("displayName", name);
+        }
+        writeDate(generator, "created", seed);
+        writeDate(generator, "lastUpdated", seed + 1);
+        generator.writeBooleanField("deleted", false);
+    }
+
+    private void writeReference(JsonGenerator generator, String field, String uid) throws IOException {
+        generator.writeObjectFieldStart(field);
+        generator.writeStringField("id", uid);
+        generator.writeEndObject();
+    }
+
+    private void writeDate(JsonGenerator generator, String field, int seed) throws IOException {
+        // dates spread out over a few years, minute by minute
+        generator.writeStringField(field,
+                BaseIdentifiableObject.DATE_CODEC.format(new Date(BASE_TIME + seed * 60000L)));
+    }
+
+    private void writePager(JsonGenerator generator, int total) throws IOException {
+        generator.writeObjectFieldStart("pager");
+        generator.writeNumberField("page", 1);
+        generator.writeNumberField("pageCount", 1);
+        generator.writeNumberField("pageSize", total);
+        generator.writeNumberField("total", total);
+        generator.writeEndObject();
+    }
+}
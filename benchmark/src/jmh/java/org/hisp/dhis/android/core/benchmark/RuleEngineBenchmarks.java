@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.benchmark;
+
+import org.hisp.dhis.android.core.program.ProgramRuleActionModel;
+import org.hisp.dhis.android.core.program.ProgramRuleActionType;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableSourceType;
+import org.hisp.dhis.android.core.rules.RuleEffect;
+import org.hisp.dhis.android.core.rules.RuleEngine;
+import org.hisp.dhis.android.core.rules.RuleEvent;
+import org.hisp.dhis.android.core.rules.RuleSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of all rules of a large synthetic program against the re-evaluation of the rules which depend
+ * on a single changed data value, as done for every field edit during data entry. Every rule reads two of the
+ * data elements of the stage; every tenth rule assigns one of the calculated variables, which are read by
+ * other rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RuleEngineBenchmarks {
+    private static final String PROGRAM = "program";
+    private static final int DATA_ELEMENTS = 300;
+    private static final int CALCULATED_VARIABLES = 20;
+
+    @Param({"100", "300", "1000"})
+    int rules;
+
+    private RuleSession session;
+    private int edits;
+
+    @Setup
+    public void setUp() {
+        List<ProgramRuleVariableModel> variables = new ArrayList<>();
+        Map<String, String> dataValues = new HashMap<>();
+        for (int i = 0; i < DATA_ELEMENTS; i++) {
+            variables.add(ProgramRuleVariableModel.builder().uid("variable" + i).name("de" + i).program(PROGRAM)
+                    .dataElement("dataElement" + i)
+                    .programRuleVariableSourceType(ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT)
+                    .build());
+            dataValues.put("dataElement" + i, Integer.toString(i % 100));
+        }
+        for (int i = 0; i < CALCULATED_VARIABLES; i++) {
+            variables.add(ProgramRuleVariableModel.builder().uid("calculated" + i).name("calc" + i)
+                    .program(PROGRAM).programRuleVariableSourceType(ProgramRuleVariableSourceType.CALCULATED_VALUE)
+                    .build());
+        }
+
+        List<ProgramRuleModel> programRules = new ArrayList<>();
+        List<ProgramRuleActionModel> actions = new ArrayList<>();
+        for (int i = 0; i < rules; i++) {
+            String first = "#{de" + (i % DATA_ELEMENTS) + "}";
+            String second = "#{de" + ((i * 7 + 3) % DATA_ELEMENTS) + "}";
+            String calculated = "#{calc" + (i % CALCULATED_VARIABLES) + "}";
+
+            String condition;
+            ProgramRuleActionModel.Builder action = ProgramRuleActionModel.builder()
+                    .uid("action" + i).programRule("rule" + i);
+            if (i % 10 == 0) {
+                condition = "d2:hasValue('de" + (i % DATA_ELEMENTS) + "')";
+                action.programRuleActionType(ProgramRuleActionType.ASSIGN)
+                        .content(calculated).data(first + " * 2 + " + second);
+            } else if (i % 10 == 5) {
+                condition = calculated + " > 50 && " + first + " < 90";
+                action.programRuleActionType(ProgramRuleActionType.SHOWWARNING).data("'Total: ' + " + calculated);
+            } else {
+                condition = first + " > 50 && (" + second + " < 20 || d2:length(" + second + ") == 1)";
+                action.programRuleActionType(ProgramRuleActionType.DISPLAYTEXT).data("'Value: ' + " + second);
+            }
+            programRules.add(ProgramRuleModel.builder().uid("rule" + i).program(PROGRAM).priority(i)
+                    .condition(condition).build());
+            actions.add(action.build());
+        }
+
+        RuleEngine engine = RuleEngine.create(programRules, actions, variables);
+        session = engine.session(null, RuleEvent.create("event", "stage", null, dataValues),
+                Collections.<RuleEvent>emptyList());
+        session.evaluate();
+    }
+
+    @Benchmark
+    public List<RuleEffect> evaluateAll() {
+        return session.evaluate();
+    }
+
+    @Benchmark
+    public List<RuleEffect> evaluateChangedValue() {
+        // every pass over the data elements changes their values between the two sides of the conditions
+        int edit = edits++;
+        return session.setDataValue("dataElement" + (edit % DATA_ELEMENTS),
+                (edit / DATA_ELEMENTS) % 2 == 0 ? "75" : "5");
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.benchmark;
+
+/**
+ * Sizes of the generated metadata. SMALL resembles a single district deployment,
+ * NATIONAL a country wide tracker deployment.
+ */
+public enum Scale {
+    SMALL(new int[]{5, 5, 5, 5}, 2, 3, 20, 50, 12, 50, 10, 3),
+    NATIONAL(MetadataGenerator.NATIONAL_HIERARCHY, 20, 5, 60, 500, 30, 10000, 50, 20);
+
+    final int[] hierarchy;
+    final int programs;
+    final int stagesPerProgram;
+    final int dataElementsPerStage;
+    final int optionSets;
+    final int optionsPerSet;
+    final int assignedOrganisationUnits;
+    final int trackedEntities;
+    final int userRoles;
+
+    @SuppressWarnings("PMD.ExcessiveParameterList")
+    Scale(int[] hierarchy, int programs, int stagesPerProgram, int dataElementsPerStage,
+            int optionSets, int optionsPerSet, int assignedOrganisationUnits, int trackedEntities, int userRoles) {
+        this.hierarchy = hierarchy;
+        this.programs = programs;
+        this.stagesPerProgram = stagesPerProgram;
+        this.dataElementsPerStage = dataElementsPerStage;
+        this.optionSets = optionSets;
+        this.optionsPerSet = optionsPerSet;
+        this.assignedOrganisationUnits = assignedOrganisationUnits;
+        this.trackedEntities = trackedEntities;
+        this.userRoles = userRoles;
+    }
+}
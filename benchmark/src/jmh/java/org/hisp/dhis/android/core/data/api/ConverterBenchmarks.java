@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import org.hisp.dhis.android.core.benchmark.MetadataGenerator;
+import org.hisp.dhis.android.core.dataelement.DataElement;
+import org.hisp.dhis.android.core.option.OptionSet;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
+import org.hisp.dhis.android.core.program.Program;
+import org.hisp.dhis.android.core.program.ProgramStage;
+import org.hisp.dhis.android.core.program.ProgramStageDataElement;
+import org.hisp.dhis.android.core.program.ProgramStageSection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the fields and filter query parameters, which happens for every request. The fields query
+ * string is memoized by Fields, the *Rendered benchmarks measure rendering it again, as it was done for every
+ * request before. Run with -prof gc to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConverterBenchmarks {
+
+    @Param({"1", "64", "512"})
+    int filterValues;
+
+    private FieldsConverter fieldsConverter;
+    private FilterConverter filterConverter;
+
+    private Fields<OrganisationUnit> organisationUnitFields;
+    private Fields<Program> programFields;
+    private Filter<Program, String> filter;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        fieldsConverter = new FieldsConverter();
+        filterConverter = new FilterConverter();
+
+        // same shape as the fields requested by OrganisationUnitCall
+        organisationUnitFields = Fields.<OrganisationUnit>builder().fields(
+                OrganisationUnit.uid, OrganisationUnit.code, OrganisationUnit.name,
+                OrganisationUnit.displayName, OrganisationUnit.created, OrganisationUnit.lastUpdated,
+                OrganisationUnit.shortName, OrganisationUnit.displayShortName,
+                OrganisationUnit.description, OrganisationUnit.displayDescription,
+                OrganisationUnit.path, OrganisationUnit.openingDate, OrganisationUnit.closedDate,
+                OrganisationUnit.level, OrganisationUnit.deleted,
+                OrganisationUnit.parent.with(OrganisationUnit.uid),
+                OrganisationUnit.programs.with(Program.uid)
+        ).build();
+
+        // the program, stage, section and data element part of the fields requested by ProgramCall
+        programFields = Fields.<Program>builder().fields(
+                Program.uid, Program.code, Program.name, Program.displayName, Program.created,
+                Program.lastUpdated, Program.shortName, Program.displayShortName, Program.description,
+                Program.displayDescription, Program.version, Program.captureCoordinates, Program.dataEntryMethod,
+                Program.deleted, Program.displayFrontPageList, Program.displayIncidentDate,
+                Program.enrollmentDateLabel, Program.ignoreOverdueEvents, Program.incidentDateLabel,
+                Program.onlyEnrollOnce, Program.programType, Program.registration,
+                Program.relationshipFromA, Program.relationshipText,
+                Program.selectEnrollmentDatesInFuture, Program.selectIncidentDatesInFuture,
+                Program.useFirstStageDuringRegistration,
+                Program.relatedProgram.with(Program.uid),
+                Program.programStages.with(
+                        ProgramStage.uid, ProgramStage.code, ProgramStage.name, ProgramStage.displayName,
+                        ProgramStage.created, ProgramStage.lastUpdated, ProgramStage.allowGenerateNextVisit,
+                        ProgramStage.autoGenerateEvent, ProgramStage.blockEntryForm, ProgramStage.captureCoordinates,
+                        ProgramStage.deleted, ProgramStage.displayGenerateEventBox, ProgramStage.executionDateLabel,
+                        ProgramStage.formType, ProgramStage.generatedByEnrollmentDate, ProgramStage.hideDueDate,
+                        ProgramStage.minDaysFromStart, ProgramStage.openAfterEnrollment, ProgramStage.repeatable,
+                        ProgramStage.reportDateToUse, ProgramStage.sortOrder, ProgramStage.standardInterval,
+                        ProgramStage.validCompleteOnly, ProgramStage.programStageDataElements.with(
+                                ProgramStageDataElement.uid, ProgramStageDataElement.code,
+                                ProgramStageDataElement.created, ProgramStageDataElement.lastUpdated,
+                                ProgramStageDataElement.allowFutureDate,
+                                ProgramStageDataElement.allowProvidedElsewhere, ProgramStageDataElement.compulsory,
+                                ProgramStageDataElement.deleted, ProgramStageDataElement.displayInReports,
+                                ProgramStageDataElement.sortOrder,
+                                ProgramStageDataElement.programStage.with(ProgramStage.uid),
+                                ProgramStageDataElement.dataElement.with(
+                                        DataElement.uid, DataElement.code, DataElement.name,
+                                        DataElement.displayName, DataElement.created, DataElement.lastUpdated,
+                                        DataElement.shortName, DataElement.displayShortName,
+                                        DataElement.description, DataElement.displayDescription,
+                                        DataElement.aggregationType, DataElement.deleted, DataElement.dimension,
+                                        DataElement.displayFormName, DataElement.domainType, DataElement.formName,
+                                        DataElement.numberType, DataElement.valueType,
+                                        DataElement.zeroIsSignificant,
+                                        DataElement.optionSet.with(OptionSet.uid, OptionSet.version)
+                                )
+                        ),
+                        ProgramStage.programStageSections.with(
+                                ProgramStageSection.uid, ProgramStageSection.code, ProgramStageSection.name,
+                                ProgramStageSection.displayName, ProgramStageSection.created,
+                                ProgramStageSection.lastUpdated, ProgramStageSection.sortOrder,
+                                ProgramStageSection.deleted,
+                                ProgramStageSection.programStageDataElements.with(ProgramStageDataElement.uid)
+                        )
+                )
+        ).build();
+
+        List<String> uids = new ArrayList<>(filterValues);
+        for (int i = 0; i < filterValues; i++) {
+            uids.add(MetadataGenerator.uid('P', i));
+        }
+        filter = Program.uid.in(uids);
+    }
+
+    @Benchmark
+    public String organisationUnitFields() throws IOException {
+        return fieldsConverter.convert(organisationUnitFields);
+    }
+
+    @Benchmark
+    public String programFields() throws IOException {
+        return fieldsConverter.convert(programFields);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public String organisationUnitFieldsRendered() {
+        return FieldsConverter.render((List) organisationUnitFields.fields());
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public String programFieldsRendered() {
+        return FieldsConverter.render((List) programFields.fields());
+    }
+
+    @Benchmark
+    public String uidFilter() throws IOException {
+        return filterConverter.convert(filter);
+    }
+}
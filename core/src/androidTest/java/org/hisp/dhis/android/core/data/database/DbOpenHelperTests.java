@@ -28,22 +28,263 @@
 
 package org.hisp.dhis.android.core.data.database;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.support.test.runner.AndroidJUnit4;
 
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.option.OptionSearchModel;
+import org.hisp.dhis.android.core.option.OptionSetModel;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureModel;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.resource.ResourceCursorModel;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static com.google.common.truth.Truth.assertThat;
 
 @RunWith(AndroidJUnit4.class)
 public class DbOpenHelperTests {
-    private static final int DATABASE_TESTS_VERSION = 1;
+    private static final int DATABASE_TESTS_VERSION = 7;
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        database = SQLiteDatabase.create(null);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
 
     @Test
     public void databaseVersion_shouldHaveCorrespondingTests() {
-        // ToDo: tests for schema migration (requires some research to be done)
         // make sure that whenever database version is bumped,
         // corresponding schema migration tests are implemented
         assertThat(DATABASE_TESTS_VERSION).isEqualTo(DbOpenHelper.VERSION);
+        assertThat(DbMigrations.latestVersion()).isEqualTo(DbOpenHelper.VERSION);
+    }
+
+    @Test
+    public void migrations_shouldBeNumberedConsecutively() {
+        for (int i = 0; i < DbMigrations.MIGRATIONS.size(); i++) {
+            assertThat(DbMigrations.MIGRATIONS.get(i).version()).isEqualTo(DbMigrations.INITIAL_VERSION + i + 1);
+        }
+    }
+
+    @Test
+    public void create_shouldApplyAllMigrations() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, DbMigrations.INITIAL_VERSION, DbOpenHelper.VERSION);
+
+        // lookup indexes, the descendant index of the closure table, state indexes and option search indexes
+        assertThat(indexes()).hasSize(LookupIndexMigration.INDEXES.size() + 1 + StateIndexMigration.INDEXES.size()
+                + OptionSearchMigration.INDEXES.size());
+    }
+
+    @Test
+    public void migrationToVersionTwo_shouldAddLookupIndexes() {
+        DbOpenHelper.createInitialSchema(database);
+        assertThat(indexes()).isEmpty();
+
+        DbMigrations.migrate(database, 1, 2);
+
+        assertThat(indexes()).contains(LookupIndexMigration.indexName(
+                OptionModel.TABLE, OptionModel.Columns.OPTION_SET));
+        assertThat(indexes()).contains(LookupIndexMigration.indexName(TrackedEntityDataValueModel.TABLE,
+                TrackedEntityDataValueModel.Columns.EVENT, TrackedEntityDataValueModel.Columns.DATA_ELEMENT));
+    }
+
+    @Test
+    public void migrationToVersionTwo_shouldUseIndexForOptionSetLookup() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 2);
+
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " + OptionModel.TABLE +
+                " WHERE " + OptionModel.Columns.OPTION_SET + " = ?", new String[]{"option_set_uid"});
+        try {
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1));
+            }
+            assertThat(plan.toString()).contains(LookupIndexMigration.indexName(
+                    OptionModel.TABLE, OptionModel.Columns.OPTION_SET));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrationToVersionTwo_shouldUseIndexForDataValueUpdate() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 2);
+
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN UPDATE " + TrackedEntityDataValueModel.TABLE +
+                " SET " + TrackedEntityDataValueModel.Columns.VALUE + " = ?" +
+                " WHERE " + TrackedEntityDataValueModel.Columns.EVENT + " = ?" +
+                " AND " + TrackedEntityDataValueModel.Columns.DATA_ELEMENT + " = ?",
+                new String[]{"value", "event_uid", "data_element_uid"});
+        try {
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1));
+            }
+            assertThat(plan.toString()).contains(LookupIndexMigration.indexName(TrackedEntityDataValueModel.TABLE,
+                    TrackedEntityDataValueModel.Columns.EVENT, TrackedEntityDataValueModel.Columns.DATA_ELEMENT));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrationToVersionThree_shouldAddResourceCursorTable() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 3);
+
+        Cursor cursor = database.rawQuery("PRAGMA table_info(" + ResourceCursorModel.TABLE + ")", null);
+        try {
+            Set<String> columns = new HashSet<>();
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(cursor.getColumnIndex("name")));
+            }
+            assertThat(columns).containsAllOf(ResourceCursorModel.Columns.RESOURCE_TYPE,
+                    ResourceCursorModel.Columns.SCOPE, ResourceCursorModel.Columns.STARTED,
+                    ResourceCursorModel.Columns.NEXT_PAGE);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrationToVersionFour_shouldAddClosureTable() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 4);
+
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{OrganisationUnitClosureModel.TABLE});
+        try {
+            assertThat(cursor.getCount()).isEqualTo(1);
+        } finally {
+            cursor.close();
+        }
+        assertThat(indexes()).contains(LookupIndexMigration.indexName(
+                OrganisationUnitClosureModel.TABLE, OrganisationUnitClosureModel.Columns.DESCENDANT));
+    }
+
+    @Test
+    public void migrationToVersionFour_shouldFillClosureTableFromStoredPaths() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 3);
+        database.execSQL("INSERT INTO " + OrganisationUnitModel.TABLE + " (" + OrganisationUnitModel.Columns.UID +
+                ", " + OrganisationUnitModel.Columns.PATH + ") VALUES ('district_uid', '/root_uid/district_uid');");
+
+        DbMigrations.migrate(database, 3, 4);
+
+        Cursor cursor = database.rawQuery("SELECT " + OrganisationUnitClosureModel.Columns.ANCESTOR + ", " +
+                OrganisationUnitClosureModel.Columns.DEPTH + " FROM " + OrganisationUnitClosureModel.TABLE +
+                " WHERE " + OrganisationUnitClosureModel.Columns.DESCENDANT + " = ?" +
+                " ORDER BY " + OrganisationUnitClosureModel.Columns.DEPTH, new String[]{"district_uid"});
+        try {
+            assertThat(cursor.getCount()).isEqualTo(2);
+            cursor.moveToFirst();
+            assertThat(cursor.getString(0)).isEqualTo("district_uid");
+            assertThat(cursor.getInt(1)).isEqualTo(0);
+            cursor.moveToNext();
+            assertThat(cursor.getString(0)).isEqualTo("root_uid");
+            assertThat(cursor.getInt(1)).isEqualTo(1);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrationToVersionFive_shouldAddHttpValidatorColumn() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 5);
+
+        Cursor cursor = database.rawQuery("PRAGMA table_info(" + ResourceModel.TABLE + ")", null);
+        try {
+            Set<String> columns = new HashSet<>();
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(cursor.getColumnIndex("name")));
+            }
+            assertThat(columns).contains(ResourceModel.Columns.HTTP_VALIDATOR);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrationToVersionSix_shouldUseIndexForStateLookup() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 6);
+
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " + EventModel.TABLE +
+                " WHERE " + EventModel.Columns.STATE + " IN (?, ?)", new String[]{"TO_POST", "TO_UPDATE"});
+        try {
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1));
+            }
+            assertThat(plan.toString()).contains(LookupIndexMigration.indexName(
+                    EventModel.TABLE, EventModel.Columns.STATE));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrationToVersionSeven_shouldIndexStoredOptions() {
+        DbOpenHelper.createInitialSchema(database);
+        DbMigrations.migrate(database, 1, 6);
+        database.execSQL("INSERT INTO " + OptionSetModel.TABLE + " (" + OptionSetModel.Columns.UID +
+                ") VALUES ('option_set_uid');");
+        database.execSQL("INSERT INTO " + OptionModel.TABLE + " (" + OptionModel.Columns.UID + ", " +
+                OptionModel.Columns.CODE + ", " + OptionModel.Columns.DISPLAY_NAME + ", " +
+                OptionModel.Columns.OPTION_SET + ") VALUES ('option_uid', 'A09', 'Diarrhoea', 'option_set_uid');");
+
+        DbMigrations.migrate(database, 6, 7);
+
+        Cursor cursor = database.rawQuery("SELECT " + OptionSearchModel.Columns.TOKEN + " FROM " +
+                OptionSearchModel.TABLE + " WHERE " + OptionSearchModel.Columns.OPTION + " = ?",
+                new String[]{"option_uid"});
+        try {
+            Set<String> tokens = new HashSet<>();
+            while (cursor.moveToNext()) {
+                tokens.add(cursor.getString(0));
+            }
+            assertThat(tokens).containsExactly("a09", "diarrhoea");
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void migrate_shouldFailForUnknownVersion() {
+        DbMigrations.migrate(database, 1, DbMigrations.latestVersion() + 1);
+    }
+
+    private Set<String> indexes() {
+        Set<String> indexes = new HashSet<>();
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' " +
+                "AND name LIKE 'index_%'", null);
+        try {
+            while (cursor.moveToNext()) {
+                indexes.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return indexes;
     }
 }
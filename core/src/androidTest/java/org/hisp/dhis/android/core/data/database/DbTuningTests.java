@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class DbTuningTests {
+    private static final String DATABASE_NAME = "tuning_tests.db";
+
+    private static final int TRANSACTION_COUNT = 100;
+    private static final int ROWS_PER_TRANSACTION = 20;
+
+    private Context context;
+    private DbOpenHelper dbOpenHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext().getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (dbOpenHelper != null) {
+            dbOpenHelper.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void performance_shouldApplyPragmas() {
+        SQLiteDatabase database = open(DbTuning.performance());
+
+        assertThat(pragma(database, "journal_mode")).isEqualTo("wal");
+        assertThat(pragma(database, "synchronous")).isEqualTo("1");
+        assertThat(pragma(database, "temp_store")).isEqualTo("2");
+        assertThat(pragma(database, "cache_size")).isEqualTo("-8192");
+        assertThat(pragma(database, "foreign_keys")).isEqualTo("1");
+    }
+
+    @Test
+    public void defaults_shouldKeepRollbackJournal() {
+        SQLiteDatabase database = open(DbTuning.defaults());
+
+        assertThat(pragma(database, "journal_mode")).isNotEqualTo("wal");
+        assertThat(pragma(database, "foreign_keys")).isEqualTo("1");
+    }
+
+    @Test
+    public void writeAheadLogging_shouldNotBlockReadersDuringTransaction() throws Exception {
+        open(DbTuning.performance());
+        final DatabaseAdapter databaseAdapter = new SqLiteDatabaseAdapter(dbOpenHelper);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            dbOpenHelper.getWritableDatabase().execSQL("INSERT INTO " + ResourceModel.TABLE + " (" +
+                    ResourceModel.Columns.RESOURCE_TYPE + ") VALUES ('test_resource');");
+
+            Future<Integer> count = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Cursor cursor = databaseAdapter.query("SELECT * FROM " + ResourceModel.TABLE);
+                    try {
+                        return cursor.getCount();
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            });
+
+            // the reader sees the last committed state without waiting for the transaction
+            assertThat(count.get(5, TimeUnit.SECONDS)).isEqualTo(0);
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void performance_shouldKeepRowsOfCommittedTransactionsAfterReopening() {
+        open(DbTuning.performance());
+        DatabaseAdapter databaseAdapter = new SqLiteDatabaseAdapter(dbOpenHelper);
+        SQLiteStatement insert = databaseAdapter.compileStatement("INSERT INTO " + ResourceModel.TABLE +
+                " (" + ResourceModel.Columns.RESOURCE_TYPE + ") VALUES (?);");
+
+        for (int i = 0; i < TRANSACTION_COUNT; i++) {
+            Transaction transaction = databaseAdapter.beginNewTransaction();
+            try {
+                for (int row = 0; row < ROWS_PER_TRANSACTION; row++) {
+                    insert.bindString(1, "resource_" + i + "_" + row);
+                    databaseAdapter.executeInsert(ResourceModel.TABLE, insert);
+                }
+                transaction.setSuccessful();
+            } finally {
+                transaction.end();
+            }
+        }
+        dbOpenHelper.close();
+
+        // relaxed synchronous mode may only lose commits on power loss, not when the connection is closed
+        Cursor cursor = open(DbTuning.performance()).rawQuery("SELECT * FROM " + ResourceModel.TABLE, null);
+        try {
+            assertThat(cursor.getCount()).isEqualTo(TRANSACTION_COUNT * ROWS_PER_TRANSACTION);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private SQLiteDatabase open(DbTuning tuning) {
+        dbOpenHelper = new DbOpenHelper(context, DATABASE_NAME, tuning);
+        return dbOpenHelper.getWritableDatabase();
+    }
+
+    private static String pragma(SQLiteDatabase database, String pragma) {
+        Cursor cursor = database.rawQuery("PRAGMA " + pragma + ";", null);
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.annotation.NonNull;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class LazyCursorListTests {
+    private static final int ROW_COUNT = 10000;
+
+    private MatrixCursor cursor;
+    private CountingMapper mapper;
+
+    @Before
+    public void setUp() {
+        cursor = new MatrixCursor(new String[]{"_id", "value"});
+        for (int i = 0; i < ROW_COUNT; i++) {
+            cursor.addRow(new Object[]{i, "value_" + i});
+        }
+        mapper = new CountingMapper();
+    }
+
+    @Test
+    public void list_shouldMapRowsOnlyWhenAccessed() {
+        LazyCursorList<String> list = new LazyCursorList<>(cursor, mapper);
+
+        assertThat(list).hasSize(ROW_COUNT);
+        assertThat(mapper.bindCount).isEqualTo(1);
+        assertThat(mapper.mapCount).isEqualTo(0);
+
+        assertThat(list.get(9999)).isEqualTo("value_9999");
+        assertThat(list.get(42)).isEqualTo("value_42");
+        assertThat(list.get(42)).isEqualTo("value_42");
+
+        assertThat(mapper.mapCount).isEqualTo(2);
+        assertThat(mapper.bindCount).isEqualTo(1);
+    }
+
+    @Test
+    public void close_shouldCloseCursor() {
+        LazyCursorList<String> list = new LazyCursorList<>(cursor, mapper);
+        list.close();
+
+        assertThat(cursor.isClosed()).isTrue();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void get_shouldFailAfterClose() {
+        LazyCursorList<String> list = new LazyCursorList<>(cursor, mapper);
+        list.close();
+
+        list.get(0);
+    }
+
+    private static class CountingMapper implements CursorMapper<String> {
+        int bindCount;
+        int mapCount;
+
+        @NonNull
+        @Override
+        public RowMapper<String> bind(@NonNull Cursor cursor) {
+            bindCount++;
+            final int valueIndex = cursor.getColumnIndexOrThrow("value");
+            return new RowMapper<String>() {
+                @NonNull
+                @Override
+                public String map(@NonNull Cursor cursor) {
+                    mapCount++;
+                    return cursor.getString(valueIndex);
+                }
+            };
+        }
+    }
+}
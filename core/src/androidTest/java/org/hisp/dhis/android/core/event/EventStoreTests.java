@@ -228,6 +228,20 @@ public class EventStoreTests extends AbsStoreTestCase {
                 PROGRAM_STAGE, ORGANISATION_UNIT, null, null, null, null).isExhausted();
     }
 
+    @Test
+    public void delete_shouldDeleteEventWithUid() {
+        eventStore.insert(EVENT_UID, ENROLLMENT_UID, null, null, null, null, null, PROGRAM,
+                PROGRAM_STAGE, ORGANISATION_UNIT, null, null, null, null);
+        eventStore.insert("other_event", ENROLLMENT_UID, null, null, null, null, null, PROGRAM,
+                PROGRAM_STAGE, ORGANISATION_UNIT, null, null, null, null);
+
+        int deleted = eventStore.delete(EVENT_UID);
+
+        Cursor cursor = database().query(EventModel.TABLE, new String[]{Columns.UID}, null, null, null, null, null);
+        assertThat(deleted).isEqualTo(1);
+        assertThatCursor(cursor).hasRow("other_event").isExhausted();
+    }
+
     @Test
     public void delete_shouldDeleteEventWhenDeletingProgramForeignKey() {
         eventStore.insert(
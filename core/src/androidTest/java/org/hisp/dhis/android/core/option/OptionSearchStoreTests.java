@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.option;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class OptionSearchStoreTests extends AbsStoreTestCase {
+    private static final String OPTION_SET_UID = "test_option_set_uid";
+    private static final String OTHER_OPTION_SET_UID = "test_other_option_set_uid";
+
+    private OptionStore optionStore;
+    private OptionSearchStore optionSearchStore;
+
+    @Override
+    @Before
+    public void setUp() throws IOException {
+        super.setUp();
+        optionStore = new OptionStoreImpl(databaseAdapter());
+        optionSearchStore = new OptionSearchStoreImpl(databaseAdapter());
+
+        database().insert(OptionSetModel.TABLE, null, CreateOptionSetUtils.create(1L, OPTION_SET_UID));
+        database().insert(OptionSetModel.TABLE, null, CreateOptionSetUtils.create(2L, OTHER_OPTION_SET_UID));
+
+        insertOption("cholera", "A00", "Cholera", OPTION_SET_UID);
+        insertOption("diarrhoea", "A09", "Infectious diarrhoea", OPTION_SET_UID);
+        insertOption("typhoid", "A01.0", "Typhoid fever", OPTION_SET_UID);
+        insertOption("dengue", "A90", "Dengue fever", OPTION_SET_UID);
+        insertOption("fever", "R50", "Fever, unspecified", OPTION_SET_UID);
+        insertOption("other_fever", "F", "Fever", OTHER_OPTION_SET_UID);
+    }
+
+    private void insertOption(String uid, String code, String name, String optionSet) {
+        Date date = new Date();
+        optionStore.insert(uid, code, name, name, date, date, optionSet);
+        optionSearchStore.update(uid, optionSet, code, name, name);
+    }
+
+    private List<String> search(String query, int offset, int limit) {
+        List<String> uids = new ArrayList<>();
+        for (OptionModel option : optionSearchStore.search(OPTION_SET_UID, query, offset, limit)) {
+            uids.add(option.uid());
+        }
+        return uids;
+    }
+
+    @Test
+    public void search_shouldRankOptionsStartingWithQueryFirst() {
+        assertThat(search("fev", 0, 10)).containsExactly("fever", "dengue", "typhoid").inOrder();
+    }
+
+    @Test
+    public void search_shouldRankCodesBeforeNames() {
+        assertThat(search("a0", 0, 10)).containsExactly("cholera", "diarrhoea", "typhoid").inOrder();
+        assertThat(search("A01.0", 0, 10)).containsExactly("typhoid");
+    }
+
+    @Test
+    public void search_shouldRequireEveryWord() {
+        assertThat(search("fever deng", 0, 10)).containsExactly("dengue");
+        assertThat(search("diarrhée inf", 0, 10)).isEmpty();
+        assertThat(search("INFECTIOUS Diarr", 0, 10)).containsExactly("diarrhoea");
+    }
+
+    @Test
+    public void search_shouldPageThroughAllOptionsForEmptyQuery() {
+        assertThat(search("", 0, 2)).containsExactly("cholera", "dengue").inOrder();
+        assertThat(search(" ", 2, 2)).containsExactly("fever", "diarrhoea").inOrder();
+        assertThat(search("", 4, 2)).containsExactly("typhoid");
+    }
+
+    @Test
+    public void update_shouldReplaceTokens() {
+        optionSearchStore.update("cholera", OPTION_SET_UID, "A00", "Vibrio infection", "Vibrio infection");
+
+        assertThat(search("chol", 0, 10)).isEmpty();
+        assertThat(search("vib", 0, 10)).containsExactly("cholera");
+        assertThat(search("inf", 0, 10)).containsExactly("diarrhoea", "cholera").inOrder();
+    }
+
+    @Test
+    public void delete_shouldRemoveOptionFromSearch() {
+        optionSearchStore.delete("fever");
+        assertThat(search("fever", 0, 10)).containsExactly("dengue", "typhoid").inOrder();
+
+        // tokens are removed together with the option as well
+        optionStore.delete("dengue");
+        assertThat(search("fever", 0, 10)).containsExactly("typhoid");
+    }
+}
@@ -36,9 +36,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 import org.hisp.dhis.android.core.resource.ResourceStoreImpl;
 import org.junit.After;
@@ -214,7 +216,7 @@ public class OptionSetCallTests extends AbsStoreTestCase {
 
         optionSetCall = new OptionSetCall(
                 optionSetService, optionSetStore, databaseAdapter(), resourceStore, uids, new Date(),
-                optionStore);
+                optionStore, new MetadataChanges(), null, UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS);
 
     }
 
@@ -35,6 +35,7 @@ import android.support.test.runner.AndroidJUnit4;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.data.database.BulkUpsert;
 import org.hisp.dhis.android.core.option.OptionModel.Columns;
 import org.junit.Before;
 import org.junit.Test;
@@ -42,7 +43,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Captor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -213,4 +217,63 @@ public class OptionStoreTests extends AbsStoreTestCase {
         // check that option is deleted
         assertThatCursor(cursor).isExhausted();
     }
+
+    @Test
+    public void upsert_shouldInsertNewAndUpdateExistingOptions() throws Exception {
+        ContentValues optionSetValues = CreateOptionSetUtils.create(OPTION_SET_ID, OPTION_SET_UID);
+        database().insert(OptionSetModel.TABLE, null, optionSetValues);
+
+        optionStore.insert(UID, CODE, NAME, DISPLAY_NAME, date, date, OPTION_SET_UID);
+
+        OptionSet optionSet = OptionSet.create(OPTION_SET_UID, null, null, null, null, null,
+                null, null, null, null);
+        List<Option> options = Arrays.asList(
+                Option.create(UID, "updated_code", NAME, DISPLAY_NAME, date, date, optionSet, false),
+                Option.create("new_uid", CODE, NAME, DISPLAY_NAME, date, date, optionSet, false)
+        );
+
+        int upserted = optionStore.upsert(options);
+
+        String[] projection = {Columns.UID, Columns.CODE, Columns.OPTION_SET};
+        Cursor cursor = database().query(OptionModel.TABLE, projection,
+                null, null, null, null, Columns.ID);
+
+        assertThat(upserted).isEqualTo(2);
+        assertThatCursor(cursor)
+                .hasRow(UID, "updated_code", OPTION_SET_UID)
+                .hasRow("new_uid", CODE, OPTION_SET_UID)
+                .isExhausted();
+    }
+
+    @Test
+    public void upsert_shouldUpdateExistingOptions_acrossUidQueryBatches() throws Exception {
+        ContentValues optionSetValues = CreateOptionSetUtils.create(OPTION_SET_ID, OPTION_SET_UID);
+        database().insert(OptionSetModel.TABLE, null, optionSetValues);
+
+        // existing uids are looked up in batches, so spread existing options over several of them
+        int count = 2 * BulkUpsert.MAX_QUERY_UIDS + 1;
+        OptionSet optionSet = OptionSet.create(OPTION_SET_UID, null, null, null, null, null,
+                null, null, null, null);
+        List<Option> options = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                optionStore.insert("uid_" + i, CODE, NAME, DISPLAY_NAME, date, date, OPTION_SET_UID);
+            }
+            options.add(Option.create("uid_" + i, "code_" + i, NAME, DISPLAY_NAME, date, date, optionSet, false));
+        }
+
+        int upserted = optionStore.upsert(options);
+
+        Cursor cursor = database().query(OptionModel.TABLE, new String[]{Columns.UID, Columns.CODE},
+                null, null, null, null, null);
+        try {
+            assertThat(upserted).isEqualTo(count);
+            assertThat(cursor.getCount()).isEqualTo(count);
+            while (cursor.moveToNext()) {
+                assertThat(cursor.getString(1)).isEqualTo(cursor.getString(0).replace("uid_", "code_"));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
 }
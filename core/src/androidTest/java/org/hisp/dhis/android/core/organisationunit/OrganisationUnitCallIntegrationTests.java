@@ -285,7 +285,7 @@ public class OrganisationUnitCallIntegrationTests extends AbsStoreTestCase {
         database().insert(UserModel.TABLE, null, userContentValues);
 
         organisationUnitCall = new OrganisationUnitCall(user, organisationUnitService, databaseAdapter(),
-                organisationUnitStore, resourceStore, new Date(), userOrganisationUnitLinkStore);
+                organisationUnitStore, resourceStore, new Date(), userOrganisationUnitLinkStore, null, 0);
     }
 
     @Test
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.organisationunit;
+
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureModel.Columns;
+import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkStoreImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
+
+@RunWith(AndroidJUnit4.class)
+public class OrganisationUnitClosureStoreTests extends AbsStoreTestCase {
+    private static final String[] PROJECTION = {Columns.ANCESTOR, Columns.DESCENDANT, Columns.DEPTH};
+
+    private static final int REGIONS = 12;
+    private static final int DISTRICTS_PER_REGION = 5;
+
+    private OrganisationUnitStore organisationUnitStore;
+    private OrganisationUnitClosureStore closureStore;
+
+    @Override
+    @Before
+    public void setUp() throws IOException {
+        super.setUp();
+        organisationUnitStore = new OrganisationUnitStoreImpl(databaseAdapter());
+        closureStore = new OrganisationUnitClosureStoreImpl(databaseAdapter());
+    }
+
+    @Test
+    public void update_shouldInsertAncestorsAndItself() {
+        closureStore.update("grandchild", "/root/child/grandchild");
+
+        Cursor cursor = database().query(OrganisationUnitClosureModel.TABLE, PROJECTION,
+                null, null, null, null, Columns.DEPTH + " DESC");
+        assertThatCursor(cursor)
+                .hasRow("root", "grandchild", 2)
+                .hasRow("child", "grandchild", 1)
+                .hasRow("grandchild", "grandchild", 0)
+                .isExhausted();
+    }
+
+    @Test
+    public void update_shouldReplaceAncestors_whenMoved() {
+        closureStore.update("child", "/root/child");
+        closureStore.update("child", "/other_root/child");
+
+        Cursor cursor = database().query(OrganisationUnitClosureModel.TABLE, PROJECTION,
+                null, null, null, null, Columns.DEPTH + " DESC");
+        assertThatCursor(cursor)
+                .hasRow("other_root", "child", 1)
+                .hasRow("child", "child", 0)
+                .isExhausted();
+    }
+
+    @Test
+    public void delete_shouldRemoveOrganisationUnitAsAncestorAndDescendant() {
+        closureStore.update("child", "/root/child");
+        closureStore.update("grandchild", "/root/child/grandchild");
+
+        closureStore.delete("child");
+
+        Cursor cursor = database().query(OrganisationUnitClosureModel.TABLE, PROJECTION,
+                null, null, null, null, Columns.DEPTH + " DESC");
+        assertThatCursor(cursor)
+                .hasRow("root", "grandchild", 2)
+                .hasRow("grandchild", "grandchild", 0)
+                .isExhausted();
+    }
+
+    @Test
+    public void queryDescendants_shouldReturnStoredDescendantsUpToDepth() {
+        insertOrganisationUnit("root", "/root");
+        insertOrganisationUnit("child", "/root/child");
+        insertOrganisationUnit("grandchild", "/root/child/grandchild");
+        // linked, but not stored
+        closureStore.update("other_child", "/root/other_child");
+
+        LazyCursorList<OrganisationUnitModel> children = closureStore.queryDescendants("root", 1);
+        LazyCursorList<OrganisationUnitModel> descendants = closureStore.queryDescendants("root", Integer.MAX_VALUE);
+        try {
+            assertThat(children).hasSize(1);
+            assertThat(children.get(0).uid()).isEqualTo("child");
+            assertThat(descendants).hasSize(2);
+            assertThat(descendants.get(1).uid()).isEqualTo("grandchild");
+        } finally {
+            children.close();
+            descendants.close();
+        }
+        assertThat(closureStore.countDescendants("root")).isEqualTo(2);
+        assertThat(closureStore.countDescendants("grandchild")).isEqualTo(0);
+    }
+
+    @Test
+    public void countDescendants_shouldMatchPathPrefix_forHandledHierarchy() {
+        OrganisationUnitHandler handler = new OrganisationUnitHandler(organisationUnitStore,
+                new UserOrganisationUnitLinkStoreImpl(databaseAdapter()), closureStore);
+        OrganisationUnit root = organisationUnit("root", null, "/root", 1);
+        List<OrganisationUnit> organisationUnits = new ArrayList<>();
+        organisationUnits.add(root);
+        // region_1 is a uid prefix of region_10, which must not count as its descendants
+        for (int region = 0; region < REGIONS; region++) {
+            OrganisationUnit regionUnit = organisationUnit("region_" + region, root,
+                    root.path() + "/region_" + region, 2);
+            organisationUnits.add(regionUnit);
+            for (int district = 0; district < DISTRICTS_PER_REGION; district++) {
+                String districtUid = "district_" + region + "_" + district;
+                organisationUnits.add(organisationUnit(districtUid, regionUnit,
+                        regionUnit.path() + "/" + districtUid, 3));
+            }
+        }
+        handler.handleOrganisationUnits(organisationUnits, null, "user_uid");
+
+        for (int region = 0; region < REGIONS; region++) {
+            String uid = "region_" + region;
+            LazyCursorList<OrganisationUnitModel> descendants = organisationUnitStore.queryDescendants(uid);
+            try {
+                assertThat(descendants).hasSize(DISTRICTS_PER_REGION);
+            } finally {
+                descendants.close();
+            }
+            assertThat(organisationUnitStore.countDescendants(uid)).isEqualTo(DISTRICTS_PER_REGION);
+            assertThat(closureStore.countDescendants(uid)).isEqualTo(DISTRICTS_PER_REGION);
+            assertThat(countByPathPrefix("/root/" + uid + "/%")).isEqualTo(DISTRICTS_PER_REGION);
+        }
+        assertThat(organisationUnitStore.countDescendants("root")).isEqualTo(organisationUnits.size() - 1);
+        assertThat(closureStore.countDescendants("root")).isEqualTo(organisationUnits.size() - 1);
+    }
+
+    @Test
+    public void countDescendants_shouldSearchPathIndexInsteadOfScanningTable() {
+        Cursor cursor = database().rawQuery("EXPLAIN QUERY PLAN " +
+                OrganisationUnitStoreImpl.COUNT_DESCENDANTS_STATEMENT, new String[]{"root", "root"});
+        try {
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1));
+            }
+            assertThat(plan.toString()).doesNotContain("SCAN");
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int countByPathPrefix(String prefix) {
+        Cursor cursor = database().rawQuery("SELECT COUNT(*) FROM " + OrganisationUnitModel.TABLE +
+                " WHERE " + OrganisationUnitModel.Columns.PATH + " LIKE ?;", new String[]{prefix});
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static OrganisationUnit organisationUnit(String uid, OrganisationUnit parent, String path, int level) {
+        return OrganisationUnit.create(uid, null, uid, uid, null, null, null, null, null, null,
+                parent, path, null, null, level, null, false);
+    }
+
+    private void insertOrganisationUnit(String uid, String path) {
+        organisationUnitStore.insert(uid, null, null, null, null, null, null, null,
+                null, null, path, null, null, null, null);
+        closureStore.update(uid, path);
+    }
+}
@@ -33,12 +33,14 @@ import android.database.Cursor;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
 import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkModel;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -155,4 +157,103 @@ public class OrganisationUnitStoreTests extends AbsStoreTestCase {
         assertThat(deleted).isEqualTo(2);
         assertThatCursor(cursor).isExhausted();
     }
+
+    @Test
+    public void queryByUid_shouldMapRowLikeGeneratedFactory() {
+        organisationUnitStore.insert(UID, CODE, NAME, DISPLAY_NAME, date, date, SHORT_NAME, DISPLAY_SHORT_NAME,
+                DESCRIPTION, DISPLAY_DESCRIPTION, PATH, date, null, null, LEVEL);
+
+        Cursor cursor = database().rawQuery("SELECT * FROM " + OrganisationUnitModel.TABLE, null);
+        cursor.moveToFirst();
+        OrganisationUnitModel expected = OrganisationUnitModel.create(cursor);
+        cursor.close();
+
+        assertThat(organisationUnitStore.queryByUid(UID)).isEqualTo(expected);
+        assertThat(organisationUnitStore.queryByUid("unknown_uid")).isNull();
+    }
+
+    @Test
+    public void queryChildren_shouldReturnDirectChildrenOnly() {
+        organisationUnitStore.insert(UID, CODE, NAME, DISPLAY_NAME, date, date, SHORT_NAME, DISPLAY_SHORT_NAME,
+                DESCRIPTION, DISPLAY_DESCRIPTION, PATH, date, date, null, 1);
+        organisationUnitStore.insert("child_one", null, null, null, null, null, null, null,
+                null, null, null, null, null, UID, 2);
+        organisationUnitStore.insert("child_two", null, null, null, null, null, null, null,
+                null, null, null, null, null, UID, 2);
+        organisationUnitStore.insert("grandchild", null, null, null, null, null, null, null,
+                null, null, null, null, null, "child_one", 3);
+
+        LazyCursorList<OrganisationUnitModel> children = organisationUnitStore.queryChildren(UID);
+        try {
+            assertThat(children).hasSize(2);
+            assertThat(children.get(0).uid()).isEqualTo("child_one");
+            assertThat(children.get(1).uid()).isEqualTo("child_two");
+            assertThat(children.get(1).parent()).isEqualTo(UID);
+            assertThat(children.get(1).level()).isEqualTo(2);
+            assertThat(children.get(1).created()).isNull();
+        } finally {
+            children.close();
+        }
+    }
+
+    @Test
+    public void queryDescendants_shouldReturnSubTreeOnly() {
+        givenHierarchy();
+
+        LazyCursorList<OrganisationUnitModel> descendants = organisationUnitStore.queryDescendants("child_one");
+        try {
+            assertThat(descendants).hasSize(2);
+            assertThat(descendants.get(0).uid()).isEqualTo("grandchild_one");
+            assertThat(descendants.get(1).uid()).isEqualTo("grandchild_two");
+        } finally {
+            descendants.close();
+        }
+    }
+
+    @Test
+    public void queryDescendants_shouldNotMatchSiblingsWithCommonPrefix() {
+        givenHierarchy();
+        insertOrganisationUnit("child_one_sibling", "/root/child_one_sibling", "root", 2);
+
+        assertThat(organisationUnitStore.countDescendants("child_one")).isEqualTo(2);
+        assertThat(organisationUnitStore.countDescendants("root")).isEqualTo(5);
+    }
+
+    @Test
+    public void queryDescendants_shouldReturnEmptyList_forUnknownOrganisationUnit() {
+        givenHierarchy();
+
+        LazyCursorList<OrganisationUnitModel> descendants = organisationUnitStore.queryDescendants("unknown");
+        try {
+            assertThat(descendants).isEmpty();
+        } finally {
+            descendants.close();
+        }
+        assertThat(organisationUnitStore.countDescendants("unknown")).isEqualTo(0);
+    }
+
+    @Test
+    public void queryAncestors_shouldReturnStoredAncestorsFromRoot() {
+        givenHierarchy();
+
+        List<OrganisationUnitModel> ancestors = organisationUnitStore.queryAncestors("grandchild_two");
+
+        assertThat(ancestors).hasSize(2);
+        assertThat(ancestors.get(0).uid()).isEqualTo("root");
+        assertThat(ancestors.get(1).uid()).isEqualTo("child_one");
+        assertThat(organisationUnitStore.queryAncestors("root")).isEmpty();
+    }
+
+    private void givenHierarchy() {
+        insertOrganisationUnit("root", "/root", null, 1);
+        insertOrganisationUnit("child_one", "/root/child_one", "root", 2);
+        insertOrganisationUnit("child_two", "/root/child_two", "root", 2);
+        insertOrganisationUnit("grandchild_one", "/root/child_one/grandchild_one", "child_one", 3);
+        insertOrganisationUnit("grandchild_two", "/root/child_one/grandchild_two", "child_one", 3);
+    }
+
+    private void insertOrganisationUnit(String uid, String path, String parent, int level) {
+        organisationUnitStore.insert(uid, null, null, null, null, null, null, null,
+                null, null, path, null, null, parent, level);
+    }
 }
@@ -37,18 +37,20 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.Call;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.dataelement.DataElementHandler;
 import org.hisp.dhis.android.core.dataelement.DataElementModel;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
 import org.hisp.dhis.android.core.dataelement.DataElementStoreImpl;
-import org.hisp.dhis.android.core.option.OptionHandler;
-import org.hisp.dhis.android.core.option.OptionSetHandler;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.option.CreateOptionSetUtils;
+import org.hisp.dhis.android.core.option.OptionSet;
+import org.hisp.dhis.android.core.option.OptionSetCall;
 import org.hisp.dhis.android.core.option.OptionSetModel;
-import org.hisp.dhis.android.core.option.OptionSetStore;
+import org.hisp.dhis.android.core.option.OptionSetService;
 import org.hisp.dhis.android.core.option.OptionSetStoreImpl;
-import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.option.OptionStoreImpl;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeModel;
@@ -66,21 +68,27 @@ import org.hisp.dhis.android.core.trackedentity.TrackedEntityModel;
 import org.hisp.dhis.android.core.utils.HeaderUtils;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
 
 @RunWith(AndroidJUnit4.class)
@@ -117,6 +125,14 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
             ProgramModel.Columns.TRACKED_ENTITY
     };
 
+    private static final String[] OPTION_SET_UIDS = {
+            "OGmE3wUMEzu", "XdI8KRJiRoZ", "dgsftM0rXu2", "f38bstJioPs", "kzgQRhOCadd",
+            "nH8Y04zS7UV", "oXR37f2wOb1", "udkr3ihaeD3", "x31y45jvIQL"
+    };
+
+    @Rule
+    public TemporaryFolder cacheDirectory = new TemporaryFolder();
+
     private MockWebServer mockWebServer;
     private Call<Response<Payload<Program>>> programCall;
 
@@ -1311,25 +1327,20 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
                 programStageSectionProgramIndicatorLinkStore
         );
 
+        MetadataChanges metadataChanges = new MetadataChanges();
         ProgramRuleActionStore programRuleActionStore = new ProgramRuleActionStoreImpl(databaseAdapter());
         ProgramRuleActionHandler programRuleActionHandler = new ProgramRuleActionHandler(programRuleActionStore);
         ProgramRuleStore programRuleStore = new ProgramRuleStoreImpl(databaseAdapter());
-        ProgramRuleHandler programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler);
-
-        OptionStore optionStore = new OptionStoreImpl(databaseAdapter());
-        OptionHandler optionHandler = new OptionHandler(optionStore);
-
-        OptionSetStore optionSetStore = new OptionSetStoreImpl(databaseAdapter());
-        OptionSetHandler optionSetHandler = new OptionSetHandler(optionSetStore, optionHandler);
-
+        ProgramRuleHandler programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler,
+                metadataChanges);
 
         DataElementStore dataElementStore = new DataElementStoreImpl(databaseAdapter());
-        DataElementHandler dataElementHandler = new DataElementHandler(dataElementStore, optionSetHandler);
+        DataElementHandler dataElementHandler = new DataElementHandler(dataElementStore, null, metadataChanges);
         ProgramStageDataElementStore programStageDataElementStore =
                 new ProgramStageDataElementStoreImpl(databaseAdapter());
 
         ProgramStageDataElementHandler programStageDataElementHandler = new ProgramStageDataElementHandler(
-                programStageDataElementStore, dataElementHandler
+                programStageDataElementStore, dataElementHandler, metadataChanges
         );
 
 
@@ -1345,7 +1356,8 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
         ProgramStageHandler programStageHandler = new ProgramStageHandler(
                 programStageStore,
                 programStageSectionHandler,
-                programStageDataElementHandler
+                programStageDataElementHandler,
+                metadataChanges
         );
 
         RelationshipTypeStore relationshipStore = new RelationshipTypeStoreImpl(databaseAdapter());
@@ -1361,7 +1373,8 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
                 programIndicatorHandler,
                 programRuleHandler,
                 programTrackedEntityAttributeHandler,
-                relationshipTypeHandler);
+                relationshipTypeHandler,
+                metadataChanges);
 
         ResourceStore resourceStore = new ResourceStoreImpl(databaseAdapter());
         ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
@@ -1374,12 +1387,18 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
         ContentValues trackedEntity = CreateTrackedEntityUtils.create(1L, "nEenWmSyUEp");
         database().insert(TrackedEntityModel.TABLE, null, trackedEntity);
 
+        // option sets are persisted by the option set call, programs only reference them
+        for (int i = 0; i < OPTION_SET_UIDS.length; i++) {
+            database().insert(OptionSetModel.TABLE, null, CreateOptionSetUtils.create(i + 1, OPTION_SET_UIDS[i]));
+        }
+
         programCall = new ProgramCall(
                 programService, databaseAdapter(), resourceStore, uids, programStore, new Date(),
                 trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
                 programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
-                programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                programStageSectionStore, programStageStore, relationshipStore
+                programRuleStore, dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, metadataChanges, null,
+                UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS
         );
     }
 
@@ -1604,23 +1623,70 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
     }
 
     @Test
-    public void call_shouldPersistOptionSet() throws Exception {
+    public void call_shouldNotOverwriteStoredOptionSet() throws Exception {
         programCall.call();
 
         String[] projection = {
                 OptionSetModel.Columns.UID,
+                OptionSetModel.Columns.NAME,
+                OptionSetModel.Columns.VALUE_TYPE,
                 OptionSetModel.Columns.VERSION
         };
 
+        // the program only contains the uid and version of the option set
         Cursor optionSetCursor = database().query(OptionSetModel.TABLE, projection,
                 OptionSetModel.Columns.UID + "=?", new String[]{"x31y45jvIQL"}, null, null, null);
 
         assertThatCursor(optionSetCursor).hasRow(
                 "x31y45jvIQL",
-                1
+                "test_name",
+                "BOOLEAN",
+                51
         ).isExhausted();
     }
 
+    @Test
+    public void call_shouldNotOverwriteStoredOptionSet_whenOptionSetsAreNotModified() throws Exception {
+        MockWebServer optionSetServer = new MockWebServer();
+        optionSetServer.start();
+        try {
+            optionSetServer.enqueue(new MockResponse()
+                    .setHeader("Cache-Control", "no-cache")
+                    .setHeader("ETag", "\"v1\"")
+                    .setBody("{\"optionSets\": [{\"id\": \"x31y45jvIQL\", \"name\": \"Vaccine status\", " +
+                            "\"displayName\": \"Vaccine status\", \"valueType\": \"TEXT\", \"version\": 1, " +
+                            "\"options\": []}]}"));
+            optionSetServer.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+            OptionSetService optionSetService = optionSetService(optionSetServer);
+
+            // the previous sync persisted the option set together with its validator
+            optionSetCall(optionSetService).call();
+
+            // this sync downloads changed programs, while the server reports the option sets as not modified
+            programCall.call();
+            Response<Payload<OptionSet>> optionSetResponse = optionSetCall(optionSetService).call();
+
+            assertThat(optionSetResponse.raw().networkResponse().code())
+                    .isEqualTo(HttpURLConnection.HTTP_NOT_MODIFIED);
+
+            String[] projection = {
+                    OptionSetModel.Columns.UID,
+                    OptionSetModel.Columns.NAME,
+                    OptionSetModel.Columns.VALUE_TYPE
+            };
+            Cursor optionSetCursor = database().query(OptionSetModel.TABLE, projection,
+                    OptionSetModel.Columns.UID + "=?", new String[]{"x31y45jvIQL"}, null, null, null);
+
+            assertThatCursor(optionSetCursor).hasRow(
+                    "x31y45jvIQL",
+                    "Vaccine status",
+                    "TEXT"
+            ).isExhausted();
+        } finally {
+            optionSetServer.shutdown();
+        }
+    }
+
     @Test
     public void call_shouldPersistProgramRuleVariables() throws Exception {
         programCall.call();
@@ -1919,6 +1985,33 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
         assertThatCursor(relationshipTypeCursor).isExhausted();
     }
 
+    private OptionSetService optionSetService(MockWebServer server) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setDateFormat(BaseIdentifiableObject.DATE_FORMAT.raw());
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(new Cache(cacheDirectory.getRoot(), 1024 * 1024))
+                .build();
+
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .addConverterFactory(FieldsConverterFactory.create())
+                .build()
+                .create(OptionSetService.class);
+    }
+
+    private OptionSetCall optionSetCall(OptionSetService optionSetService) {
+        Set<String> uids = new HashSet<>();
+        uids.add("x31y45jvIQL");
+
+        return new OptionSetCall(optionSetService, new OptionSetStoreImpl(databaseAdapter()), databaseAdapter(),
+                new ResourceStoreImpl(databaseAdapter()), uids, new Date(), new OptionStoreImpl(databaseAdapter()),
+                new MetadataChanges(), null, UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS);
+    }
+
     @Override
     @After
     public void tearDown() throws IOException {
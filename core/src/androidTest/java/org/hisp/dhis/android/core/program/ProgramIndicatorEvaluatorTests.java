@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.program;
+
+import android.content.ContentValues;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.dataelement.CreateDataElementUtils;
+import org.hisp.dhis.android.core.dataelement.DataElementModel;
+import org.hisp.dhis.android.core.event.CreateEventUtils;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.organisationunit.CreateOrganisationUnitUtils;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.relationship.CreateRelationshipTypeUtils;
+import org.hisp.dhis.android.core.relationship.RelationshipTypeModel;
+import org.hisp.dhis.android.core.trackedentity.CreateTrackedEntityUtils;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class ProgramIndicatorEvaluatorTests extends AbsStoreTestCase {
+    private static final String PROGRAM = "test_program";
+    private static final String PROGRAM_STAGE = "test_programStage";
+    private static final String OTHER_PROGRAM_STAGE = "test_otherProgramStage";
+    private static final String ORGANISATION_UNIT = "test_orgUnit";
+    private static final String WEIGHT = "test_weight";
+    private static final String PREGNANT = "test_pregnant";
+
+    private ProgramIndicatorEvaluator evaluator;
+
+    @Override
+    @Before
+    public void setUp() throws IOException {
+        super.setUp();
+        evaluator = new ProgramIndicatorEvaluator(databaseAdapter());
+
+        database().insert(TrackedEntityModel.TABLE, null, CreateTrackedEntityUtils.create(1L, "trackedEntity"));
+        database().insert(RelationshipTypeModel.TABLE, null,
+                CreateRelationshipTypeUtils.create(1L, "relationshipType"));
+        database().insert(ProgramModel.TABLE, null,
+                CreateProgramUtils.create(1L, PROGRAM, "relationshipType", null, "trackedEntity"));
+        database().insert(ProgramStageModel.TABLE, null, CreateProgramStageUtils.create(1L, PROGRAM_STAGE, PROGRAM));
+        database().insert(ProgramStageModel.TABLE, null,
+                CreateProgramStageUtils.create(2L, OTHER_PROGRAM_STAGE, PROGRAM));
+        database().insert(OrganisationUnitModel.TABLE, null,
+                CreateOrganisationUnitUtils.createOrgUnit(1L, ORGANISATION_UNIT));
+        database().insert(DataElementModel.TABLE, null, CreateDataElementUtils.create(1L, WEIGHT, null));
+        database().insert(DataElementModel.TABLE, null, CreateDataElementUtils.create(2L, PREGNANT, null));
+
+        insertEvent("event_a", "enrollment_a", PROGRAM_STAGE, "60", "true");
+        insertEvent("event_b", "enrollment_a", PROGRAM_STAGE, "70.5", "false");
+        insertEvent("event_c", "enrollment_b", PROGRAM_STAGE, "80", "true");
+        insertEvent("event_d", "enrollment_b", OTHER_PROGRAM_STAGE, "1000", "true");
+    }
+
+    private void insertEvent(String uid, String enrollment, String programStage, String weight, String pregnant) {
+        ContentValues event = CreateEventUtils.create(uid, PROGRAM, programStage, ORGANISATION_UNIT);
+        event.put(EventModel.Columns.ENROLLMENT_UID, enrollment);
+        database().insert(EventModel.TABLE, null, event);
+        insertDataValue(uid, WEIGHT, weight);
+        insertDataValue(uid, PREGNANT, pregnant);
+    }
+
+    private void insertDataValue(String event, String dataElement, String value) {
+        ContentValues dataValue = new ContentValues();
+        dataValue.put(TrackedEntityDataValueModel.Columns.EVENT, event);
+        dataValue.put(TrackedEntityDataValueModel.Columns.DATA_ELEMENT, dataElement);
+        dataValue.put(TrackedEntityDataValueModel.Columns.VALUE, value);
+        database().insert(TrackedEntityDataValueModel.TABLE, null, dataValue);
+    }
+
+    private static ProgramIndicatorModel indicator(String expression, String filter, Integer decimals) {
+        return ProgramIndicatorModel.builder()
+                .uid("test_programIndicator")
+                .program(PROGRAM)
+                .expression(expression)
+                .filter(filter)
+                .decimals(decimals)
+                .build();
+    }
+
+    @Test
+    public void evaluate_shouldSumValuesOfTheProgramStage() {
+        assertThat(evaluator.evaluate(indicator("#{test_programStage.test_weight}", null, null)))
+                .isEqualTo(210.5);
+        assertThat(evaluator.evaluate(indicator("V{event_count}", null, null))).isEqualTo(4.0);
+    }
+
+    @Test
+    public void evaluate_shouldApplyFilterAndDecimals() {
+        ProgramIndicatorModel indicator = indicator("#{test_programStage.test_weight} / 3",
+                "#{test_programStage.test_pregnant} == true", 1);
+
+        assertThat(evaluator.evaluate(indicator)).isEqualTo(46.7);
+    }
+
+    @Test
+    public void evaluate_shouldCountMissingValuesAsZero_inCalculations() {
+        ContentValues event = CreateEventUtils.create("event_e", PROGRAM, PROGRAM_STAGE, ORGANISATION_UNIT);
+        event.put(EventModel.Columns.ENROLLMENT_UID, "enrollment_b");
+        database().insert(EventModel.TABLE, null, event);
+        insertDataValue("event_e", PREGNANT, "true");
+
+        // event_d has no weight of the stage and event_e has none at all, but both still count one
+        assertThat(evaluator.evaluate(indicator("#{test_programStage.test_weight} + 1", null, null)))
+                .isEqualTo(215.5);
+        assertThat(evaluator.evaluate(indicator("V{event_count}", "#{test_programStage.test_weight} < 100",
+                null))).isEqualTo(3.0);
+    }
+
+    @Test
+    public void evaluate_shouldRestrictToEnrollment() {
+        ProgramIndicatorModel indicator = indicator("#{test_weight}", null, null);
+
+        assertThat(evaluator.evaluate(indicator, "enrollment_a")).isEqualTo(130.5);
+        assertThat(evaluator.evaluate(indicator, "enrollment_b")).isEqualTo(1080.0);
+        assertThat(evaluator.evaluate(indicator, "enrollment_c")).isNull();
+    }
+}
@@ -35,6 +35,7 @@ import android.support.test.runner.AndroidJUnit4;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
 import org.hisp.dhis.android.core.program.ProgramModel.Columns;
 import org.hisp.dhis.android.core.relationship.CreateRelationshipTypeUtils;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeModel;
@@ -518,4 +519,25 @@ public class ProgramStoreTests extends AbsStoreTestCase {
         // check that program doesn't exist in database
         assertThatCursor(cursor).isExhausted();
     }
+
+    @Test
+    public void queryByUid_shouldMapRowLikeGeneratedFactory() {
+        database().insert(ProgramModel.TABLE, null,
+                CreateProgramUtils.create(1L, UID, RELATIONSHIP_TYPE, null, TRACKED_ENTITY));
+
+        Cursor cursor = database().rawQuery("SELECT * FROM " + ProgramModel.TABLE, null);
+        cursor.moveToFirst();
+        ProgramModel expected = ProgramModel.create(cursor);
+        cursor.close();
+
+        assertThat(programStore.queryByUid(UID)).isEqualTo(expected);
+        assertThat(programStore.queryByUid("unknown_uid")).isNull();
+
+        LazyCursorList<ProgramModel> programs = programStore.queryAll();
+        try {
+            assertThat(programs).containsExactly(expected);
+        } finally {
+            programs.close();
+        }
+    }
 }
@@ -17,6 +17,7 @@ import static com.google.common.truth.Truth.assertThat;
 public class ResourceModelIntegrationTest {
     private static final Long ID = 2L;
     private static final String RESOURCE_TYPE = "OrganisationUnit";
+    private static final String HTTP_VALIDATOR = "\"etag\"";
 
     // timestamp
     private static final String DATE = "2017-01-18T13:39:00.000";
@@ -24,11 +25,11 @@ public class ResourceModelIntegrationTest {
     @Test
     public void create_shouldConvertToModel() throws Exception {
         MatrixCursor matrixCursor = new MatrixCursor(new String[]{
-                Columns.ID, Columns.RESOURCE_TYPE, Columns.LAST_SYNCED
+                Columns.ID, Columns.RESOURCE_TYPE, Columns.LAST_SYNCED, Columns.HTTP_VALIDATOR
         });
 
         matrixCursor.addRow(new Object[]{
-                ID, RESOURCE_TYPE, DATE
+                ID, RESOURCE_TYPE, DATE, HTTP_VALIDATOR
         });
 
         matrixCursor.moveToFirst();
@@ -39,6 +40,7 @@ public class ResourceModelIntegrationTest {
         assertThat(resource.id()).isEqualTo(ID);
         assertThat(resource.resourceType()).isEqualTo(RESOURCE_TYPE);
         assertThat(resource.lastSynced()).isEqualTo(timeStamp);
+        assertThat(resource.httpValidator()).isEqualTo(HTTP_VALIDATOR);
     }
 
     @Test
@@ -48,6 +50,7 @@ public class ResourceModelIntegrationTest {
                 .id(ID)
                 .resourceType(RESOURCE_TYPE)
                 .lastSynced(timeStamp)
+                .httpValidator(HTTP_VALIDATOR)
                 .build();
 
         ContentValues contentValues = resource.toContentValues();
@@ -55,5 +58,6 @@ public class ResourceModelIntegrationTest {
         assertThat(contentValues.getAsLong(Columns.ID)).isEqualTo(ID);
         assertThat(contentValues.getAsString(Columns.RESOURCE_TYPE)).isEqualTo(RESOURCE_TYPE);
         assertThat(contentValues.getAsString(Columns.LAST_SYNCED)).isEqualTo(DATE);
+        assertThat(contentValues.getAsString(Columns.HTTP_VALIDATOR)).isEqualTo(HTTP_VALIDATOR);
     }
 }
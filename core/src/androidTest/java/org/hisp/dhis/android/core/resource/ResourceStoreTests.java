@@ -133,6 +133,71 @@ public class ResourceStoreTests extends AbsStoreTestCase {
         assertThat(lastUpdated).isNull();
     }
 
+    @Test
+    public void updateHttpValidator_shouldPersistValidatorOfResource() {
+        resourceStore.insert(RESOURCE_TYPE.name(), date);
+
+        int returnValue = resourceStore.updateHttpValidator(RESOURCE_TYPE, "\"etag\"");
+
+        assertThat(returnValue).isEqualTo(1);
+        assertThat(resourceStore.getHttpValidator(RESOURCE_TYPE)).isEqualTo("\"etag\"");
+    }
+
+    @Test
+    public void getHttpValidator_shouldReturnNull_IfNotExisting() {
+        resourceStore.insert(RESOURCE_TYPE.name(), date);
+
+        assertThat(resourceStore.getHttpValidator(RESOURCE_TYPE)).isNull();
+        assertThat(resourceStore.getHttpValidator(ResourceModel.Type.PROGRAM)).isNull();
+    }
+
+    @Test
+    public void insertCursor_shouldPersistCursorInDatabase() {
+        resourceStore.insertCursor(RESOURCE_TYPE, "root_uid", date, 2);
+
+        ResourceCursorModel cursor = resourceStore.queryCursor(RESOURCE_TYPE, "root_uid");
+
+        assertThat(cursor.resourceType()).isEqualTo(RESOURCE_TYPE.name());
+        assertThat(cursor.scope()).isEqualTo("root_uid");
+        assertThat(cursor.started()).isEqualTo(date);
+        assertThat(cursor.nextPage()).isEqualTo(2);
+        // cursors are not stored as resources
+        assertThat(resourceStore.getLastUpdated(RESOURCE_TYPE)).isNull();
+        assertThatCursor(database().query(ResourceModel.TABLE, PROJECTION, null, null, null, null, null))
+                .isExhausted();
+    }
+
+    @Test
+    public void updateCursor_shouldMoveCursor() {
+        resourceStore.insertCursor(RESOURCE_TYPE, "root_uid", date, 2);
+
+        int returnValue = resourceStore.updateCursor(RESOURCE_TYPE, "root_uid", null);
+
+        assertThat(returnValue).isEqualTo(1);
+        assertThat(resourceStore.queryCursor(RESOURCE_TYPE, "root_uid").nextPage()).isNull();
+    }
+
+    @Test
+    public void queryCursor_shouldReturnNull_IfNotExisting() {
+        assertThat(resourceStore.queryCursor(RESOURCE_TYPE, "root_uid")).isNull();
+    }
+
+    @Test
+    public void deleteCursors_shouldOnlyDeleteCursorsOfType() {
+        database().insert(ResourceModel.TABLE, null, createResource(RESOURCE_TYPE.name(), dateString));
+        resourceStore.insertCursor(RESOURCE_TYPE, "root_uid", date, 2);
+        resourceStore.insertCursor(RESOURCE_TYPE, "other_root_uid", date, null);
+        resourceStore.insertCursor(ResourceModel.Type.PROGRAM, "root_uid", date, 2);
+
+        int returnValue = resourceStore.deleteCursors(RESOURCE_TYPE);
+
+        assertThat(returnValue).isEqualTo(2);
+        assertThat(resourceStore.queryCursor(RESOURCE_TYPE, "root_uid")).isNull();
+        assertThat(resourceStore.queryCursor(RESOURCE_TYPE, "other_root_uid")).isNull();
+        assertThat(resourceStore.queryCursor(ResourceModel.Type.PROGRAM, "root_uid")).isNotNull();
+        assertThat(resourceStore.getLastUpdated(RESOURCE_TYPE)).isEqualTo(dateString);
+    }
+
     private ContentValues createResource(String resourceName, String dateString) {
         ContentValues resource = new ContentValues();
         resource.put(Columns.RESOURCE_TYPE, resourceName);
@@ -36,6 +36,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.Call;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
 import org.hisp.dhis.android.core.data.api.FilterConverterFactory;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
@@ -136,7 +137,8 @@ public class TrackedEntityCallIntegrationTests extends AbsStoreTestCase {
         ResourceStore resourceStore = new ResourceStoreImpl(databaseAdapter());
 
         trackedEntityCall = new TrackedEntityCall(
-                uids, databaseAdapter(), trackedEntityStore, resourceStore, service, new Date()
+                uids, databaseAdapter(), trackedEntityStore, resourceStore, service, null, new Date(),
+                UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS
         );
     }
 
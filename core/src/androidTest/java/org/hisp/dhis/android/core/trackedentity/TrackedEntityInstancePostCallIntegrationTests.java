@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.content.ContentValues;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.event.CreateEventUtils;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.imports.ImportSummaries;
+import org.hisp.dhis.android.core.organisationunit.CreateOrganisationUnitUtils;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.program.CreateProgramStageUtils;
+import org.hisp.dhis.android.core.program.CreateProgramUtils;
+import org.hisp.dhis.android.core.program.ProgramModel;
+import org.hisp.dhis.android.core.program.ProgramStageModel;
+import org.hisp.dhis.android.core.relationship.CreateRelationshipTypeUtils;
+import org.hisp.dhis.android.core.relationship.RelationshipTypeModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
+
+@RunWith(AndroidJUnit4.class)
+public class TrackedEntityInstancePostCallIntegrationTests extends AbsStoreTestCase {
+    private static final String ORGANISATION_UNIT = "test_organisationUnit";
+    private static final String TRACKED_ENTITY = "test_trackedEntity";
+    private static final String PROGRAM = "test_program";
+    private static final String PROGRAM_STAGE = "test_programStage";
+    private static final String RELATIONSHIP_TYPE = "test_relationshipType";
+
+    private MockWebServer server;
+
+    private TrackedEntityInstancePostCall postCall;
+
+    @Before
+    @Override
+    public void setUp() throws IOException {
+        super.setUp();
+        server = new MockWebServer();
+        server.start();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setDateFormat(BaseIdentifiableObject.DATE_FORMAT.raw());
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .build();
+
+        postCall = new TrackedEntityInstancePostCall(retrofit.create(TrackedEntityInstanceService.class),
+                databaseAdapter(), new TrackerUploadStoreImpl(databaseAdapter()),
+                retrofit.<ImportSummaries>responseBodyConverter(ImportSummaries.class, new Annotation[0]),
+                TrackedEntityInstancePostCall.DEFAULT_BATCH_SIZE);
+
+        database().insert(OrganisationUnitModel.TABLE, null,
+                CreateOrganisationUnitUtils.createOrgUnit(1L, ORGANISATION_UNIT));
+        database().insert(TrackedEntityModel.TABLE, null, CreateTrackedEntityUtils.create(1L, TRACKED_ENTITY));
+        database().insert(RelationshipTypeModel.TABLE, null,
+                CreateRelationshipTypeUtils.create(1L, RELATIONSHIP_TYPE));
+        database().insert(ProgramModel.TABLE, null,
+                CreateProgramUtils.create(1L, PROGRAM, RELATIONSHIP_TYPE, null, TRACKED_ENTITY));
+        database().insert(ProgramStageModel.TABLE, null, CreateProgramStageUtils.create(1L, PROGRAM_STAGE, PROGRAM));
+
+        // a synced instance and enrollment, which are uploaded along with their changed event
+        ContentValues trackedEntityInstance = CreateTrackedEntityInstanceUtils.create(
+                "tei", ORGANISATION_UNIT, TRACKED_ENTITY);
+        trackedEntityInstance.put(TrackedEntityInstanceModel.Columns.STATE, State.SYNCED.name());
+        database().insert(TrackedEntityInstanceModel.TABLE, null, trackedEntityInstance);
+
+        ContentValues enrollment = new ContentValues();
+        enrollment.put(EnrollmentModel.Columns.UID, "enrollment");
+        enrollment.put(EnrollmentModel.Columns.ORGANISATION_UNIT, ORGANISATION_UNIT);
+        enrollment.put(EnrollmentModel.Columns.PROGRAM, PROGRAM);
+        enrollment.put(EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE, "tei");
+        enrollment.put(EnrollmentModel.Columns.STATE, State.SYNCED.name());
+        database().insert(EnrollmentModel.TABLE, null, enrollment);
+
+        ContentValues event = CreateEventUtils.create("event", PROGRAM, PROGRAM_STAGE, ORGANISATION_UNIT);
+        event.put(EventModel.Columns.ENROLLMENT_UID, "enrollment");
+        event.put(EventModel.Columns.STATE, State.TO_UPDATE.name());
+        database().insert(EventModel.TABLE, null, event);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws IOException {
+        super.tearDown();
+        server.shutdown();
+    }
+
+    @Test
+    public void call_shouldKeepState_ofRowsChangedDuringUpload() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                // the enrollment is edited while the server imports the batch
+                ContentValues edit = new ContentValues();
+                edit.put(EnrollmentModel.Columns.STATE, State.TO_UPDATE.name());
+                database().update(EnrollmentModel.TABLE, edit, EnrollmentModel.Columns.UID + " = ?",
+                        new String[]{"enrollment"});
+
+                return new MockResponse().setBody("{\"importSummaries\":[{\"status\":\"SUCCESS\"," +
+                        "\"reference\":\"tei\"}]}");
+            }
+        });
+
+        postCall.call();
+
+        assertThatCursor(database().query(TrackedEntityInstanceModel.TABLE,
+                new String[]{TrackedEntityInstanceModel.Columns.STATE}, null, null, null, null, null))
+                .hasRow(State.SYNCED)
+                .isExhausted();
+        assertThatCursor(database().query(EnrollmentModel.TABLE,
+                new String[]{EnrollmentModel.Columns.STATE}, null, null, null, null, null))
+                .hasRow(State.TO_UPDATE)
+                .isExhausted();
+        assertThatCursor(database().query(EventModel.TABLE,
+                new String[]{EventModel.Columns.STATE}, null, null, null, null, null))
+                .hasRow(State.SYNCED)
+                .isExhausted();
+    }
+}
@@ -43,6 +43,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -142,6 +143,31 @@ public class TrackedEntityInstanceStoreTests extends AbsStoreTestCase {
         assertThatCursor(cursor).isExhausted();
     }
 
+    @Test
+    public void delete_shouldDeleteTrackedEntityInstanceWithUid() {
+        trackedEntityInstanceStore.insert(UID, date, date, ORGANISATION_UNIT, TRACKED_ENTITY, STATE);
+        trackedEntityInstanceStore.insert("other_uid", date, date, ORGANISATION_UNIT, TRACKED_ENTITY, STATE);
+
+        int deleted = trackedEntityInstanceStore.delete(UID);
+
+        Cursor cursor = database().query(TrackedEntityInstanceModel.TABLE,
+                new String[]{TrackedEntityInstanceModel.Columns.UID}, null, null, null, null, null);
+        assertThat(deleted).isEqualTo(1);
+        assertThatCursor(cursor).hasRow("other_uid").isExhausted();
+    }
+
+    @Test
+    public void queryUidsWithLocalChanges_shouldReturnInstancesWhichAreNotSynced() {
+        trackedEntityInstanceStore.insert(UID, date, date, ORGANISATION_UNIT, TRACKED_ENTITY, State.TO_UPDATE);
+        trackedEntityInstanceStore.insert("synced_uid", date, date, ORGANISATION_UNIT, TRACKED_ENTITY,
+                State.SYNCED);
+        trackedEntityInstanceStore.insert("other_uid", date, date, ORGANISATION_UNIT, TRACKED_ENTITY,
+                State.TO_UPDATE);
+
+        assertThat(trackedEntityInstanceStore.queryUidsWithLocalChanges(Arrays.asList(UID, "synced_uid")))
+                .containsExactly(UID);
+    }
+
     @Test
     public void delete_shouldDeleteTrackedEntityInstanceWhenDeletingOrganisationUnitForeignKey() {
         trackedEntityInstanceStore.insert(UID, date, date, ORGANISATION_UNIT, TRACKED_ENTITY, STATE);
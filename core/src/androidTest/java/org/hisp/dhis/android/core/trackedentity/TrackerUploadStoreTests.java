@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.event.CreateEventUtils;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.organisationunit.CreateOrganisationUnitUtils;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.program.CreateProgramStageUtils;
+import org.hisp.dhis.android.core.program.CreateProgramUtils;
+import org.hisp.dhis.android.core.program.ProgramModel;
+import org.hisp.dhis.android.core.program.ProgramStageModel;
+import org.hisp.dhis.android.core.relationship.CreateRelationshipTypeUtils;
+import org.hisp.dhis.android.core.relationship.RelationshipTypeModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
+
+@RunWith(AndroidJUnit4.class)
+public class TrackerUploadStoreTests extends AbsStoreTestCase {
+    private static final String ORGANISATION_UNIT = "test_organisationUnit";
+    private static final String TRACKED_ENTITY = "test_trackedEntity";
+    private static final String PROGRAM = "test_program";
+    private static final String PROGRAM_STAGE = "test_programStage";
+    private static final String RELATIONSHIP_TYPE = "test_relationshipType";
+
+    private TrackerUploadStore trackerUploadStore;
+
+    @Before
+    @Override
+    public void setUp() throws IOException {
+        super.setUp();
+
+        trackerUploadStore = new TrackerUploadStoreImpl(databaseAdapter());
+        database().insert(OrganisationUnitModel.TABLE, null,
+                CreateOrganisationUnitUtils.createOrgUnit(1L, ORGANISATION_UNIT));
+        database().insert(TrackedEntityModel.TABLE, null, CreateTrackedEntityUtils.create(1L, TRACKED_ENTITY));
+        database().insert(RelationshipTypeModel.TABLE, null,
+                CreateRelationshipTypeUtils.create(1L, RELATIONSHIP_TYPE));
+        database().insert(ProgramModel.TABLE, null,
+                CreateProgramUtils.create(1L, PROGRAM, RELATIONSHIP_TYPE, null, TRACKED_ENTITY));
+        database().insert(ProgramStageModel.TABLE, null, CreateProgramStageUtils.create(1L, PROGRAM_STAGE, PROGRAM));
+
+        // an instance which is synced, but has a changed event in a synced enrollment
+        insertTrackedEntityInstance("tei_with_event", State.SYNCED);
+        insertEnrollment("enrollment_synced", "tei_with_event", State.SYNCED);
+        insertEvent("event_synced", "enrollment_synced", State.SYNCED);
+        insertEvent("event_to_update", "enrollment_synced", State.TO_UPDATE);
+
+        // an instance which has been created
+        insertTrackedEntityInstance("tei_to_post", State.TO_POST);
+
+        // an instance without changes
+        insertTrackedEntityInstance("tei_synced", State.SYNCED);
+        insertEnrollment("enrollment_of_synced", "tei_synced", State.SYNCED);
+    }
+
+    private void insertTrackedEntityInstance(String uid, State state) {
+        ContentValues trackedEntityInstance = CreateTrackedEntityInstanceUtils.create(
+                uid, ORGANISATION_UNIT, TRACKED_ENTITY);
+        trackedEntityInstance.put(TrackedEntityInstanceModel.Columns.STATE, state.name());
+        database().insert(TrackedEntityInstanceModel.TABLE, null, trackedEntityInstance);
+    }
+
+    private void insertEnrollment(String uid, String trackedEntityInstance, State state) {
+        ContentValues enrollment = new ContentValues();
+        enrollment.put(EnrollmentModel.Columns.UID, uid);
+        enrollment.put(EnrollmentModel.Columns.ORGANISATION_UNIT, ORGANISATION_UNIT);
+        enrollment.put(EnrollmentModel.Columns.PROGRAM, PROGRAM);
+        enrollment.put(EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE, trackedEntityInstance);
+        enrollment.put(EnrollmentModel.Columns.STATE, state.name());
+        database().insert(EnrollmentModel.TABLE, null, enrollment);
+    }
+
+    private void insertEvent(String uid, String enrollment, State state) {
+        ContentValues event = CreateEventUtils.create(uid, PROGRAM, PROGRAM_STAGE, ORGANISATION_UNIT);
+        event.put(EventModel.Columns.ENROLLMENT_UID, enrollment);
+        event.put(EventModel.Columns.STATE, state.name());
+        database().insert(EventModel.TABLE, null, event);
+    }
+
+    @Test
+    public void queryTrackedEntityInstanceUidsToUpload_shouldReturnInstancesWithChanges() {
+        assertThat(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload())
+                .containsExactly("tei_with_event", "tei_to_post");
+    }
+
+    @Test
+    public void queryTrackedEntityInstancesToUpload_shouldReturnOnlyChangedEvents() {
+        TrackerUploadBatch batch = trackerUploadStore.queryTrackedEntityInstancesToUpload(
+                Arrays.asList("tei_with_event", "tei_to_post"));
+        List<TrackedEntityInstance> trackedEntityInstances = batch.trackedEntityInstances();
+
+        assertThat(trackedEntityInstances).hasSize(2);
+        TrackedEntityInstance trackedEntityInstance = trackedEntityInstances.get(0).uid().equals("tei_with_event") ?
+                trackedEntityInstances.get(0) : trackedEntityInstances.get(1);
+        assertThat(trackedEntityInstance.enrollments()).hasSize(1);
+
+        Enrollment enrollment = trackedEntityInstance.enrollments().get(0);
+        assertThat(enrollment.uid()).isEqualTo("enrollment_synced");
+        assertThat(enrollment.events()).hasSize(1);
+        assertThat(enrollment.events().get(0).uid()).isEqualTo("event_to_update");
+
+        assertThat(batch.trackedEntityInstanceState("tei_with_event")).isEqualTo(State.SYNCED);
+        assertThat(batch.trackedEntityInstanceState("tei_to_post")).isEqualTo(State.TO_POST);
+        assertThat(batch.enrollmentState("enrollment_synced")).isEqualTo(State.SYNCED);
+        assertThat(batch.eventState("event_to_update")).isEqualTo(State.TO_UPDATE);
+    }
+
+    @Test
+    public void setState_shouldUpdateGivenRows() {
+        trackerUploadStore.setTrackedEntityInstanceState(Arrays.asList("tei_with_event", "tei_to_post"),
+                State.SYNCED, State.ERROR);
+        trackerUploadStore.setTrackedEntityInstanceState(Collections.singletonList("tei_to_post"),
+                State.TO_POST, State.ERROR);
+        trackerUploadStore.setEventState(Collections.singletonList("event_to_update"), State.TO_UPDATE, State.SYNCED);
+
+        Cursor cursor = database().query(TrackedEntityInstanceModel.TABLE,
+                new String[]{TrackedEntityInstanceModel.Columns.UID, TrackedEntityInstanceModel.Columns.STATE},
+                null, null, null, null, TrackedEntityInstanceModel.Columns.UID);
+        assertThatCursor(cursor)
+                .hasRow("tei_synced", State.SYNCED)
+                .hasRow("tei_to_post", State.ERROR)
+                .hasRow("tei_with_event", State.ERROR)
+                .isExhausted();
+        assertThat(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload()).isEmpty();
+    }
+
+    @Test
+    public void setState_shouldSkipRows_whichAreNoLongerInExpectedState() {
+        // the event has been edited after it was read
+        assertThat(trackerUploadStore.setEventState(Collections.singletonList("event_to_update"),
+                State.TO_POST, State.SYNCED)).isEqualTo(0);
+
+        assertThat(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload())
+                .containsExactly("tei_with_event", "tei_to_post");
+    }
+}
@@ -220,7 +220,8 @@ public class UserAuthenticateCallIntegrationTests extends AbsStoreTestCase {
 
         authenticateUserCall = new UserAuthenticateCall(userService, databaseAdapter(), userStore,
                 userCredentialsStore, userOrganisationUnitLinkStore, resourceStore, authenticatedUserStore,
-                organisationUnitStore, "test_user", "test_password");
+                organisationUnitStore, new AuthenticatedUserCache(authenticatedUserStore),
+                "test_user", "test_password");
     }
 
     @Test
@@ -226,11 +226,11 @@ public class UserCallIntegrationTest extends AbsStoreTestCase {
         UserRoleProgramLinkStore userRoleProgramLinkStore = new UserRoleProgramLinkStoreImpl(databaseAdapter());
         ResourceStore resourceStore = new ResourceStoreImpl(databaseAdapter());
 
-        organisationUnitHandler = new OrganisationUnitHandler(organisationUnitStore, userOrganisationUnitStore);
+        organisationUnitHandler = new OrganisationUnitHandler(organisationUnitStore, userOrganisationUnitStore, null);
 
         userCall = new UserCall(userService, databaseAdapter(), organisationUnitStore,
                 userStore, userCredentialsStore, userRoleStore, resourceStore, new Date(),
-                userRoleProgramLinkStore, userOrganisationUnitStore);
+                userRoleProgramLinkStore, userOrganisationUnitStore, null);
 
         ContentValues program1 = CreateProgramUtils.create(1L, "eBAyeGv0exc", null, null, null);
         ContentValues program2 = CreateProgramUtils.create(2L, "ur1Edk5Oe2n", null, null, null);
@@ -28,7 +28,9 @@
 
 package org.hisp.dhis.android.core;
 
+import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -37,19 +39,44 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.Call;
 import org.hisp.dhis.android.core.common.MetadataCall;
+import org.hisp.dhis.android.core.common.MetadataDeltaService;
 import org.hisp.dhis.android.core.configuration.ConfigurationModel;
+import org.hisp.dhis.android.core.data.api.Authenticator;
+import org.hisp.dhis.android.core.data.api.BasicAuthenticatorFactory;
+import org.hisp.dhis.android.core.data.api.DateCodecModule;
 import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
+import org.hisp.dhis.android.core.data.api.FilterConverterFactory;
+import org.hisp.dhis.android.core.data.api.HttpCacheCounter;
+import org.hisp.dhis.android.core.data.api.StreamingPayloadConverterFactory;
+import org.hisp.dhis.android.core.data.api.TransferCounter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.DbOpenHelper;
+import org.hisp.dhis.android.core.data.database.DbTuning;
+import org.hisp.dhis.android.core.data.database.SqLiteDatabaseAdapter;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
 import org.hisp.dhis.android.core.dataelement.DataElementStoreImpl;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStore;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStoreImpl;
+import org.hisp.dhis.android.core.event.EventStore;
+import org.hisp.dhis.android.core.event.EventStoreImpl;
+import org.hisp.dhis.android.core.imports.ImportSummaries;
+import org.hisp.dhis.android.core.metadata.MetadataCache;
+import org.hisp.dhis.android.core.metadata.MetadataStoreImpl;
 import org.hisp.dhis.android.core.option.OptionSetService;
 import org.hisp.dhis.android.core.option.OptionSetStore;
 import org.hisp.dhis.android.core.option.OptionSetStoreImpl;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.option.OptionSearchStore;
+import org.hisp.dhis.android.core.option.OptionSearchStoreImpl;
 import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.option.OptionStoreImpl;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureStore;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureStoreImpl;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitStore;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitStoreImpl;
+import org.hisp.dhis.android.core.program.ProgramIndicatorEvaluator;
+import org.hisp.dhis.android.core.program.ProgramIndicatorModel;
 import org.hisp.dhis.android.core.program.ProgramIndicatorStore;
 import org.hisp.dhis.android.core.program.ProgramIndicatorStoreImpl;
 import org.hisp.dhis.android.core.program.ProgramRuleActionStore;
@@ -75,14 +102,30 @@ import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeStoreImpl;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 import org.hisp.dhis.android.core.resource.ResourceStoreImpl;
+import org.hisp.dhis.android.core.rules.RuleEngine;
+import org.hisp.dhis.android.core.rules.RuleEngineCache;
+import org.hisp.dhis.android.core.rules.RuleStoreImpl;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoStoreImpl;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceCall;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstancePostCall;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceService;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceSyncCall;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityService;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackerUploadStore;
+import org.hisp.dhis.android.core.trackedentity.TrackerUploadStoreImpl;
+import org.hisp.dhis.android.core.user.AuthenticatedUserCache;
 import org.hisp.dhis.android.core.user.AuthenticatedUserStore;
 import org.hisp.dhis.android.core.user.AuthenticatedUserStoreImpl;
 import org.hisp.dhis.android.core.user.IsUserLoggedInCallable;
@@ -101,9 +144,16 @@ import org.hisp.dhis.android.core.user.UserService;
 import org.hisp.dhis.android.core.user.UserStore;
 import org.hisp.dhis.android.core.user.UserStoreImpl;
 
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
+import okhttp3.Cache;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
 import retrofit2.Converter;
 import retrofit2.Response;
 import retrofit2.Retrofit;
@@ -114,6 +164,10 @@ import retrofit2.converter.jackson.JacksonConverterFactory;
 public final class D2 {
     private final Retrofit retrofit;
     private final DatabaseAdapter databaseAdapter;
+    private final HttpCacheCounter httpCacheCounter;
+    private final TransferCounter transferCounter;
+    private final AuthenticatedUserCache authenticatedUserCache;
+    private final int organisationUnitPageSize;
 
     // services
     private final UserService userService;
@@ -122,6 +176,8 @@ public final class D2 {
     private final OrganisationUnitService organisationUnitService;
     private final TrackedEntityService trackedEntityService;
     private final OptionSetService optionSetService;
+    private final MetadataDeltaService metadataDeltaService;
+    private final TrackedEntityInstanceService trackedEntityInstanceService;
 
     // stores
     private final UserStore userStore;
@@ -129,6 +185,7 @@ public final class D2 {
     private final UserOrganisationUnitLinkStore userOrganisationUnitLinkStore;
     private final AuthenticatedUserStore authenticatedUserStore;
     private final OrganisationUnitStore organisationUnitStore;
+    private final OrganisationUnitClosureStore organisationUnitClosureStore;
     private final ResourceStore resourceStore;
     private final SystemInfoStore systemInfoStore;
     private final UserRoleStore userRoleStore;
@@ -149,11 +206,33 @@ public final class D2 {
     private final ProgramStageStore programStageStore;
     private final RelationshipTypeStore relationshipStore;
     private final TrackedEntityStore trackedEntityStore;
+    private final TrackedEntityInstanceStore trackedEntityInstanceStore;
+    private final TrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
+    private final EnrollmentStore enrollmentStore;
+    private final EventStore eventStore;
+    private final TrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final TrackerUploadStore trackerUploadStore;
+
+    // caches
+    private final MetadataCache metadataCache;
+    private final RuleEngineCache ruleEngineCache;
 
     @VisibleForTesting
     D2(@NonNull Retrofit retrofit, @NonNull DatabaseAdapter databaseAdapter) {
+        this(retrofit, databaseAdapter, null, null,
+                new AuthenticatedUserCache(new AuthenticatedUserStoreImpl(databaseAdapter)), false, 0);
+    }
+
+    private D2(@NonNull Retrofit retrofit, @NonNull DatabaseAdapter databaseAdapter,
+               @Nullable HttpCacheCounter httpCacheCounter, @Nullable TransferCounter transferCounter,
+               @NonNull AuthenticatedUserCache authenticatedUserCache, boolean organisationUnitClosure,
+               int organisationUnitPageSize) {
         this.retrofit = retrofit;
         this.databaseAdapter = databaseAdapter;
+        this.httpCacheCounter = httpCacheCounter;
+        this.transferCounter = transferCounter;
+        this.authenticatedUserCache = authenticatedUserCache;
+        this.organisationUnitPageSize = organisationUnitPageSize;
 
         // services
         this.userService = retrofit.create(UserService.class);
@@ -162,6 +241,8 @@ public final class D2 {
         this.organisationUnitService = retrofit.create(OrganisationUnitService.class);
         this.trackedEntityService = retrofit.create(TrackedEntityService.class);
         this.optionSetService = retrofit.create(OptionSetService.class);
+        this.metadataDeltaService = retrofit.create(MetadataDeltaService.class);
+        this.trackedEntityInstanceService = retrofit.create(TrackedEntityInstanceService.class);
 
         // stores
         this.userStore =
@@ -174,6 +255,8 @@ public final class D2 {
                 new AuthenticatedUserStoreImpl(databaseAdapter);
         this.organisationUnitStore =
                 new OrganisationUnitStoreImpl(databaseAdapter);
+        this.organisationUnitClosureStore = organisationUnitClosure
+                ? new OrganisationUnitClosureStoreImpl(databaseAdapter) : null;
         this.resourceStore =
                 new ResourceStoreImpl(databaseAdapter);
         this.systemInfoStore =
@@ -214,6 +297,24 @@ public final class D2 {
                 new RelationshipTypeStoreImpl(databaseAdapter);
         this.trackedEntityStore =
                 new TrackedEntityStoreImpl(databaseAdapter);
+        this.trackedEntityInstanceStore =
+                new TrackedEntityInstanceStoreImpl(databaseAdapter);
+        this.trackedEntityAttributeValueStore =
+                new TrackedEntityAttributeValueStoreImpl(databaseAdapter);
+        this.enrollmentStore =
+                new EnrollmentStoreImpl(databaseAdapter);
+        this.eventStore =
+                new EventStoreImpl(databaseAdapter);
+        this.trackedEntityDataValueStore =
+                new TrackedEntityDataValueStoreImpl(databaseAdapter);
+        this.trackerUploadStore =
+                new TrackerUploadStoreImpl(databaseAdapter);
+
+        // caches
+        this.metadataCache =
+                new MetadataCache(new MetadataStoreImpl(databaseAdapter));
+        this.ruleEngineCache =
+                new RuleEngineCache(new RuleStoreImpl(databaseAdapter));
     }
 
     @NonNull
@@ -237,7 +338,8 @@ public final class D2 {
 
         return new UserAuthenticateCall(userService, databaseAdapter, userStore,
                 userCredentialsStore, userOrganisationUnitLinkStore, resourceStore,
-                authenticatedUserStore, organisationUnitStore, username, password
+                authenticatedUserStore, organisationUnitStore, authenticatedUserCache,
+                username, password
         );
     }
 
@@ -253,27 +355,150 @@ public final class D2 {
     public Callable<Void> logOut() {
         return new LogOutUserCallable(
                 userStore, userCredentialsStore, userOrganisationUnitLinkStore,
-                authenticatedUserStore, organisationUnitStore
+                authenticatedUserStore, organisationUnitStore, authenticatedUserCache
         );
     }
 
+    /**
+     * @return counters of the HTTP cache, or null if no cache has been configured in the {@link Builder}
+     */
+    @Nullable
+    public HttpCacheCounter httpCacheCounter() {
+        return httpCacheCounter;
+    }
+
+    /**
+     * @return counters of the bytes sent and received over the network, or null if D2 has not been created
+     * by a {@link Builder}
+     */
+    @Nullable
+    public TransferCounter transferCounter() {
+        return transferCounter;
+    }
+
     @NonNull
     public Call<Response> syncMetaData() {
         return new MetadataCall(
                 databaseAdapter, systemInfoService, userService, programService, organisationUnitService,
                 trackedEntityService, optionSetService, systemInfoStore, resourceStore, userStore,
                 userCredentialsStore, userRoleStore, userRoleProgramLinkStore, organisationUnitStore,
-                userOrganisationUnitLinkStore, programStore, trackedEntityAttributeStore,
-                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
-                programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore, optionStore,
-                optionSetStore, dataElementStore, programStageDataElementStore, programStageSectionStore,
-                programStageStore, relationshipStore, trackedEntityStore);
+                userOrganisationUnitLinkStore, organisationUnitClosureStore, organisationUnitPageSize, programStore,
+                trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
+                programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
+                programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore, metadataCache,
+                ruleEngineCache, null);
+    }
+
+    /**
+     * Syncs metadata like {@link #syncMetaData()}, but once programs, option sets and tracked entities
+     * have been synced, downloads only the ones which are new or have changed (including changes of their
+     * nested metadata) and removes the ones which were deleted on the server.
+     */
+    @NonNull
+    public Call<Response> syncMetaDataIncrementally() {
+        return new MetadataCall(
+                databaseAdapter, systemInfoService, userService, programService, organisationUnitService,
+                trackedEntityService, optionSetService, systemInfoStore, resourceStore, userStore,
+                userCredentialsStore, userRoleStore, userRoleProgramLinkStore, organisationUnitStore,
+                userOrganisationUnitLinkStore, organisationUnitClosureStore, organisationUnitPageSize, programStore,
+                trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
+                programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
+                programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore, metadataCache,
+                ruleEngineCache, metadataDeltaService);
+    }
+
+    /**
+     * Downloads the tracked entity instances of the given programs in the given organisation units, together
+     * with their enrollments and events. A download which was interrupted continues at the first page which
+     * was not persisted. Instances with changes which have not been uploaded yet are not overwritten.
+     */
+    @NonNull
+    public Call<Response> downloadTrackedEntityInstances(@NonNull Collection<String> organisationUnitUids,
+                                                         @NonNull Collection<String> programUids) {
+        return new TrackedEntityInstanceSyncCall(databaseAdapter, systemInfoService, systemInfoStore,
+                trackedEntityInstanceService, trackedEntityInstanceStore, trackedEntityAttributeValueStore,
+                enrollmentStore, eventStore, trackedEntityDataValueStore, resourceStore,
+                organisationUnitUids, programUids, TrackedEntityInstanceCall.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Uploads the tracked entity instances, enrollments and events which have been created or changed
+     * locally, and marks them as synced or as rejected according to the import summaries of the server.
+     */
+    @NonNull
+    public Call<Response<ImportSummaries>> uploadTrackedEntityInstances() {
+        Converter<ResponseBody, ImportSummaries> errorConverter =
+                retrofit.responseBodyConverter(ImportSummaries.class, new Annotation[0]);
+        return new TrackedEntityInstancePostCall(trackedEntityInstanceService, databaseAdapter,
+                trackerUploadStore, errorConverter, TrackedEntityInstancePostCall.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @return the in-memory cache of the metadata which is read to render data entry forms, such as program
+     * stages, data elements and options. It is kept up to date by the program and option set syncs.
+     */
+    @NonNull
+    public MetadataCache metadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * @return the compiled program rules of a program, which are read from the database only once
+     * until the programs are synced again
+     */
+    @NonNull
+    public Callable<RuleEngine> ruleEngine(@NonNull final String programUid) {
+        return new Callable<RuleEngine>() {
+            @Override
+            public RuleEngine call() {
+                return ruleEngineCache.get(programUid);
+            }
+        };
+    }
+
+    /**
+     * Evaluates a program indicator over the events stored on the device, optionally restricted to the
+     * events of one enrollment
+     */
+    @NonNull
+    public Callable<Double> evaluateProgramIndicator(@NonNull final ProgramIndicatorModel programIndicator,
+                                                     @Nullable final String enrollmentUid) {
+        final ProgramIndicatorEvaluator evaluator = new ProgramIndicatorEvaluator(databaseAdapter);
+        return new Callable<Double>() {
+            @Override
+            public Double call() {
+                return evaluator.evaluate(programIndicator, enrollmentUid);
+            }
+        };
+    }
+
+    /**
+     * Searches the options of an option set by the start of the words of their code and names,
+     * for example to complete what the user types
+     */
+    @NonNull
+    public Callable<List<OptionModel>> searchOptions(@NonNull final String optionSetUid, @NonNull final String query,
+                                                     final int offset, final int limit) {
+        final OptionSearchStore optionSearchStore = new OptionSearchStoreImpl(databaseAdapter);
+        return new Callable<List<OptionModel>>() {
+            @Override
+            public List<OptionModel> call() {
+                return optionSearchStore.search(optionSetUid, query, offset, limit);
+            }
+        };
     }
 
     public static class Builder {
         private ConfigurationModel configuration;
         private DatabaseAdapter databaseAdapter;
         private OkHttpClient okHttpClient;
+        private File httpCacheDirectory;
+        private long httpCacheMaxSize;
+        private boolean compactSync;
+        private boolean organisationUnitClosure;
+        private int organisationUnitPageSize;
 
         public Builder() {
             // empty constructor
@@ -291,12 +516,79 @@ public final class D2 {
             return this;
         }
 
+        /**
+         * Opens the database with the given tuning, as an alternative to providing a {@link DatabaseAdapter}.
+         */
+        @NonNull
+        public Builder database(@NonNull Context context, @Nullable String databaseName,
+                                @NonNull DbTuning tuning) {
+            this.databaseAdapter = new SqLiteDatabaseAdapter(new DbOpenHelper(context, databaseName, tuning));
+            return this;
+        }
+
+        /**
+         * The client which is used for all requests of the sdk. Requests are authenticated with the
+         * credentials of the logged in user by an {@link Authenticator} which the builder adds, unless the
+         * client has been configured with one already.
+         */
         @NonNull
         public Builder okHttpClient(@NonNull OkHttpClient okHttpClient) {
             this.okHttpClient = okHttpClient;
             return this;
         }
 
+        /**
+         * Stores responses in an on-disk HTTP cache. Requests for cached resources are sent as conditional
+         * requests, and metadata which the server reports as not modified is not handled again.
+         *
+         * @param directory directory which is used by the cache only
+         * @param maxSize   maximum size of the cache in bytes
+         */
+        @NonNull
+        public Builder httpCache(@NonNull File directory, long maxSize) {
+            this.httpCacheDirectory = directory;
+            this.httpCacheMaxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Enables the compact sync profile: display names, short names and descriptions which duplicate the
+         * untranslated ones are not requested, and all responses are requested gzip encoded. The columns of
+         * the left out properties stay empty, so this is meant for apps which do not show translated metadata.
+         */
+        @NonNull
+        public Builder compactSync() {
+            this.compactSync = true;
+            return this;
+        }
+
+        /**
+         * Keeps the organisation unit closure table up to date while syncing metadata, so that hierarchy
+         * queries of the {@link org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureStore} can
+         * be used. The table is filled from the stored organisation units when the database is upgraded, but
+         * afterwards it is only maintained while this option is set, so it should be set for a database
+         * either always or never.
+         */
+        @NonNull
+        public Builder organisationUnitClosure() {
+            this.organisationUnitClosure = true;
+            return this;
+        }
+
+        /**
+         * Downloads the organisation units in pages of the given size once the other metadata has been
+         * committed. Every page is committed on its own, so that a sync which is interrupted while
+         * downloading a large hierarchy continues at the next page when metadata is synced again.
+         */
+        @NonNull
+        public Builder organisationUnitPageSize(int pageSize) {
+            if (pageSize <= 0) {
+                throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+            }
+            this.organisationUnitPageSize = pageSize;
+            return this;
+        }
+
         public D2 build() {
             if (databaseAdapter == null) {
                 throw new IllegalArgumentException("databaseAdapter == null");
@@ -312,22 +604,62 @@ public final class D2 {
 
             ObjectMapper objectMapper = new ObjectMapper()
                     .setDateFormat(BaseIdentifiableObject.DATE_FORMAT.raw())
+                    .registerModule(DateCodecModule.create(BaseIdentifiableObject.DATE_CODEC))
                     .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
 
+            Converter.Factory streamingConverterFactory
+                    = StreamingPayloadConverterFactory.create(objectMapper);
             Converter.Factory jsonConverterFactory
                     = JacksonConverterFactory.create(objectMapper);
+            Converter.Factory fieldsConverterFactory = compactSync
+                    ? FieldsConverterFactory.createCompact() : FieldsConverterFactory.create();
             Converter.Factory filterConverterFactory
-                    = FieldsConverterFactory.create();
+                    = FilterConverterFactory.create();
+
+            Authenticator configuredAuthenticator = configuredAuthenticator(okHttpClient);
+            AuthenticatedUserCache authenticatedUserCache = configuredAuthenticator == null
+                    ? null : BasicAuthenticatorFactory.authenticatedUserCache(configuredAuthenticator);
+            if (authenticatedUserCache == null) {
+                authenticatedUserCache = new AuthenticatedUserCache(new AuthenticatedUserStoreImpl(databaseAdapter));
+            }
+
+            TransferCounter transferCounter = new TransferCounter(compactSync);
+            OkHttpClient.Builder clientBuilder = okHttpClient.newBuilder()
+                    .addNetworkInterceptor(transferCounter);
+            if (configuredAuthenticator == null) {
+                clientBuilder.addInterceptor(BasicAuthenticatorFactory.create(authenticatedUserCache));
+            }
+
+            HttpCacheCounter httpCacheCounter = null;
+            if (httpCacheDirectory != null) {
+                httpCacheCounter = new HttpCacheCounter();
+                clientBuilder
+                        .cache(new Cache(httpCacheDirectory, httpCacheMaxSize))
+                        .addInterceptor(httpCacheCounter);
+            }
 
             Retrofit retrofit = new Retrofit.Builder()
                     .baseUrl(configuration.serverUrl())
-                    .client(okHttpClient)
+                    .client(clientBuilder.build())
+                    .addConverterFactory(streamingConverterFactory)
                     .addConverterFactory(jsonConverterFactory)
+                    .addConverterFactory(fieldsConverterFactory)
                     .addConverterFactory(filterConverterFactory)
                     .validateEagerly(true)
                     .build();
 
-            return new D2(retrofit, databaseAdapter);
+            return new D2(retrofit, databaseAdapter, httpCacheCounter, transferCounter, authenticatedUserCache,
+                    organisationUnitClosure, organisationUnitPageSize);
+        }
+
+        @Nullable
+        private static Authenticator configuredAuthenticator(@NonNull OkHttpClient okHttpClient) {
+            for (Interceptor interceptor : okHttpClient.interceptors()) {
+                if (interceptor instanceof Authenticator) {
+                    return (Authenticator) interceptor;
+                }
+            }
+            return null;
         }
     }
 }
\ No newline at end of file
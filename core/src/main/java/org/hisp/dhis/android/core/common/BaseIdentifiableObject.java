@@ -39,6 +39,9 @@ public abstract class BaseIdentifiableObject implements IdentifiableObject {
     within models which extend BaseIdentifiableObject */
     public static final SafeDateFormat DATE_FORMAT = new SafeDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
 
+    /* allocation-free codec for the same pattern, used on the persistence and json hot paths */
+    public static final DateCodec DATE_CODEC = new DateCodec(DATE_FORMAT);
+
     protected static final String UID = "id";
     protected static final String CODE = "code";
     protected static final String NAME = "name";
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.net.HttpURLConnection;
+
+import retrofit2.Response;
+
+/**
+ * Recognizes responses which the HTTP cache confirmed to be unchanged.
+ * <p>
+ * A response served from the cache, either directly or after the server answered a conditional request
+ * with 304 Not Modified, is only skipped when its validator equals the one recorded when the resource was
+ * persisted last. The cache itself can hold responses which never reached the database, for example when
+ * the transaction of a sync was rolled back, so a cache hit alone is not enough.
+ */
+public final class CachedResponses {
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+
+    private CachedResponses() {
+        // no instances
+    }
+
+    /**
+     * @return the ETag of the response, or else its Last-Modified date. Responses which were merged from
+     * several requests do not have a single validator, so null is returned for them.
+     */
+    @Nullable
+    public static String validator(@NonNull Response<?> response) {
+        if (response.body() instanceof CompositePayload) {
+            return null;
+        }
+
+        String etag = response.raw().header(ETAG);
+        return etag == null ? response.raw().header(LAST_MODIFIED) : etag;
+    }
+
+    /**
+     * @param persistedValidator validator recorded when the resource was persisted last
+     * @return true if the response has been served from the cache and is the one which was persisted last
+     */
+    public static boolean isUnchanged(@NonNull Response<?> response, @Nullable String persistedValidator) {
+        okhttp3.Response raw = response.raw();
+        if (persistedValidator == null || raw.cacheResponse() == null) {
+            return false;
+        }
+
+        okhttp3.Response networkResponse = raw.networkResponse();
+        boolean servedFromCache = networkResponse == null ||
+                networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+        return servedFromCache && persistedValidator.equals(validator(response));
+    }
+}
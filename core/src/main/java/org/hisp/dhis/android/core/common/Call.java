@@ -31,6 +31,7 @@ package org.hisp.dhis.android.core.common;
 import java.util.concurrent.Callable;
 
 public interface Call<T> extends Callable<T> {
+    // maximum amount of uids which fit into a single uid filter of a request
     int MAX_UIDS = 64;
 
     boolean isExecuted();
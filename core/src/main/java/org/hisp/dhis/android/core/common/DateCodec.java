@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Formats and parses dates in the fixed "yyyy-MM-dd'T'HH:mm:ss.SSS" pattern used by the web api
+ * and by the database, without going through {@link java.text.SimpleDateFormat}.
+ *
+ * Conversions work directly on char buffers and do the calendar arithmetic on epoch days, so the
+ * only allocations are the resulting {@link String} or {@link Date}. Input that does not match the
+ * pattern strictly, as well as dates outside of the proleptic gregorian range which is safe to
+ * compute without a calendar, are handed over to the fallback {@link SafeDateFormat}, so both
+ * paths accept and produce exactly the same values.
+ */
+public final class DateCodec {
+    /* length of a formatted date: yyyy-MM-ddTHH:mm:ss.SSS */
+    public static final int LENGTH = 23;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60L * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60L * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+
+    /* gregorian calendar cut-over, earlier dates are julian in SimpleDateFormat */
+    private static final int MIN_YEAR = 1583;
+    private static final int MAX_YEAR = 9999;
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    @NonNull
+    private final SafeDateFormat fallback;
+
+    @NonNull
+    private final TimeZone timeZone;
+
+    @NonNull
+    private final ThreadLocal<char[]> buffers;
+
+    public DateCodec(@NonNull SafeDateFormat fallback) {
+        this(fallback, TimeZone.getDefault());
+    }
+
+    public DateCodec(@NonNull SafeDateFormat fallback, @NonNull TimeZone timeZone) {
+        this.fallback = fallback;
+        this.timeZone = timeZone;
+        this.buffers = new ThreadLocal<char[]>() {
+            @Override
+            protected char[] initialValue() {
+                return new char[LENGTH];
+            }
+        };
+    }
+
+    @NonNull
+    public String format(@NonNull Date date) {
+        char[] buffer = buffers.get();
+        if (!formatTo(date.getTime(), buffer, 0)) {
+            return fallback.format(date);
+        }
+
+        return new String(buffer, 0, LENGTH);
+    }
+
+    /**
+     * Writes the formatted date into the given buffer, starting at the offset.
+     *
+     * @return false if the date is out of the supported range and nothing has been written;
+     * {@link #format(Date)} should be used instead in that case.
+     */
+    public boolean formatTo(long time, @NonNull char[] buffer, int offset) {
+        long local = time + timeZone.getOffset(time);
+        long epochDay = floorDiv(local, MILLIS_PER_DAY);
+        int millisOfDay = (int) (local - epochDay * MILLIS_PER_DAY);
+
+        // civil date from days since epoch, shifted so that a year starts on the 1st of March
+        long shifted = epochDay + 719468L;
+        long era = floorDiv(shifted, 146097L);
+        int dayOfEra = (int) (shifted - era * 146097L);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400L + (month <= 2 ? 1 : 0);
+
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return false;
+        }
+
+        write(buffer, offset, (int) year, 4);
+        buffer[offset + 4] = '-';
+        write(buffer, offset + 5, month, 2);
+        buffer[offset + 7] = '-';
+        write(buffer, offset + 8, day, 2);
+        buffer[offset + 10] = 'T';
+        write(buffer, offset + 11, (int) (millisOfDay / MILLIS_PER_HOUR), 2);
+        buffer[offset + 13] = ':';
+        write(buffer, offset + 14, (int) (millisOfDay % MILLIS_PER_HOUR / MILLIS_PER_MINUTE), 2);
+        buffer[offset + 16] = ':';
+        write(buffer, offset + 17, (int) (millisOfDay % MILLIS_PER_MINUTE / MILLIS_PER_SECOND), 2);
+        buffer[offset + 19] = '.';
+        write(buffer, offset + 20, (int) (millisOfDay % MILLIS_PER_SECOND), 3);
+        return true;
+    }
+
+    @NonNull
+    public Date parse(@NonNull String source) throws ParseException {
+        if (source.length() < LENGTH) {
+            return fallback.parse(source);
+        }
+
+        char[] buffer = buffers.get();
+        source.getChars(0, LENGTH, buffer, 0);
+
+        long time = parseTime(buffer, 0);
+        return time == Long.MIN_VALUE ? fallback.parse(source) : new Date(time);
+    }
+
+    /**
+     * Parses the date from a range of characters, for example straight from the text buffer
+     * of a json parser. Characters after the pattern are ignored, the same way
+     * {@link java.text.DateFormat#parse(String)} ignores them.
+     */
+    @NonNull
+    public Date parse(@NonNull char[] source, int offset, int length) throws ParseException {
+        long time = length < LENGTH ? Long.MIN_VALUE : parseTime(source, offset);
+        return time == Long.MIN_VALUE ? fallback.parse(new String(source, offset, length)) : new Date(time);
+    }
+
+    /**
+     * @return epoch millis, or {@link Long#MIN_VALUE} if the characters do not strictly match the pattern.
+     */
+    private long parseTime(char[] source, int offset) {
+        if (source[offset + 4] != '-' || source[offset + 7] != '-' || source[offset + 10] != 'T'
+                || source[offset + 13] != ':' || source[offset + 16] != ':' || source[offset + 19] != '.') {
+            return Long.MIN_VALUE;
+        }
+
+        int year = read(source, offset, 4);
+        int month = read(source, offset + 5, 2);
+        int day = read(source, offset + 8, 2);
+        int hour = read(source, offset + 11, 2);
+        int minute = read(source, offset + 14, 2);
+        int second = read(source, offset + 17, 2);
+        int millis = read(source, offset + 20, 3);
+
+        if (year < MIN_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59 || millis < 0) {
+            return Long.MIN_VALUE;
+        }
+
+        long local = epochDay(year, month, day) * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR
+                + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + millis;
+
+        // like GregorianCalendar, resolve the wall clock time as standard time first: repeated
+        // wall times map to standard time, and skipped ones keep the offset from before the gap
+        int standardOffset = timeZone.getOffset(local - timeZone.getRawOffset());
+        return local - timeZone.getOffset(local - standardOffset);
+    }
+
+    private static long epochDay(int year, int month, int day) {
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = shiftedYear / 400;
+        int yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        return (dividend % divisor != 0 && (dividend ^ divisor) < 0) ? quotient - 1 : quotient;
+    }
+
+    private static void write(char[] buffer, int offset, int value, int digits) {
+        for (int index = offset + digits - 1; index >= offset; index--) {
+            buffer[index] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * @return the parsed digits, or -1 if any of the characters is not a digit.
+     */
+    private static int read(char[] source, int offset, int digits) {
+        int value = 0;
+        for (int index = offset; index < offset + digits; index++) {
+            int digit = source[index] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+import org.hisp.dhis.android.core.data.api.Field;
+
+/**
+ * An object which has been deleted on the server, as listed by the deletedObjects endpoint.
+ */
+@AutoValue
+@JsonDeserialize(builder = AutoValue_DeletedObject.Builder.class)
+public abstract class DeletedObject {
+    private static final String UID = "uid";
+    private static final String KLASS = "klass";
+
+    public static final Field<DeletedObject, String> uid = Field.create(UID);
+    public static final Field<DeletedObject, String> klass = Field.create(KLASS);
+
+    @Nullable
+    @JsonProperty(UID)
+    public abstract String uid();
+
+    /**
+     * Simple class name of the deleted object on the server, for example "ProgramStage".
+     */
+    @Nullable
+    @JsonProperty(KLASS)
+    public abstract String klass();
+
+    public static Builder builder() {
+        return new AutoValue_DeletedObject.Builder();
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+
+        @JsonProperty(UID)
+        public abstract Builder uid(@Nullable String uid);
+
+        @JsonProperty(KLASS)
+        public abstract Builder klass(@Nullable String klass);
+
+        public abstract DeletedObject build();
+    }
+}
@@ -27,11 +27,14 @@
  */
 package org.hisp.dhis.android.core.common;
 
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
+import org.hisp.dhis.android.core.metadata.MetadataCache;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.hisp.dhis.android.core.option.OptionSet;
 import org.hisp.dhis.android.core.option.OptionSetCall;
 import org.hisp.dhis.android.core.option.OptionSetService;
@@ -39,6 +42,7 @@ import org.hisp.dhis.android.core.option.OptionSetStore;
 import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitCall;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureStore;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitStore;
 import org.hisp.dhis.android.core.program.Program;
@@ -58,12 +62,13 @@ import org.hisp.dhis.android.core.program.ProgramStore;
 import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttribute;
 import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
+import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.rules.RuleEngineCache;
 import org.hisp.dhis.android.core.systeminfo.SystemInfo;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoCall;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
-import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityCall;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityService;
@@ -78,15 +83,22 @@ import org.hisp.dhis.android.core.user.UserRoleStore;
 import org.hisp.dhis.android.core.user.UserService;
 import org.hisp.dhis.android.core.user.UserStore;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import retrofit2.Response;
 
 @SuppressWarnings({"PMD.ExcessiveImports", "PMD.TooManyFields"})
 public class MetadataCall implements Call<Response> {
+    // upper bound of requests which are sent to the server at the same time
+    static final int MAX_CONCURRENT_REQUESTS = 3;
+
     private final DatabaseAdapter databaseAdapter;
     private final SystemInfoService systemInfoService;
     private final UserService userService;
@@ -94,6 +106,7 @@ public class MetadataCall implements Call<Response> {
     private final OrganisationUnitService organisationUnitService;
     private final TrackedEntityService trackedEntityService;
     private final OptionSetService optionSetService;
+    private final MetadataDeltaService deltaService;
     private final SystemInfoStore systemInfoStore;
     private final ResourceStore resourceStore;
     private final UserStore userStore;
@@ -102,6 +115,8 @@ public class MetadataCall implements Call<Response> {
     private final UserRoleProgramLinkStore userRoleProgramLinkStore;
     private final OrganisationUnitStore organisationUnitStore;
     private final UserOrganisationUnitLinkStore userOrganisationUnitLinkStore;
+    private final OrganisationUnitClosureStore organisationUnitClosureStore;
+    private final int organisationUnitPageSize;
     private final ProgramStore programStore;
     private final TrackedEntityAttributeStore trackedEntityAttributeStore;
     private final ProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore;
@@ -118,7 +133,22 @@ public class MetadataCall implements Call<Response> {
     private final ProgramStageStore programStageStore;
     private final RelationshipTypeStore relationshipStore;
     private final TrackedEntityStore trackedEntityStore;
-
+    private final MetadataCache metadataCache;
+    private final RuleEngineCache ruleEngineCache;
+
+    private volatile List<SyncStageTiming> stageTimings = Collections.emptyList();
+
+    /**
+     * @param organisationUnitClosureStore if not null, the closure table is kept up to date with the synced
+     *                                     organisation units
+     * @param organisationUnitPageSize     if positive, organisation units are downloaded in pages of this size
+     *                                     once the other metadata has been committed, and each page is committed
+     *                                     on its own, so that an interrupted download resumes at the next sync
+     * @param metadataCache   is invalidated once the synced metadata has been committed
+     * @param ruleEngineCache is invalidated once the synced programs have been committed
+     * @param deltaService    if not null, programs, option sets and tracked entities are synced incrementally:
+     *                        only new and changed objects are downloaded, and deletions are reconciled
+     */
     public MetadataCall(DatabaseAdapter databaseAdapter,
                         SystemInfoService systemInfoService,
                         UserService userService,
@@ -134,6 +164,8 @@ public class MetadataCall implements Call<Response> {
                         UserRoleProgramLinkStore userRoleProgramLinkStore,
                         OrganisationUnitStore organisationUnitStore,
                         UserOrganisationUnitLinkStore userOrganisationUnitLinkStore,
+                        @Nullable OrganisationUnitClosureStore organisationUnitClosureStore,
+                        int organisationUnitPageSize,
                         ProgramStore programStore,
                         TrackedEntityAttributeStore trackedEntityAttributeStore,
                         ProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore,
@@ -149,8 +181,12 @@ public class MetadataCall implements Call<Response> {
                         ProgramStageSectionStore programStageSectionStore,
                         ProgramStageStore programStageStore,
                         RelationshipTypeStore relationshipStore,
-                        TrackedEntityStore trackedEntityStore) {
+                        TrackedEntityStore trackedEntityStore,
+                        MetadataCache metadataCache,
+                        RuleEngineCache ruleEngineCache,
+                        @Nullable MetadataDeltaService deltaService) {
         this.databaseAdapter = databaseAdapter;
+        this.deltaService = deltaService;
         this.systemInfoService = systemInfoService;
         this.userService = userService;
         this.programService = programService;
@@ -165,6 +201,8 @@ public class MetadataCall implements Call<Response> {
         this.userRoleProgramLinkStore = userRoleProgramLinkStore;
         this.organisationUnitStore = organisationUnitStore;
         this.userOrganisationUnitLinkStore = userOrganisationUnitLinkStore;
+        this.organisationUnitClosureStore = organisationUnitClosureStore;
+        this.organisationUnitPageSize = organisationUnitPageSize;
         this.programStore = programStore;
         this.trackedEntityAttributeStore = trackedEntityAttributeStore;
         this.programTrackedEntityAttributeStore = programTrackedEntityAttributeStore;
@@ -181,6 +219,8 @@ public class MetadataCall implements Call<Response> {
         this.programStageStore = programStageStore;
         this.relationshipStore = relationshipStore;
         this.trackedEntityStore = trackedEntityStore;
+        this.metadataCache = metadataCache;
+        this.ruleEngineCache = ruleEngineCache;
     }
 
     @Override
@@ -188,29 +228,41 @@ public class MetadataCall implements Call<Response> {
         return false;
     }
 
+    /**
+     * Timings of the individual calls of the last sync, in the order in which they were persisted.
+     */
+    @NonNull
+    public List<SyncStageTiming> stageTimings() {
+        return stageTimings;
+    }
+
+    /**
+     * Downloads metadata, running requests which do not depend on each other concurrently. Nothing
+     * is written to the database until all requests have succeeded; then all responses are persisted
+     * within a single transaction.
+     */
     @Override
     public Response call() throws Exception {
-        Response response = null;
-        Transaction transaction = databaseAdapter.beginNewTransaction();
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+        SyncScheduler scheduler = new SyncScheduler(executor);
 
         try {
-            response = makeCalls(transaction);
-
+            return makeCalls(scheduler);
         } finally {
-            transaction.end();
+            executor.shutdownNow();
+            scheduler.release();
+            stageTimings = scheduler.timings();
         }
-
-        return response;
     }
 
     @Nullable
-    private Response makeCalls(Transaction transaction) throws Exception {
+    private Response makeCalls(SyncScheduler scheduler) throws Exception {
         // initialize SystemInfoCall and call the api
-        Response<SystemInfo> systemInfoResponse = makeSystemInfoCall();
+        Response<SystemInfo> systemInfoResponse = SyncScheduler.await(scheduler.submit(
+                ResourceModel.Type.SYSTEM_INFO.name(), makeSystemInfoCall()));
 
-        // if not successful, return response and close transaction
+        // if not successful, return response
         if (!systemInfoResponse.isSuccessful()) {
-            transaction.end();
             return systemInfoResponse;
         }
 
@@ -218,64 +270,73 @@ public class MetadataCall implements Call<Response> {
         Date serverDate = systemInfo.serverDate();
 
         // initialize userCall and call the api
-        Response<User> userResponse = makeUserCall(serverDate);
+        Response<User> userResponse = SyncScheduler.await(scheduler.submit(
+                ResourceModel.Type.USER.name(), makeUserCall(serverDate)));
 
         // if userResponse is not successful, return the response
         if (!userResponse.isSuccessful()) {
-            transaction.end();
             return userResponse;
         }
 
         User user = userResponse.body();
+        MetadataChanges metadataChanges = new MetadataChanges();
 
-
-        Response<Payload<OrganisationUnit>> organisationUnitResponse = makeOrganisationUnitCall(user, serverDate);
-
-        // if organisationUnitResponse is not successful, return the response
-        if (!organisationUnitResponse.isSuccessful()) {
-            transaction.end();
-            return organisationUnitResponse;
+        // organisation units and programs depend only on the user: download them concurrently
+        boolean pagedOrganisationUnits = organisationUnitPageSize > 0;
+        if (!pagedOrganisationUnits) {
+            scheduler.submit(ResourceModel.Type.ORGANISATION_UNIT.name(), makeOrganisationUnitCall(user, serverDate));
         }
 
         // get assigned program uids from user roles and user's data capture organisation units
         Set<String> programUids = getAssignedProgramUids(user);
 
-        Response<Payload<Program>> programResponse = makeProgramCall(programUids, serverDate);
+        Response<Payload<Program>> programResponse = SyncScheduler.await(scheduler.submit(
+                ResourceModel.Type.PROGRAM.name(), makeProgramCall(programUids, serverDate, metadataChanges)));
 
         if (!programResponse.isSuccessful()) {
-            transaction.end();
-            return programResponse;
+            return scheduler.firstUnsuccessful();
         }
 
         List<Program> programs = programResponse.body().items();
 
         // get assigned tracked entity uids and option set uids
         Set<String> trackedEntityUids = getAssignedTrackedEntityUids(programs);
+        Set<String> optionSetUids = getAssignedOptionSetUids(programs);
 
+        scheduler.submit(ResourceModel.Type.TRACKED_ENTITY.name(),
+                makeTrackedEntityCall(trackedEntityUids, serverDate));
+        Future<Response<Payload<OptionSet>>> optionSetFuture = scheduler.submit(
+                ResourceModel.Type.OPTION_SET.name(), makeOptionSetCall(optionSetUids, serverDate, metadataChanges));
 
-        Response<Payload<TrackedEntity>> trackedEntityResponse = makeTrackedEntityCall(trackedEntityUids, serverDate);
-
-        // if trackedEntityResponse is not successful, return the response
-        if (!trackedEntityResponse.isSuccessful()) {
-            transaction.end();
-            return trackedEntityResponse;
+        // if any of the responses is not successful, return it
+        Response unsuccessfulResponse = scheduler.firstUnsuccessful();
+        if (unsuccessfulResponse != null) {
+            return unsuccessfulResponse;
         }
 
-        Set<String> optionSetUids = getAssignedOptionSetUids(programs);
-
-        Response<Payload<OptionSet>> optionSetResponse = makeOptionSetCall(optionSetUids, serverDate);
-
-        // if optionSetResponse is not successful, return the response
-        if (!optionSetResponse.isSuccessful()) {
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            scheduler.persistAll();
+            transaction.setSuccessful();
+        } finally {
             transaction.end();
-            return optionSetResponse;
         }
 
-        transaction.setSuccessful();
+        // the transactions of the calls are nested in this one, so their changes are visible only now
+        metadataCache.invalidate(metadataChanges);
+        ruleEngineCache.invalidate();
 
+        if (pagedOrganisationUnits) {
+            // pages are committed one by one, so they cannot be part of the transaction above
+            Response<Payload<OrganisationUnit>> organisationUnitResponse =
+                    makeOrganisationUnitCall(user, serverDate).call();
+            if (organisationUnitResponse != null && !organisationUnitResponse.isSuccessful()) {
+                return organisationUnitResponse;
+            }
+        }
 
         //TODO: Review what is correct to return here. Now returning last response.
-        return optionSetResponse;
+        return SyncScheduler.await(optionSetFuture);
     }
 
     private Set<String> getAssignedOptionSetUids(List<Program> programs) {
@@ -397,51 +458,48 @@ public class MetadataCall implements Call<Response> {
         }
     }
 
-    private Response<SystemInfo> makeSystemInfoCall() throws Exception {
-
+    private SystemInfoCall makeSystemInfoCall() {
         return new SystemInfoCall(
                 databaseAdapter, systemInfoStore, systemInfoService, resourceStore
-        ).call();
+        );
     }
 
 
-    private Response<User> makeUserCall(Date serverDate) throws Exception {
+    private UserCall makeUserCall(Date serverDate) {
         return new UserCall(
                 userService, databaseAdapter, organisationUnitStore,
                 userStore, userCredentialsStore, userRoleStore, resourceStore, serverDate,
-                userRoleProgramLinkStore, userOrganisationUnitLinkStore).call();
+                userRoleProgramLinkStore, userOrganisationUnitLinkStore, organisationUnitClosureStore);
     }
 
-    private Response<Payload<OrganisationUnit>> makeOrganisationUnitCall(
-            User user,
-            Date serverDate) throws Exception {
+    private OrganisationUnitCall makeOrganisationUnitCall(User user, Date serverDate) {
         return new OrganisationUnitCall(user, organisationUnitService, databaseAdapter,
-                organisationUnitStore, resourceStore, serverDate, userOrganisationUnitLinkStore).call();
+                organisationUnitStore, resourceStore, serverDate, userOrganisationUnitLinkStore,
+                organisationUnitClosureStore, organisationUnitPageSize);
     }
 
-    private Response<Payload<Program>> makeProgramCall(Set<String> uids,
-                                                       Date serverDate) throws Exception {
+    private ProgramCall makeProgramCall(Set<String> uids, Date serverDate, MetadataChanges metadataChanges) {
         return new ProgramCall(
                 programService, databaseAdapter, resourceStore, uids, programStore, serverDate,
                 trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
                 programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
-                programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                programStageSectionStore, programStageStore, relationshipStore
-        ).call();
+                programRuleStore, dataElementStore, programStageDataElementStore, programStageSectionStore,
+                programStageStore, relationshipStore, metadataChanges, deltaService,
+                UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS
+        );
     }
 
-    private Response<Payload<TrackedEntity>> makeTrackedEntityCall(Set<String> uids,
-                                                                   Date serverDate) throws Exception {
+    private TrackedEntityCall makeTrackedEntityCall(Set<String> uids, Date serverDate) {
         return new TrackedEntityCall(
-                uids, databaseAdapter, trackedEntityStore, resourceStore, trackedEntityService, serverDate
-        ).call();
+                uids, databaseAdapter, trackedEntityStore, resourceStore, trackedEntityService, deltaService,
+                serverDate, UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS
+        );
     }
 
-    private Response<Payload<OptionSet>> makeOptionSetCall(Set<String> uids,
-                                                           Date serverDate) throws Exception {
+    private OptionSetCall makeOptionSetCall(Set<String> uids, Date serverDate, MetadataChanges metadataChanges) {
         return new OptionSetCall(
                 optionSetService, optionSetStore, databaseAdapter, resourceStore, uids, serverDate,
-                optionStore).call();
+                optionStore, metadataChanges, deltaService, UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS);
     }
 
 
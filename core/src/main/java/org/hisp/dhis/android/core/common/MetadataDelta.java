@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.hisp.dhis.android.core.data.api.Field;
+import org.hisp.dhis.android.core.data.api.Fields;
+import org.hisp.dhis.android.core.data.api.NestedField;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import retrofit2.Response;
+
+/**
+ * Works out which objects of an incrementally synced resource have to be downloaded again.
+ * <p>
+ * Each {@link Probe} asks the server, with the lastUpdated date of its own resource type, for the parents
+ * of the nested objects which changed since that type was last synced. Only the ids of the parents are
+ * transferred, so a sync without changes downloads next to nothing. Deletions are reconciled through
+ * the deletedObjects endpoint, since the server does not list deleted objects anywhere else.
+ */
+public final class MetadataDelta {
+    private static final String ID = "id";
+    private static final String LAST_UPDATED = "lastUpdated";
+
+    private static final Fields<DeletedObject> DELETED_OBJECT_FIELDS = Fields.<DeletedObject>builder()
+            .fields(DeletedObject.uid, DeletedObject.klass).build();
+
+    /**
+     * Detects changes of one resource type nested in a parent resource.
+     */
+    public static final class Probe {
+        private final ResourceModel.Type type;
+        private final String resource;
+        private final String[] parentPath;
+        private final Field<JsonNode, String> lastUpdated;
+        private final Field<JsonNode, String> parentUid;
+        private final Fields<JsonNode> fields;
+
+        private Probe(ResourceModel.Type type, String resource, String parentPath, String lastUpdated) {
+            this.type = type;
+            this.resource = resource;
+            this.parentPath = parentPath.isEmpty() ? new String[0] : parentPath.split("\\.");
+            this.lastUpdated = Field.create(lastUpdated);
+            this.parentUid = Field.create(parentPath.isEmpty() ? ID : parentPath + "." + ID);
+
+            Property<JsonNode, ?> field = Field.create(ID);
+            for (int i = this.parentPath.length - 1; i >= 0; i--) {
+                field = NestedField.<JsonNode, JsonNode>create(this.parentPath[i]).with(field);
+            }
+            this.fields = Fields.<JsonNode>builder().fields(field).build();
+        }
+
+        /**
+         * @param type       resource type whose last synced date filters the objects
+         * @param resource   endpoint which lists the objects, for example "programStages"
+         * @param parentPath path from an object to its parent, for example "programStage.program",
+         *                   or an empty string if the objects are the parents themselves
+         */
+        public static Probe create(@NonNull ResourceModel.Type type, @NonNull String resource,
+                                   @NonNull String parentPath) {
+            return new Probe(type, resource, parentPath, LAST_UPDATED);
+        }
+
+        /**
+         * Creates a probe which filters the objects by the lastUpdated date of an object they reference,
+         * for example "dataElement.lastUpdated" on programStageDataElements.
+         */
+        public static Probe create(@NonNull ResourceModel.Type type, @NonNull String resource,
+                                   @NonNull String parentPath, @NonNull String lastUpdatedProperty) {
+            return new Probe(type, resource, parentPath, lastUpdatedProperty);
+        }
+
+        public ResourceModel.Type type() {
+            return type;
+        }
+
+        @Nullable
+        String parentUid(@NonNull JsonNode item) {
+            JsonNode node = item;
+            for (String segment : parentPath) {
+                node = node.path(segment);
+            }
+            String uid = node.path(ID).asText();
+            return uid.isEmpty() ? null : uid;
+        }
+    }
+
+    private final MetadataDeltaService service;
+    private final int chunkSize;
+    private final int maxConcurrentRequests;
+
+    public MetadataDelta(@NonNull MetadataDeltaService service, int chunkSize, int maxConcurrentRequests) {
+        this.service = service;
+        this.chunkSize = chunkSize;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Requests all probes and returns the uids of the known parents which have changed themselves
+     * or whose nested objects have changed. Requests are sent concurrently; the first unsuccessful
+     * response, in probe order, is returned as is.
+     *
+     * @param lastSynced last synced date of each probe type, a type without a date matches every object
+     */
+    public Response<Set<String>> changedUids(@NonNull List<Probe> probes,
+                                             @NonNull Map<ResourceModel.Type, String> lastSynced,
+                                             @NonNull Set<String> knownUids) throws Exception {
+        Set<String> changedUids = new HashSet<>();
+        if (probes.isEmpty() || knownUids.isEmpty()) {
+            return Response.success(changedUids);
+        }
+
+        List<Set<String>> chunks = UidChunkedDownloader.partition(knownUids, chunkSize);
+        List<Probe> requestProbes = new ArrayList<>(probes.size() * chunks.size());
+        List<Future<Response<Payload<JsonNode>>>> futures = new ArrayList<>(probes.size() * chunks.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(maxConcurrentRequests, probes.size() * chunks.size()));
+        try {
+            for (final Probe probe : probes) {
+                final String since = lastSynced.get(probe.type);
+                for (final Set<String> chunk : chunks) {
+                    requestProbes.add(probe);
+                    futures.add(executor.submit(new Callable<Response<Payload<JsonNode>>>() {
+                        @Override
+                        public Response<Payload<JsonNode>> call() throws IOException {
+                            return service.references(probe.resource, probe.fields, probe.lastUpdated.gt(since),
+                                    probe.parentUid.in(chunk), Boolean.FALSE).execute();
+                        }
+                    }));
+                }
+            }
+
+            int size = futures.size();
+            for (int i = 0; i < size; i++) {
+                Response<Payload<JsonNode>> response = SyncScheduler.await(futures.get(i));
+                if (!response.isSuccessful()) {
+                    return failure(response);
+                }
+
+                List<JsonNode> items = response.body().items();
+                if (items != null) {
+                    Probe probe = requestProbes.get(i);
+                    for (JsonNode item : items) {
+                        String uid = probe.parentUid(item);
+                        if (uid != null) {
+                            changedUids.add(uid);
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        changedUids.retainAll(knownUids);
+        return Response.success(changedUids);
+    }
+
+    /**
+     * Lists the objects of the given classes which were deleted on the server since the given date.
+     * Nothing is requested if the resource has never been synced, since there is nothing to delete then.
+     */
+    public Response<Payload<DeletedObject>> deletedObjects(@NonNull List<String> klasses,
+                                                           @Nullable String deletedSince) throws IOException {
+        if (deletedSince == null) {
+            return Response.success(new Payload<>(Collections.<DeletedObject>emptyList()));
+        }
+        return service.deletedObjects(DELETED_OBJECT_FIELDS, klasses, deletedSince, Boolean.FALSE).execute();
+    }
+
+    /**
+     * Reads the last synced dates of the probe types. Has to be invoked on the thread which owns the database.
+     */
+    @NonNull
+    public static Map<ResourceModel.Type, String> lastSynced(@NonNull ResourceHandler resourceHandler,
+                                                             @NonNull List<Probe> probes) {
+        Map<ResourceModel.Type, String> lastSynced = new EnumMap<>(ResourceModel.Type.class);
+        for (Probe probe : probes) {
+            lastSynced.put(probe.type, resourceHandler.getLastUpdated(probe.type));
+        }
+        return lastSynced;
+    }
+
+    /**
+     * Marks all probe types as synced at the given server date.
+     */
+    public static void handleResources(@NonNull ResourceHandler resourceHandler, @NonNull List<Probe> probes,
+                                       @NonNull Date serverDate) {
+        for (Probe probe : probes) {
+            resourceHandler.handleResource(probe.type, serverDate);
+        }
+    }
+
+    /**
+     * Reads the uids of all rows of a table. Has to be invoked on the thread which owns the database.
+     */
+    @NonNull
+    public static Set<String> storedUids(@NonNull DatabaseAdapter databaseAdapter, @NonNull String table) {
+        Set<String> uids = new HashSet<>();
+        Cursor cursor = databaseAdapter.query("SELECT " + BaseIdentifiableObjectModel.Columns.UID +
+                " FROM " + table);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    uids.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return uids;
+    }
+
+    /**
+     * Converts an unsuccessful response into a response of another body type.
+     */
+    public static <T> Response<T> failure(@NonNull Response<?> response) {
+        return Response.error(response.errorBody(), response.raw());
+    }
+}
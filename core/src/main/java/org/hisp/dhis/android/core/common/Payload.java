@@ -32,9 +32,11 @@ import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.List;
 
-public class Payload<T> {
+public class Payload<T> implements Closeable {
 
     @JsonProperty("pager")
     Pager pager;
@@ -46,6 +48,17 @@ public class Payload<T> {
         // explicit empty constructor
     }
 
+    public Payload(List<T> items) {
+        this.items = items;
+    }
+
+    /**
+     * Creates a payload which contains the items of all given payloads, without reading them.
+     */
+    public static <T> Payload<T> concat(List<Payload<T>> payloads) {
+        return new CompositePayload<>(payloads);
+    }
+
     @JsonAnySetter
     @SuppressWarnings("unused")
     /* package */ void processItems(String key, List<T> values) {
@@ -59,4 +72,12 @@ public class Payload<T> {
     public List<T> items() {
         return this.items;
     }
+
+    /**
+     * Releases the resources held by the payload. Does nothing for payloads which are fully read into memory.
+     */
+    @Override
+    public void close() throws IOException {
+        // nothing to release
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Hands the items of a payload to a processor in batches of limited size. Items of a
+ * {@link StreamingPayload} are read from the response while they are processed, so that only
+ * a single batch is kept in memory at a time.
+ */
+public final class PayloadBatches {
+    public static final int DEFAULT_BATCH_SIZE = 250;
+
+    public interface Processor<T> {
+        void process(@NonNull List<T> batch);
+    }
+
+    private PayloadBatches() {
+        // no instances
+    }
+
+    /**
+     * @return number of processed items
+     */
+    public static <T> int process(@NonNull Payload<T> payload, int batchSize,
+                                  @NonNull Processor<T> processor) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+
+        if (payload instanceof StreamingPayload) {
+            return ((StreamingPayload<T>) payload).process(batchSize, processor);
+        }
+
+        if (payload instanceof CompositePayload) {
+            int count = 0;
+            for (Payload<T> part : ((CompositePayload<T>) payload).parts()) {
+                count += process(part, batchSize, processor);
+            }
+            return count;
+        }
+
+        return processList(payload.items(), batchSize, processor);
+    }
+
+    static <T> int processList(List<T> items, int batchSize, Processor<T> processor) {
+        if (items == null) {
+            return 0;
+        }
+
+        int size = items.size();
+        for (int start = 0; start < size; start += batchSize) {
+            processor.process(items.subList(start, Math.min(start + batchSize, size)));
+        }
+        return size;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the objects which have already been written during a sync, so that metadata shared
+ * by several parents in a payload (for example a data element referenced by many program stages)
+ * is persisted only once.
+ * <p>
+ * Instances are not thread safe and are meant to live for the duration of a single sync.
+ */
+public final class PersistedUidRegistry {
+    private final Map<Class<?>, Set<String>> persistedUids;
+    private int skippedWrites;
+
+    public PersistedUidRegistry() {
+        this.persistedUids = new HashMap<>();
+    }
+
+    /**
+     * Registers the object as persisted.
+     *
+     * @param type type of the object
+     * @param uid  uid of the object
+     * @return true if the object has not been persisted yet during this sync and has to be written,
+     * false if the write can be skipped
+     */
+    public boolean register(@NonNull Class<?> type, @NonNull String uid) {
+        Set<String> uids = persistedUids.get(type);
+        if (uids == null) {
+            uids = new HashSet<>();
+            persistedUids.put(type, uids);
+        }
+
+        if (uids.add(uid)) {
+            return true;
+        }
+
+        skippedWrites++;
+        return false;
+    }
+
+    /**
+     * @return number of writes which were skipped because the object had already been persisted
+     */
+    public int skippedWrites() {
+        return skippedWrites;
+    }
+}
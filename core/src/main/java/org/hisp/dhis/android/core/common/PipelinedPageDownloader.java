@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import retrofit2.Response;
+
+/**
+ * Downloads paged resources while persisting them. Pages are requested and parsed on a background
+ * thread, which hands the parsed items in batches to the calling thread through a bounded queue.
+ * Writing a page therefore overlaps with parsing the next one, while at most the batches which fit
+ * into the queue are kept in memory, however many pages are downloaded.
+ * <p>
+ * Every page is written in its own transaction, which also records where the download of its scope
+ * continues, so that an interrupted download resumes at the first page which was not committed.
+ *
+ * @param <T> type of the downloaded resource
+ */
+public final class PipelinedPageDownloader<T> {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    public interface PageRequest<T> {
+        Response<Payload<T>> request(@NonNull String scope, int page) throws IOException;
+    }
+
+    public interface PageWriter<T> {
+        void write(@NonNull List<T> batch);
+
+        /**
+         * Invoked within the transaction of the page, after all of its batches have been written.
+         *
+         * @param nextPage the page at which the scope continues, or null if this was the last one
+         */
+        void pageWritten(@NonNull String scope, @Nullable Integer nextPage);
+    }
+
+    private final DatabaseAdapter database;
+    private final int pageSize;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public PipelinedPageDownloader(@NonNull DatabaseAdapter database, int pageSize, int batchSize,
+                                   int queueCapacity) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.database = database;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Downloads the scopes one after another, each starting at the given page. Returns the first
+     * unsuccessful response, after which no further pages are requested, or the response of the last
+     * page. Returns null if there was nothing to download.
+     */
+    @Nullable
+    public Response<Payload<T>> download(@NonNull Map<String, Integer> firstPages,
+                                         @NonNull PageRequest<T> pageRequest,
+                                         @NonNull PageWriter<T> pageWriter) throws Exception {
+        BlockingQueue<Element<T>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Transaction transaction = null;
+        try {
+            Future<Response<Payload<T>>> future = executor.submit(new Producer<>(
+                    firstPages, pageRequest, queue, pageSize, batchSize));
+
+            for (Element<T> element = queue.take(); element != Element.END; element = queue.take()) {
+                if (transaction == null) {
+                    transaction = database.beginNewTransaction();
+                }
+                if (element.batch != null) {
+                    pageWriter.write(element.batch);
+                } else {
+                    pageWriter.pageWritten(element.scope, element.nextPage);
+                    transaction.setSuccessful();
+                    transaction.end();
+                    transaction = null;
+                }
+            }
+            return SyncScheduler.await(future);
+        } finally {
+            // a page which was not read completely is rolled back
+            if (transaction != null) {
+                transaction.end();
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Producer<T> implements Callable<Response<Payload<T>>> {
+        private final Map<String, Integer> firstPages;
+        private final PageRequest<T> pageRequest;
+        private final BlockingQueue<Element<T>> queue;
+        private final int pageSize;
+        private final int batchSize;
+
+        Producer(Map<String, Integer> firstPages, PageRequest<T> pageRequest, BlockingQueue<Element<T>> queue,
+                 int pageSize, int batchSize) {
+            this.firstPages = firstPages;
+            this.pageRequest = pageRequest;
+            this.queue = queue;
+            this.pageSize = pageSize;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public Response<Payload<T>> call() throws Exception {
+            try {
+                Response<Payload<T>> response = null;
+                for (Map.Entry<String, Integer> firstPage : firstPages.entrySet()) {
+                    String scope = firstPage.getKey();
+                    Integer page = firstPage.getValue();
+
+                    while (page != null) {
+                        response = pageRequest.request(scope, page);
+                        if (!response.isSuccessful()) {
+                            return response;
+                        }
+                        page = parse(scope, page, response.body());
+                    }
+                }
+                return response;
+            } finally {
+                endQueue();
+            }
+        }
+
+        @Nullable
+        private Integer parse(String scope, int page, Payload<T> payload) throws Exception {
+            try {
+                int count = PayloadBatches.process(payload, batchSize, new PayloadBatches.Processor<T>() {
+                    @Override
+                    public void process(@NonNull List<T> batch) {
+                        put(new Element<>(batch, null, null));
+                    }
+                });
+
+                Integer nextPage = nextPage(payload.pager(), page, count);
+                queue.put(new Element<T>(null, scope, nextPage));
+                return nextPage;
+            } finally {
+                payload.close();
+            }
+        }
+
+        /**
+         * The page count is only known if the server was asked to count all items, which is
+         * expensive for large resources. Otherwise a full page is taken as a sign for more items.
+         */
+        @Nullable
+        private Integer nextPage(@Nullable Pager pager, int page, int count) {
+            if (pager != null && pager.pageCount() > 0) {
+                return page < pager.pageCount() ? page + 1 : null;
+            }
+            return count >= pageSize ? page + 1 : null;
+        }
+
+        private void put(Element<T> element) {
+            try {
+                queue.put(element);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Download was cancelled", interruptedException);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void endQueue() {
+            try {
+                queue.put((Element<T>) Element.END);
+            } catch (InterruptedException interruptedException) {
+                // the writer has stopped and cancelled the download
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Either a batch of items, or the end of the page of a scope.
+     */
+    private static final class Element<T> {
+        static final Element<Object> END = new Element<>(null, null, null);
+
+        final List<T> batch;
+        final String scope;
+        final Integer nextPage;
+
+        Element(List<T> batch, String scope, Integer nextPage) {
+            this.batch = batch;
+            this.scope = scope;
+            this.nextPage = nextPage;
+        }
+    }
+}
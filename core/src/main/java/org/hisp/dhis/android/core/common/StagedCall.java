@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import java.io.IOException;
+
+import retrofit2.Response;
+
+/**
+ * A {@link Call} which can be executed in separate stages. This allows a caller to run network
+ * requests of independent calls concurrently, while all database work stays on the thread which
+ * owns the transaction.
+ * <p>
+ * Invoking {@link #call()} is equivalent to invoking {@link #prepare()}, {@link #download()} and,
+ * if the response is successful, {@link #persist(Response)} on the same thread.
+ *
+ * @param <T> type of the response body
+ */
+public interface StagedCall<T> extends Call<Response<T>> {
+
+    /**
+     * Marks the call as executed and reads the local state which the request depends on
+     * (for example, the last synced date of a resource). Has to be invoked on the thread
+     * which owns the database.
+     *
+     * @throws IllegalStateException if the call has already been executed
+     */
+    void prepare();
+
+    /**
+     * Executes the network request(s) of the call. Implementations must not touch the database,
+     * since this method can be invoked from a worker thread.
+     *
+     * @return response of the server, or null if there was nothing to request
+     */
+    Response<T> download() throws Exception;
+
+    /**
+     * Applies a successful response to the database within a transaction. Has to be invoked
+     * on the thread which owns the database.
+     *
+     * @param response successful response returned by {@link #download()}
+     * @throws IOException if the body of a streamed response could not be read
+     */
+    void persist(Response<T> response) throws IOException;
+}
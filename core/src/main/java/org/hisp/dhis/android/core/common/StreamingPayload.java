@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload which reads its items from the response body on demand, instead of deserializing
+ * the whole response up front. The items can be read once, either in batches through
+ * {@link PayloadBatches} or all at once through {@link #items()}.
+ * <p>
+ * The first array in the response is treated as the list of items, the same way as
+ * {@link Payload} does. The underlying response is closed once all items have been read.
+ */
+public final class StreamingPayload<T> extends Payload<T> {
+    private final JsonParser parser;
+    private final ObjectReader itemReader;
+    private final Closeable source;
+    private boolean consumed;
+
+    private StreamingPayload(JsonParser parser, ObjectReader itemReader, Closeable source) {
+        super();
+        this.parser = parser;
+        this.itemReader = itemReader;
+        this.source = source;
+    }
+
+    /**
+     * Reads the response up to the beginning of the items.
+     *
+     * @param parser     parser over the response, with an ObjectMapper as codec
+     * @param itemReader reader for a single item
+     * @param source     the response body, closed when the payload is closed
+     */
+    @NonNull
+    public static <T> StreamingPayload<T> open(@NonNull JsonParser parser, @NonNull ObjectReader itemReader,
+                                               @NonNull Closeable source) throws IOException {
+        StreamingPayload<T> payload = new StreamingPayload<>(parser, itemReader, source);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object, but was: " + parser.getCurrentToken());
+            }
+            if (!payload.readFieldsUntilItems()) {
+                // response without items
+                payload.items = new ArrayList<>();
+                payload.consumed = true;
+                payload.close();
+            }
+            return payload;
+        } catch (IOException exception) {
+            payload.close();
+            throw exception;
+        }
+    }
+
+    @Override
+    public List<T> items() {
+        if (!consumed) {
+            final List<T> allItems = new ArrayList<>();
+            try {
+                readItems(Integer.MAX_VALUE, new PayloadBatches.Processor<T>() {
+                    @Override
+                    public void process(@NonNull List<T> batch) {
+                        allItems.addAll(batch);
+                    }
+                });
+            } catch (IOException exception) {
+                throw new IllegalStateException("Failed to read payload items", exception);
+            }
+            items = allItems;
+        }
+        return items;
+    }
+
+    int process(int batchSize, PayloadBatches.Processor<T> processor) throws IOException {
+        if (consumed) {
+            return PayloadBatches.processList(items, batchSize, processor);
+        }
+        return readItems(batchSize, processor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            parser.close();
+        } finally {
+            source.close();
+        }
+    }
+
+    private int readItems(int batchSize, PayloadBatches.Processor<T> processor) throws IOException {
+        consumed = true;
+        try {
+            int count = 0;
+            List<T> batch = new ArrayList<>(Math.min(batchSize, PayloadBatches.DEFAULT_BATCH_SIZE));
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                T item = itemReader.readValue(parser);
+                batch.add(item);
+                count++;
+
+                if (batch.size() == batchSize) {
+                    processor.process(batch);
+                    batch = new ArrayList<>(batch.size());
+                }
+            }
+            if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Expected an array of objects, but found: " + parser.getCurrentToken());
+            }
+            if (!batch.isEmpty()) {
+                processor.process(batch);
+            }
+
+            // fields after the items, e.g. the pager
+            readFieldsUntilItems();
+            return count;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Reads fields of the root object until the start of the item array.
+     *
+     * @return true if the parser is positioned at the start of the items, false if the end of
+     * the root object was reached
+     */
+    private boolean readFieldsUntilItems() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            if ("pager".equals(fieldName) && token == JsonToken.START_OBJECT) {
+                pager = parser.readValueAs(Pager.class);
+            } else if (token == JsonToken.START_ARRAY && !consumed) {
+                return true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+}
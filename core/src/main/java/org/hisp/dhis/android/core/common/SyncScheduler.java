@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Response;
+
+/**
+ * Runs the network stage of {@link StagedCall}s on an executor, while keeping all database work
+ * ({@link StagedCall#prepare()} and {@link StagedCall#persist(Response)}) on the calling thread.
+ * Responses are persisted in the order in which the calls were submitted.
+ */
+final class SyncScheduler {
+    private final ExecutorService executor;
+    private final List<Stage<?>> stages;
+
+    SyncScheduler(@NonNull ExecutorService executor) {
+        this.executor = executor;
+        this.stages = new ArrayList<>();
+    }
+
+    /**
+     * Prepares the call on the current thread and schedules its download.
+     */
+    @NonNull
+    <T> Future<Response<T>> submit(@NonNull String name, @NonNull StagedCall<T> call) {
+        call.prepare();
+
+        Stage<T> stage = new Stage<>(name, call);
+        stage.future = executor.submit(stage);
+        stages.add(stage);
+
+        return stage.future;
+    }
+
+    /**
+     * Waits for the download to complete, rethrowing the exception which caused it to fail.
+     */
+    @Nullable
+    static <T> Response<T> await(@NonNull Future<Response<T>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw executionException;
+        }
+    }
+
+    /**
+     * Waits for all downloads and returns the first unsuccessful response in submission order,
+     * or null if every call succeeded.
+     */
+    @Nullable
+    Response firstUnsuccessful() throws Exception {
+        for (Stage<?> stage : stages) {
+            Response<?> response = await(stage.future);
+            if (response != null && !response.isSuccessful()) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Persists all successful responses in submission order. Has to be invoked after
+     * {@link #firstUnsuccessful()} returned null.
+     */
+    void persistAll() throws Exception {
+        for (Stage<?> stage : stages) {
+            stage.persist();
+        }
+    }
+
+    /**
+     * Closes the bodies of responses which have been downloaded, but not persisted,
+     * for example because another call failed.
+     */
+    void release() {
+        for (Stage<?> stage : stages) {
+            stage.release();
+        }
+    }
+
+    @NonNull
+    List<SyncStageTiming> timings() {
+        List<SyncStageTiming> timings = new ArrayList<>(stages.size());
+        for (Stage<?> stage : stages) {
+            timings.add(SyncStageTiming.create(stage.name,
+                    TimeUnit.NANOSECONDS.toMillis(stage.downloadNanos),
+                    TimeUnit.NANOSECONDS.toMillis(stage.persistNanos)));
+        }
+        return Collections.unmodifiableList(timings);
+    }
+
+    private static final class Stage<T> implements Callable<Response<T>> {
+        private final String name;
+        private final StagedCall<T> call;
+        private Future<Response<T>> future;
+
+        // written on the worker thread, read after Future.get()
+        private long downloadNanos;
+        private long persistNanos;
+
+        Stage(String name, StagedCall<T> call) {
+            this.name = name;
+            this.call = call;
+        }
+
+        @Override
+        public Response<T> call() throws Exception {
+            long start = System.nanoTime();
+            try {
+                return call.download();
+            } finally {
+                downloadNanos = System.nanoTime() - start;
+            }
+        }
+
+        void persist() throws Exception {
+            Response<T> response = await(future);
+            if (response != null && response.isSuccessful()) {
+                long start = System.nanoTime();
+                call.persist(response);
+                persistNanos = System.nanoTime() - start;
+            }
+        }
+
+        void release() {
+            if (!future.isDone() || future.isCancelled()) {
+                return;
+            }
+            try {
+                Response<T> response = future.get();
+                if (response != null && response.body() instanceof Closeable) {
+                    ((Closeable) response.body()).close();
+                }
+            } catch (Exception exception) {
+                // the download failed or the body is already closed: nothing to release
+            }
+        }
+    }
+}
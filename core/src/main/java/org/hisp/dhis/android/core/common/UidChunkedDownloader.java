@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import retrofit2.Response;
+
+/**
+ * Downloads resources filtered by a set of uids which can be too large to fit into a single URL.
+ * The uids are split into chunks of at most {@link Call#MAX_UIDS}, chunks are requested concurrently
+ * and the resulting payloads are merged into a single response.
+ *
+ * @param <T> type of the downloaded resource
+ */
+public final class UidChunkedDownloader<T> {
+    public static final int DEFAULT_MAX_CONCURRENT_CHUNKS = 3;
+
+    public interface ChunkRequest<T> {
+        Response<Payload<T>> request(@Nullable Set<String> uids) throws IOException;
+    }
+
+    private final int chunkSize;
+    private final int maxConcurrentChunks;
+
+    public UidChunkedDownloader(int chunkSize, int maxConcurrentChunks) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        if (maxConcurrentChunks <= 0) {
+            throw new IllegalArgumentException("maxConcurrentChunks must be positive: " + maxConcurrentChunks);
+        }
+        this.chunkSize = chunkSize;
+        this.maxConcurrentChunks = maxConcurrentChunks;
+    }
+
+    /**
+     * Requests all chunks of the given uids. Returns the first unsuccessful response in chunk order,
+     * or a successful response which contains the items of all chunks. The payloads of the chunks
+     * are not read here, so that streamed payloads are still read while being persisted.
+     */
+    public Response<Payload<T>> download(@Nullable Set<String> uids,
+                                         @NonNull final ChunkRequest<T> chunkRequest) throws Exception {
+        List<Set<String>> chunks = partition(uids, chunkSize);
+        if (chunks.size() == 1) {
+            return chunkRequest.request(chunks.get(0));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrentChunks, chunks.size()));
+        List<Future<Response<Payload<T>>>> futures = new ArrayList<>(chunks.size());
+        boolean merged = false;
+        try {
+            for (final Set<String> chunk : chunks) {
+                futures.add(executor.submit(new Callable<Response<Payload<T>>>() {
+                    @Override
+                    public Response<Payload<T>> call() throws Exception {
+                        return chunkRequest.request(chunk);
+                    }
+                }));
+            }
+
+            List<Payload<T>> parts = new ArrayList<>(chunks.size());
+            Response<Payload<T>> response = null;
+            for (Future<Response<Payload<T>>> future : futures) {
+                response = SyncScheduler.await(future);
+                if (!response.isSuccessful()) {
+                    return response;
+                }
+                parts.add(response.body());
+            }
+
+            Response<Payload<T>> mergedResponse = Response.success(Payload.concat(parts), response.raw());
+            merged = true;
+            return mergedResponse;
+        } finally {
+            if (!merged) {
+                release(futures);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Closes the payloads of all chunks which have been or are still being downloaded, as streamed payloads
+     * hold buffers. Chunks which have not been started yet are cancelled; running requests are awaited, so
+     * that their payloads can be closed as well.
+     */
+    private static <T> void release(List<Future<Response<Payload<T>>>> futures) {
+        for (Future<Response<Payload<T>>> future : futures) {
+            future.cancel(false);
+        }
+        for (Future<Response<Payload<T>>> future : futures) {
+            if (future.isCancelled()) {
+                continue;
+            }
+            try {
+                Response<Payload<T>> response = future.get();
+                if (response != null && response.body() != null) {
+                    response.body().close();
+                }
+            } catch (Exception exception) {
+                // the request failed or was interrupted: there is no payload to close
+            }
+        }
+    }
+
+    /**
+     * Splits uids into chunks of at most chunkSize elements. A null or empty set results in
+     * a single chunk, so that the request is still sent (without a uid filter).
+     */
+    @NonNull
+    static List<Set<String>> partition(@Nullable Set<String> uids, int chunkSize) {
+        List<Set<String>> chunks = new ArrayList<>();
+        if (uids == null || uids.size() <= chunkSize) {
+            chunks.add(uids);
+            return chunks;
+        }
+
+        Set<String> chunk = new HashSet<>();
+        for (String uid : uids) {
+            chunk.add(uid);
+            if (chunk.size() == chunkSize) {
+                chunks.add(chunk);
+                chunk = new HashSet<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
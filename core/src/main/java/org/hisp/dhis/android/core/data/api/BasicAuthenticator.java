@@ -30,8 +30,8 @@ package org.hisp.dhis.android.core.data.api;
 
 import android.support.annotation.NonNull;
 
+import org.hisp.dhis.android.core.user.AuthenticatedUserCache;
 import org.hisp.dhis.android.core.user.AuthenticatedUserModel;
-import org.hisp.dhis.android.core.user.AuthenticatedUserStore;
 
 import java.io.IOException;
 import java.util.List;
@@ -44,10 +44,15 @@ final class BasicAuthenticator implements Authenticator {
     private static final String AUTHORIZATION = "Authorization";
     private static final String BASIC_CREDENTIALS = "Basic %s";
 
-    private final AuthenticatedUserStore authenticatedUserStore;
+    private final AuthenticatedUserCache authenticatedUserCache;
 
-    BasicAuthenticator(@NonNull AuthenticatedUserStore authenticatedUserStore) {
-        this.authenticatedUserStore = authenticatedUserStore;
+    BasicAuthenticator(@NonNull AuthenticatedUserCache authenticatedUserCache) {
+        this.authenticatedUserCache = authenticatedUserCache;
+    }
+
+    @NonNull
+    AuthenticatedUserCache authenticatedUserCache() {
+        return authenticatedUserCache;
     }
 
     @Override
@@ -58,7 +63,7 @@ final class BasicAuthenticator implements Authenticator {
             return chain.proceed(chain.request());
         }
 
-        List<AuthenticatedUserModel> authenticatedUsers = authenticatedUserStore.query();
+        List<AuthenticatedUserModel> authenticatedUsers = authenticatedUserCache.get();
         if (authenticatedUsers.isEmpty()) {
             // proceed request if we do not
             // have any users authenticated
@@ -29,9 +29,10 @@
 package org.hisp.dhis.android.core.data.api;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
-import org.hisp.dhis.android.core.user.AuthenticatedUserStore;
+import org.hisp.dhis.android.core.user.AuthenticatedUserCache;
 import org.hisp.dhis.android.core.user.AuthenticatedUserStoreImpl;
 
 public final class BasicAuthenticatorFactory {
@@ -39,14 +40,42 @@ public final class BasicAuthenticatorFactory {
         // no instances
     }
 
+    @NonNull
+    public static Authenticator create(@NonNull AuthenticatedUserCache authenticatedUserCache) {
+        if (authenticatedUserCache == null) {
+            throw new IllegalArgumentException("authenticatedUserCache == null");
+        }
+
+        return new BasicAuthenticator(authenticatedUserCache);
+    }
+
+    /**
+     * Creates an authenticator which reads the credentials from a cache of its own. The authenticator
+     * is not needed by clients which are passed to {@link org.hisp.dhis.android.core.D2.Builder}, as the
+     * builder adds one. If it is added to such a client nevertheless, the builder keeps it instead and
+     * invalidates its cache when a user logs in or out.
+     *
+     * @deprecated use {@link #create(AuthenticatedUserCache)}
+     */
+    @Deprecated
     @NonNull
     public static Authenticator create(@NonNull DatabaseAdapter databaseAdapter) {
         if (databaseAdapter == null) {
             throw new IllegalArgumentException("databaseAdapter == null");
         }
 
-        AuthenticatedUserStore authenticatedUserStore = new AuthenticatedUserStoreImpl(
-                databaseAdapter);
-        return new BasicAuthenticator(authenticatedUserStore);
+        return create(new AuthenticatedUserCache(new AuthenticatedUserStoreImpl(databaseAdapter)));
+    }
+
+    /**
+     * Returns the cache which the given authenticator reads the credentials from, or null if the
+     * authenticator has not been created by this factory.
+     */
+    @Nullable
+    public static AuthenticatedUserCache authenticatedUserCache(@NonNull Authenticator authenticator) {
+        if (authenticator instanceof BasicAuthenticator) {
+            return ((BasicAuthenticator) authenticator).authenticatedUserCache();
+        }
+        return null;
     }
 }
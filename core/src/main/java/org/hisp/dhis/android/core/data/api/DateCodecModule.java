@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+
+import org.hisp.dhis.android.core.common.DateCodec;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Jackson module which reads and writes {@link Date} values through a {@link DateCodec}, instead
+ * of the {@link java.text.DateFormat} set on the mapper which Jackson synchronizes on and clones.
+ */
+public final class DateCodecModule extends SimpleModule {
+
+    public static DateCodecModule create(@NonNull DateCodec dateCodec) {
+        return new DateCodecModule(dateCodec);
+    }
+
+    private DateCodecModule(DateCodec dateCodec) {
+        super(DateCodecModule.class.getSimpleName());
+        addDeserializer(Date.class, new DateCodecDeserializer(dateCodec));
+        addSerializer(Date.class, new DateCodecSerializer(dateCodec));
+    }
+
+    static final class DateCodecDeserializer extends StdScalarDeserializer<Date> {
+        private final DateCodec dateCodec;
+
+        DateCodecDeserializer(DateCodec dateCodec) {
+            super(Date.class);
+            this.dateCodec = dateCodec;
+        }
+
+        @Override
+        public Date deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return new Date(parser.getLongValue());
+            }
+
+            if (token != JsonToken.VALUE_STRING) {
+                return (Date) context.handleUnexpectedToken(Date.class, parser);
+            }
+
+            // read straight from the parser buffer, without materializing the string
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            if (length == 0) {
+                return null;
+            }
+
+            try {
+                return dateCodec.parse(text, offset, length);
+            } catch (ParseException parseException) {
+                throw context.weirdStringException(new String(text, offset, length),
+                        Date.class, parseException.getMessage());
+            }
+        }
+    }
+
+    static final class DateCodecSerializer extends StdScalarSerializer<Date> {
+        private final DateCodec dateCodec;
+
+        DateCodecSerializer(DateCodec dateCodec) {
+            super(Date.class);
+            this.dateCodec = dateCodec;
+        }
+
+        @Override
+        public void serialize(Date value, JsonGenerator generator,
+                SerializerProvider provider) throws IOException {
+            generator.writeString(dateCodec.format(value));
+        }
+    }
+}
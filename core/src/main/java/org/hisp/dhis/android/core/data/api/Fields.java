@@ -37,14 +37,97 @@ import org.hisp.dhis.android.core.common.Property;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @AutoValue
 public abstract class Fields<T> {
+    private static final String DISPLAY_PREFIX = "display";
+
+    // derived from fields() on first use. Concurrent first uses derive equal values, so no locking is needed.
+    private transient volatile String queryString;
+    private transient volatile String compactQueryString;
 
     @NonNull
     public abstract List<Property<T, ?>> fields();
 
+    /**
+     * Returns the value of the fields query parameter. It is rendered once and interned, so fields which are
+     * kept in constants do not cost any allocation when they are sent again.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public String queryString() {
+        String rendered = queryString;
+        if (rendered == null) {
+            rendered = FieldsConverter.render((List) fields()).intern();
+            queryString = rendered;
+        }
+        return rendered;
+    }
+
+    /**
+     * Returns the query string of the {@link #compact()} fields, which is rendered once as well.
+     */
+    @NonNull
+    public String compactQueryString() {
+        String rendered = compactQueryString;
+        if (rendered == null) {
+            rendered = compact().queryString();
+            compactQueryString = rendered;
+        }
+        return rendered;
+    }
+
+    /**
+     * Returns the fields of the compact sync profile: display names, short names, descriptions and form names
+     * are left out wherever the property they duplicate is requested as well, and properties which are
+     * requested twice are requested once. Nested fields are compacted recursively.
+     */
+    @NonNull
+    public Fields<T> compact() {
+        return new AutoValue_Fields<>(Collections.unmodifiableList(compact(fields())));
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    static <T> List<Property<T, ?>> compact(@NonNull List<Property<T, ?>> properties) {
+        Set<String> names = new HashSet<>();
+        for (Property<T, ?> property : properties) {
+            names.add(property.name());
+        }
+
+        Set<String> added = new HashSet<>();
+        List<Property<T, ?>> compacted = new ArrayList<>(properties.size());
+        for (Property<T, ?> property : properties) {
+            String name = property.name();
+            if (names.contains(duplicatedName(name)) || !added.add(name)) {
+                continue;
+            }
+
+            if (property instanceof NestedField) {
+                compacted.add(((NestedField<T, ?>) property).compact());
+            } else {
+                compacted.add(property);
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * @return name of the property which the given display property duplicates, e.g. shortName for
+     * displayShortName, or null if the property is not a display property
+     */
+    private static String duplicatedName(String name) {
+        if (name.length() <= DISPLAY_PREFIX.length() || !name.startsWith(DISPLAY_PREFIX)) {
+            return null;
+        }
+
+        String suffix = name.substring(DISPLAY_PREFIX.length());
+        return Character.toLowerCase(suffix.charAt(0)) + suffix.substring(1);
+    }
+
     @NonNull
     public static <K> Fields.Builder<K> builder() {
         return new Builder<>();
@@ -68,7 +151,7 @@ public abstract class Fields<T> {
         }
 
         public final Fields<T> build() {
-            return new AutoValue_Fields<>(Collections.unmodifiableList(fields));
+            return new AutoValue_Fields<>(Collections.unmodifiableList(new ArrayList<>(fields)));
         }
     }
 }
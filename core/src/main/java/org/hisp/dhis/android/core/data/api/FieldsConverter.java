@@ -37,18 +37,27 @@ import java.util.List;
 import retrofit2.Converter;
 
 class FieldsConverter implements Converter<Fields, String> {
+    private final boolean compact;
+
     FieldsConverter() {
-        // explicit empty constructor
+        this(false);
+    }
+
+    FieldsConverter(boolean compact) {
+        this.compact = compact;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public String convert(Fields fields) throws IOException {
+        return compact ? fields.compactQueryString() : fields.queryString();
+    }
+
+    static String render(List<Property> properties) {
         StringBuilder builder = new StringBuilder();
 
         // recursive function which processes
         // properties and builds query string
-        append(builder, (List<Property>) fields.fields());
+        append(builder, properties);
 
         return builder.toString();
     }
@@ -63,11 +72,7 @@ class FieldsConverter implements Converter<Fields, String> {
             // we need to append property name first
             builder.append(property.name());
 
-            if (property instanceof Field) {
-                if (propertyIterator.hasNext()) {
-                    builder.append(',');
-                }
-            } else if (property instanceof NestedField) {
+            if (property instanceof NestedField) {
                 List<Property> children = ((NestedField) property).children();
 
                 if (!children.isEmpty()) {
@@ -80,10 +85,14 @@ class FieldsConverter implements Converter<Fields, String> {
                     // close property array
                     builder.append(']');
                 }
-            } else {
+            } else if (!(property instanceof Field)) {
                 throw new IllegalArgumentException("Unsupported type of Property: " +
                         property.getClass());
             }
+
+            if (propertyIterator.hasNext()) {
+                builder.append(',');
+            }
         }
     }
 }
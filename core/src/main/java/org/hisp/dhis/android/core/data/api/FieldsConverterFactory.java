@@ -35,12 +35,21 @@ import retrofit2.Converter;
 import retrofit2.Retrofit;
 
 public final class FieldsConverterFactory extends Converter.Factory {
+    private final boolean compact;
+
     public static FieldsConverterFactory create() {
-        return new FieldsConverterFactory();
+        return new FieldsConverterFactory(false);
+    }
+
+    /**
+     * Creates a factory which requests the fields of the compact sync profile, see {@link Fields#compact()}.
+     */
+    public static FieldsConverterFactory createCompact() {
+        return new FieldsConverterFactory(true);
     }
 
-    private FieldsConverterFactory() {
-        // private constructor
+    private FieldsConverterFactory(boolean compact) {
+        this.compact = compact;
     }
 
     @Override
@@ -48,7 +57,7 @@ public final class FieldsConverterFactory extends Converter.Factory {
             Annotation[] annotations, Retrofit retrofit) {
         for (Annotation annotation : annotations) {
             if (annotation instanceof Which) {
-                return new FieldsConverter();
+                return new FieldsConverter(compact);
             }
         }
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Counts how the requests of D2 were answered by the HTTP cache. Has to be installed as an application
+ * interceptor, so that it sees the responses after the cache has handled them.
+ */
+public final class HttpCacheCounter implements Interceptor {
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+
+        Response networkResponse = response.networkResponse();
+        if (response.cacheResponse() == null) {
+            missCount.incrementAndGet();
+            return response;
+        }
+
+        if (networkResponse == null) {
+            hitCount.incrementAndGet();
+        } else if (networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            notModifiedCount.incrementAndGet();
+        } else {
+            // the cached response was stale and has been replaced by a new one
+            missCount.incrementAndGet();
+            return response;
+        }
+
+        long contentLength = response.body() == null ? -1 : response.body().contentLength();
+        if (contentLength > 0) {
+            cachedBytes.addAndGet(contentLength);
+        }
+        return response;
+    }
+
+    /**
+     * @return number of responses served from the cache without contacting the server
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of conditional requests which the server answered with 304 Not Modified
+     */
+    public long notModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * @return number of responses whose body was downloaded from the server
+     */
+    public long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return size of the bodies served from the cache, as far as it was known. This is the amount of
+     * data which did not have to be downloaded.
+     */
+    public long cachedBytes() {
+        return cachedBytes.get();
+    }
+}
@@ -49,9 +49,16 @@ public abstract class NestedField<Parent, Child> implements Property<Parent, Chi
     @SafeVarargs
     public final NestedField<Parent, ?> with(Property<Child, ?>... properties) {
         if (properties != null) {
-            return new AutoValue_NestedField<>(name(), Arrays.asList(properties));
+            return new AutoValue_NestedField<>(name(), Collections.unmodifiableList(Arrays.asList(properties.clone())));
         }
 
         return create(name());
     }
+
+    /**
+     * @return this nested field with the children of the compact sync profile, see {@link Fields#compact()}
+     */
+    public final NestedField<Parent, Child> compact() {
+        return new AutoValue_NestedField<>(name(), Collections.unmodifiableList(Fields.compact(children())));
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.StreamingPayload;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+import retrofit2.Converter;
+
+/**
+ * Copies the response body to a temporary file before the payload is opened, so that the network
+ * is only read while the call is executed and not while the items are persisted, which happens
+ * within a transaction. The file is deleted when the payload is closed.
+ */
+class StreamingPayloadConverter<T> implements Converter<ResponseBody, Payload<T>> {
+    private static final String BUFFER_PREFIX = "payload";
+    private static final String BUFFER_SUFFIX = ".json";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader itemReader;
+    private final File bufferDirectory;
+
+    StreamingPayloadConverter(ObjectMapper objectMapper, ObjectReader itemReader, File bufferDirectory) {
+        this.objectMapper = objectMapper;
+        this.itemReader = itemReader;
+        this.bufferDirectory = bufferDirectory;
+    }
+
+    @Override
+    public Payload<T> convert(ResponseBody value) throws IOException {
+        final File buffer;
+        try {
+            buffer = File.createTempFile(BUFFER_PREFIX, BUFFER_SUFFIX, bufferDirectory);
+        } catch (IOException exception) {
+            value.close();
+            throw exception;
+        }
+
+        Closeable deleteBuffer = new Closeable() {
+            @Override
+            public void close() throws IOException {
+                if (!buffer.delete() && buffer.exists()) {
+                    throw new IOException("Failed to delete " + buffer);
+                }
+            }
+        };
+
+        JsonParser parser;
+        try {
+            copy(value, buffer);
+            parser = objectMapper.getFactory().createParser(buffer);
+        } catch (IOException exception) {
+            deleteBuffer.close();
+            throw exception;
+        }
+        return StreamingPayload.open(parser, itemReader, deleteBuffer);
+    }
+
+    private static void copy(ResponseBody value, File buffer) throws IOException {
+        try {
+            BufferedSink sink = Okio.buffer(Okio.sink(buffer));
+            try {
+                sink.writeAll(value.source());
+            } finally {
+                sink.close();
+            }
+        } finally {
+            value.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.hisp.dhis.android.core.common.Payload;
+
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.http.Streaming;
+
+/**
+ * Converts responses of service methods annotated with {@link Streaming} and returning a
+ * {@link Payload} into payloads which read their items while they are being persisted.
+ * The responses are buffered in temporary files, so the items are read from disk rather than
+ * from the network. Must be added before the Jackson converter factory.
+ */
+public final class StreamingPayloadConverterFactory extends Converter.Factory {
+    private final ObjectMapper objectMapper;
+    private final File bufferDirectory;
+
+    /**
+     * Creates a factory which buffers responses in the default temporary directory.
+     */
+    public static StreamingPayloadConverterFactory create(ObjectMapper objectMapper) {
+        return new StreamingPayloadConverterFactory(objectMapper, null);
+    }
+
+    public static StreamingPayloadConverterFactory create(ObjectMapper objectMapper, File bufferDirectory) {
+        return new StreamingPayloadConverterFactory(objectMapper, bufferDirectory);
+    }
+
+    private StreamingPayloadConverterFactory(ObjectMapper objectMapper, File bufferDirectory) {
+        this.objectMapper = objectMapper;
+        this.bufferDirectory = bufferDirectory;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type,
+            Annotation[] annotations, Retrofit retrofit) {
+        if (!(type instanceof ParameterizedType)
+                || ((ParameterizedType) type).getRawType() != Payload.class) {
+            return null;
+        }
+
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Streaming) {
+                Type itemType = ((ParameterizedType) type).getActualTypeArguments()[0];
+                ObjectReader itemReader = objectMapper.readerFor(
+                        objectMapper.getTypeFactory().constructType(itemType));
+                return new StreamingPayloadConverter<>(objectMapper, itemReader, bufferDirectory);
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Counts the bytes which D2 sends and receives over the network, as they are transferred, i.e. before
+ * responses are decompressed. Has to be installed as a network interceptor, so that responses served from the
+ * cache are not counted. Headers and bodies are counted, the request and status lines are not.
+ * <p>
+ * Optionally ensures that every request accepts gzip encoded responses. OkHttp only decompresses responses
+ * whose encoding it negotiated itself, so responses to requests which are changed here are decompressed by
+ * this interceptor.
+ */
+public final class TransferCounter implements Interceptor {
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String RANGE = "Range";
+    private static final String GZIP = "gzip";
+
+    // ": " between name and value and the line break after each header
+    private static final int HEADER_OVERHEAD = 4;
+
+    private final boolean requestGzip;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong gzipResponseCount = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+
+    /**
+     * @param requestGzip whether requests which do not accept gzip encoded responses yet should do so
+     */
+    public TransferCounter(boolean requestGzip) {
+        this.requestGzip = requestGzip;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+
+        boolean decompress = false;
+        String acceptEncoding = request.header(ACCEPT_ENCODING);
+        if (requestGzip && (acceptEncoding == null || !acceptEncoding.contains(GZIP)) &&
+                request.header(RANGE) == null) {
+            request = request.newBuilder().header(ACCEPT_ENCODING, GZIP).build();
+            decompress = true;
+        }
+
+        requestCount.incrementAndGet();
+        sentBytes.addAndGet(byteCount(request.headers()));
+        RequestBody requestBody = request.body();
+        if (requestBody != null && requestBody.contentLength() > 0) {
+            sentBytes.addAndGet(requestBody.contentLength());
+        }
+
+        Response response = chain.proceed(request);
+        receivedBytes.addAndGet(byteCount(response.headers()));
+
+        boolean gzipped = GZIP.equalsIgnoreCase(response.header(CONTENT_ENCODING));
+        if (gzipped) {
+            gzipResponseCount.incrementAndGet();
+        }
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+
+        Source source = new CountingSource(body.source());
+        long contentLength = body.contentLength();
+        Response.Builder builder = response.newBuilder();
+        if (gzipped && decompress) {
+            source = new GzipSource(source);
+            contentLength = -1;
+            builder.removeHeader(CONTENT_ENCODING).removeHeader(CONTENT_LENGTH);
+        }
+
+        return builder
+                .body(ResponseBody.create(body.contentType(), contentLength, Okio.buffer(source)))
+                .build();
+    }
+
+    private static long byteCount(Headers headers) {
+        long byteCount = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            byteCount += headers.name(i).length() + headers.value(i).length() + HEADER_OVERHEAD;
+        }
+        return byteCount;
+    }
+
+    /**
+     * @return number of requests which were sent to the server
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of responses which the server sent gzip encoded
+     */
+    public long gzipResponseCount() {
+        return gzipResponseCount.get();
+    }
+
+    /**
+     * @return bytes sent to the server
+     */
+    public long sentBytes() {
+        return sentBytes.get();
+    }
+
+    /**
+     * @return bytes received from the server. Bodies are counted as far as they have been read.
+     */
+    public long receivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * Sets all counters to zero, e.g. before a sync whose transfer should be measured.
+     */
+    public void reset() {
+        requestCount.set(0);
+        gzipResponseCount.set(0);
+        sentBytes.set(0);
+        receivedBytes.set(0);
+    }
+
+    private final class CountingSource extends ForwardingSource {
+        CountingSource(Source delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                receivedBytes.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
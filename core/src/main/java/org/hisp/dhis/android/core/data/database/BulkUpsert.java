@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
+
+/**
+ * Writes a list of models into a table using the pre-compiled insert and update statements of a store.
+ * <p>
+ * Instead of trying an UPDATE and falling back to an INSERT for every row, the uids which already
+ * exist in the table are looked up in batches first, so that every model costs exactly one
+ * statement execution. All rows are written within a single transaction.
+ * <p>
+ * INSERT OR REPLACE is deliberately not used: it deletes the existing row, which cascades to
+ * the rows referencing it through foreign keys declared with ON DELETE CASCADE.
+ * <p>
+ * Only the stores of options and organisation units use it. These are the only metadata which is
+ * synced by the thousands in a single payload, and their handlers receive whole batches of it. The
+ * other metadata is handled a few objects at a time, nested in its program or option set, so the
+ * lookup query would cost about as much as the UPDATE it saves. A store for another large table
+ * can adopt it by exposing {@code upsert(List)} the same way.
+ *
+ * @param <T> type of the model
+ */
+public final class BulkUpsert<T> {
+    // SQLite limits the amount of host parameters in a single statement to 999
+    public static final int MAX_QUERY_UIDS = 500;
+
+    public interface Binder<T> {
+        @NonNull
+        String uid(@NonNull T model);
+
+        /**
+         * Binds the values of the model to the arguments of the insert and update statements,
+         * starting at index 1.
+         */
+        void bind(@NonNull SQLiteStatement statement, @NonNull T model);
+    }
+
+    private final DatabaseAdapter databaseAdapter;
+    private final String table;
+    private final String uidColumn;
+    private final SQLiteStatement insertStatement;
+    private final SQLiteStatement updateStatement;
+    private final int whereUidIndex;
+    private final Binder<T> binder;
+
+    /**
+     * @param whereUidIndex index of the uid argument in the WHERE clause of the update statement
+     */
+    public BulkUpsert(@NonNull DatabaseAdapter databaseAdapter,
+                      @NonNull String table,
+                      @NonNull String uidColumn,
+                      @NonNull SQLiteStatement insertStatement,
+                      @NonNull SQLiteStatement updateStatement,
+                      int whereUidIndex,
+                      @NonNull Binder<T> binder) {
+        this.databaseAdapter = databaseAdapter;
+        this.table = table;
+        this.uidColumn = uidColumn;
+        this.insertStatement = insertStatement;
+        this.updateStatement = updateStatement;
+        this.whereUidIndex = whereUidIndex;
+        this.binder = binder;
+    }
+
+    /**
+     * Inserts models which are not persisted yet and updates the others.
+     *
+     * @return number of rows written
+     */
+    public int upsert(@NonNull List<T> models) {
+        if (models.isEmpty()) {
+            return 0;
+        }
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            Set<String> persistedUids = queryPersistedUids(models);
+
+            int size = models.size();
+            for (int i = 0; i < size; i++) {
+                T model = models.get(i);
+                String uid = binder.uid(model);
+
+                if (persistedUids.contains(uid)) {
+                    binder.bind(updateStatement, model);
+                    sqLiteBind(updateStatement, whereUidIndex, uid);
+
+                    databaseAdapter.executeUpdateDelete(table, updateStatement);
+                    updateStatement.clearBindings();
+                } else {
+                    binder.bind(insertStatement, model);
+
+                    databaseAdapter.executeInsert(table, insertStatement);
+                    insertStatement.clearBindings();
+
+                    // the same uid can occur twice in a payload
+                    persistedUids.add(uid);
+                }
+            }
+
+            transaction.setSuccessful();
+            return size;
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private Set<String> queryPersistedUids(List<T> models) {
+        Set<String> persistedUids = new HashSet<>();
+
+        int size = models.size();
+        for (int start = 0; start < size; start += MAX_QUERY_UIDS) {
+            int end = Math.min(start + MAX_QUERY_UIDS, size);
+
+            String[] uids = new String[end - start];
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                uids[i - start] = binder.uid(models.get(i));
+                placeholders.append(i == start ? "?" : ",?");
+            }
+
+            Cursor cursor = databaseAdapter.query("SELECT " + uidColumn + " FROM " + table +
+                    " WHERE " + uidColumn + " IN (" + placeholders + ")", uids);
+            try {
+                if (cursor.getCount() > 0) {
+                    cursor.moveToFirst();
+                    do {
+                        persistedUids.add(cursor.getString(0));
+                    } while (cursor.moveToNext());
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return persistedUids;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Null-safe reads of cursor values by column index, in the same representation as the column
+ * adapters which are used by the generated {@code createFromCursor} methods.
+ */
+public final class CursorValues {
+
+    private CursorValues() {
+        // no instances
+    }
+
+    @Nullable
+    public static String getString(@NonNull Cursor cursor, int columnIndex) {
+        return cursor.isNull(columnIndex) ? null : cursor.getString(columnIndex);
+    }
+
+    @Nullable
+    public static Long getLong(@NonNull Cursor cursor, int columnIndex) {
+        return cursor.isNull(columnIndex) ? null : cursor.getLong(columnIndex);
+    }
+
+    @Nullable
+    public static Integer getInteger(@NonNull Cursor cursor, int columnIndex) {
+        return cursor.isNull(columnIndex) ? null : cursor.getInt(columnIndex);
+    }
+
+    @Nullable
+    public static Boolean getBoolean(@NonNull Cursor cursor, int columnIndex) {
+        return cursor.isNull(columnIndex) ? null : cursor.getInt(columnIndex) == 1;
+    }
+
+    @Nullable
+    public static Date getDate(@NonNull Cursor cursor, int columnIndex) {
+        String sourceDate = getString(cursor, columnIndex);
+        if (sourceDate == null) {
+            return null;
+        }
+
+        try {
+            return BaseIdentifiableObject.DATE_CODEC.parse(sourceDate);
+        } catch (ParseException parseException) {
+            // wrap checked exception into unchecked
+            throw new RuntimeException(parseException);
+        }
+    }
+
+    @Nullable
+    public static <E extends Enum<E>> E getEnum(@NonNull Cursor cursor, int columnIndex, @NonNull Class<E> type) {
+        String source = getString(cursor, columnIndex);
+        if (source == null) {
+            return null;
+        }
+
+        try {
+            return Enum.valueOf(type, source);
+        } catch (IllegalArgumentException exception) {
+            throw new RuntimeException("Unknown " + type.getSimpleName() + ": " + source, exception);
+        }
+    }
+}
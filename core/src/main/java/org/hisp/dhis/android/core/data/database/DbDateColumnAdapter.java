@@ -49,7 +49,7 @@ public final class DbDateColumnAdapter implements ColumnTypeAdapter<Date> {
         Date date = null;
         if (sourceDate != null) {
             try {
-                date = BaseIdentifiableObject.DATE_FORMAT.parse(sourceDate);
+                date = BaseIdentifiableObject.DATE_CODEC.parse(sourceDate);
             } catch (ParseException parseException) {
                 // wrap checked exception into unchecked
                 throw new RuntimeException(parseException);
@@ -62,7 +62,7 @@ public final class DbDateColumnAdapter implements ColumnTypeAdapter<Date> {
     @Override
     public void toContentValues(ContentValues contentValues, String columnName, Date date) {
         if (date != null) {
-            contentValues.put(columnName, BaseIdentifiableObject.DATE_FORMAT.format(date));
+            contentValues.put(columnName, BaseIdentifiableObject.DATE_CODEC.format(date));
         }
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Numbered migrations of the database schema. Version 1 is the schema created by {@link DbOpenHelper};
+ * the migration at index i migrates the schema to version i + 2.
+ */
+final class DbMigrations {
+    static final int INITIAL_VERSION = 1;
+
+    static final List<DbMigration> MIGRATIONS = Collections.unmodifiableList(Arrays.<DbMigration>asList(
+            new LookupIndexMigration(),
+            new ResourceCursorMigration(),
+            new OrganisationUnitClosureMigration(),
+            new ResourceValidatorMigration(),
+            new StateIndexMigration(),
+            new OptionSearchMigration()
+    ));
+
+    private DbMigrations() {
+        // no instances
+    }
+
+    static int latestVersion() {
+        return INITIAL_VERSION + MIGRATIONS.size();
+    }
+
+    /**
+     * Applies all migrations after oldVersion, up to and including newVersion.
+     */
+    static void migrate(@NonNull SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < INITIAL_VERSION || newVersion > latestVersion() || oldVersion > newVersion) {
+            throw new IllegalArgumentException("Unsupported migration from version " +
+                    oldVersion + " to " + newVersion);
+        }
+
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            DbMigration migration = MIGRATIONS.get(version - INITIAL_VERSION - 1);
+            if (migration.version() != version) {
+                throw new IllegalStateException("Migration " + migration.getClass().getSimpleName() +
+                        " is registered for version " + version + ", but migrates to " + migration.version());
+            }
+            migration.migrate(database);
+        }
+    }
+}
@@ -29,8 +29,10 @@
 package org.hisp.dhis.android.core.data.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
@@ -78,7 +80,7 @@ import static org.hisp.dhis.android.core.user.UserOrganisationUnitLinkModel.Colu
 public class DbOpenHelper extends SQLiteOpenHelper {
 
     @VisibleForTesting
-    static final int VERSION = 1;
+    static final int VERSION = 7;
 
     private static final String CREATE_CONFIGURATION_TABLE = "CREATE TABLE " + ConfigurationModel.CONFIGURATION + " (" +
             ConfigurationModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
@@ -761,8 +763,17 @@ public class DbOpenHelper extends SQLiteOpenHelper {
         return create(SQLiteDatabase.create(null));
     }
 
-
     private static SQLiteDatabase create(SQLiteDatabase database) {
+        createInitialSchema(database);
+        DbMigrations.migrate(database, DbMigrations.INITIAL_VERSION, VERSION);
+        return database;
+    }
+
+    /**
+     * Creates the schema of the first database version. Later changes are applied by {@link DbMigrations}.
+     */
+    @VisibleForTesting
+    static SQLiteDatabase createInitialSchema(SQLiteDatabase database) {
         database.execSQL(CREATE_CONFIGURATION_TABLE);
         database.execSQL(CREATE_USER_TABLE);
         database.execSQL(CREATE_USER_CREDENTIALS_TABLE);
@@ -801,8 +812,31 @@ public class DbOpenHelper extends SQLiteOpenHelper {
         return database;
     }
 
+    private final DbTuning tuning;
+
     public DbOpenHelper(@NonNull Context context, @Nullable String databaseName) {
+        this(context, databaseName, DbTuning.defaults());
+    }
+
+    public DbOpenHelper(@NonNull Context context, @Nullable String databaseName, @NonNull DbTuning tuning) {
         super(context, databaseName, null, VERSION);
+        if (tuning == null) {
+            throw new IllegalArgumentException("tuning == null");
+        }
+        this.tuning = tuning;
+    }
+
+    @NonNull
+    public DbTuning tuning() {
+        return tuning;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+
+        // only invoked on API 16 and higher, see onOpen
+        configure(db);
     }
 
     @Override
@@ -812,14 +846,49 @@ public class DbOpenHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // ToDo: logic for proper schema migration
+        DbMigrations.migrate(db, oldVersion, newVersion);
     }
 
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
 
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            configure(db);
+        }
+
         // enable foreign key support in database
         db.execSQL("PRAGMA foreign_keys = ON;");
     }
+
+    private void configure(SQLiteDatabase db) {
+        if (tuning.writeAheadLogging()) {
+            db.enableWriteAheadLogging();
+        }
+        if (tuning.synchronous() != null) {
+            pragma(db, "synchronous = " + tuning.synchronous().name());
+        }
+        if (tuning.cacheSizeKib() != null) {
+            // negative values are interpreted as KiB instead of pages
+            pragma(db, "cache_size = -" + tuning.cacheSizeKib());
+        }
+        if (tuning.tempStoreInMemory()) {
+            pragma(db, "temp_store = MEMORY");
+        }
+        if (tuning.mmapSize() != null) {
+            pragma(db, "mmap_size = " + tuning.mmapSize());
+        }
+    }
+
+    /**
+     * Some pragmas return their new value, which is rejected by execSQL, so they are run as queries.
+     */
+    private static void pragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma + ";", null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Connection settings applied by {@link DbOpenHelper} when the database is opened.
+ * <p>
+ * With write-ahead logging, readers are not blocked by the long transactions of the metadata
+ * sync. Settings which are not supported by the SQLite version of the device are ignored.
+ */
+@AutoValue
+public abstract class DbTuning {
+    private static final int PERFORMANCE_CACHE_SIZE_KIB = 8 * 1024;
+    private static final long PERFORMANCE_MMAP_SIZE = 32L * 1024L * 1024L;
+
+    public enum Synchronous {
+        OFF, NORMAL, FULL
+    }
+
+    /**
+     * Use the write-ahead log instead of the rollback journal.
+     */
+    public abstract boolean writeAheadLogging();
+
+    /**
+     * Value of {@code PRAGMA synchronous}, or null to keep the default.
+     */
+    @Nullable
+    public abstract Synchronous synchronous();
+
+    /**
+     * Size of the page cache in KiB, or null to keep the default.
+     */
+    @Nullable
+    public abstract Integer cacheSizeKib();
+
+    /**
+     * Keep temporary tables and indices in memory ({@code PRAGMA temp_store = MEMORY}).
+     */
+    public abstract boolean tempStoreInMemory();
+
+    /**
+     * Maximum number of bytes of the database file to access through memory-mapped I/O,
+     * or null to keep the default.
+     */
+    @Nullable
+    public abstract Long mmapSize();
+
+    /**
+     * Check foreign key constraints when a transaction is committed rather than after each statement.
+     */
+    public abstract boolean deferForeignKeys();
+
+    /**
+     * Settings of the SQLite connection without any tuning.
+     */
+    @NonNull
+    public static DbTuning defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Write-ahead logging, {@code synchronous = NORMAL}, a larger page cache, in-memory
+     * temporary storage, memory-mapped I/O and deferred foreign key checks.
+     */
+    @NonNull
+    public static DbTuning performance() {
+        return builder()
+                .writeAheadLogging(true)
+                .synchronous(Synchronous.NORMAL)
+                .cacheSizeKib(PERFORMANCE_CACHE_SIZE_KIB)
+                .tempStoreInMemory(true)
+                .mmapSize(PERFORMANCE_MMAP_SIZE)
+                .deferForeignKeys(true)
+                .build();
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new AutoValue_DbTuning.Builder()
+                .writeAheadLogging(false)
+                .tempStoreInMemory(false)
+                .deferForeignKeys(false);
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder writeAheadLogging(boolean writeAheadLogging);
+
+        public abstract Builder synchronous(@Nullable Synchronous synchronous);
+
+        public abstract Builder cacheSizeKib(@Nullable Integer cacheSizeKib);
+
+        public abstract Builder tempStoreInMemory(boolean tempStoreInMemory);
+
+        public abstract Builder mmapSize(@Nullable Long mmapSize);
+
+        public abstract Builder deferForeignKeys(boolean deferForeignKeys);
+
+        public abstract DbTuning build();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list backed by a cursor. Rows are mapped to models on first access and then kept,
+ * so that large query results can be displayed without creating all models up front.
+ * <p>
+ * The list holds the cursor open until {@link #close()} is called, and must be accessed from
+ * a single thread.
+ */
+public final class LazyCursorList<T> extends AbstractList<T> implements RandomAccess, Closeable {
+    private final Cursor cursor;
+    private final CursorMapper.RowMapper<T> rowMapper;
+    private final Object[] models;
+
+    public LazyCursorList(@NonNull Cursor cursor, @NonNull CursorMapper<T> mapper) {
+        this.cursor = cursor;
+        this.rowMapper = mapper.bind(cursor);
+        this.models = new Object[cursor.getCount()];
+    }
+
+    /**
+     * Runs the query and wraps the resulting cursor without reading any rows.
+     */
+    @NonNull
+    public static <T> LazyCursorList<T> query(@NonNull DatabaseAdapter databaseAdapter,
+                                              @NonNull CursorMapper<T> mapper,
+                                              @NonNull String sql, String... selectionArgs) {
+        return new LazyCursorList<>(databaseAdapter.query(sql, selectionArgs), mapper);
+    }
+
+    /**
+     * Runs the query and maps the first row only.
+     *
+     * @return model of the first row, or null if the query returned no rows
+     */
+    @Nullable
+    public static <T> T queryFirst(@NonNull DatabaseAdapter databaseAdapter,
+                                   @NonNull CursorMapper<T> mapper,
+                                   @NonNull String sql, String... selectionArgs) {
+        LazyCursorList<T> rows = query(databaseAdapter, mapper, sql, selectionArgs);
+        try {
+            return rows.isEmpty() ? null : rows.get(0);
+        } finally {
+            rows.close();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= models.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + models.length);
+        }
+
+        if (models[index] == null) {
+            if (cursor.isClosed()) {
+                throw new IllegalStateException("Cursor has been closed");
+            }
+            cursor.moveToPosition(index);
+            models[index] = rowMapper.map(cursor);
+        }
+        return (T) models[index];
+    }
+
+    @Override
+    public int size() {
+        return models.length;
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
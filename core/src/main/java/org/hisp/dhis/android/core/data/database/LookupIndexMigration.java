@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.dataelement.DataElementModel;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitProgramLinkModel;
+import org.hisp.dhis.android.core.program.ProgramIndicatorModel;
+import org.hisp.dhis.android.core.program.ProgramModel;
+import org.hisp.dhis.android.core.program.ProgramRuleActionModel;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+import org.hisp.dhis.android.core.program.ProgramStageDataElementModel;
+import org.hisp.dhis.android.core.program.ProgramStageModel;
+import org.hisp.dhis.android.core.program.ProgramStageSectionModel;
+import org.hisp.dhis.android.core.program.ProgramStageSectionProgramIndicatorLinkModel;
+import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttributeModel;
+import org.hisp.dhis.android.core.relationship.RelationshipModel;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceModel;
+import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkModel;
+import org.hisp.dhis.android.core.user.UserRoleProgramLinkModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adds indexes on foreign key and lookup columns. Uid columns and the leading columns of
+ * UNIQUE constraints are already indexed by SQLite and are left out.
+ */
+@SuppressWarnings("PMD.ExcessiveImports")
+final class LookupIndexMigration implements DbMigration {
+    static final int VERSION = 2;
+
+    static final List<String> INDEXES = Collections.unmodifiableList(indexes());
+
+    @Override
+    public int version() {
+        return VERSION;
+    }
+
+    @Override
+    public void migrate(@NonNull SQLiteDatabase database) {
+        for (String index : INDEXES) {
+            database.execSQL(index);
+        }
+    }
+
+    /**
+     * @return name of the index created by this migration on the given columns
+     */
+    static String indexName(String table, String... columns) {
+        StringBuilder builder = new StringBuilder("index_").append(table);
+        for (String column : columns) {
+            builder.append('_').append(column);
+        }
+        return builder.toString();
+    }
+
+    static String createIndex(String table, String... columns) {
+        StringBuilder builder = new StringBuilder("CREATE INDEX IF NOT EXISTS ")
+                .append(indexName(table, columns))
+                .append(" ON ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(columns[i]);
+        }
+        return builder.append(");").toString();
+    }
+
+    @SuppressWarnings("PMD.ExcessiveMethodLength")
+    private static List<String> indexes() {
+        List<String> indexes = new ArrayList<>();
+
+        // metadata
+        indexes.add(createIndex(OrganisationUnitModel.TABLE, OrganisationUnitModel.Columns.PARENT));
+        indexes.add(createIndex(OrganisationUnitModel.TABLE, OrganisationUnitModel.Columns.PATH));
+        indexes.add(createIndex(UserOrganisationUnitLinkModel.TABLE,
+                UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT));
+        indexes.add(createIndex(OrganisationUnitProgramLinkModel.ORGANISATION_UNIT_PROGRAM_LINK,
+                OrganisationUnitProgramLinkModel.Columns.PROGRAM));
+        indexes.add(createIndex(UserRoleProgramLinkModel.TABLE, UserRoleProgramLinkModel.Columns.PROGRAM));
+        indexes.add(createIndex(OptionModel.TABLE, OptionModel.Columns.OPTION_SET));
+        indexes.add(createIndex(DataElementModel.TABLE, DataElementModel.Columns.OPTION_SET));
+        indexes.add(createIndex(TrackedEntityAttributeModel.TABLE, TrackedEntityAttributeModel.Columns.OPTION_SET));
+        indexes.add(createIndex(ProgramModel.TABLE, ProgramModel.Columns.RELATIONSHIP_TYPE));
+        indexes.add(createIndex(ProgramModel.TABLE, ProgramModel.Columns.RELATED_PROGRAM));
+        indexes.add(createIndex(ProgramModel.TABLE, ProgramModel.Columns.TRACKED_ENTITY));
+        indexes.add(createIndex(ProgramStageModel.TABLE, ProgramStageModel.Columns.PROGRAM));
+        indexes.add(createIndex(ProgramStageSectionModel.TABLE, ProgramStageSectionModel.Columns.PROGRAM_STAGE));
+        indexes.add(createIndex(ProgramStageDataElementModel.TABLE,
+                ProgramStageDataElementModel.Columns.PROGRAM_STAGE));
+        indexes.add(createIndex(ProgramStageDataElementModel.TABLE,
+                ProgramStageDataElementModel.Columns.DATA_ELEMENT));
+        indexes.add(createIndex(ProgramStageDataElementModel.TABLE,
+                ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION));
+        indexes.add(createIndex(ProgramStageSectionProgramIndicatorLinkModel.TABLE,
+                ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_INDICATOR));
+        indexes.add(createIndex(ProgramTrackedEntityAttributeModel.TABLE,
+                ProgramTrackedEntityAttributeModel.Columns.PROGRAM));
+        indexes.add(createIndex(ProgramTrackedEntityAttributeModel.TABLE,
+                ProgramTrackedEntityAttributeModel.Columns.TRACKED_ENTITY_ATTRIBUTE));
+        indexes.add(createIndex(ProgramIndicatorModel.TABLE, ProgramIndicatorModel.Columns.PROGRAM));
+        indexes.add(createIndex(ProgramRuleModel.TABLE, ProgramRuleModel.Columns.PROGRAM));
+        indexes.add(createIndex(ProgramRuleModel.TABLE, ProgramRuleModel.Columns.PROGRAM_STAGE));
+        indexes.add(createIndex(ProgramRuleVariableModel.TABLE, ProgramRuleVariableModel.Columns.PROGRAM));
+        indexes.add(createIndex(ProgramRuleVariableModel.TABLE, ProgramRuleVariableModel.Columns.PROGRAM_STAGE));
+        indexes.add(createIndex(ProgramRuleVariableModel.TABLE,
+                ProgramRuleVariableModel.Columns.TRACKED_ENTITY_ATTRIBUTE));
+        indexes.add(createIndex(ProgramRuleVariableModel.TABLE, ProgramRuleVariableModel.Columns.DATA_ELEMENT));
+        indexes.add(createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.PROGRAM_RULE));
+        indexes.add(createIndex(ProgramRuleActionModel.TABLE,
+                ProgramRuleActionModel.Columns.TRACKED_ENTITY_ATTRIBUTE));
+        indexes.add(createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.PROGRAM_INDICATOR));
+        indexes.add(createIndex(ProgramRuleActionModel.TABLE,
+                ProgramRuleActionModel.Columns.PROGRAM_STAGE_SECTION));
+        indexes.add(createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.PROGRAM_STAGE));
+        indexes.add(createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.DATA_ELEMENT));
+        indexes.add(createIndex(ResourceModel.TABLE, ResourceModel.Columns.RESOURCE_TYPE));
+
+        // data
+        indexes.add(createIndex(TrackedEntityInstanceModel.TABLE,
+                TrackedEntityInstanceModel.Columns.ORGANISATION_UNIT));
+        indexes.add(createIndex(TrackedEntityInstanceModel.TABLE, TrackedEntityInstanceModel.Columns.TRACKED_ENTITY));
+        indexes.add(createIndex(EnrollmentModel.TABLE, EnrollmentModel.Columns.ORGANISATION_UNIT));
+        indexes.add(createIndex(EnrollmentModel.TABLE, EnrollmentModel.Columns.PROGRAM));
+        indexes.add(createIndex(EnrollmentModel.TABLE, EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE));
+        indexes.add(createIndex(EventModel.TABLE, EventModel.Columns.ENROLLMENT_UID));
+        indexes.add(createIndex(EventModel.TABLE, EventModel.Columns.PROGRAM));
+        indexes.add(createIndex(EventModel.TABLE, EventModel.Columns.PROGRAM_STAGE));
+        indexes.add(createIndex(EventModel.TABLE, EventModel.Columns.ORGANISATION_UNIT));
+        indexes.add(createIndex(RelationshipModel.TABLE, RelationshipModel.Columns.RELATIONSHIP_TYPE));
+        indexes.add(createIndex(RelationshipModel.TABLE, RelationshipModel.Columns.TRACKED_ENTITY_INSTANCE_A));
+        indexes.add(createIndex(RelationshipModel.TABLE, RelationshipModel.Columns.TRACKED_ENTITY_INSTANCE_B));
+
+        // data values are looked up by event / instance and data element / attribute
+        indexes.add(createIndex(TrackedEntityDataValueModel.TABLE,
+                TrackedEntityDataValueModel.Columns.EVENT, TrackedEntityDataValueModel.Columns.DATA_ELEMENT));
+        indexes.add(createIndex(TrackedEntityDataValueModel.TABLE, TrackedEntityDataValueModel.Columns.DATA_ELEMENT));
+        indexes.add(createIndex(TrackedEntityAttributeValueModel.TABLE,
+                TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE,
+                TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_ATTRIBUTE));
+        indexes.add(createIndex(TrackedEntityAttributeValueModel.TABLE,
+                TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_ATTRIBUTE));
+
+        return indexes;
+    }
+}
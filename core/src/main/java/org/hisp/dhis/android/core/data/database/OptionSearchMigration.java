@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.option.OptionSearchModel;
+import org.hisp.dhis.android.core.option.OptionSearchModel.Columns;
+import org.hisp.dhis.android.core.option.OptionSearchStoreImpl;
+import org.hisp.dhis.android.core.option.OptionSearchTokens;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hisp.dhis.android.core.data.database.LookupIndexMigration.createIndex;
+
+/**
+ * Creates the option search table and fills it with the options which are already stored, as option
+ * sets which have not changed are not downloaded again. FTS tables are not used, as external content
+ * tables need a newer SQLite version than the oldest supported Android release ships with; the search
+ * table is an ordinary table with an index covering prefix searches per option set instead.
+ */
+final class OptionSearchMigration implements DbMigration {
+    static final int VERSION = 7;
+
+    static final String CREATE_OPTION_SEARCH_TABLE = "CREATE TABLE " + OptionSearchModel.TABLE + " (" +
+            Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+            Columns.OPTION + " TEXT NOT NULL," +
+            Columns.OPTION_SET + " TEXT NOT NULL," +
+            Columns.TOKEN + " TEXT NOT NULL," +
+            Columns.PRIORITY + " INTEGER NOT NULL," +
+            Columns.SORT_NAME + " TEXT," +
+            " FOREIGN KEY (" + Columns.OPTION + ")" +
+            " REFERENCES " + OptionModel.TABLE + " (" + OptionModel.Columns.UID + ")" +
+            " ON DELETE CASCADE DEFERRABLE INITIALLY DEFERRED" + ");";
+
+    static final List<String> INDEXES = Collections.unmodifiableList(Arrays.asList(
+            createIndex(OptionSearchModel.TABLE, Columns.OPTION_SET, Columns.TOKEN, Columns.PRIORITY,
+                    Columns.OPTION, Columns.SORT_NAME),
+            createIndex(OptionSearchModel.TABLE, Columns.OPTION)
+    ));
+
+    private static final String QUERY_OPTIONS = "SELECT " + OptionModel.Columns.UID + ", " +
+            OptionModel.Columns.OPTION_SET + ", " + OptionModel.Columns.CODE + ", " +
+            OptionModel.Columns.NAME + ", " + OptionModel.Columns.DISPLAY_NAME + " FROM " + OptionModel.TABLE;
+
+    @Override
+    public int version() {
+        return VERSION;
+    }
+
+    @Override
+    public void migrate(@NonNull SQLiteDatabase database) {
+        database.execSQL(CREATE_OPTION_SEARCH_TABLE);
+        for (String index : INDEXES) {
+            database.execSQL(index);
+        }
+
+        SQLiteStatement insertStatement = database.compileStatement(OptionSearchStoreImpl.INSERT_STATEMENT);
+        Cursor cursor = database.rawQuery(QUERY_OPTIONS, null);
+        try {
+            while (cursor.moveToNext()) {
+                String sortName = OptionSearchTokens.sortName(cursor.getString(3), cursor.getString(4));
+                Map<String, Integer> tokens = OptionSearchTokens.tokens(
+                        cursor.getString(2), cursor.getString(3), cursor.getString(4));
+                for (Map.Entry<String, Integer> token : tokens.entrySet()) {
+                    insertStatement.bindString(1, cursor.getString(0));
+                    insertStatement.bindString(2, cursor.getString(1));
+                    insertStatement.bindString(3, token.getKey());
+                    insertStatement.bindLong(4, token.getValue());
+                    insertStatement.bindString(5, sortName);
+                    insertStatement.executeInsert();
+                }
+            }
+        } finally {
+            cursor.close();
+            insertStatement.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureModel;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureModel.Columns;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureStoreImpl;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitTree;
+
+import java.util.List;
+
+/**
+ * Creates the organisation unit closure table and fills it from the paths of the organisation units
+ * which are already stored. Ancestors are not necessarily stored themselves, so the table has no
+ * foreign keys; rows are looked up by ancestor through the unique constraint, and by descendant
+ * through an index.
+ */
+final class OrganisationUnitClosureMigration implements DbMigration {
+    static final int VERSION = 4;
+
+    static final String CREATE_CLOSURE_TABLE = "CREATE TABLE " + OrganisationUnitClosureModel.TABLE + " (" +
+            Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+            Columns.ANCESTOR + " TEXT NOT NULL," +
+            Columns.DESCENDANT + " TEXT NOT NULL," +
+            Columns.DEPTH + " INTEGER NOT NULL," +
+            " UNIQUE (" + Columns.ANCESTOR + ", " + Columns.DESCENDANT + ")" + ");";
+
+    static final String CREATE_DESCENDANT_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            LookupIndexMigration.indexName(OrganisationUnitClosureModel.TABLE, Columns.DESCENDANT) +
+            " ON " + OrganisationUnitClosureModel.TABLE + " (" + Columns.DESCENDANT + ");";
+
+    private static final String QUERY_PATHS = "SELECT " + OrganisationUnitModel.Columns.UID + ", " +
+            OrganisationUnitModel.Columns.PATH + " FROM " + OrganisationUnitModel.TABLE;
+
+    @Override
+    public int version() {
+        return VERSION;
+    }
+
+    @Override
+    public void migrate(@NonNull SQLiteDatabase database) {
+        database.execSQL(CREATE_CLOSURE_TABLE);
+        database.execSQL(CREATE_DESCENDANT_INDEX);
+
+        SQLiteStatement insertStatement = database.compileStatement(OrganisationUnitClosureStoreImpl.INSERT_STATEMENT);
+        Cursor cursor = database.rawQuery(QUERY_PATHS, null);
+        try {
+            while (cursor.moveToNext()) {
+                String uid = cursor.getString(0);
+                List<String> ancestors = OrganisationUnitTree.closureUids(uid, cursor.getString(1));
+                int size = ancestors.size();
+                for (int i = 0; i < size; i++) {
+                    insertStatement.bindString(1, ancestors.get(i));
+                    insertStatement.bindString(2, uid);
+                    insertStatement.bindLong(3, size - 1 - i);
+                    insertStatement.executeInsert();
+                }
+            }
+        } finally {
+            cursor.close();
+            insertStatement.close();
+        }
+    }
+}
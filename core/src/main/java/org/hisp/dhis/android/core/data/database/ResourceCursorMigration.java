@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.resource.ResourceCursorModel;
+import org.hisp.dhis.android.core.resource.ResourceCursorModel.Columns;
+
+/**
+ * Creates the page cursor table, which lets paged downloads resume from the page at which
+ * they were interrupted.
+ */
+final class ResourceCursorMigration implements DbMigration {
+    static final int VERSION = 3;
+
+    static final String CREATE_RESOURCE_CURSOR_TABLE = "CREATE TABLE " + ResourceCursorModel.TABLE + " (" +
+            Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+            Columns.RESOURCE_TYPE + " TEXT NOT NULL," +
+            Columns.SCOPE + " TEXT NOT NULL," +
+            Columns.STARTED + " TEXT," +
+            Columns.NEXT_PAGE + " INTEGER," +
+            " UNIQUE (" + Columns.RESOURCE_TYPE + ", " + Columns.SCOPE + ")" + ");";
+
+    @Override
+    public int version() {
+        return VERSION;
+    }
+
+    @Override
+    public void migrate(@NonNull SQLiteDatabase database) {
+        database.execSQL(CREATE_RESOURCE_CURSOR_TABLE);
+    }
+}
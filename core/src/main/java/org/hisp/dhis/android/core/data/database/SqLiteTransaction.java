@@ -66,6 +66,11 @@ public class SqLiteTransaction implements Transaction {
     @Override
     public void begin() {
         database().beginTransaction();
+
+        if (dbOpenHelper.tuning().deferForeignKeys()) {
+            // reset by SQLite at the end of every transaction
+            database().execSQL("PRAGMA defer_foreign_keys = ON;");
+        }
     }
 
     /**
@@ -27,36 +27,54 @@
  */
 package org.hisp.dhis.android.core.dataelement;
 
-import org.hisp.dhis.android.core.option.OptionSetHandler;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.PersistedUidRegistry;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
 public class DataElementHandler {
     private final DataElementStore dataElementStore;
-    private final OptionSetHandler optionSetHandler;
+    private final PersistedUidRegistry persistedUidRegistry;
+    private final MetadataChanges metadataChanges;
 
+    /**
+     * Only the uid of the option set of a data element is persisted: programs only request the uid and
+     * version of option sets, and the option sets themselves are persisted by the option set call.
+     *
+     * @param persistedUidRegistry if not null, every data element is persisted at most once
+     *                             for the lifetime of the registry
+     * @param metadataChanges      records the data elements which are persisted or deleted
+     */
     public DataElementHandler(DataElementStore dataElementStore,
-                              OptionSetHandler optionSetHandler) {
+                              @Nullable PersistedUidRegistry persistedUidRegistry,
+                              MetadataChanges metadataChanges) {
         this.dataElementStore = dataElementStore;
-        this.optionSetHandler = optionSetHandler;
+        this.persistedUidRegistry = persistedUidRegistry;
+        this.metadataChanges = metadataChanges;
     }
 
     public void handleDataElement(DataElement dataElement) {
         if (dataElement == null) {
             return;
         }
+        if (persistedUidRegistry != null && !persistedUidRegistry.register(DataElement.class, dataElement.uid())) {
+            return;
+        }
         deleteOrPersistDataElement(dataElement);
     }
 
     /**
      * Deletes or persists data elements and applies changes to database.
-     * This method has a nested call to deleteOrPersistOptionSets
      *
      * @param dataElement
      */
     private void deleteOrPersistDataElement(DataElement dataElement) {
         if (isDeleted(dataElement)) {
             dataElementStore.delete(dataElement.uid());
+            metadataChanges.deleted(MetadataType.DATA_ELEMENT, dataElement.uid());
         } else {
             String optionSetUid = null;
 
@@ -81,9 +99,7 @@ public class DataElementHandler {
                         dataElement.numberType(), dataElement.domainType(), dataElement.dimension(),
                         dataElement.displayFormName(), optionSetUid);
             }
+            metadataChanges.changed(MetadataType.DATA_ELEMENT, dataElement.uid());
         }
-
-        optionSetHandler.handleOptionSet(dataElement.optionSet());
-
     }
 }
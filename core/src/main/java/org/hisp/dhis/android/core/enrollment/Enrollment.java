@@ -35,8 +35,14 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.common.Coordinates;
+import org.hisp.dhis.android.core.data.api.Field;
+import org.hisp.dhis.android.core.data.api.NestedField;
+import org.hisp.dhis.android.core.event.Event;
 
 import java.util.Date;
+import java.util.List;
+
+import static org.hisp.dhis.android.core.utils.Utils.safeUnmodifiableList;
 
 @AutoValue
 public abstract class Enrollment {
@@ -51,6 +57,20 @@ public abstract class Enrollment {
     private static final String ENROLLMENT_STATUS = "status";
     private static final String TRACKED_ENTITY_INSTANCE = "trackedEntityInstance";
     private static final String COORDINATE = "coordinate";
+    private static final String EVENTS = "events";
+
+    public static final Field<Enrollment, String> uid = Field.create(UID);
+    public static final Field<Enrollment, Date> created = Field.create(CREATED);
+    public static final Field<Enrollment, Date> lastUpdated = Field.create(LAST_UPDATED);
+    public static final Field<Enrollment, String> organisationUnit = Field.create(ORGANISATION_UNIT);
+    public static final Field<Enrollment, String> program = Field.create(PROGRAM);
+    public static final Field<Enrollment, Date> dateOfEnrollment = Field.create(DATE_OF_ENROLLMENT);
+    public static final Field<Enrollment, Date> dateOfIncident = Field.create(DATE_OF_INCIDENT);
+    public static final Field<Enrollment, Boolean> followUp = Field.create(FOLLOW_UP);
+    public static final Field<Enrollment, EnrollmentStatus> enrollmentStatus = Field.create(ENROLLMENT_STATUS);
+    public static final Field<Enrollment, String> trackedEntityInstance = Field.create(TRACKED_ENTITY_INSTANCE);
+    public static final Field<Enrollment, Coordinates> coordinate = Field.create(COORDINATE);
+    public static final NestedField<Enrollment, Event> events = NestedField.create(EVENTS);
 
     @JsonProperty(UID)
     public abstract String uid();
@@ -95,6 +115,10 @@ public abstract class Enrollment {
     @JsonProperty(COORDINATE)
     public abstract Coordinates coordinate();
 
+    @Nullable
+    @JsonProperty(EVENTS)
+    public abstract List<Event> events();
+
     @JsonCreator
     public static Enrollment create(
             @JsonProperty(UID) String uid,
@@ -107,9 +131,10 @@ public abstract class Enrollment {
             @JsonProperty(FOLLOW_UP) Boolean followUp,
             @JsonProperty(ENROLLMENT_STATUS) EnrollmentStatus enrollmentStatus,
             @JsonProperty(TRACKED_ENTITY_INSTANCE) String trackedEntityInstance,
-            @JsonProperty(COORDINATE) Coordinates coordinate) {
+            @JsonProperty(COORDINATE) Coordinates coordinate,
+            @JsonProperty(EVENTS) List<Event> events) {
         return new AutoValue_Enrollment(uid, created, lastUpdated, organisationUnit, program,
                 dateOfEnrollment, dateOfIncident, followUp, enrollmentStatus, trackedEntityInstance,
-                coordinate);
+                coordinate, safeUnmodifiableList(events));
     }
 }
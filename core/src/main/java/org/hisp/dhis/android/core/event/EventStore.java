@@ -52,5 +52,7 @@ public interface EventStore {
                 @Nullable State state
     );
 
+    int delete(@NonNull String uid);
+
     void close();
 }
@@ -59,12 +59,17 @@ public class EventStoreImpl implements EventStore {
             Columns.STATE + ") " +
             "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String DELETE_STATEMENT = "DELETE FROM " + EventModel.TABLE +
+            " WHERE " + Columns.UID + " =?;";
+
     private final SQLiteStatement sqLiteStatement;
+    private final SQLiteStatement deleteStatement;
     private final DatabaseAdapter databaseAdapter;
 
     public EventStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
         this.sqLiteStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
     }
 
     @Override
@@ -95,8 +100,19 @@ public class EventStoreImpl implements EventStore {
         return databaseAdapter.executeInsert(EventModel.TABLE, sqLiteStatement);
     }
 
+    @Override
+    public int delete(@NonNull String uid) {
+        sqLiteBind(deleteStatement, 1, uid);
+
+        int delete = databaseAdapter.executeUpdateDelete(EventModel.TABLE, deleteStatement);
+        deleteStatement.clearBindings();
+
+        return delete;
+    }
+
     @Override
     public void close() {
         sqLiteStatement.close();
+        deleteStatement.close();
     }
 }
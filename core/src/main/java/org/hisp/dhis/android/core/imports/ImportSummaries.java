@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.imports;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summaries of an import. The server returns them at the root of the response if all objects were
+ * imported, but wraps them into a web message if some of them could not be imported (409 Conflict).
+ * Both forms are read into the same model.
+ */
+@AutoValue
+public abstract class ImportSummaries {
+    private static final String IMPORT_SUMMARIES = "importSummaries";
+    private static final String RESPONSE = "response";
+
+    @NonNull
+    @JsonProperty(IMPORT_SUMMARIES)
+    public abstract List<ImportSummary> importSummaries();
+
+    /**
+     * @return the summaries by the uid of the imported object
+     */
+    @NonNull
+    public Map<String, ImportSummary> byReference() {
+        Map<String, ImportSummary> summaries = new HashMap<>();
+        for (ImportSummary summary : importSummaries()) {
+            if (summary.reference() != null) {
+                summaries.put(summary.reference(), summary);
+            }
+        }
+        return summaries;
+    }
+
+    @JsonCreator
+    public static ImportSummaries create(
+            @JsonProperty(IMPORT_SUMMARIES) List<ImportSummary> importSummaries,
+            @JsonProperty(RESPONSE) ImportSummaries response) {
+        if (importSummaries == null) {
+            importSummaries = response == null ? Collections.<ImportSummary>emptyList() : response.importSummaries();
+        }
+        return new AutoValue_ImportSummaries(Collections.unmodifiableList(importSummaries));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.imports;
+
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Outcome of importing a single tracked entity instance, enrollment or event. The summaries of
+ * enrollments are nested in the summary of their instance, the ones of events in the summary of
+ * their enrollment.
+ */
+@AutoValue
+public abstract class ImportSummary {
+    private static final String STATUS = "status";
+    private static final String REFERENCE = "reference";
+    private static final String ENROLLMENTS = "enrollments";
+    private static final String EVENTS = "events";
+
+    @Nullable
+    @JsonProperty(STATUS)
+    public abstract ImportStatus status();
+
+    /**
+     * @return uid of the imported object
+     */
+    @Nullable
+    @JsonProperty(REFERENCE)
+    public abstract String reference();
+
+    @Nullable
+    @JsonProperty(ENROLLMENTS)
+    public abstract ImportSummaries enrollments();
+
+    @Nullable
+    @JsonProperty(EVENTS)
+    public abstract ImportSummaries events();
+
+    @JsonCreator
+    public static ImportSummary create(
+            @JsonProperty(STATUS) ImportStatus status,
+            @JsonProperty(REFERENCE) String reference,
+            @JsonProperty(ENROLLMENTS) ImportSummaries enrollments,
+            @JsonProperty(EVENTS) ImportSummaries events) {
+        return new AutoValue_ImportSummary(status, reference, enrollments, events);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.metadata;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.dataelement.DataElementModel;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.option.OptionSetModel;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramStageDataElementModel;
+import org.hisp.dhis.android.core.program.ProgramStageModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory copy of the metadata which is read every time a data entry form is rendered. Every
+ * {@link MetadataType} has its own least recently used cache, whose capacity is a number of entries;
+ * a list, such as the options of a set, counts as a single entry.
+ * <p>
+ * The cache is owned by {@link org.hisp.dhis.android.core.D2}. The calls which write metadata collect
+ * what they change in {@link MetadataChanges}, and the sync which runs them {@link #invalidate(MetadataChanges)
+ * invalidates} the cache once its transaction has been committed.
+ */
+@SuppressWarnings("PMD.ExcessiveImports")
+public final class MetadataCache {
+    private final MetadataStore metadataStore;
+    private final Map<MetadataType, LruCache<String, Object>> caches = new EnumMap<>(MetadataType.class);
+
+    // incremented on every invalidation, so that a stale read does not overwrite it
+    private int generation;
+
+    public MetadataCache(@NonNull MetadataStore metadataStore) {
+        this(metadataStore, Collections.<MetadataType, Integer>emptyMap());
+    }
+
+    /**
+     * @param capacities the number of entries to keep per type; types which are missing keep their
+     *                   {@link MetadataType#defaultCapacity()}
+     */
+    public MetadataCache(@NonNull MetadataStore metadataStore, @NonNull Map<MetadataType, Integer> capacities) {
+        this.metadataStore = metadataStore;
+        for (MetadataType type : MetadataType.values()) {
+            Integer capacity = capacities.get(type);
+            caches.put(type, new LruCache<String, Object>(capacity == null ? type.defaultCapacity() : capacity));
+        }
+    }
+
+    @Nullable
+    public ProgramStageModel programStage(@NonNull String uid) {
+        return get(MetadataType.PROGRAM_STAGE, uid, new Loader<ProgramStageModel>() {
+            @Override
+            ProgramStageModel load(String key) {
+                return metadataStore.queryProgramStage(key);
+            }
+        });
+    }
+
+    @NonNull
+    public List<ProgramStageDataElementModel> programStageDataElements(@NonNull String programStage) {
+        return get(MetadataType.PROGRAM_STAGE_DATA_ELEMENTS, programStage,
+                new Loader<List<ProgramStageDataElementModel>>() {
+                    @Override
+                    List<ProgramStageDataElementModel> load(String key) {
+                        return Collections.unmodifiableList(metadataStore.queryProgramStageDataElements(key));
+                    }
+                });
+    }
+
+    @Nullable
+    public DataElementModel dataElement(@NonNull String uid) {
+        return get(MetadataType.DATA_ELEMENT, uid, new Loader<DataElementModel>() {
+            @Override
+            DataElementModel load(String key) {
+                return metadataStore.queryDataElement(key);
+            }
+        });
+    }
+
+    @Nullable
+    public OptionSetModel optionSet(@NonNull String uid) {
+        return get(MetadataType.OPTION_SET, uid, new Loader<OptionSetModel>() {
+            @Override
+            OptionSetModel load(String key) {
+                return metadataStore.queryOptionSet(key);
+            }
+        });
+    }
+
+    @NonNull
+    public List<OptionModel> options(@NonNull String optionSet) {
+        return get(MetadataType.OPTIONS, optionSet, new Loader<List<OptionModel>>() {
+            @Override
+            List<OptionModel> load(String key) {
+                return Collections.unmodifiableList(metadataStore.queryOptions(key));
+            }
+        });
+    }
+
+    @NonNull
+    public List<ProgramRuleModel> programRules(@NonNull String program) {
+        return get(MetadataType.PROGRAM_RULES, program, new Loader<List<ProgramRuleModel>>() {
+            @Override
+            List<ProgramRuleModel> load(String key) {
+                return Collections.unmodifiableList(metadataStore.queryProgramRules(key));
+            }
+        });
+    }
+
+    /**
+     * Drops the entries which have been affected by the changes, keeping the rest of the cache.
+     */
+    public void invalidate(@NonNull MetadataChanges changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            generation++;
+            for (Map.Entry<MetadataType, LruCache<String, Object>> cache : caches.entrySet()) {
+                if (changes.changedType(cache.getKey())) {
+                    cache.getValue().clear();
+                } else {
+                    for (String key : changes.changedKeys(cache.getKey())) {
+                        cache.getValue().remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            generation++;
+            for (LruCache<String, Object> cache : caches.values()) {
+                cache.clear();
+            }
+        }
+    }
+
+    @NonNull
+    public List<MetadataCacheStats> stats() {
+        List<MetadataCacheStats> stats = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<MetadataType, LruCache<String, Object>> cache : caches.entrySet()) {
+                LruCache<String, Object> lruCache = cache.getValue();
+                stats.add(MetadataCacheStats.create(cache.getKey(), lruCache.capacity(), lruCache.size(),
+                        lruCache.hitCount(), lruCache.missCount(), lruCache.evictionCount()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the cached value of the key, reading it from the store on a miss. The store is queried
+     * without holding a lock, since the query can wait for a transaction which invalidates the cache.
+     * Missing rows are not cached, so that they are found once they have been synced.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T get(MetadataType type, String key, Loader<T> loader) {
+        int queryGeneration;
+        synchronized (this) {
+            Object value = caches.get(type).get(key);
+            if (value != null) {
+                return (T) value;
+            }
+            queryGeneration = generation;
+        }
+
+        T value = loader.load(key);
+
+        if (value != null) {
+            synchronized (this) {
+                if (queryGeneration == generation) {
+                    caches.get(type).put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    private abstract static class Loader<T> {
+        abstract T load(String key);
+    }
+}
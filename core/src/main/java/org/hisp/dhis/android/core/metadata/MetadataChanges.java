@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.metadata;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the cache entries which are affected by the metadata written during a sync. Handlers record
+ * every object they persist or delete, and the sync applies the changes to the {@link MetadataCache}
+ * once its outermost transaction has been committed, so that no reader caches rows which are about to
+ * change.
+ * <p>
+ * Instances are not thread safe and are meant to live for the duration of a single sync.
+ */
+public final class MetadataChanges {
+    private final Map<MetadataType, Set<String>> changedKeys = new EnumMap<>(MetadataType.class);
+    private final Set<MetadataType> changedTypes = EnumSet.noneOf(MetadataType.class);
+    private boolean allChanged;
+
+    /**
+     * Records that the entry of the key has been inserted or updated.
+     *
+     * @param key the key of the entry, or null if it is not known, in which case all entries of the type
+     *            are invalidated
+     */
+    public void changed(@NonNull MetadataType type, @Nullable String key) {
+        if (key == null) {
+            changedTypes.add(type);
+            return;
+        }
+
+        Set<String> keys = changedKeys.get(type);
+        if (keys == null) {
+            keys = new HashSet<>();
+            changedKeys.put(type, keys);
+        }
+        keys.add(key);
+    }
+
+    /**
+     * Records that the entry of the key has been deleted. Rows of other types may have been deleted along
+     * with it, so all entries of those types are invalidated.
+     */
+    public void deleted(@NonNull MetadataType type, @Nullable String key) {
+        changed(type, key);
+        addCascades(type);
+    }
+
+    /**
+     * Records a change which can affect any entry, such as the deletion of a program.
+     */
+    public void changedAll() {
+        allChanged = true;
+    }
+
+    private void addCascades(MetadataType type) {
+        for (MetadataType cascade : type.cascades()) {
+            if (changedTypes.add(cascade)) {
+                addCascades(cascade);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return !allChanged && changedTypes.isEmpty() && changedKeys.isEmpty();
+    }
+
+    boolean changedType(@NonNull MetadataType type) {
+        return allChanged || changedTypes.contains(type);
+    }
+
+    @NonNull
+    Set<String> changedKeys(@NonNull MetadataType type) {
+        Set<String> keys = changedKeys.get(type);
+        return keys == null ? new HashSet<String>() : keys;
+    }
+}
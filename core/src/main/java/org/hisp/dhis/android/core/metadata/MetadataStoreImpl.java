@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.metadata;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.dataelement.DataElementModel;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.option.OptionSetModel;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramStageDataElementModel;
+import org.hisp.dhis.android.core.program.ProgramStageModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MetadataStoreImpl implements MetadataStore {
+    private static final String QUERY_PROGRAM_STAGE = "SELECT * FROM " + ProgramStageModel.TABLE +
+            " WHERE " + ProgramStageModel.Columns.UID + " = ?;";
+
+    private static final String QUERY_PROGRAM_STAGE_DATA_ELEMENTS = "SELECT * FROM " +
+            ProgramStageDataElementModel.TABLE +
+            " WHERE " + ProgramStageDataElementModel.Columns.PROGRAM_STAGE + " = ?" +
+            " ORDER BY " + ProgramStageDataElementModel.Columns.SORT_ORDER + ";";
+
+    private static final String QUERY_DATA_ELEMENT = "SELECT * FROM " + DataElementModel.TABLE +
+            " WHERE " + DataElementModel.Columns.UID + " = ?;";
+
+    private static final String QUERY_OPTION_SET = "SELECT * FROM " + OptionSetModel.TABLE +
+            " WHERE " + OptionSetModel.Columns.UID + " = ?;";
+
+    private static final String QUERY_OPTIONS = "SELECT * FROM " + OptionModel.TABLE +
+            " WHERE " + OptionModel.Columns.OPTION_SET + " = ?" +
+            " ORDER BY " + OptionModel.Columns.ID + ";";
+
+    private static final String QUERY_PROGRAM_RULES = "SELECT * FROM " + ProgramRuleModel.TABLE +
+            " WHERE " + ProgramRuleModel.Columns.PROGRAM + " = ?;";
+
+    private final DatabaseAdapter databaseAdapter;
+
+    public MetadataStoreImpl(@NonNull DatabaseAdapter databaseAdapter) {
+        this.databaseAdapter = databaseAdapter;
+    }
+
+    @Nullable
+    @Override
+    public ProgramStageModel queryProgramStage(@NonNull String uid) {
+        Cursor cursor = databaseAdapter.query(QUERY_PROGRAM_STAGE, uid);
+        try {
+            return cursor.moveToFirst() ? ProgramStageModel.create(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<ProgramStageDataElementModel> queryProgramStageDataElements(@NonNull String programStage) {
+        List<ProgramStageDataElementModel> programStageDataElements = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_PROGRAM_STAGE_DATA_ELEMENTS, programStage);
+        try {
+            while (cursor.moveToNext()) {
+                programStageDataElements.add(ProgramStageDataElementModel.create(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return programStageDataElements;
+    }
+
+    @Nullable
+    @Override
+    public DataElementModel queryDataElement(@NonNull String uid) {
+        Cursor cursor = databaseAdapter.query(QUERY_DATA_ELEMENT, uid);
+        try {
+            return cursor.moveToFirst() ? DataElementModel.create(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Nullable
+    @Override
+    public OptionSetModel queryOptionSet(@NonNull String uid) {
+        Cursor cursor = databaseAdapter.query(QUERY_OPTION_SET, uid);
+        try {
+            return cursor.moveToFirst() ? OptionSetModel.create(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<OptionModel> queryOptions(@NonNull String optionSet) {
+        List<OptionModel> options = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_OPTIONS, optionSet);
+        try {
+            while (cursor.moveToNext()) {
+                options.add(OptionModel.create(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return options;
+    }
+
+    @NonNull
+    @Override
+    public List<ProgramRuleModel> queryProgramRules(@NonNull String program) {
+        List<ProgramRuleModel> programRules = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_PROGRAM_RULES, program);
+        try {
+            while (cursor.moveToNext()) {
+                programRules.add(ProgramRuleModel.create(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return programRules;
+    }
+}
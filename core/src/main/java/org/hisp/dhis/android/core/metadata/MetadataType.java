@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.metadata;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The kinds of metadata held by the {@link MetadataCache}, each in a cache of its own capacity.
+ */
+public enum MetadataType {
+    /**
+     * Program stages by uid
+     */
+    PROGRAM_STAGE(50),
+
+    /**
+     * The program stage data elements of a program stage, by the uid of the stage. Since a program stage
+     * data element can move to another stage, a change of any of them drops the lists of all stages.
+     */
+    PROGRAM_STAGE_DATA_ELEMENTS(50),
+
+    /**
+     * Data elements by uid
+     */
+    DATA_ELEMENT(1000),
+
+    /**
+     * Option sets by uid
+     */
+    OPTION_SET(200),
+
+    /**
+     * The options of an option set, by the uid of the set. Since an option can move to another set,
+     * a change of any option drops the lists of all sets.
+     */
+    OPTIONS(20),
+
+    /**
+     * The program rules of a program, by the uid of the program. Since a program rule can move to another
+     * program, a change of any rule drops the lists of all programs.
+     */
+    PROGRAM_RULES(20);
+
+    private final int defaultCapacity;
+
+    MetadataType(int defaultCapacity) {
+        this.defaultCapacity = defaultCapacity;
+    }
+
+    /**
+     * @return the number of entries which are cached unless another capacity is configured. Lists,
+     * such as the options of a set, count as a single entry.
+     */
+    public int defaultCapacity() {
+        return defaultCapacity;
+    }
+
+    /**
+     * @return the types of which rows are deleted together with a row of this type, through cascading
+     * foreign keys
+     */
+    @NonNull
+    Set<MetadataType> cascades() {
+        switch (this) {
+            case PROGRAM_STAGE:
+                return Collections.unmodifiableSet(EnumSet.of(PROGRAM_STAGE_DATA_ELEMENTS, PROGRAM_RULES));
+            case DATA_ELEMENT:
+                return Collections.unmodifiableSet(EnumSet.of(PROGRAM_STAGE_DATA_ELEMENTS));
+            case OPTION_SET:
+                return Collections.unmodifiableSet(EnumSet.of(OPTIONS, DATA_ELEMENT));
+            default:
+                return Collections.emptySet();
+        }
+    }
+}
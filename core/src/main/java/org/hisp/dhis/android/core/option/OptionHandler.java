@@ -27,15 +27,38 @@
  */
 package org.hisp.dhis.android.core.option;
 
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.PersistedUidRegistry;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
+
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
 public class OptionHandler {
     private final OptionStore optionStore;
+    private final PersistedUidRegistry persistedUidRegistry;
+    private final OptionSearchStore optionSearchStore;
+    private final MetadataChanges metadataChanges;
 
-    public OptionHandler(OptionStore optionStore) {
+    /**
+     * @param persistedUidRegistry if not null, every option is persisted at most once
+     *                             for the lifetime of the registry
+     * @param optionSearchStore    if not null, the option search table is kept up to date with
+     *                             the options which are handled
+     * @param metadataChanges      records the options which are persisted or deleted
+     */
+    public OptionHandler(OptionStore optionStore,
+                         @Nullable PersistedUidRegistry persistedUidRegistry,
+                         @Nullable OptionSearchStore optionSearchStore,
+                         MetadataChanges metadataChanges) {
         this.optionStore = optionStore;
+        this.persistedUidRegistry = persistedUidRegistry;
+        this.optionSearchStore = optionSearchStore;
+        this.metadataChanges = metadataChanges;
     }
 
     public void handleOptions(List<Option> options) {
@@ -48,20 +71,40 @@ public class OptionHandler {
 
     private void deleteOrPersistOptions(List<Option> options) {
         int size = options.size();
+        List<Option> persistedOptions = new ArrayList<>(size);
 
         for (int i = 0; i < size; i++) {
             Option option = options.get(i);
 
+            if (persistedUidRegistry != null && !persistedUidRegistry.register(Option.class, option.uid())) {
+                continue;
+            }
+
+            // an option can move to another set, so the cached options of all sets are dropped
+            metadataChanges.changed(MetadataType.OPTIONS, null);
+
             if (isDeleted(option)) {
                 optionStore.delete(option.uid());
+                if (optionSearchStore != null) {
+                    optionSearchStore.delete(option.uid());
+                }
             } else {
-                int updatedRow = optionStore.update(option.uid(), option.code(), option.name(), option.displayName(),
-                        option.created(), option.lastUpdated(), option.optionSet().uid(), option.uid());
+                persistedOptions.add(option);
+            }
+        }
 
-                if (updatedRow <= 0) {
-                    optionStore.insert(option.uid(), option.code(), option.name(), option.displayName(),
-                            option.created(), option.lastUpdated(), option.optionSet().uid());
-                }
+        if (persistedOptions.isEmpty()) {
+            return;
+        }
+
+        optionStore.upsert(persistedOptions);
+
+        if (optionSearchStore != null) {
+            int persistedSize = persistedOptions.size();
+            for (int i = 0; i < persistedSize; i++) {
+                Option option = persistedOptions.get(i);
+                optionSearchStore.update(option.uid(), option.optionSet().uid(), option.code(), option.name(),
+                        option.displayName());
             }
         }
     }
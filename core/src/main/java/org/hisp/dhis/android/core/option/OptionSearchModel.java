@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.option;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.gabrielittner.auto.value.cursor.ColumnName;
+import com.google.auto.value.AutoValue;
+
+import org.hisp.dhis.android.core.common.BaseModel;
+
+/**
+ * Row of the option search table: a normalized word of the code or name of an option, through which
+ * the option is found by prefix. Words at the start of the code or name have a lower priority value,
+ * and rank first.
+ */
+@AutoValue
+public abstract class OptionSearchModel extends BaseModel {
+    public static final String TABLE = "OptionSearch";
+
+    public static class Columns extends BaseModel.Columns {
+        public static final String OPTION = "option";
+        public static final String OPTION_SET = "optionSet";
+        public static final String TOKEN = "token";
+        public static final String PRIORITY = "priority";
+        public static final String SORT_NAME = "sortName";
+    }
+
+    @Nullable
+    @ColumnName(Columns.OPTION)
+    public abstract String option();
+
+    @Nullable
+    @ColumnName(Columns.OPTION_SET)
+    public abstract String optionSet();
+
+    @Nullable
+    @ColumnName(Columns.TOKEN)
+    public abstract String token();
+
+    @Nullable
+    @ColumnName(Columns.PRIORITY)
+    public abstract Integer priority();
+
+    @Nullable
+    @ColumnName(Columns.SORT_NAME)
+    public abstract String sortName();
+
+    @NonNull
+    public abstract ContentValues toContentValues();
+
+    @NonNull
+    public static OptionSearchModel create(Cursor cursor) {
+        return AutoValue_OptionSearchModel.createFromCursor(cursor);
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new $$AutoValue_OptionSearchModel.Builder();
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder extends BaseModel.Builder<Builder> {
+        public abstract Builder option(@Nullable String option);
+
+        public abstract Builder optionSet(@Nullable String optionSet);
+
+        public abstract Builder token(@Nullable String token);
+
+        public abstract Builder priority(@Nullable Integer priority);
+
+        public abstract Builder sortName(@Nullable String sortName);
+
+        public abstract OptionSearchModel build();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.option;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.option.OptionSearchModel.Columns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
+
+public class OptionSearchStoreImpl implements OptionSearchStore {
+    public static final String INSERT_STATEMENT = "INSERT INTO " + OptionSearchModel.TABLE + " (" +
+            Columns.OPTION + ", " +
+            Columns.OPTION_SET + ", " +
+            Columns.TOKEN + ", " +
+            Columns.PRIORITY + ", " +
+            Columns.SORT_NAME + ") " +
+            "VALUES(?, ?, ?, ?, ?);";
+
+    private static final String DELETE_STATEMENT = "DELETE FROM " + OptionSearchModel.TABLE +
+            " WHERE " + Columns.OPTION + " = ?;";
+
+    // every word is a range scan on the (optionSet, token) index; the best ranked page is selected
+    // from the search table alone, so that only the options on it are read
+    private static final String TOKEN_RANGE = Columns.OPTION_SET + " = ? AND " +
+            Columns.TOKEN + " >= ? AND " + Columns.TOKEN + " < ?";
+
+    private static final String SEARCH_SELECT = "SELECT " + OptionModel.TABLE + ".* FROM (" +
+            "SELECT " + Columns.OPTION + ", MIN(" + Columns.PRIORITY + ") AS " + Columns.PRIORITY + ", " +
+            Columns.SORT_NAME + " FROM " + OptionSearchModel.TABLE + " WHERE " + TOKEN_RANGE;
+
+    private static final String SEARCH_WORD = " AND " + Columns.OPTION + " IN (SELECT " + Columns.OPTION +
+            " FROM " + OptionSearchModel.TABLE + " WHERE " + TOKEN_RANGE + ")";
+
+    private static final String SEARCH_PAGE = " GROUP BY " + Columns.OPTION +
+            " ORDER BY " + Columns.PRIORITY + ", " + Columns.SORT_NAME + " LIMIT %d OFFSET %d) matches" +
+            " INNER JOIN " + OptionModel.TABLE + " ON " +
+            OptionModel.TABLE + "." + OptionModel.Columns.UID + " = matches." + Columns.OPTION +
+            " ORDER BY matches." + Columns.PRIORITY + ", matches." + Columns.SORT_NAME + ";";
+
+    // sorts after every character which can be part of a token
+    private static final char PREFIX_END = '\uffff';
+
+    private final DatabaseAdapter databaseAdapter;
+    private final SQLiteStatement insertStatement;
+    private final SQLiteStatement deleteStatement;
+
+    public OptionSearchStoreImpl(DatabaseAdapter databaseAdapter) {
+        this.databaseAdapter = databaseAdapter;
+        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+    }
+
+    @Override
+    public void update(@NonNull String uid, @NonNull String optionSet, @Nullable String code,
+                       @Nullable String name, @Nullable String displayName) {
+        delete(uid);
+
+        String sortName = OptionSearchTokens.sortName(name, displayName);
+        for (Map.Entry<String, Integer> token : OptionSearchTokens.tokens(code, name, displayName).entrySet()) {
+            sqLiteBind(insertStatement, 1, uid);
+            sqLiteBind(insertStatement, 2, optionSet);
+            sqLiteBind(insertStatement, 3, token.getKey());
+            sqLiteBind(insertStatement, 4, token.getValue());
+            sqLiteBind(insertStatement, 5, sortName);
+            databaseAdapter.executeInsert(OptionSearchModel.TABLE, insertStatement);
+            insertStatement.clearBindings();
+        }
+    }
+
+    @Override
+    public int delete(@NonNull String uid) {
+        sqLiteBind(deleteStatement, 1, uid);
+
+        int returnValue = databaseAdapter.executeUpdateDelete(OptionSearchModel.TABLE, deleteStatement);
+        deleteStatement.clearBindings();
+        return returnValue;
+    }
+
+    @NonNull
+    @Override
+    public List<OptionModel> search(@NonNull String optionSet, @NonNull String query, int offset, int limit) {
+        List<String> words = OptionSearchTokens.words(query);
+        if (words.isEmpty()) {
+            // every token starts with the empty prefix
+            words.add("");
+        }
+
+        StringBuilder sql = new StringBuilder(SEARCH_SELECT);
+        List<String> arguments = new ArrayList<>();
+        addTokenRange(arguments, optionSet, words.get(0));
+        for (int i = 1; i < words.size(); i++) {
+            sql.append(SEARCH_WORD);
+            addTokenRange(arguments, optionSet, words.get(i));
+        }
+        sql.append(String.format(Locale.US, SEARCH_PAGE, limit, offset));
+
+        List<OptionModel> options = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(sql.toString(), arguments.toArray(new String[arguments.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                options.add(OptionModel.create(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return options;
+    }
+
+    private static void addTokenRange(List<String> arguments, String optionSet, String prefix) {
+        arguments.add(optionSet);
+        arguments.add(prefix);
+        arguments.add(prefix + PREFIX_END);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.option;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the code and names of options into the words stored in the option search table. Text is
+ * normalized to lower case without accents, so that 'Sévère' is found by 'sev'.
+ */
+public final class OptionSearchTokens {
+    public static final int PRIORITY_CODE = 0;
+    public static final int PRIORITY_FIRST_WORD = 1;
+    public static final int PRIORITY_WORD = 2;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    private OptionSearchTokens() {
+        // no instances
+    }
+
+    /**
+     * @return the tokens of an option, mapped to their priority. The code is a token as a whole, without
+     * separators, so that 'A09.0' is found by 'a09'; its parts and the words of the names are tokens as well.
+     */
+    @NonNull
+    public static Map<String, Integer> tokens(@Nullable String code, @Nullable String name,
+                                              @Nullable String displayName) {
+        Map<String, Integer> tokens = new LinkedHashMap<>();
+        List<String> codeWords = words(code);
+        if (!codeWords.isEmpty()) {
+            StringBuilder compactCode = new StringBuilder();
+            for (String word : codeWords) {
+                compactCode.append(word);
+            }
+            tokens.put(compactCode.toString(), PRIORITY_CODE);
+            addWords(tokens, codeWords, PRIORITY_WORD);
+        }
+        addWords(tokens, words(displayName), PRIORITY_FIRST_WORD);
+        addWords(tokens, words(name), PRIORITY_FIRST_WORD);
+        return tokens;
+    }
+
+    private static void addWords(Map<String, Integer> tokens, List<String> words, int firstPriority) {
+        int size = words.size();
+        for (int i = 0; i < size; i++) {
+            int priority = i == 0 ? firstPriority : PRIORITY_WORD;
+            Integer existing = tokens.get(words.get(i));
+            if (existing == null || existing > priority) {
+                tokens.put(words.get(i), priority);
+            }
+        }
+    }
+
+    /**
+     * @return the normalized words of the text, which are separated by anything but letters and digits
+     */
+    @NonNull
+    public static List<String> words(@Nullable String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letterOrDigit = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return the normalized display name, or name, by which matching options of the same rank are ordered
+     */
+    @NonNull
+    public static String sortName(@Nullable String name, @Nullable String displayName) {
+        return normalize(displayName == null ? name : displayName);
+    }
+
+    @NonNull
+    public static String normalize(@Nullable String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
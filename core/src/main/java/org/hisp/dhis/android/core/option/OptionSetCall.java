@@ -28,25 +28,64 @@
 
 package org.hisp.dhis.android.core.option;
 
-import org.hisp.dhis.android.core.common.Call;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.CachedResponses;
+import org.hisp.dhis.android.core.common.DeletedObject;
+import org.hisp.dhis.android.core.common.MetadataDelta;
+import org.hisp.dhis.android.core.common.MetadataDeltaService;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.PayloadBatches;
+import org.hisp.dhis.android.core.common.StagedCall;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
 import org.hisp.dhis.android.core.resource.ResourceHandler;
 import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import retrofit2.Response;
 
-public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
-    // retrofit service
+public class OptionSetCall implements StagedCall<Payload<OptionSet>> {
+    private static final List<MetadataDelta.Probe> PROBES = Collections.unmodifiableList(Arrays.asList(
+            MetadataDelta.Probe.create(ResourceModel.Type.OPTION_SET, "optionSets", ""),
+            MetadataDelta.Probe.create(ResourceModel.Type.OPTION, "options", "optionSet")
+    ));
+
+    private static final List<String> DELETED_KLASSES = Collections.unmodifiableList(Arrays.asList(
+            "OptionSet", "Option"
+    ));
+
+    private static final Fields<OptionSet> FIELDS = Fields.<OptionSet>builder().fields(
+            OptionSet.uid, OptionSet.code, OptionSet.name,
+            OptionSet.displayName, OptionSet.created,
+            OptionSet.lastUpdated, OptionSet.version,
+            OptionSet.valueType,
+            OptionSet.options.with(Option.uid, Option.code, Option.created,
+                    Option.name, Option.displayName, Option.created,
+                    Option.lastUpdated,
+                    Option.optionSet.with(
+                            OptionSet.uid
+                    )
+            )
+    ).build();
+
+    // retrofit services
     private final OptionSetService optionSetService;
+    private final MetadataDeltaService deltaService;
 
     // database adapter and handler
     private final OptionSetStore optionSetStore;
@@ -55,21 +94,46 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
     private final ResourceStore resourceStore;
     private final Date serverDate;
     private final Set<String> uids;
+    private final int maxConcurrentChunks;
+    private final MetadataChanges metadataChanges;
     private boolean isExecuted;
 
+    // state resolved in prepare()
+    private String lastSyncedOptionSets;
+    private String httpValidator;
+    private boolean incremental;
+    private Map<ResourceModel.Type, String> lastSyncedTypes;
+    private Set<String> storedUids;
+
+    // deletions listed by download() in incremental mode
+    private List<DeletedObject> deletedObjects = Collections.emptyList();
+
+    /**
+     * @param metadataChanges collects the cached metadata which is changed by {@link #persist(Response)}; the
+     *                        caller applies it once the enclosing transaction has been committed
+     * @param deltaService    if not null, all option sets which have been synced before are checked for
+     *                        changes, but downloaded again only if they or their options have changed;
+     *                        deletions are reconciled as well
+     */
     public OptionSetCall(OptionSetService optionSetService,
                          OptionSetStore optionSetStore,
                          DatabaseAdapter databaseAdapter,
                          ResourceStore resourceStore,
                          Set<String> uids,
-                         Date serverDate, OptionStore optionStore) {
+                         Date serverDate, OptionStore optionStore,
+                         MetadataChanges metadataChanges,
+                         @Nullable MetadataDeltaService deltaService,
+                         int maxConcurrentChunks) {
         this.optionSetService = optionSetService;
+        this.deltaService = deltaService;
         this.optionSetStore = optionSetStore;
         this.databaseAdapter = databaseAdapter;
         this.resourceStore = resourceStore;
         this.uids = uids;
         this.serverDate = new Date(serverDate.getTime());
         this.optionStore = optionStore;
+        this.maxConcurrentChunks = maxConcurrentChunks;
+        this.metadataChanges = metadataChanges;
     }
 
 
@@ -82,6 +146,18 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
 
     @Override
     public Response<Payload<OptionSet>> call() throws Exception {
+        prepare();
+
+        Response<Payload<OptionSet>> response = download();
+
+        if (response != null && response.isSuccessful()) {
+            persist(response);
+        }
+        return response;
+    }
+
+    @Override
+    public void prepare() {
         synchronized (this) {
             if (isExecuted) {
                 throw new IllegalArgumentException("Already executed");
@@ -90,57 +166,126 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
             isExecuted = true;
         }
 
-        if (uids.size() > MAX_UIDS) {
-            throw new IllegalArgumentException(
-                    "Can't handle the amount of option sets: " + uids.size() + ". " + "Max size is: " + MAX_UIDS);
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+        httpValidator = resourceHandler.getHttpValidator(ResourceModel.Type.OPTION_SET);
 
+        if (deltaService != null) {
+            lastSyncedOptionSets = resourceHandler.getLastUpdated(ResourceModel.Type.OPTION_SET);
+
+            incremental = lastSyncedOptionSets != null && uids != null;
+            if (incremental) {
+                lastSyncedTypes = MetadataDelta.lastSynced(resourceHandler, PROBES);
+                storedUids = MetadataDelta.storedUids(databaseAdapter, OptionSetModel.TABLE);
+            }
         }
-        Response<Payload<OptionSet>> response = getOptionSets(uids);
+    }
 
-        if (response != null && response.isSuccessful()) {
-            saveOptionSets(response);
+    @Override
+    public Response<Payload<OptionSet>> download() throws Exception {
+        if (incremental) {
+            return downloadChanges();
         }
-        return response;
+        return getOptionSets(uids);
     }
 
-    private Response<Payload<OptionSet>> getOptionSets(Set<String> uids) throws IOException {
-        Fields<OptionSet> optionSetFields = Fields.<OptionSet>builder().fields(
-                OptionSet.uid, OptionSet.code, OptionSet.name,
-                OptionSet.displayName, OptionSet.created,
-                OptionSet.lastUpdated, OptionSet.version,
-                OptionSet.valueType,
-                OptionSet.options.with(Option.uid, Option.code, Option.created,
-                        Option.name, Option.displayName, Option.created,
-                        Option.lastUpdated,
-                        Option.optionSet.with(
-                                OptionSet.uid
-                        )
-                )
-        ).build();
-
-        return optionSetService.optionSets(false, optionSetFields, OptionSet.uid.in(uids)).execute();
+    /**
+     * The given uids only cover the option sets of the programs downloaded by this sync, so every stored
+     * option set is checked for changes, and the given uids which are not stored yet are downloaded.
+     */
+    private Response<Payload<OptionSet>> downloadChanges() throws Exception {
+        MetadataDelta delta = new MetadataDelta(deltaService, MAX_UIDS, maxConcurrentChunks);
+
+        Response<Set<String>> changedUids = delta.changedUids(PROBES, lastSyncedTypes, storedUids);
+        if (!changedUids.isSuccessful()) {
+            return MetadataDelta.failure(changedUids);
+        }
+
+        Response<Payload<DeletedObject>> deleted = delta.deletedObjects(DELETED_KLASSES, lastSyncedOptionSets);
+        if (!deleted.isSuccessful()) {
+            return MetadataDelta.failure(deleted);
+        }
+        deletedObjects = deleted.body().items();
+
+        Set<String> downloadUids = new HashSet<>(uids);
+        downloadUids.removeAll(storedUids);
+        downloadUids.addAll(changedUids.body());
+        if (downloadUids.isEmpty()) {
+            return Response.success(new Payload<>(Collections.<OptionSet>emptyList()));
+        }
+        return getOptionSets(downloadUids);
     }
 
-    private void saveOptionSets(Response<Payload<OptionSet>> response) {
-        List<OptionSet> optionSets = response.body().items();
-        if (optionSets != null && !optionSets.isEmpty()) {
-            OptionHandler optionHandler = new OptionHandler(optionStore);
-            OptionSetHandler optionSetHandler = new OptionSetHandler(optionSetStore, optionHandler);
-            ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
-
-            Transaction transaction = databaseAdapter.beginNewTransaction();
-            int size = optionSets.size();
-
-            try {
-                for (int i = 0; i < size; i++) {
-                    OptionSet optionSet = optionSets.get(i);
-                    optionSetHandler.handleOptionSet(optionSet);
-                }
-                resourceHandler.handleResource(ResourceModel.Type.OPTION_SET, serverDate);
-
-                transaction.setSuccessful();
-            } finally {
-                transaction.end();
+    @Override
+    public void persist(Response<Payload<OptionSet>> response) throws IOException {
+        saveOptionSets(response);
+    }
+
+    private Response<Payload<OptionSet>> getOptionSets(Set<String> uids) throws Exception {
+        return new UidChunkedDownloader<OptionSet>(MAX_UIDS, maxConcurrentChunks).download(uids,
+                new UidChunkedDownloader.ChunkRequest<OptionSet>() {
+                    @Override
+                    public Response<Payload<OptionSet>> request(Set<String> chunk) throws IOException {
+                        return optionSetService.optionSets(false, FIELDS, OptionSet.uid.in(chunk)).execute();
+                    }
+                });
+    }
+
+    private void saveOptionSets(Response<Payload<OptionSet>> response) throws IOException {
+        OptionHandler optionHandler = new OptionHandler(optionStore, null, new OptionSearchStoreImpl(databaseAdapter),
+                metadataChanges);
+        final OptionSetHandler optionSetHandler = new OptionSetHandler(optionSetStore, optionHandler, null,
+                metadataChanges);
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+
+        try {
+            // option sets which the server reports as not modified are neither read nor handled again:
+            // the stored rows are still current, as only this call writes option sets
+            boolean unchanged = CachedResponses.isUnchanged(response, httpValidator);
+            int count = 0;
+            if (unchanged) {
+                response.body().close();
+            } else {
+                // option sets are read from the buffered response while being persisted, batch by batch
+                count = PayloadBatches.process(response.body(), PayloadBatches.DEFAULT_BATCH_SIZE,
+                        new PayloadBatches.Processor<OptionSet>() {
+                            @Override
+                            public void process(@NonNull List<OptionSet> batch) {
+                                optionSetHandler.handleOptionSets(batch);
+                            }
+                        });
+            }
+            deleteObjects(deletedObjects);
+
+            if (deltaService != null) {
+                MetadataDelta.handleResources(resourceHandler, PROBES, serverDate);
+            }
+            if (deltaService != null || unchanged || count > 0) {
+                resourceHandler.handleResource(ResourceModel.Type.OPTION_SET, serverDate,
+                        CachedResponses.validator(response));
+            }
+
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private void deleteObjects(List<DeletedObject> deletedObjects) {
+        int size = deletedObjects.size();
+        for (int i = 0; i < size; i++) {
+            DeletedObject deletedObject = deletedObjects.get(i);
+            if (deletedObject.uid() == null) {
+                continue;
+            }
+
+            if ("OptionSet".equals(deletedObject.klass())) {
+                optionSetStore.delete(deletedObject.uid());
+                metadataChanges.deleted(MetadataType.OPTION_SET, deletedObject.uid());
+            } else if ("Option".equals(deletedObject.klass())) {
+                optionStore.delete(deletedObject.uid());
+                metadataChanges.changed(MetadataType.OPTIONS, null);
             }
         }
     }
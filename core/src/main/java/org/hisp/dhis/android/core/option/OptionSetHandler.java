@@ -27,29 +27,80 @@
  */
 package org.hisp.dhis.android.core.option;
 
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.PersistedUidRegistry;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
 public class OptionSetHandler {
     private final OptionSetStore optionSetStore;
     private final OptionHandler optionHandler;
+    private final PersistedUidRegistry persistedUidRegistry;
+    private final MetadataChanges metadataChanges;
 
-    public OptionSetHandler(OptionSetStore optionSetStore, OptionHandler optionHandler) {
+    /**
+     * @param persistedUidRegistry if not null, every option set is persisted at most once
+     *                             for the lifetime of the registry
+     * @param metadataChanges      records the option sets which are persisted or deleted
+     */
+    public OptionSetHandler(OptionSetStore optionSetStore,
+                            OptionHandler optionHandler,
+                            @Nullable PersistedUidRegistry persistedUidRegistry,
+                            MetadataChanges metadataChanges) {
         this.optionSetStore = optionSetStore;
         this.optionHandler = optionHandler;
+        this.persistedUidRegistry = persistedUidRegistry;
+        this.metadataChanges = metadataChanges;
     }
 
     public void handleOptionSet(OptionSet optionSet) {
         if (optionSet == null) {
             return;
         }
+        if (persistedUidRegistry != null && !persistedUidRegistry.register(OptionSet.class, optionSet.uid())) {
+            return;
+        }
 
         deleteOrPersistOptionSet(optionSet);
+        optionHandler.handleOptions(optionSet.options());
     }
 
+    /**
+     * Handles a list of option sets, passing the options of all sets to the {@link OptionHandler} at once.
+     */
+    public void handleOptionSets(List<OptionSet> optionSets) {
+        if (optionSets == null) {
+            return;
+        }
+
+        List<Option> options = new ArrayList<>();
+        int size = optionSets.size();
+        for (int i = 0; i < size; i++) {
+            OptionSet optionSet = optionSets.get(i);
+            if (optionSet == null || (persistedUidRegistry != null &&
+                    !persistedUidRegistry.register(OptionSet.class, optionSet.uid()))) {
+                continue;
+            }
+
+            deleteOrPersistOptionSet(optionSet);
+            if (optionSet.options() != null) {
+                options.addAll(optionSet.options());
+            }
+        }
+
+        optionHandler.handleOptions(options);
+    }
 
     private void deleteOrPersistOptionSet(OptionSet optionSet) {
         if (isDeleted(optionSet)) {
             optionSetStore.delete(optionSet.uid());
+            metadataChanges.deleted(MetadataType.OPTION_SET, optionSet.uid());
         } else {
             int updatedRow = optionSetStore.update(optionSet.uid(), optionSet.code(), optionSet.name(),
                     optionSet.displayName(), optionSet.created(), optionSet.lastUpdated(), optionSet.version(),
@@ -59,8 +110,7 @@ public class OptionSetHandler {
                 optionSetStore.insert(optionSet.uid(), optionSet.code(), optionSet.name(), optionSet.displayName(),
                         optionSet.created(), optionSet.lastUpdated(), optionSet.version(), optionSet.valueType());
             }
+            metadataChanges.changed(MetadataType.OPTION_SET, optionSet.uid());
         }
-
-        optionHandler.handleOptions(optionSet.options());
     }
 }
@@ -37,10 +37,12 @@ import org.hisp.dhis.android.core.data.api.Fields;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 public interface OptionSetService {
 
     @GET("optionSets")
+    @Streaming
     Call<Payload<OptionSet>> optionSets(@Query("paging") boolean paging,
                                         @Query("fields") @Which Fields<OptionSet> fields,
                                         @Query("filter") @Where Filter<OptionSet, String> filter);
@@ -31,6 +31,7 @@ package org.hisp.dhis.android.core.option;
 import android.support.annotation.NonNull;
 
 import java.util.Date;
+import java.util.List;
 
 public interface OptionStore {
     long insert(
@@ -46,4 +47,10 @@ public interface OptionStore {
     );
 
     int delete(@NonNull String uid);
+
+    /**
+     * Inserts or updates the options with one statement per option, see
+     * {@link org.hisp.dhis.android.core.data.database.BulkUpsert}.
+     */
+    int upsert(@NonNull List<Option> options);
 }
@@ -31,9 +31,11 @@ package org.hisp.dhis.android.core.option;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
+import org.hisp.dhis.android.core.data.database.BulkUpsert;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 
 import java.util.Date;
+import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -61,6 +63,9 @@ public class OptionStoreImpl implements OptionStore {
             " WHERE " +
             OptionModel.Columns.UID + " =?;";
 
+    // index of the uid argument of the where clause, which follows the 7 arguments of the set clause
+    private static final int WHERE_UID_INDEX = 8;
+
     private static final String DELETE_STATEMENT = "DELETE FROM " + OptionModel.TABLE +
             " WHERE " +
             OptionModel.Columns.UID + " =?;";
@@ -70,12 +75,27 @@ public class OptionStoreImpl implements OptionStore {
     private final SQLiteStatement deleteStatement;
 
     private final DatabaseAdapter databaseAdapter;
+    private final BulkUpsert<Option> bulkUpsert;
 
     public OptionStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
         this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
         this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
         this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.bulkUpsert = new BulkUpsert<>(databaseAdapter, OptionModel.TABLE, OptionModel.Columns.UID,
+                insertStatement, updateStatement, WHERE_UID_INDEX, new BulkUpsert.Binder<Option>() {
+            @NonNull
+            @Override
+            public String uid(@NonNull Option option) {
+                return option.uid();
+            }
+
+            @Override
+            public void bind(@NonNull SQLiteStatement statement, @NonNull Option option) {
+                bindArguments(statement, option.uid(), option.code(), option.name(), option.displayName(),
+                        option.created(), option.lastUpdated(), option.optionSet().uid());
+            }
+        });
     }
 
     @Override
@@ -107,7 +127,7 @@ public class OptionStoreImpl implements OptionStore {
         bindArguments(updateStatement, uid, code, name, displayName, created, lastUpdated, optionSet);
 
         // bind the where argument
-        sqLiteBind(updateStatement, 8, whereOptionUid);
+        sqLiteBind(updateStatement, WHERE_UID_INDEX, whereOptionUid);
 
         // execute and clear bindings
         int update = databaseAdapter.executeUpdateDelete(OptionModel.TABLE, updateStatement);
@@ -125,6 +145,11 @@ public class OptionStoreImpl implements OptionStore {
         return delete;
     }
 
+    @Override
+    public int upsert(@NonNull List<Option> options) {
+        return bulkUpsert.upsert(options);
+    }
+
     private void bindArguments(@NonNull SQLiteStatement sqliteStatement,
                                @NonNull String uid,
                                @NonNull String code,
@@ -30,13 +30,17 @@ package org.hisp.dhis.android.core.organisationunit;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.CachedResponses;
+import org.hisp.dhis.android.core.common.Pager;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.PayloadBatches;
+import org.hisp.dhis.android.core.common.StagedCall;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.program.Program;
+import org.hisp.dhis.android.core.resource.ResourceCursorModel;
 import org.hisp.dhis.android.core.resource.ResourceHandler;
 import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
@@ -44,32 +48,60 @@ import org.hisp.dhis.android.core.user.User;
 import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkStore;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 import retrofit2.Response;
 
 import static org.hisp.dhis.android.core.organisationunit.OrganisationUnitTree.findRoots;
 
-public class OrganisationUnitCall implements Call<Response<Payload<OrganisationUnit>>> {
+public class OrganisationUnitCall implements StagedCall<Payload<OrganisationUnit>> {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    private static final Fields<OrganisationUnit> FIELDS = fields();
+
+    // pages are requested in a stable order, so that the pages of a download which continues at the page
+    // of a cursor follow on from the pages which have been committed before it was interrupted
+    private static final String PAGE_ORDER = "id:asc";
 
     private final User user;
     private final OrganisationUnitService organisationUnitService;
     private final DatabaseAdapter database;
     private final OrganisationUnitStore organisationUnitStore;
     private final UserOrganisationUnitLinkStore userOrganisationUnitLinkStore;
+    private final OrganisationUnitClosureStore organisationUnitClosureStore;
     private final ResourceStore resourceStore;
 
     private final Date serverDate;
+    private final int pageSize;
     private boolean isExecuted;
 
+    // state resolved in prepare()
+    private Set<String> rootOrgUnitUids;
+    private Filter<OrganisationUnit, String> lastUpdatedFilter;
+    private String httpValidator;
+
+    /**
+     * @param pageSize if positive, the sub-tree of each root is downloaded in pages of this size when
+     *                 the call is invoked through {@link #call()}. Every page is committed in its own
+     *                 transaction together with a cursor of the root, so that a download which was
+     *                 interrupted continues at the next page. Paged calls cannot be staged. A page size
+     *                 of 0 downloads every sub-tree at once.
+     */
     public OrganisationUnitCall(@NonNull User user,
                                 @NonNull OrganisationUnitService organisationUnitService,
                                 @NonNull DatabaseAdapter database,
                                 @NonNull OrganisationUnitStore organisationUnitStore,
                                 @NonNull ResourceStore resourceStore,
                                 @NonNull Date serverDate,
-                                @NonNull UserOrganisationUnitLinkStore userOrganisationUnitLinkStore) {
+                                @NonNull UserOrganisationUnitLinkStore userOrganisationUnitLinkStore,
+                                @Nullable OrganisationUnitClosureStore organisationUnitClosureStore,
+                                int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("pageSize must not be negative: " + pageSize);
+        }
         this.user = user;
         this.organisationUnitService = organisationUnitService;
         this.database = database;
@@ -77,6 +109,8 @@ public class OrganisationUnitCall implements Call<Response<Payload<OrganisationU
         this.resourceStore = resourceStore;
         this.serverDate = new Date(serverDate.getTime());
         this.userOrganisationUnitLinkStore = userOrganisationUnitLinkStore;
+        this.organisationUnitClosureStore = organisationUnitClosureStore;
+        this.pageSize = pageSize;
     }
 
     @Override
@@ -88,53 +122,235 @@ public class OrganisationUnitCall implements Call<Response<Payload<OrganisationU
 
     @Override
     public Response<Payload<OrganisationUnit>> call() throws Exception {
+        prepare();
+
+        if (isPaged()) {
+            return downloadPages();
+        }
+
+        Response<Payload<OrganisationUnit>> response = null;
+        Transaction transaction = database.beginNewTransaction();
+        try {
+            response = download();
+            if (response != null && response.isSuccessful()) {
+                handleOrganisationUnits(response);
+                transaction.setSuccessful();
+            }
+        } finally {
+            transaction.end();
+        }
+        return response;
+    }
+
+    @Override
+    public void prepare() {
         synchronized (this) {
             if (isExecuted) {
                 throw new IllegalStateException("AlreadyExecuted");
             }
             isExecuted = true;
         }
-        Response<Payload<OrganisationUnit>> response = null;
-        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
 
-        OrganisationUnitHandler organisationUnitHandler = new OrganisationUnitHandler(
-                organisationUnitStore, userOrganisationUnitLinkStore
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+        httpValidator = resourceHandler.getHttpValidator(ResourceModel.Type.ORGANISATION_UNIT);
+        rootOrgUnitUids = findRoots(user.organisationUnits());
+        lastUpdatedFilter = OrganisationUnit.lastUpdated.gt(
+                resourceHandler.getLastUpdated(ResourceModel.Type.ORGANISATION_UNIT)
         );
+    }
+
+    /**
+     * Calls OrganisationUnitService for each tree root and merges the sub-trees into a single payload.
+     * The sub-trees are only read when the payload is persisted.
+     * Returns the first unsuccessful response, or null if the user has no organisation units assigned.
+     */
+    @Override
+    public Response<Payload<OrganisationUnit>> download() throws Exception {
+        checkNotPaged();
+
+        Response<Payload<OrganisationUnit>> response = null;
+        List<Payload<OrganisationUnit>> subTrees = new ArrayList<>();
 
-        Transaction transaction = database.beginNewTransaction();
         try {
-            Set<String> rootOrgUnitUids = findRoots(user.organisationUnits());
-            Filter<OrganisationUnit, String> lastUpdatedFilter = OrganisationUnit.lastUpdated.gt(
-                    resourceHandler.getLastUpdated(ResourceModel.Type.ORGANISATION_UNIT)
-            );
-            // Call OrganisationUnitService for each tree root & try to handleTrackedEntity sub-tree:
             for (String uid : rootOrgUnitUids) {
                 response = getOrganisationUnit(uid, lastUpdatedFilter);
-                if (response.isSuccessful()) {
-                    organisationUnitHandler.handleOrganisationUnits(
-                            response.body().items(),
-                            OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE,
-                            user.uid()
-                    );
-                } else {
-                    break; //stop early unsuccessful:
+                if (!response.isSuccessful()) {
+                    closeAll(subTrees);
+                    return response; //stop early unsuccessful:
                 }
+                if (rootOrgUnitUids.size() == 1) {
+                    return response;
+                }
+                subTrees.add(response.body());
             }
-            if (response != null && response.isSuccessful()) {
-                resourceHandler.handleResource(ResourceModel.Type.ORGANISATION_UNIT, serverDate);
-                transaction.setSuccessful();
+        } catch (IOException exception) {
+            closeAll(subTrees);
+            throw exception;
+        }
+
+        if (response == null) {
+            return null;
+        }
+        return Response.success(Payload.concat(subTrees), response.raw());
+    }
+
+    @Override
+    public void persist(Response<Payload<OrganisationUnit>> response) throws IOException {
+        checkNotPaged();
+
+        Transaction transaction = database.beginNewTransaction();
+        try {
+            handleOrganisationUnits(response);
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private void handleOrganisationUnits(Response<Payload<OrganisationUnit>> response) throws IOException {
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+
+        // sub-trees which the server reports as not modified are neither read nor handled again
+        if (CachedResponses.isUnchanged(response, httpValidator)) {
+            response.body().close();
+        } else {
+            handleOrganisationUnits(response.body());
+        }
+        resourceHandler.handleResource(ResourceModel.Type.ORGANISATION_UNIT, serverDate,
+                CachedResponses.validator(response));
+
+        // a complete download supersedes the pages of an interrupted one
+        resourceStore.deleteCursors(ResourceModel.Type.ORGANISATION_UNIT);
+    }
+
+    private void handleOrganisationUnits(Payload<OrganisationUnit> payload) throws IOException {
+        final OrganisationUnitHandler organisationUnitHandler = new OrganisationUnitHandler(
+                organisationUnitStore, userOrganisationUnitLinkStore, organisationUnitClosureStore
+        );
+
+        // organisation units are read from the buffered response while being persisted, batch by batch
+        PayloadBatches.process(payload, PayloadBatches.DEFAULT_BATCH_SIZE,
+                new PayloadBatches.Processor<OrganisationUnit>() {
+                    @Override
+                    public void process(@NonNull List<OrganisationUnit> batch) {
+                        organisationUnitHandler.handleOrganisationUnits(
+                                batch, OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE, user.uid()
+                        );
+                    }
+                });
+    }
+
+    /**
+     * Downloads the sub-trees page by page, starting each root at the page recorded in its cursor.
+     * The resource is only updated once all roots are complete, with the server date at which the
+     * earliest of the interrupted downloads started. Returns the first unsuccessful response, keeping
+     * the cursors of the roots, or null if the user has no organisation units assigned.
+     */
+    private Response<Payload<OrganisationUnit>> downloadPages() throws Exception {
+        if (rootOrgUnitUids.isEmpty()) {
+            return null;
+        }
+
+        Response<Payload<OrganisationUnit>> response = null;
+        Date started = serverDate;
+
+        for (String uid : rootOrgUnitUids) {
+            ResourceCursorModel cursor = resourceStore.queryCursor(ResourceModel.Type.ORGANISATION_UNIT, uid);
+            boolean hasCursor = cursor != null;
+            Integer page = 1;
+            if (hasCursor) {
+                if (cursor.started() != null && cursor.started().before(started)) {
+                    started = cursor.started();
+                }
+                page = cursor.nextPage();
+            }
+
+            while (page != null) {
+                response = getOrganisationUnitPage(uid, lastUpdatedFilter, page);
+                if (!response.isSuccessful()) {
+                    return response; //stop early unsuccessful, the cursor is kept:
+                }
+                page = persistPage(uid, response.body(), page, hasCursor);
+                hasCursor = true;
             }
+        }
+
+        Transaction transaction = database.beginNewTransaction();
+        try {
+            new ResourceHandler(resourceStore).handleResource(ResourceModel.Type.ORGANISATION_UNIT, started);
+            resourceStore.deleteCursors(ResourceModel.Type.ORGANISATION_UNIT);
+            transaction.setSuccessful();
         } finally {
             transaction.end();
         }
         return response;
     }
 
+    /**
+     * Persists the page and moves the cursor of the root forward within a single transaction.
+     *
+     * @return the next page of the root, or null if this was the last one
+     * @throws IOException if the response has no pager, since it is then unknown whether pages are left
+     */
+    @Nullable
+    private Integer persistPage(@NonNull String uid, @NonNull Payload<OrganisationUnit> payload,
+                                int page, boolean hasCursor) throws IOException {
+        Transaction transaction = database.beginNewTransaction();
+        try {
+            handleOrganisationUnits(payload);
+
+            // the pager of a streamed payload is only known once its items have been read
+            Pager pager = payload.pager();
+            if (pager == null) {
+                throw new IOException("Page " + page + " of organisation unit " + uid + " has no pager");
+            }
+            Integer nextPage = page < pager.pageCount() ? page + 1 : null;
+
+            if (hasCursor) {
+                resourceStore.updateCursor(ResourceModel.Type.ORGANISATION_UNIT, uid, nextPage);
+            } else {
+                resourceStore.insertCursor(ResourceModel.Type.ORGANISATION_UNIT, uid, serverDate, nextPage);
+            }
+            transaction.setSuccessful();
+            return nextPage;
+        } finally {
+            transaction.end();
+            payload.close();
+        }
+    }
+
+    private boolean isPaged() {
+        return pageSize > 0;
+    }
+
+    private void checkNotPaged() {
+        if (isPaged()) {
+            throw new IllegalStateException("Paged downloads are committed page by page and cannot be staged");
+        }
+    }
+
+    private static void closeAll(List<Payload<OrganisationUnit>> payloads) throws IOException {
+        for (Payload<OrganisationUnit> payload : payloads) {
+            payload.close();
+        }
+    }
+
     private Response<Payload<OrganisationUnit>> getOrganisationUnit(
             @NonNull String uid,
             @Nullable Filter<OrganisationUnit, String> lastUpdatedFilter) throws IOException {
+        return organisationUnitService.getOrganisationUnits(uid, FIELDS, lastUpdatedFilter, true, false).execute();
+    }
+
+    private Response<Payload<OrganisationUnit>> getOrganisationUnitPage(
+            @NonNull String uid,
+            @Nullable Filter<OrganisationUnit, String> lastUpdatedFilter,
+            int page) throws IOException {
+        return organisationUnitService.getOrganisationUnits(
+                uid, FIELDS, lastUpdatedFilter, true, true, page, pageSize, PAGE_ORDER).execute();
+    }
 
-        Fields<OrganisationUnit> fields = Fields.<OrganisationUnit>builder().fields(
+    private static Fields<OrganisationUnit> fields() {
+        return Fields.<OrganisationUnit>builder().fields(
                 OrganisationUnit.uid, OrganisationUnit.code, OrganisationUnit.name,
                 OrganisationUnit.displayName, OrganisationUnit.created, OrganisationUnit.lastUpdated,
                 OrganisationUnit.shortName, OrganisationUnit.displayShortName,
@@ -145,6 +361,5 @@ public class OrganisationUnitCall implements Call<Response<Payload<OrganisationU
                 //TODO: find out if programs are relevant: can they be updated on their own ?
                 OrganisationUnit.programs.with(Program.uid)
         ).build();
-        return organisationUnitService.getOrganisationUnits(uid, fields, lastUpdatedFilter, true, false).execute();
     }
-}
\ No newline at end of file
+}
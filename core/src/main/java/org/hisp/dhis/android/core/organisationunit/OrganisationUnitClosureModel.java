@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.organisationunit;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.gabrielittner.auto.value.cursor.ColumnName;
+import com.google.auto.value.AutoValue;
+
+import org.hisp.dhis.android.core.common.BaseModel;
+
+/**
+ * Row of the organisation unit closure table: links an organisation unit to each of its ancestors,
+ * and to itself at depth 0.
+ */
+@AutoValue
+public abstract class OrganisationUnitClosureModel extends BaseModel {
+    public static final String TABLE = "OrganisationUnitClosure";
+
+    public static class Columns extends BaseModel.Columns {
+        public static final String ANCESTOR = "ancestor";
+        public static final String DESCENDANT = "descendant";
+        public static final String DEPTH = "depth";
+    }
+
+    @Nullable
+    @ColumnName(Columns.ANCESTOR)
+    public abstract String ancestor();
+
+    @Nullable
+    @ColumnName(Columns.DESCENDANT)
+    public abstract String descendant();
+
+    @Nullable
+    @ColumnName(Columns.DEPTH)
+    public abstract Integer depth();
+
+    @NonNull
+    public abstract ContentValues toContentValues();
+
+    @NonNull
+    public static OrganisationUnitClosureModel create(Cursor cursor) {
+        return AutoValue_OrganisationUnitClosureModel.createFromCursor(cursor);
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new $$AutoValue_OrganisationUnitClosureModel.Builder();
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder extends BaseModel.Builder<Builder> {
+        public abstract Builder ancestor(@Nullable String ancestor);
+
+        public abstract Builder descendant(@Nullable String descendant);
+
+        public abstract Builder depth(@Nullable Integer depth);
+
+        public abstract OrganisationUnitClosureModel build();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.organisationunit;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.CursorMapper;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureModel.Columns;
+
+import java.util.List;
+
+import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
+
+public class OrganisationUnitClosureStoreImpl implements OrganisationUnitClosureStore {
+    public static final String INSERT_STATEMENT = "INSERT INTO " + OrganisationUnitClosureModel.TABLE + " (" +
+            Columns.ANCESTOR + ", " +
+            Columns.DESCENDANT + ", " +
+            Columns.DEPTH + ") " +
+            "VALUES(?, ?, ?);";
+
+    private static final String DELETE_ANCESTORS_STATEMENT = "DELETE FROM " + OrganisationUnitClosureModel.TABLE +
+            " WHERE " + Columns.DESCENDANT + " = ?;";
+
+    private static final String DELETE_STATEMENT = "DELETE FROM " + OrganisationUnitClosureModel.TABLE +
+            " WHERE " + Columns.DESCENDANT + " = ? OR " + Columns.ANCESTOR + " = ?;";
+
+    // only descendants which are stored are returned, so that rows left behind by deleted
+    // organisation units do not show up
+    private static final String JOIN_DESCENDANTS = " FROM " + OrganisationUnitClosureModel.TABLE +
+            " INNER JOIN " + OrganisationUnitModel.TABLE + " ON " +
+            OrganisationUnitModel.TABLE + "." + OrganisationUnitModel.Columns.UID + " = " +
+            OrganisationUnitClosureModel.TABLE + "." + Columns.DESCENDANT;
+
+    private static final String QUERY_DESCENDANTS_STATEMENT = "SELECT " + OrganisationUnitModel.TABLE + ".*" +
+            JOIN_DESCENDANTS +
+            " WHERE " + Columns.ANCESTOR + " = ? AND " + Columns.DEPTH + " BETWEEN 1 AND ?" +
+            " ORDER BY " + Columns.DEPTH + ", " +
+            OrganisationUnitModel.TABLE + "." + OrganisationUnitModel.Columns.PATH + ";";
+
+    private static final String COUNT_DESCENDANTS_STATEMENT = "SELECT COUNT(*)" + JOIN_DESCENDANTS +
+            " WHERE " + Columns.ANCESTOR + " = ? AND " + Columns.DEPTH + " > 0;";
+
+    private static final CursorMapper<OrganisationUnitModel> MAPPER = new OrganisationUnitModelMapper();
+
+    private final DatabaseAdapter databaseAdapter;
+    private final SQLiteStatement insertStatement;
+    private final SQLiteStatement deleteAncestorsStatement;
+    private final SQLiteStatement deleteStatement;
+
+    public OrganisationUnitClosureStoreImpl(DatabaseAdapter databaseAdapter) {
+        this.databaseAdapter = databaseAdapter;
+        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.deleteAncestorsStatement = databaseAdapter.compileStatement(DELETE_ANCESTORS_STATEMENT);
+        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+    }
+
+    @Override
+    public void update(@NonNull String uid, @Nullable String path) {
+        sqLiteBind(deleteAncestorsStatement, 1, uid);
+        databaseAdapter.executeUpdateDelete(OrganisationUnitClosureModel.TABLE, deleteAncestorsStatement);
+        deleteAncestorsStatement.clearBindings();
+
+        // the organisation unit is always its own descendant
+        List<String> ancestors = OrganisationUnitTree.closureUids(uid, path);
+        int size = ancestors.size();
+        for (int i = 0; i < size; i++) {
+            sqLiteBind(insertStatement, 1, ancestors.get(i));
+            sqLiteBind(insertStatement, 2, uid);
+            sqLiteBind(insertStatement, 3, size - 1 - i);
+            databaseAdapter.executeInsert(OrganisationUnitClosureModel.TABLE, insertStatement);
+            insertStatement.clearBindings();
+        }
+    }
+
+    @Override
+    public int delete(@NonNull String uid) {
+        sqLiteBind(deleteStatement, 1, uid);
+        sqLiteBind(deleteStatement, 2, uid);
+
+        int returnValue = databaseAdapter.executeUpdateDelete(OrganisationUnitClosureModel.TABLE, deleteStatement);
+        deleteStatement.clearBindings();
+        return returnValue;
+    }
+
+    @Override
+    public int delete() {
+        return databaseAdapter.delete(OrganisationUnitClosureModel.TABLE);
+    }
+
+    @NonNull
+    @Override
+    public LazyCursorList<OrganisationUnitModel> queryDescendants(@NonNull String ancestorUid, int maxDepth) {
+        return LazyCursorList.query(databaseAdapter, MAPPER, QUERY_DESCENDANTS_STATEMENT,
+                ancestorUid, String.valueOf(maxDepth));
+    }
+
+    @Override
+    public int countDescendants(@NonNull String ancestorUid) {
+        Cursor cursor = databaseAdapter.query(COUNT_DESCENDANTS_STATEMENT, ancestorUid);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
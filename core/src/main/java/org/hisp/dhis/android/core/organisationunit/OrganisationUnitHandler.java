@@ -32,6 +32,7 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkStore;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -39,69 +40,63 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class OrganisationUnitHandler {
     private final OrganisationUnitStore organisationUnitStore;
     private final UserOrganisationUnitLinkStore userOrganisationUnitLinkStore;
+    private final OrganisationUnitClosureStore organisationUnitClosureStore;
 
+    /**
+     * @param organisationUnitClosureStore if not null, the closure table is kept up to date with
+     *                                     the organisation units which are handled
+     */
     public OrganisationUnitHandler(OrganisationUnitStore organisationUnitStore,
-                                   UserOrganisationUnitLinkStore userOrganisationUnitLinkStore) {
+                                   UserOrganisationUnitLinkStore userOrganisationUnitLinkStore,
+                                   @Nullable OrganisationUnitClosureStore organisationUnitClosureStore) {
         this.organisationUnitStore = organisationUnitStore;
         this.userOrganisationUnitLinkStore = userOrganisationUnitLinkStore;
+        this.organisationUnitClosureStore = organisationUnitClosureStore;
     }
 
     public void handleOrganisationUnits(@NonNull List<OrganisationUnit> organisationUnits,
                                         @Nullable OrganisationUnitModel.Scope scope,
                                         @NonNull String userUid) {
         int size = organisationUnits.size();
+        List<OrganisationUnit> persistedOrganisationUnits = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             OrganisationUnit organisationUnit = organisationUnits.get(i);
 
             if (isDeleted(organisationUnit)) {
                 organisationUnitStore.delete(organisationUnit.uid());
-            } else {
-                String uid = null;
-                if (organisationUnit.parent() != null) {
-                    uid = organisationUnit.parent().uid();
-                }
-                int updatedRow = organisationUnitStore.update(organisationUnit.uid(),
-                        organisationUnit.code(),
-                        organisationUnit.name(),
-                        organisationUnit.displayName(),
-                        organisationUnit.created(),
-                        organisationUnit.lastUpdated(),
-                        organisationUnit.shortName(),
-                        organisationUnit.displayShortName(),
-                        organisationUnit.description(),
-                        organisationUnit.displayDescription(),
-                        organisationUnit.path(),
-                        organisationUnit.openingDate(),
-                        organisationUnit.closedDate(),
-                        uid,
-                        organisationUnit.level(), organisationUnit.uid());
-                if (updatedRow <= 0) {
-                    organisationUnitStore.insert(
-                            organisationUnit.uid(),
-                            organisationUnit.code(),
-                            organisationUnit.name(),
-                            organisationUnit.displayName(),
-                            organisationUnit.created(),
-                            organisationUnit.lastUpdated(),
-                            organisationUnit.shortName(),
-                            organisationUnit.displayShortName(),
-                            organisationUnit.description(),
-                            organisationUnit.displayDescription(),
-                            organisationUnit.path(),
-                            organisationUnit.openingDate(),
-                            organisationUnit.closedDate(),
-                            uid,
-                            organisationUnit.level()
-                    );
+                if (organisationUnitClosureStore != null) {
+                    organisationUnitClosureStore.delete(organisationUnit.uid());
                 }
-                if(scope != null) {
-                    int updatedLinkRow = userOrganisationUnitLinkStore.update(
-                            userUid, organisationUnit.uid(),
-                            scope.name(), userUid, organisationUnit.uid()
-                    );
-                    if (updatedLinkRow <= 0) {
-                        userOrganisationUnitLinkStore.insert(userUid, organisationUnit.uid(), scope.name());
-                    }
+            } else {
+                persistedOrganisationUnits.add(organisationUnit);
+            }
+        }
+
+        if (persistedOrganisationUnits.isEmpty()) {
+            return;
+        }
+
+        organisationUnitStore.upsert(persistedOrganisationUnits);
+
+        if (organisationUnitClosureStore != null) {
+            int persistedSize = persistedOrganisationUnits.size();
+            for (int i = 0; i < persistedSize; i++) {
+                OrganisationUnit organisationUnit = persistedOrganisationUnits.get(i);
+                organisationUnitClosureStore.update(organisationUnit.uid(), organisationUnit.path());
+            }
+        }
+
+        if (scope != null) {
+            int persistedSize = persistedOrganisationUnits.size();
+            for (int i = 0; i < persistedSize; i++) {
+                OrganisationUnit organisationUnit = persistedOrganisationUnits.get(i);
+
+                int updatedLinkRow = userOrganisationUnitLinkStore.update(
+                        userUid, organisationUnit.uid(),
+                        scope.name(), userUid, organisationUnit.uid()
+                );
+                if (updatedLinkRow <= 0) {
+                    userOrganisationUnitLinkStore.insert(userUid, organisationUnit.uid(), scope.name());
                 }
             }
         }
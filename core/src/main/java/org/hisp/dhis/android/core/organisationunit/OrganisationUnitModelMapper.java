@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.organisationunit;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.data.database.CursorMapper;
+
+import static org.hisp.dhis.android.core.data.database.CursorValues.getDate;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getInteger;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getLong;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getString;
+
+final class OrganisationUnitModelMapper implements CursorMapper<OrganisationUnitModel> {
+
+    @NonNull
+    @Override
+    public RowMapper<OrganisationUnitModel> bind(@NonNull Cursor cursor) {
+        return new Row(cursor);
+    }
+
+    private static final class Row implements RowMapper<OrganisationUnitModel> {
+        private final int id;
+        private final int uid;
+        private final int code;
+        private final int name;
+        private final int displayName;
+        private final int created;
+        private final int lastUpdated;
+        private final int shortName;
+        private final int displayShortName;
+        private final int description;
+        private final int displayDescription;
+        private final int path;
+        private final int openingDate;
+        private final int closedDate;
+        private final int parent;
+        private final int level;
+
+        Row(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.ID);
+            uid = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.UID);
+            code = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.CODE);
+            name = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.NAME);
+            displayName = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.DISPLAY_NAME);
+            created = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.CREATED);
+            lastUpdated = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.LAST_UPDATED);
+            shortName = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.SHORT_NAME);
+            displayShortName = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.DISPLAY_SHORT_NAME);
+            description = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.DESCRIPTION);
+            displayDescription = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.DISPLAY_DESCRIPTION);
+            path = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.PATH);
+            openingDate = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.OPENING_DATE);
+            closedDate = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.CLOSED_DATE);
+            parent = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.PARENT);
+            level = cursor.getColumnIndexOrThrow(OrganisationUnitModel.Columns.LEVEL);
+        }
+
+        @NonNull
+        @Override
+        public OrganisationUnitModel map(@NonNull Cursor cursor) {
+            return OrganisationUnitModel.builder()
+                    .id(getLong(cursor, id))
+                    .uid(getString(cursor, uid))
+                    .code(getString(cursor, code))
+                    .name(getString(cursor, name))
+                    .displayName(getString(cursor, displayName))
+                    .created(getDate(cursor, created))
+                    .lastUpdated(getDate(cursor, lastUpdated))
+                    .shortName(getString(cursor, shortName))
+                    .displayShortName(getString(cursor, displayShortName))
+                    .description(getString(cursor, description))
+                    .displayDescription(getString(cursor, displayDescription))
+                    .path(getString(cursor, path))
+                    .openingDate(getDate(cursor, openingDate))
+                    .closedDate(getDate(cursor, closedDate))
+                    .parent(getString(cursor, parent))
+                    .level(getInteger(cursor, level))
+                    .build();
+        }
+    }
+}
@@ -37,10 +37,12 @@ import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 public interface OrganisationUnitService {
 
     @GET("organisationUnits/{uid}")
+    @Streaming
     Call<Payload<OrganisationUnit>> getOrganisationUnits(
             @Path("uid") String organisationUnitUid,
             @Query("fields") @Which Fields<OrganisationUnit> fields,
@@ -48,4 +50,17 @@ public interface OrganisationUnitService {
             @Query("includeDescendants") Boolean descendants,
             @Query("paging") Boolean paging
     );
+
+    @GET("organisationUnits/{uid}")
+    @Streaming
+    Call<Payload<OrganisationUnit>> getOrganisationUnits(
+            @Path("uid") String organisationUnitUid,
+            @Query("fields") @Which Fields<OrganisationUnit> fields,
+            @Query("filter") @Where Filter<OrganisationUnit, String> lastUpdated,
+            @Query("includeDescendants") Boolean descendants,
+            @Query("paging") Boolean paging,
+            @Query("page") Integer page,
+            @Query("pageSize") Integer pageSize,
+            @Query("order") String order
+    );
 }
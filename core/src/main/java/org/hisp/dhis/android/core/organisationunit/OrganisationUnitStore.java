@@ -31,7 +31,10 @@ package org.hisp.dhis.android.core.organisationunit;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
+
 import java.util.Date;
+import java.util.List;
 
 public interface OrganisationUnitStore {
     long insert(
@@ -56,4 +59,34 @@ public interface OrganisationUnitStore {
 
     int delete();
 
+    /**
+     * Inserts or updates the organisation units with one statement per organisation unit, see
+     * {@link org.hisp.dhis.android.core.data.database.BulkUpsert}.
+     */
+    int upsert(@NonNull List<OrganisationUnit> organisationUnits);
+
+    @Nullable
+    OrganisationUnitModel queryByUid(@NonNull String uid);
+
+    /**
+     * @return lazily mapped direct children of the organisation unit, which have to be closed after use
+     */
+    @NonNull
+    LazyCursorList<OrganisationUnitModel> queryChildren(@NonNull String parentUid);
+
+    /**
+     * Descendants are looked up by a range scan over the index on the path.
+     *
+     * @return lazily mapped descendants of the organisation unit ordered by path, which have to be closed after use
+     */
+    @NonNull
+    LazyCursorList<OrganisationUnitModel> queryDescendants(@NonNull String uid);
+
+    /**
+     * @return stored ancestors of the organisation unit, from the root down to its parent
+     */
+    @NonNull
+    List<OrganisationUnitModel> queryAncestors(@NonNull String uid);
+
+    int countDescendants(@NonNull String uid);
 }
@@ -28,13 +28,19 @@
 
 package org.hisp.dhis.android.core.organisationunit;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import org.hisp.dhis.android.core.data.database.BulkUpsert;
+import org.hisp.dhis.android.core.data.database.CursorMapper;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -77,20 +83,69 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
             " WHERE " +
             OrganisationUnitModel.Columns.UID + " = ?;";
 
+    // index of the uid argument of the where clause, which follows the 15 arguments of the set clause
+    private static final int WHERE_UID_INDEX = 16;
+
     private static final String DELETE_STATEMENT = "DELETE FROM " + OrganisationUnitModel.TABLE +
             " WHERE " + OrganisationUnitModel.Columns.UID + " =?;";
 
+    private static final String QUERY_BY_UID_STATEMENT = "SELECT * FROM " + OrganisationUnitModel.TABLE +
+            " WHERE " + OrganisationUnitModel.Columns.UID + " = ?;";
+
+    private static final String QUERY_CHILDREN_STATEMENT = "SELECT * FROM " + OrganisationUnitModel.TABLE +
+            " WHERE " + OrganisationUnitModel.Columns.PARENT + " = ?" +
+            " ORDER BY " + OrganisationUnitModel.Columns.ID + ";";
+
+    // descendant paths start with the path of the organisation unit followed by '/', and
+    // sort before the path followed by '0', the next character: this is a range on the path index
+    private static final String DESCENDANTS_CLAUSE = " WHERE " + OrganisationUnitModel.Columns.PATH + " > (" +
+            "SELECT " + OrganisationUnitModel.Columns.PATH + " || '" + OrganisationUnitTree.DELIMITER + "'" +
+            " FROM " + OrganisationUnitModel.TABLE + " WHERE " + OrganisationUnitModel.Columns.UID + " = ?)" +
+            " AND " + OrganisationUnitModel.Columns.PATH + " < (" +
+            "SELECT " + OrganisationUnitModel.Columns.PATH + " || '0'" +
+            " FROM " + OrganisationUnitModel.TABLE + " WHERE " + OrganisationUnitModel.Columns.UID + " = ?)";
+
+    private static final String QUERY_DESCENDANTS_STATEMENT = "SELECT * FROM " + OrganisationUnitModel.TABLE +
+            DESCENDANTS_CLAUSE + " ORDER BY " + OrganisationUnitModel.Columns.PATH + ";";
+
+    static final String COUNT_DESCENDANTS_STATEMENT = "SELECT COUNT(*) FROM " + OrganisationUnitModel.TABLE +
+            DESCENDANTS_CLAUSE + ";";
+
+    private static final CursorMapper<OrganisationUnitModel> MAPPER = new OrganisationUnitModelMapper();
+
 
     private final DatabaseAdapter databaseAdapter;
     private final SQLiteStatement insertStatement;
     private final SQLiteStatement updateStatement;
     private final SQLiteStatement deleteStatement;
+    private final BulkUpsert<OrganisationUnit> bulkUpsert;
 
     public OrganisationUnitStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
         this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
         this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
         this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.bulkUpsert = new BulkUpsert<>(databaseAdapter, OrganisationUnitModel.TABLE,
+                OrganisationUnitModel.Columns.UID, insertStatement, updateStatement, WHERE_UID_INDEX,
+                new BulkUpsert.Binder<OrganisationUnit>() {
+                    @NonNull
+                    @Override
+                    public String uid(@NonNull OrganisationUnit organisationUnit) {
+                        return organisationUnit.uid();
+                    }
+
+                    @Override
+                    public void bind(@NonNull SQLiteStatement statement, @NonNull OrganisationUnit organisationUnit) {
+                        String parent = organisationUnit.parent() == null ? null : organisationUnit.parent().uid();
+                        bindArguments(statement, organisationUnit.uid(), organisationUnit.code(),
+                                organisationUnit.name(), organisationUnit.displayName(), organisationUnit.created(),
+                                organisationUnit.lastUpdated(), organisationUnit.shortName(),
+                                organisationUnit.displayShortName(), organisationUnit.description(),
+                                organisationUnit.displayDescription(), organisationUnit.path(),
+                                organisationUnit.openingDate(), organisationUnit.closedDate(), parent,
+                                organisationUnit.level());
+                    }
+                });
     }
 
     @Override
@@ -136,7 +191,7 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
         );
 
         // bind the whereClause
-        sqLiteBind(updateStatement, 16, whereUid);
+        sqLiteBind(updateStatement, WHERE_UID_INDEX, whereUid);
 
         return databaseAdapter.executeUpdateDelete(OrganisationUnitModel.TABLE, updateStatement);
     }
@@ -156,6 +211,66 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
         return databaseAdapter.delete(OrganisationUnitModel.TABLE);
     }
 
+    @Override
+    public int upsert(@NonNull List<OrganisationUnit> organisationUnits) {
+        return bulkUpsert.upsert(organisationUnits);
+    }
+
+    @Nullable
+    @Override
+    public OrganisationUnitModel queryByUid(@NonNull String uid) {
+        return LazyCursorList.queryFirst(databaseAdapter, MAPPER, QUERY_BY_UID_STATEMENT, uid);
+    }
+
+    @NonNull
+    @Override
+    public LazyCursorList<OrganisationUnitModel> queryChildren(@NonNull String parentUid) {
+        return LazyCursorList.query(databaseAdapter, MAPPER, QUERY_CHILDREN_STATEMENT, parentUid);
+    }
+
+    @NonNull
+    @Override
+    public LazyCursorList<OrganisationUnitModel> queryDescendants(@NonNull String uid) {
+        return LazyCursorList.query(databaseAdapter, MAPPER, QUERY_DESCENDANTS_STATEMENT, uid, uid);
+    }
+
+    @NonNull
+    @Override
+    public List<OrganisationUnitModel> queryAncestors(@NonNull String uid) {
+        OrganisationUnitModel organisationUnit = queryByUid(uid);
+        List<String> ancestorUids = OrganisationUnitTree.pathUids(
+                organisationUnit == null ? null : organisationUnit.path());
+        ancestorUids.remove(uid);
+        if (ancestorUids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(OrganisationUnitModel.TABLE)
+                .append(" WHERE ").append(OrganisationUnitModel.Columns.UID).append(" IN (");
+        for (int i = 0; i < ancestorUids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") ORDER BY LENGTH(").append(OrganisationUnitModel.Columns.PATH).append(");");
+
+        LazyCursorList<OrganisationUnitModel> ancestors = LazyCursorList.query(databaseAdapter, MAPPER,
+                sql.toString(), ancestorUids.toArray(new String[ancestorUids.size()]));
+        try {
+            return new ArrayList<>(ancestors);
+        } finally {
+            ancestors.close();
+        }
+    }
+
+    @Override
+    public int countDescendants(@NonNull String uid) {
+        Cursor cursor = databaseAdapter.query(COUNT_DESCENDANTS_STATEMENT, uid, uid);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
     private void bindArguments(SQLiteStatement sqLiteStatement, @NonNull String uid,
                                @Nullable String code,
                                @Nullable String name,
@@ -28,56 +28,156 @@
 package org.hisp.dhis.android.core.organisationunit;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 public final class OrganisationUnitTree {
 
     public static final String DELIMITER = "/";
+    private static final char DELIMITER_CHAR = '/';
 
     private OrganisationUnitTree() {}
 
     /**
      * Extract a set of root uid's of OrganisationUnits, accessible by the user,
      * from a list of OrganisationUnits and a list of Assigned OrganisationUnits.
-     * Based on the paths of the OrganisationUnits from the list.
+     * Based on the paths of the OrganisationUnits from the list: the root of an OrganisationUnit is
+     * the first OrganisationUnit on its path which is assigned as well. Every path is scanned once and
+     * its segments are looked up in place, so that the cost grows linearly with the number of assigned
+     * OrganisationUnits.
      *
      * @param organisationUnits
-     * @return set of root uid's
+     * @return set of root uid's, in the order in which they are found
      */
     public static Set<String> findRoots(List<OrganisationUnit> organisationUnits) throws IllegalArgumentException {
-        Set<String> rootNodes = new HashSet<>();
+        Set<String> roots = new LinkedHashSet<>();
         if (organisationUnits == null || organisationUnits.isEmpty()) {
-            return rootNodes; //no assigned uid's, so don't waste time & quit early
-        }
-        //extract a list of the uid's:
-        List<String> organisationUnitUids = new ArrayList<>(organisationUnits.size());
-        for (OrganisationUnit orgUnit : organisationUnits) {
-            organisationUnitUids.add(orgUnit.uid());
+            return roots; //no assigned uid's, so don't waste time & quit early
         }
 
+        UidIndex assignedUids = new UidIndex(organisationUnits);
         for (int i = 0, size = organisationUnits.size(); i < size; i++) {
             String path = organisationUnits.get(i).path();
 
             if (path == null || path.isEmpty()) { //path shouldn't be empty or null.
                 throw new IllegalArgumentException("OrganisationUnit's path should not be null or empty!");
-            } else {
-                getRootFromPath(rootNodes, organisationUnitUids, path);
+            }
+
+            String root = getRootFromPath(assignedUids, path);
+            if (root != null) { //null if the OrganisationUnit is not on its own path
+                roots.add(root);
             }
         }
-        return rootNodes;
+        return roots;
     }
 
-    private static void getRootFromPath(Set<String> rootNodes, List<String> organisationUnitUids, String path) {
-        String[] result = path.split(DELIMITER);
-        for (int j = 0, rSize = result.length; j < rSize; j++) {
-            if (rootNodes.contains(result[j])) {
-                break; //already in root nodes stop iterating.
-            } else if (organisationUnitUids.contains(result[j])) {
-                rootNodes.add(result[j]);
-                break;
+    /**
+     * Splits a path into the uid's of the OrganisationUnits on it, from the root down to the
+     * OrganisationUnit itself.
+     *
+     * @param path path of the form /rootUid/childUid/uid
+     * @return modifiable list of uid's, which is empty for a null path
+     */
+    public static List<String> pathUids(String path) {
+        List<String> uids = new ArrayList<>();
+        if (path == null) {
+            return uids;
+        }
+        for (String uid : path.split(DELIMITER)) {
+            if (!uid.isEmpty()) {
+                uids.add(uid);
+            }
+        }
+        return uids;
+    }
+
+    /**
+     * @return modifiable list of the uid's on the path of the OrganisationUnit, from the root down, which
+     * always ends with the uid of the OrganisationUnit itself, even if the path is missing
+     */
+    public static List<String> closureUids(String uid, String path) {
+        List<String> uids = pathUids(path);
+        int size = uids.size();
+        if (size == 0 || !uid.equals(uids.get(size - 1))) {
+            uids.add(uid);
+        }
+        return uids;
+    }
+
+    /**
+     * @return the first uid on the path which is assigned, or null if there is none
+     */
+    private static String getRootFromPath(UidIndex assignedUids, String path) {
+        int length = path.length();
+        int start = 0;
+        while (start < length) {
+            int end = path.indexOf(DELIMITER_CHAR, start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                String uid = assignedUids.find(path, start, end);
+                if (uid != null) {
+                    return uid;
+                }
             }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Open addressing hash set of uid's, which is probed with a segment of a path, so that
+     * segments are looked up without creating substrings.
+     */
+    private static final class UidIndex {
+        private final String[] table;
+        private final int mask;
+
+        UidIndex(List<OrganisationUnit> organisationUnits) {
+            // a power of two with at least twice as many slots as uid's keeps probe sequences short
+            table = new String[Integer.highestOneBit(organisationUnits.size() * 2 - 1) << 1];
+            mask = table.length - 1;
+
+            for (int i = 0, size = organisationUnits.size(); i < size; i++) {
+                String uid = organisationUnits.get(i).uid();
+                if (uid != null) {
+                    add(uid);
+                }
+            }
+        }
+
+        private void add(String uid) {
+            int slot = spread(uid.hashCode()) & mask;
+            while (table[slot] != null) {
+                if (table[slot].equals(uid)) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = uid;
+        }
+
+        String find(String path, int start, int end) {
+            // same hash as String.hashCode() of the segment
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+
+            int length = end - start;
+            for (int slot = spread(hash) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+                String uid = table[slot];
+                if (uid.length() == length && path.regionMatches(start, uid, 0, length)) {
+                    return uid;
+                }
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
         }
     }
 }
@@ -27,20 +27,26 @@
  */
 package org.hisp.dhis.android.core.program;
 
-import org.hisp.dhis.android.core.common.Call;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.CachedResponses;
+import org.hisp.dhis.android.core.common.DeletedObject;
+import org.hisp.dhis.android.core.common.MetadataDelta;
+import org.hisp.dhis.android.core.common.MetadataDeltaService;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.PersistedUidRegistry;
+import org.hisp.dhis.android.core.common.StagedCall;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.NestedField;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.dataelement.DataElement;
 import org.hisp.dhis.android.core.dataelement.DataElementHandler;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
-import org.hisp.dhis.android.core.option.OptionHandler;
 import org.hisp.dhis.android.core.option.OptionSet;
-import org.hisp.dhis.android.core.option.OptionSetHandler;
-import org.hisp.dhis.android.core.option.OptionSetStore;
-import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.relationship.RelationshipType;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
@@ -52,16 +58,53 @@ import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeHandler;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import retrofit2.Response;
 
-@SuppressWarnings("PMD.TooManyFields")
-public class ProgramCall implements Call<Response<Payload<Program>>> {
-    // retrofit service
+@SuppressWarnings({"PMD.TooManyFields", "PMD.ExcessiveImports", "PMD.AvoidDuplicateLiterals"})
+public class ProgramCall implements StagedCall<Payload<Program>> {
+    // changes of programs and of the metadata nested in them, each with its own last synced date
+    private static final List<MetadataDelta.Probe> PROBES = Collections.unmodifiableList(Arrays.asList(
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM, "programs", ""),
+            MetadataDelta.Probe.create(ResourceModel.Type.RELATIONSHIP_TYPE, "programs", "",
+                    "relationshipType.lastUpdated"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_STAGE, "programStages", "program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_STAGE_SECTION, "programStageSections",
+                    "programStage.program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_STAGE_DATA_ELEMENT, "programStageDataElements",
+                    "programStage.program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.DATA_ELEMENT, "programStageDataElements",
+                    "programStage.program", "dataElement.lastUpdated"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_RULE, "programRules", "program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_RULE_ACTION, "programRuleActions",
+                    "programRule.program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_RULE_VARIABLE, "programRuleVariables", "program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_INDICATOR, "programIndicators", "program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM_TRACKED_ENTITY_ATTRIBUTE,
+                    "programTrackedEntityAttributes", "program"),
+            MetadataDelta.Probe.create(ResourceModel.Type.TRACKED_ENTITY_ATTRIBUTE,
+                    "programTrackedEntityAttributes", "program", "trackedEntityAttribute.lastUpdated")
+    ));
+
+    private static final List<String> DELETED_KLASSES = Collections.unmodifiableList(Arrays.asList(
+            "Program", "ProgramStage", "ProgramStageSection", "ProgramStageDataElement", "DataElement",
+            "ProgramRule", "ProgramRuleAction", "ProgramRuleVariable", "ProgramIndicator",
+            "ProgramTrackedEntityAttribute", "TrackedEntityAttribute", "RelationshipType"
+    ));
+
+    private static final Fields<Program> FIELDS = fields();
+
+    // retrofit services
     private final ProgramService programService;
+    private final MetadataDeltaService deltaService;
 
     // database adapter and stores
     private final DatabaseAdapter databaseAdapter;
@@ -80,14 +123,33 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
     private final ProgramStageSectionProgramIndicatorLinkStore programStageSectionProgramIndicatorLinkStore;
     private final ProgramRuleActionStore programRuleActionStore;
     private final ProgramRuleStore programRuleStore;
-    private final OptionStore optionStore;
-    private final OptionSetStore optionSetStore;
     private final DataElementStore dataElementStore;
     private final ProgramStageDataElementStore programStageDataElementStore;
     private final ProgramStageSectionStore programStageSectionStore;
     private final ProgramStageStore programStageStore;
     private final RelationshipTypeStore relationshipStore;
-
+    private final int maxConcurrentChunks;
+    private final MetadataChanges metadataChanges;
+
+    // state resolved in prepare()
+    private String lastSyncedPrograms;
+    private String httpValidator;
+    private boolean incremental;
+    private Map<ResourceModel.Type, String> lastSyncedTypes;
+    private Set<String> storedUids;
+
+    // deletions listed by download() in incremental mode
+    private List<DeletedObject> deletedObjects = Collections.emptyList();
+
+    // metadata shared between programs is persisted only once
+    private final PersistedUidRegistry persistedUidRegistry = new PersistedUidRegistry();
+
+    /**
+     * @param metadataChanges collects the cached metadata which is changed by {@link #persist(Response)}; the
+     *                        caller applies it once the enclosing transaction has been committed
+     * @param deltaService    if not null, programs which have been synced before are downloaded again only if
+     *                        they or the metadata nested in them have changed, and deletions are reconciled
+     */
     public ProgramCall(ProgramService programService,
                        DatabaseAdapter databaseAdapter,
                        ResourceStore resourceStore,
@@ -101,14 +163,16 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
                        ProgramStageSectionProgramIndicatorLinkStore programStageSectionProgramIndicatorLinkStore,
                        ProgramRuleActionStore programRuleActionStore,
                        ProgramRuleStore programRuleStore,
-                       OptionStore optionStore,
-                       OptionSetStore optionSetStore,
                        DataElementStore dataElementStore,
                        ProgramStageDataElementStore programStageDataElementStore,
                        ProgramStageSectionStore programStageSectionStore,
                        ProgramStageStore programStageStore,
-                       RelationshipTypeStore relationshipStore) {
+                       RelationshipTypeStore relationshipStore,
+                       MetadataChanges metadataChanges,
+                       @Nullable MetadataDeltaService deltaService,
+                       int maxConcurrentChunks) {
         this.programService = programService;
+        this.deltaService = deltaService;
         this.databaseAdapter = databaseAdapter;
         this.resourceStore = resourceStore;
         this.uids = uids;
@@ -122,13 +186,13 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         this.programStageSectionProgramIndicatorLinkStore = programStageSectionProgramIndicatorLinkStore;
         this.programRuleActionStore = programRuleActionStore;
         this.programRuleStore = programRuleStore;
-        this.optionStore = optionStore;
-        this.optionSetStore = optionSetStore;
         this.dataElementStore = dataElementStore;
         this.programStageDataElementStore = programStageDataElementStore;
         this.programStageSectionStore = programStageSectionStore;
         this.programStageStore = programStageStore;
         this.relationshipStore = relationshipStore;
+        this.maxConcurrentChunks = maxConcurrentChunks;
+        this.metadataChanges = metadataChanges;
     }
 
     @Override
@@ -138,8 +202,28 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         }
     }
 
+    /**
+     * @return number of data element writes which were skipped because
+     * the same object had already been persisted while handling the programs of this call
+     */
+    public int skippedWrites() {
+        return persistedUidRegistry.skippedWrites();
+    }
+
     @Override
     public Response<Payload<Program>> call() throws Exception {
+        prepare();
+
+        Response<Payload<Program>> programsByLastUpdated = download();
+
+        if (programsByLastUpdated.isSuccessful()) {
+            persist(programsByLastUpdated);
+        }
+        return programsByLastUpdated;
+    }
+
+    @Override
+    public void prepare() {
         synchronized (this) {
             if (isExecuted) {
                 throw new IllegalStateException("Already executed");
@@ -148,41 +232,91 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
             isExecuted = true;
         }
 
-        if (uids.size() > MAX_UIDS) {
-            throw new IllegalArgumentException("Can't handle the amount of programs: " + uids.size() + ". " +
-                    "Max size is: " + MAX_UIDS);
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+        lastSyncedPrograms = resourceHandler.getLastUpdated(ResourceModel.Type.PROGRAM);
+        httpValidator = resourceHandler.getHttpValidator(ResourceModel.Type.PROGRAM);
+
+        incremental = deltaService != null && lastSyncedPrograms != null && uids != null;
+        if (incremental) {
+            lastSyncedTypes = MetadataDelta.lastSynced(resourceHandler, PROBES);
+            storedUids = MetadataDelta.storedUids(databaseAdapter, ProgramModel.TABLE);
         }
+    }
 
-        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+    @Override
+    public Response<Payload<Program>> download() throws Exception {
+        if (incremental) {
+            return downloadChanges();
+        }
+        return downloadPrograms(uids, lastSyncedPrograms);
+    }
 
-        String lastSyncedPrograms = resourceHandler.getLastUpdated(ResourceModel.Type.PROGRAM);
+    /**
+     * Downloads the whole graph of new programs and of programs which have changed, including changes of
+     * nested metadata which do not touch the lastUpdated date of the program itself.
+     */
+    private Response<Payload<Program>> downloadChanges() throws Exception {
+        MetadataDelta delta = new MetadataDelta(deltaService, MAX_UIDS, maxConcurrentChunks);
+
+        Set<String> knownUids = new HashSet<>(uids);
+        knownUids.retainAll(storedUids);
+        Response<Set<String>> changedUids = delta.changedUids(PROBES, lastSyncedTypes, knownUids);
+        if (!changedUids.isSuccessful()) {
+            return MetadataDelta.failure(changedUids);
+        }
 
-        Response<Payload<Program>> programsByLastUpdated =
-                programService.getPrograms(getFields(), Program.lastUpdated.gt(lastSyncedPrograms),
-                        Program.uid.in(uids), Boolean.FALSE
-                ).execute();
+        Response<Payload<DeletedObject>> deleted = delta.deletedObjects(DELETED_KLASSES, lastSyncedPrograms);
+        if (!deleted.isSuccessful()) {
+            return MetadataDelta.failure(deleted);
+        }
+        deletedObjects = deleted.body().items();
 
-        if (programsByLastUpdated.isSuccessful()) {
-            applyChangesToDatabase(resourceHandler, programsByLastUpdated);
+        Set<String> downloadUids = new HashSet<>(uids);
+        downloadUids.removeAll(storedUids);
+        downloadUids.addAll(changedUids.body());
+        if (downloadUids.isEmpty()) {
+            return Response.success(new Payload<>(Collections.<Program>emptyList()));
         }
-        return programsByLastUpdated;
+        return downloadPrograms(downloadUids, null);
+    }
+
+    private Response<Payload<Program>> downloadPrograms(Set<String> programUids,
+                                                        final String lastUpdated) throws Exception {
+        return new UidChunkedDownloader<Program>(MAX_UIDS, maxConcurrentChunks).download(programUids,
+                new UidChunkedDownloader.ChunkRequest<Program>() {
+                    @Override
+                    public Response<Payload<Program>> request(Set<String> chunk) throws IOException {
+                        return programService.getPrograms(FIELDS, Program.lastUpdated.gt(lastUpdated),
+                                Program.uid.in(chunk), Boolean.FALSE
+                        ).execute();
+                    }
+                });
     }
 
-    private void applyChangesToDatabase(ResourceHandler resourceHandler,
-                                        Response<Payload<Program>> programsByLastUpdated) {
+    @Override
+    public void persist(Response<Payload<Program>> programsByLastUpdated) {
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
         ProgramHandler programHandler = initializeProgramHandler();
         Transaction transaction = databaseAdapter.beginNewTransaction();
 
         try {
-            List<Program> programs = programsByLastUpdated.body().items();
-            int size = programs.size();
-            for (int i = 0; i < size; i++) {
-                Program program = programs.get(i);
-
-                programHandler.handleProgram(program);
+            // programs which the server reports as not modified have been persisted by the last sync
+            if (!CachedResponses.isUnchanged(programsByLastUpdated, httpValidator)) {
+                List<Program> programs = programsByLastUpdated.body().items();
+                int size = programs.size();
+                for (int i = 0; i < size; i++) {
+                    Program program = programs.get(i);
+
+                    programHandler.handleProgram(program);
+                }
             }
+            deleteObjects(deletedObjects);
 
-            resourceHandler.handleResource(ResourceModel.Type.PROGRAM, serverDate);
+            if (deltaService != null) {
+                MetadataDelta.handleResources(resourceHandler, PROBES, serverDate);
+            }
+            resourceHandler.handleResource(ResourceModel.Type.PROGRAM, serverDate,
+                    CachedResponses.validator(programsByLastUpdated));
 
             transaction.setSuccessful();
         } finally {
@@ -190,6 +324,64 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         }
     }
 
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+    private void deleteObjects(List<DeletedObject> deletedObjects) {
+        int size = deletedObjects.size();
+        for (int i = 0; i < size; i++) {
+            DeletedObject deletedObject = deletedObjects.get(i);
+            if (deletedObject.uid() == null || deletedObject.klass() == null) {
+                continue;
+            }
+
+            String uid = deletedObject.uid();
+            switch (deletedObject.klass()) {
+                case "Program":
+                    programStore.delete(uid);
+                    metadataChanges.changedAll();
+                    break;
+                case "ProgramStage":
+                    programStageStore.delete(uid);
+                    metadataChanges.deleted(MetadataType.PROGRAM_STAGE, uid);
+                    break;
+                case "ProgramStageSection":
+                    programStageSectionStore.delete(uid);
+                    break;
+                case "ProgramStageDataElement":
+                    programStageDataElementStore.delete(uid);
+                    metadataChanges.changed(MetadataType.PROGRAM_STAGE_DATA_ELEMENTS, null);
+                    break;
+                case "DataElement":
+                    dataElementStore.delete(uid);
+                    metadataChanges.deleted(MetadataType.DATA_ELEMENT, uid);
+                    break;
+                case "ProgramRule":
+                    programRuleStore.delete(uid);
+                    metadataChanges.changed(MetadataType.PROGRAM_RULES, null);
+                    break;
+                case "ProgramRuleAction":
+                    programRuleActionStore.delete(uid);
+                    break;
+                case "ProgramRuleVariable":
+                    programRuleVariableStore.delete(uid);
+                    break;
+                case "ProgramIndicator":
+                    programIndicatorStore.delete(uid);
+                    break;
+                case "ProgramTrackedEntityAttribute":
+                    programTrackedEntityAttributeStore.delete(uid);
+                    break;
+                case "TrackedEntityAttribute":
+                    trackedEntityAttributeStore.delete(uid);
+                    break;
+                case "RelationshipType":
+                    relationshipStore.delete(uid);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     private ProgramHandler initializeProgramHandler() {
         TrackedEntityAttributeHandler trackedEntityAttributeHandler =
                 new TrackedEntityAttributeHandler(trackedEntityAttributeStore);
@@ -210,17 +402,15 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         );
 
         ProgramRuleActionHandler programRuleActionHandler = new ProgramRuleActionHandler(programRuleActionStore);
-        ProgramRuleHandler programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler);
+        ProgramRuleHandler programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler,
+                metadataChanges);
 
-        OptionHandler optionHandler = new OptionHandler(optionStore);
-
-        OptionSetHandler optionSetHandler = new OptionSetHandler(optionSetStore, optionHandler);
-
-
-        DataElementHandler dataElementHandler = new DataElementHandler(dataElementStore, optionSetHandler);
+        DataElementHandler dataElementHandler = new DataElementHandler(
+                dataElementStore, persistedUidRegistry, metadataChanges
+        );
 
         ProgramStageDataElementHandler programStageDataElementHandler = new ProgramStageDataElementHandler(
-                programStageDataElementStore, dataElementHandler
+                programStageDataElementStore, dataElementHandler, metadataChanges
         );
 
         ProgramStageSectionHandler programStageSectionHandler = new ProgramStageSectionHandler(
@@ -233,7 +423,8 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         ProgramStageHandler programStageHandler = new ProgramStageHandler(
                 programStageStore,
                 programStageSectionHandler,
-                programStageDataElementHandler
+                programStageDataElementHandler,
+                metadataChanges
         );
 
         RelationshipTypeHandler relationshipTypeHandler = new RelationshipTypeHandler(relationshipStore);
@@ -246,10 +437,11 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
                 programIndicatorHandler,
                 programRuleHandler,
                 programTrackedEntityAttributeHandler,
-                relationshipTypeHandler);
+                relationshipTypeHandler,
+                metadataChanges);
     }
 
-    private Fields<Program> getFields() {
+    private static Fields<Program> fields() {
         return Fields.<Program>builder().fields(
                 Program.uid, Program.code, Program.name, Program.displayName, Program.created,
                 Program.lastUpdated, Program.shortName, Program.displayShortName, Program.description,
@@ -281,7 +473,7 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         ).build();
     }
 
-    private NestedField<Program, ?> getProgramToProgramStageFilters() {
+    private static NestedField<Program, ?> getProgramToProgramStageFilters() {
         return Program.programStages.with(
                 ProgramStage.uid, ProgramStage.code, ProgramStage.name, ProgramStage.displayName,
                 ProgramStage.created, ProgramStage.lastUpdated, ProgramStage.allowGenerateNextVisit,
@@ -331,7 +523,7 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         );
     }
 
-    private NestedField<Program, ?> getProgramToProgramRuleFilters() {
+    private static NestedField<Program, ?> getProgramToProgramRuleFilters() {
         return Program.programRules.with(
                 ProgramRule.uid, ProgramRule.code, ProgramRule.name, ProgramRule.displayName,
                 ProgramRule.created, ProgramRule.lastUpdated, ProgramRule.deleted,
@@ -370,7 +562,7 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         );
     }
 
-    private NestedField<Program, ?> getProgramToProgramRuleVariableFilters() {
+    private static NestedField<Program, ?> getProgramToProgramRuleVariableFilters() {
         return Program.programRuleVariables.with(
                 ProgramRuleVariable.uid, ProgramRuleVariable.code, ProgramRuleVariable.name,
                 ProgramRuleVariable.displayName, ProgramRuleVariable.created, ProgramRuleVariable.lastUpdated,
@@ -391,7 +583,7 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         );
     }
 
-    private NestedField<Program, ?> getProgramToProgramIndicatorFilters() {
+    private static NestedField<Program, ?> getProgramToProgramIndicatorFilters() {
         return Program.programIndicators.with(
                 ProgramIndicator.uid, ProgramIndicator.code, ProgramIndicator.name,
                 ProgramIndicator.displayName, ProgramIndicator.created,
@@ -406,7 +598,7 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         );
     }
 
-    private NestedField<Program, ?> getProgramToProgramTrackedEntityAttributeFilters() {
+    private static NestedField<Program, ?> getProgramToProgramTrackedEntityAttributeFilters() {
         return Program.programTrackedEntityAttributes.with(
                 ProgramTrackedEntityAttribute.uid, ProgramTrackedEntityAttribute.code,
                 ProgramTrackedEntityAttribute.name, ProgramTrackedEntityAttribute.displayName,
@@ -438,7 +630,7 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
         );
     }
 
-    private NestedField<Program, ?> getProgramToRelationshipTypeFilters() {
+    private static NestedField<Program, ?> getProgramToRelationshipTypeFilters() {
         return Program.relationshipType.with(
                 RelationshipType.uid, RelationshipType.code, RelationshipType.name,
                 RelationshipType.displayName, RelationshipType.created, RelationshipType.lastUpdated,
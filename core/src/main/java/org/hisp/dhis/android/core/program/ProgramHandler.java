@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -41,6 +42,7 @@ public class ProgramHandler {
     private final ProgramRuleHandler programRuleHandler;
     private final ProgramTrackedEntityAttributeHandler programTrackedEntityAttributeHandler;
     private final RelationshipTypeHandler relationshipHandler;
+    private final MetadataChanges metadataChanges;
 
     public ProgramHandler(ProgramStore programStore,
                           ProgramRuleVariableHandler programRuleVariableHandler,
@@ -48,7 +50,8 @@ public class ProgramHandler {
                           ProgramIndicatorHandler programIndicatorHandler,
                           ProgramRuleHandler programRuleHandler,
                           ProgramTrackedEntityAttributeHandler programTrackedEntityAttributeHandler,
-                          RelationshipTypeHandler relationshipHandler) {
+                          RelationshipTypeHandler relationshipHandler,
+                          MetadataChanges metadataChanges) {
         this.programStore = programStore;
         this.programRuleVariableHandler = programRuleVariableHandler;
         this.programStageHandler = programStageHandler;
@@ -56,6 +59,7 @@ public class ProgramHandler {
         this.programRuleHandler = programRuleHandler;
         this.programTrackedEntityAttributeHandler = programTrackedEntityAttributeHandler;
         this.relationshipHandler = relationshipHandler;
+        this.metadataChanges = metadataChanges;
     }
 
     public void handleProgram(Program program) {
@@ -66,7 +70,7 @@ public class ProgramHandler {
         deleteOrPersistProgram(program);
 
         // programStageHandler will invoke programStageSectionHandler, programStageDataElementHandler,
-        // programIndicatorHandler, dataElement handler and optionSetHandler
+        // programIndicatorHandler and dataElement handler
         programStageHandler.handleProgramStage(
                 program.uid(), program.programStages()
         );
@@ -92,6 +96,8 @@ public class ProgramHandler {
     private void deleteOrPersistProgram(Program program) {
         if (isDeleted(program)) {
             programStore.delete(program.uid());
+            // the rows of the program are deleted with it
+            metadataChanges.changedAll();
         } else {
             String relatedProgramUid = null;
 
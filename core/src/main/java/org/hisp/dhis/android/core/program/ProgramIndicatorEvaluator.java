@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.program;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+
+/**
+ * Computes program indicators from the events stored on the device. The expression and filter of an
+ * indicator are compiled to a single aggregate query (see {@link ProgramIndicatorSqlCompiler}), so the
+ * values are read, filtered and summed by SQLite instead of being loaded event by event.
+ */
+public class ProgramIndicatorEvaluator {
+    private final DatabaseAdapter databaseAdapter;
+
+    public ProgramIndicatorEvaluator(@NonNull DatabaseAdapter databaseAdapter) {
+        this.databaseAdapter = databaseAdapter;
+    }
+
+    /**
+     * @return the value of the indicator over all events of its program, or null if no event matches
+     * @throws IllegalArgumentException if the indicator has no program or expression, or uses
+     *                                  syntax which can not be evaluated offline
+     */
+    @Nullable
+    public Double evaluate(@NonNull ProgramIndicatorModel programIndicator) {
+        return evaluate(programIndicator, null);
+    }
+
+    /**
+     * @param enrollment the enrollment to restrict the events to, or null to evaluate all events
+     * @return the value of the indicator, or null if no event matches
+     * @throws IllegalArgumentException if the indicator has no program or expression, or uses
+     *                                  syntax which can not be evaluated offline
+     */
+    @Nullable
+    public Double evaluate(@NonNull ProgramIndicatorModel programIndicator, @Nullable String enrollment) {
+        return evaluate(compile(programIndicator, enrollment));
+    }
+
+    @NonNull
+    static ProgramIndicatorQuery compile(@NonNull ProgramIndicatorModel programIndicator,
+                                         @Nullable String enrollment) {
+        if (programIndicator.program() == null || programIndicator.expression() == null) {
+            throw new IllegalArgumentException("Program indicator " + programIndicator.uid()
+                    + " has no program or expression");
+        }
+        return new ProgramIndicatorSqlCompiler().compile(programIndicator.program(),
+                programIndicator.expression(), programIndicator.filter(), programIndicator.decimals(), enrollment);
+    }
+
+    @Nullable
+    private Double evaluate(@NonNull ProgramIndicatorQuery query) {
+        Cursor cursor = databaseAdapter.query(query.sql(), query.arguments());
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getDouble(0);
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
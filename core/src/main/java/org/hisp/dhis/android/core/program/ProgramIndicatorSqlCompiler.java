@@ -0,0 +1,579 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.program;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.constant.ConstantModel;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates the expression and filter of a program indicator, such as
+ * {@code d2:zing(#{stage.weight} - #{stage.birthWeight})} and {@code A{gender} == 'Female'}, into one
+ * aggregate query over the Event table. Every referenced data element and attribute becomes a join on
+ * the (indexed) data value tables, the expression is evaluated per event and summed, and the filter
+ * selects the events to include, so no event has to be read into memory.
+ */
+@SuppressWarnings("PMD.GodClass")
+final class ProgramIndicatorSqlCompiler {
+    private static final String EVENT = EventModel.TABLE;
+    private static final String ENROLLMENT = EnrollmentModel.TABLE;
+
+    private enum Type {
+        NUMBER, BOOLEAN, TEXT,
+
+        // a value as stored in the database, which is numeric or boolean depending on its use
+        VALUE
+    }
+
+    private static final class Sql {
+        final String text;
+        final Type type;
+
+        Sql(String text, Type type) {
+            this.text = text;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, String> dataValueAliases = new HashMap<>();
+    private final Map<String, String> attributeValueAliases = new HashMap<>();
+    private final StringBuilder dataValueJoins = new StringBuilder();
+    private final StringBuilder attributeValueJoins = new StringBuilder();
+    private final List<String> dataValueArguments = new ArrayList<>();
+    private final List<String> attributeValueArguments = new ArrayList<>();
+    private boolean joinEnrollment;
+
+    private String source;
+    private int position;
+
+    /**
+     * @param program    the program whose events are aggregated
+     * @param expression the indicator expression, evaluated per event and summed
+     * @param filter     an optional boolean expression selecting the events to aggregate
+     * @param decimals   the number of decimals to round the result to, or null to not round it
+     * @param enrollment an optional enrollment to restrict the aggregation to
+     * @throws IllegalArgumentException if the expression or filter is not valid or not supported offline
+     */
+    @NonNull
+    ProgramIndicatorQuery compile(@NonNull String program, @NonNull String expression, @Nullable String filter,
+                                  @Nullable Integer decimals, @Nullable String enrollment) {
+        reset();
+
+        String value = "SUM(" + number(parse(expression)) + ")";
+        if (decimals != null) {
+            value = "ROUND(" + value + ", " + decimals + ")";
+        }
+
+        StringBuilder where = new StringBuilder()
+                .append(" WHERE ").append(column(EVENT, EventModel.Columns.PROGRAM)).append(" = ?")
+                .append(" AND (").append(column(EVENT, EventModel.Columns.STATE)).append(" IS NULL OR ")
+                .append(column(EVENT, EventModel.Columns.STATE)).append(" <> '").append(State.TO_DELETE.name())
+                .append("')");
+        List<String> whereArguments = new ArrayList<>();
+        whereArguments.add(program);
+        if (enrollment != null) {
+            where.append(" AND ").append(column(EVENT, EventModel.Columns.ENROLLMENT_UID)).append(" = ?");
+            whereArguments.add(enrollment);
+        }
+        if (filter != null && !filter.trim().isEmpty()) {
+            where.append(" AND ").append(bool(parse(filter)));
+        }
+
+        StringBuilder sql = new StringBuilder()
+                .append("SELECT ").append(value)
+                .append(" FROM ").append(EVENT)
+                .append(dataValueJoins);
+        if (joinEnrollment) {
+            sql.append(" LEFT JOIN ").append(ENROLLMENT).append(" ON ")
+                    .append(column(ENROLLMENT, EnrollmentModel.Columns.UID)).append(" = ")
+                    .append(column(EVENT, EventModel.Columns.ENROLLMENT_UID));
+        }
+        sql.append(attributeValueJoins).append(where);
+
+        List<String> arguments = new ArrayList<>(dataValueArguments);
+        arguments.addAll(attributeValueArguments);
+        arguments.addAll(whereArguments);
+        return new ProgramIndicatorQuery(sql.toString(), arguments.toArray(new String[arguments.size()]));
+    }
+
+    private void reset() {
+        dataValueAliases.clear();
+        attributeValueAliases.clear();
+        dataValueJoins.setLength(0);
+        attributeValueJoins.setLength(0);
+        dataValueArguments.clear();
+        attributeValueArguments.clear();
+        joinEnrollment = false;
+    }
+
+    private Sql parse(String expression) {
+        String enclosingSource = source;
+        int enclosingPosition = position;
+        source = expression;
+        position = 0;
+
+        Sql result = or();
+        skipWhitespace();
+        if (position < source.length()) {
+            throw error("Unexpected '" + source.charAt(position) + "'");
+        }
+
+        source = enclosingSource;
+        position = enclosingPosition;
+        return result;
+    }
+
+    private Sql or() {
+        Sql left = and();
+        while (match("||") || matchWord("or")) {
+            left = new Sql("(" + bool(left) + " OR " + bool(and()) + ")", Type.BOOLEAN);
+        }
+        return left;
+    }
+
+    private Sql and() {
+        Sql left = equality();
+        while (match("&&") || matchWord("and")) {
+            left = new Sql("(" + bool(left) + " AND " + bool(equality()) + ")", Type.BOOLEAN);
+        }
+        return left;
+    }
+
+    private Sql equality() {
+        Sql left = relation();
+        while (true) {
+            if (match("==")) {
+                left = compare(left, "=", relation());
+            } else if (match("!=")) {
+                left = compare(left, "<>", relation());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Sql relation() {
+        Sql left = additive();
+        while (true) {
+            if (match("<=")) {
+                left = compare(left, "<=", additive());
+            } else if (match(">=")) {
+                left = compare(left, ">=", additive());
+            } else if (match("<")) {
+                left = compare(left, "<", additive());
+            } else if (match(">")) {
+                left = compare(left, ">", additive());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Sql additive() {
+        Sql left = multiplicative();
+        while (true) {
+            if (match("+")) {
+                left = arithmetic(left, "+", multiplicative());
+            } else if (match("-")) {
+                left = arithmetic(left, "-", multiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Sql multiplicative() {
+        Sql left = unary();
+        while (true) {
+            if (match("*")) {
+                left = arithmetic(left, "*", unary());
+            } else if (match("/")) {
+                left = arithmetic(left, "/", unary());
+            } else if (match("%")) {
+                left = arithmetic(left, "%", unary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Sql unary() {
+        if (match("!") || matchWord("not")) {
+            return new Sql("(NOT " + bool(unary()) + ")", Type.BOOLEAN);
+        }
+        if (match("-")) {
+            return new Sql("(-" + number(unary()) + ")", Type.NUMBER);
+        }
+        if (match("+")) {
+            return unary();
+        }
+        return primary();
+    }
+
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+    private Sql primary() {
+        skipWhitespace();
+        if (position >= source.length()) {
+            throw error("Unexpected end");
+        }
+
+        char c = source.charAt(position);
+        if (match("(")) {
+            Sql expression = or();
+            expect(")");
+            return expression;
+        }
+        if (match("#{")) {
+            return dataValue(name());
+        }
+        if (match("A{")) {
+            return attributeValue(name());
+        }
+        if (match("V{")) {
+            return variable(name());
+        }
+        if (match("C{")) {
+            return constant(name());
+        }
+        if (match("d2:")) {
+            return function();
+        }
+        if (c == '\'' || c == '"') {
+            return new Sql(quote(string(c)), Type.TEXT);
+        }
+        if (c >= '0' && c <= '9' || c == '.') {
+            return new Sql(number(), Type.NUMBER);
+        }
+        if (matchWord("true")) {
+            return new Sql("1", Type.BOOLEAN);
+        }
+        if (matchWord("false")) {
+            return new Sql("0", Type.BOOLEAN);
+        }
+        throw error("Unexpected '" + c + "'");
+    }
+
+    // #{programStage.dataElement}, or #{dataElement} for a value of any stage
+    private Sql dataValue(String name) {
+        int separator = name.indexOf('.');
+        String programStage = separator < 0 ? null : name.substring(0, separator);
+        String dataElement = name.substring(separator + 1);
+
+        String alias = dataValueAliases.get(name);
+        if (alias == null) {
+            alias = "dv" + dataValueAliases.size();
+            dataValueAliases.put(name, alias);
+
+            dataValueJoins.append(" LEFT JOIN ").append(TrackedEntityDataValueModel.TABLE).append(' ').append(alias)
+                    .append(" ON ").append(column(alias, TrackedEntityDataValueModel.Columns.EVENT))
+                    .append(" = ").append(column(EVENT, EventModel.Columns.UID))
+                    .append(" AND ").append(column(alias, TrackedEntityDataValueModel.Columns.DATA_ELEMENT))
+                    .append(" = ?");
+            dataValueArguments.add(dataElement);
+            if (programStage != null) {
+                dataValueJoins.append(" AND ").append(column(EVENT, EventModel.Columns.PROGRAM_STAGE)).append(" = ?");
+                dataValueArguments.add(programStage);
+            }
+        }
+        return new Sql(column(alias, TrackedEntityDataValueModel.Columns.VALUE), Type.VALUE);
+    }
+
+    // A{attribute}, or A{program.attribute}, is read from the instance of the enrollment of the event
+    private Sql attributeValue(String name) {
+        String attribute = name.substring(name.indexOf('.') + 1);
+
+        String alias = attributeValueAliases.get(attribute);
+        if (alias == null) {
+            alias = "av" + attributeValueAliases.size();
+            attributeValueAliases.put(attribute, alias);
+            joinEnrollment = true;
+
+            attributeValueJoins.append(" LEFT JOIN ").append(TrackedEntityAttributeValueModel.TABLE)
+                    .append(' ').append(alias).append(" ON ")
+                    .append(column(alias, TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE))
+                    .append(" = ").append(column(ENROLLMENT, EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE))
+                    .append(" AND ")
+                    .append(column(alias, TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_ATTRIBUTE))
+                    .append(" = ?");
+            attributeValueArguments.add(attribute);
+        }
+        return new Sql(column(alias, TrackedEntityAttributeValueModel.Columns.VALUE), Type.VALUE);
+    }
+
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+    private Sql variable(String name) {
+        switch (name) {
+            case "event_count":
+                // the expression is summed over the events, so every event counts as one
+                return new Sql("1", Type.NUMBER);
+            case "current_date":
+                return new Sql("date('now')", Type.TEXT);
+            case "event_date":
+                return new Sql(column(EVENT, EventModel.Columns.EVENT_DATE), Type.VALUE);
+            case "due_date":
+                return new Sql(column(EVENT, EventModel.Columns.DUE_DATE), Type.VALUE);
+            case "completed_date":
+                return new Sql(column(EVENT, EventModel.Columns.COMPLETE_DATE), Type.VALUE);
+            case "enrollment_date":
+                joinEnrollment = true;
+                return new Sql(column(ENROLLMENT, EnrollmentModel.Columns.DATE_OF_ENROLLMENT), Type.VALUE);
+            case "incident_date":
+                joinEnrollment = true;
+                return new Sql(column(ENROLLMENT, EnrollmentModel.Columns.DATE_OF_INCIDENT), Type.VALUE);
+            default:
+                throw error("Unsupported variable V{" + name + "}");
+        }
+    }
+
+    private Sql constant(String uid) {
+        return new Sql("(SELECT " + ConstantModel.Columns.VALUE + " FROM " + ConstantModel.TABLE
+                + " WHERE " + ConstantModel.Columns.UID + " = " + quote(uid) + ")", Type.VALUE);
+    }
+
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+    private Sql function() {
+        int start = position;
+        while (position < source.length() && Character.isLetter(source.charAt(position))) {
+            position++;
+        }
+        String name = source.substring(start, position);
+        expect("(");
+
+        Sql result;
+        switch (name) {
+            case "hasValue":
+                result = new Sql("(" + or().text + " IS NOT NULL)", Type.BOOLEAN);
+                break;
+            case "zing":
+                result = new Sql("MAX(0, " + number(or()) + ")", Type.NUMBER);
+                break;
+            case "oizp":
+                result = new Sql("(CASE WHEN " + number(or()) + " >= 0 THEN 1 ELSE 0 END)", Type.NUMBER);
+                break;
+            case "round":
+                result = new Sql("ROUND(" + number(or()) + ")", Type.NUMBER);
+                break;
+            case "floor":
+                result = floor(number(or()));
+                break;
+            case "ceil":
+                result = ceil(number(or()));
+                break;
+            case "daysBetween":
+                result = daysBetween();
+                break;
+            case "condition":
+                result = condition();
+                break;
+            default:
+                throw error("Unsupported function d2:" + name);
+        }
+        expect(")");
+        return result;
+    }
+
+    // SQLite has no floor() and ceil(), but truncates when casting to an integer
+    private static Sql floor(String value) {
+        return new Sql("(CAST(" + value + " AS INTEGER) - (" + value + " < CAST(" + value + " AS INTEGER)))",
+                Type.NUMBER);
+    }
+
+    private static Sql ceil(String value) {
+        return new Sql("(CAST(" + value + " AS INTEGER) + (" + value + " > CAST(" + value + " AS INTEGER)))",
+                Type.NUMBER);
+    }
+
+    private Sql daysBetween() {
+        String from = or().text;
+        expect(",");
+        String to = or().text;
+        return new Sql("(julianday(date(" + to + ")) - julianday(date(" + from + ")))", Type.NUMBER);
+    }
+
+    // d2:condition('boolean expression', valueIfTrue, valueIfFalse)
+    private Sql condition() {
+        skipWhitespace();
+        if (position >= source.length() || source.charAt(position) != '\'' && source.charAt(position) != '"') {
+            throw error("Expected a quoted condition");
+        }
+        String condition = bool(parse(string(source.charAt(position))));
+        expect(",");
+        String whenTrue = number(or());
+        expect(",");
+        String whenFalse = number(or());
+        return new Sql("(CASE WHEN " + condition + " THEN " + whenTrue + " ELSE " + whenFalse + " END)",
+                Type.NUMBER);
+    }
+
+    private static Sql arithmetic(Sql left, String operator, Sql right) {
+        return new Sql("(" + number(left) + " " + operator + " " + number(right) + ")", Type.NUMBER);
+    }
+
+    // the operands are compared as numbers or booleans if either of them is one, and as text otherwise
+    private static Sql compare(Sql left, String operator, Sql right) {
+        String text;
+        if (left.type == Type.NUMBER || right.type == Type.NUMBER) {
+            text = comparable(left) + " " + operator + " " + comparable(right);
+        } else if (left.type == Type.BOOLEAN || right.type == Type.BOOLEAN) {
+            text = bool(left) + " " + operator + " " + bool(right);
+        } else {
+            text = left.text + " " + operator + " " + right.text;
+        }
+        return new Sql("(" + text + ")", Type.BOOLEAN);
+    }
+
+    // values are stored as text, so they are cast to a real to not be divided as text or integers; a missing
+    // value counts as zero in a calculation, as it does on the server, instead of making the whole event NULL
+    private static String number(Sql sql) {
+        if (sql.type == Type.VALUE) {
+            return "COALESCE(CAST(" + sql.text + " AS REAL), 0)";
+        }
+        return comparable(sql);
+    }
+
+    // a missing value stays NULL in a comparison, so that the comparison does not hold
+    private static String comparable(Sql sql) {
+        if (sql.type == Type.VALUE || sql.type == Type.TEXT) {
+            return "CAST(" + sql.text + " AS REAL)";
+        }
+        return sql.text;
+    }
+
+    private static String bool(Sql sql) {
+        switch (sql.type) {
+            case NUMBER:
+                return "(" + sql.text + " <> 0)";
+            case VALUE:
+            case TEXT:
+                return "(" + sql.text + " = 'true')";
+            default:
+                return sql.text;
+        }
+    }
+
+    private static String column(String table, String column) {
+        return table + "." + column;
+    }
+
+    private static String quote(String text) {
+        return "'" + text.replace("'", "''") + "'";
+    }
+
+    private String name() {
+        int end = source.indexOf('}', position);
+        if (end < 0) {
+            throw error("Expected '}'");
+        }
+        String name = source.substring(position, end).trim();
+        position = end + 1;
+        if (name.isEmpty()) {
+            throw error("Expected a name");
+        }
+        return name;
+    }
+
+    private String string(char quote) {
+        StringBuilder builder = new StringBuilder();
+        position++;
+        while (position < source.length()) {
+            char c = source.charAt(position++);
+            if (c == quote) {
+                return builder.toString();
+            }
+            if (c == '\\' && position < source.length()) {
+                c = source.charAt(position++);
+            }
+            builder.append(c);
+        }
+        throw error("Unterminated string");
+    }
+
+    private String number() {
+        int start = position;
+        while (position < source.length()
+                && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+            position++;
+        }
+        String number = source.substring(start, position);
+        try {
+            Double.parseDouble(number);
+        } catch (NumberFormatException exception) {
+            throw error("Invalid number");
+        }
+        // a real literal, so that dividing by it does not truncate
+        return number.indexOf('.') < 0 ? number + ".0" : number;
+    }
+
+    private boolean match(String token) {
+        skipWhitespace();
+        if (source.startsWith(token, position)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    // words such as 'and' must not match the beginning of a longer word
+    private boolean matchWord(String word) {
+        skipWhitespace();
+        int end = position + word.length();
+        if (source.startsWith(word, position)
+                && (end == source.length() || !Character.isLetterOrDigit(source.charAt(end)))) {
+            position = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!match(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + position + " in: " + source);
+    }
+}
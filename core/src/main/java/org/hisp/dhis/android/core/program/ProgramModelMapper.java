@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.program;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.data.database.CursorMapper;
+
+import static org.hisp.dhis.android.core.data.database.CursorValues.getBoolean;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getDate;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getEnum;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getInteger;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getLong;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getString;
+
+final class ProgramModelMapper implements CursorMapper<ProgramModel> {
+
+    @NonNull
+    @Override
+    public RowMapper<ProgramModel> bind(@NonNull Cursor cursor) {
+        return new Row(cursor);
+    }
+
+    @SuppressWarnings("PMD.TooManyFields")
+    private static final class Row implements RowMapper<ProgramModel> {
+        private final int id;
+        private final int uid;
+        private final int code;
+        private final int name;
+        private final int displayName;
+        private final int created;
+        private final int lastUpdated;
+        private final int shortName;
+        private final int displayShortName;
+        private final int description;
+        private final int displayDescription;
+        private final int version;
+        private final int onlyEnrollOnce;
+        private final int enrollmentDateLabel;
+        private final int displayIncidentDate;
+        private final int incidentDateLabel;
+        private final int registration;
+        private final int selectEnrollmentDatesInFuture;
+        private final int dataEntryMethod;
+        private final int ignoreOverdueEvents;
+        private final int relationshipFromA;
+        private final int selectIncidentDatesInFuture;
+        private final int captureCoordinates;
+        private final int useFirstStageDuringRegistration;
+        private final int displayFrontPageList;
+        private final int programType;
+        private final int relationshipType;
+        private final int relationshipText;
+        private final int relatedProgram;
+        private final int trackedEntity;
+
+        Row(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(ProgramModel.Columns.ID);
+            uid = cursor.getColumnIndexOrThrow(ProgramModel.Columns.UID);
+            code = cursor.getColumnIndexOrThrow(ProgramModel.Columns.CODE);
+            name = cursor.getColumnIndexOrThrow(ProgramModel.Columns.NAME);
+            displayName = cursor.getColumnIndexOrThrow(ProgramModel.Columns.DISPLAY_NAME);
+            created = cursor.getColumnIndexOrThrow(ProgramModel.Columns.CREATED);
+            lastUpdated = cursor.getColumnIndexOrThrow(ProgramModel.Columns.LAST_UPDATED);
+            shortName = cursor.getColumnIndexOrThrow(ProgramModel.Columns.SHORT_NAME);
+            displayShortName = cursor.getColumnIndexOrThrow(ProgramModel.Columns.DISPLAY_SHORT_NAME);
+            description = cursor.getColumnIndexOrThrow(ProgramModel.Columns.DESCRIPTION);
+            displayDescription = cursor.getColumnIndexOrThrow(ProgramModel.Columns.DISPLAY_DESCRIPTION);
+            version = cursor.getColumnIndexOrThrow(ProgramModel.Columns.VERSION);
+            onlyEnrollOnce = cursor.getColumnIndexOrThrow(ProgramModel.Columns.ONLY_ENROLL_ONCE);
+            enrollmentDateLabel = cursor.getColumnIndexOrThrow(ProgramModel.Columns.ENROLLMENT_DATE_LABEL);
+            displayIncidentDate = cursor.getColumnIndexOrThrow(ProgramModel.Columns.DISPLAY_INCIDENT_DATE);
+            incidentDateLabel = cursor.getColumnIndexOrThrow(ProgramModel.Columns.INCIDENT_DATE_LABEL);
+            registration = cursor.getColumnIndexOrThrow(ProgramModel.Columns.REGISTRATION);
+            selectEnrollmentDatesInFuture = cursor.getColumnIndexOrThrow(
+                    ProgramModel.Columns.SELECT_ENROLLMENT_DATES_IN_FUTURE);
+            dataEntryMethod = cursor.getColumnIndexOrThrow(ProgramModel.Columns.DATA_ENTRY_METHOD);
+            ignoreOverdueEvents = cursor.getColumnIndexOrThrow(ProgramModel.Columns.IGNORE_OVERDUE_EVENTS);
+            relationshipFromA = cursor.getColumnIndexOrThrow(ProgramModel.Columns.RELATIONSHIP_FROM_A);
+            selectIncidentDatesInFuture = cursor.getColumnIndexOrThrow(
+                    ProgramModel.Columns.SELECT_INCIDENT_DATES_IN_FUTURE);
+            captureCoordinates = cursor.getColumnIndexOrThrow(ProgramModel.Columns.CAPTURE_COORDINATES);
+            useFirstStageDuringRegistration = cursor.getColumnIndexOrThrow(
+                    ProgramModel.Columns.USE_FIRST_STAGE_DURING_REGISTRATION);
+            displayFrontPageList = cursor.getColumnIndexOrThrow(ProgramModel.Columns.DISPLAY_FRONT_PAGE_LIST);
+            programType = cursor.getColumnIndexOrThrow(ProgramModel.Columns.PROGRAM_TYPE);
+            relationshipType = cursor.getColumnIndexOrThrow(ProgramModel.Columns.RELATIONSHIP_TYPE);
+            relationshipText = cursor.getColumnIndexOrThrow(ProgramModel.Columns.RELATIONSHIP_TEXT);
+            relatedProgram = cursor.getColumnIndexOrThrow(ProgramModel.Columns.RELATED_PROGRAM);
+            trackedEntity = cursor.getColumnIndexOrThrow(ProgramModel.Columns.TRACKED_ENTITY);
+        }
+
+        @NonNull
+        @Override
+        public ProgramModel map(@NonNull Cursor cursor) {
+            return ProgramModel.builder()
+                    .id(getLong(cursor, id))
+                    .uid(getString(cursor, uid))
+                    .code(getString(cursor, code))
+                    .name(getString(cursor, name))
+                    .displayName(getString(cursor, displayName))
+                    .created(getDate(cursor, created))
+                    .lastUpdated(getDate(cursor, lastUpdated))
+                    .shortName(getString(cursor, shortName))
+                    .displayShortName(getString(cursor, displayShortName))
+                    .description(getString(cursor, description))
+                    .displayDescription(getString(cursor, displayDescription))
+                    .version(getInteger(cursor, version))
+                    .onlyEnrollOnce(getBoolean(cursor, onlyEnrollOnce))
+                    .enrollmentDateLabel(getString(cursor, enrollmentDateLabel))
+                    .displayIncidentDate(getBoolean(cursor, displayIncidentDate))
+                    .incidentDateLabel(getString(cursor, incidentDateLabel))
+                    .registration(getBoolean(cursor, registration))
+                    .selectEnrollmentDatesInFuture(getBoolean(cursor, selectEnrollmentDatesInFuture))
+                    .dataEntryMethod(getBoolean(cursor, dataEntryMethod))
+                    .ignoreOverdueEvents(getBoolean(cursor, ignoreOverdueEvents))
+                    .relationshipFromA(getBoolean(cursor, relationshipFromA))
+                    .selectIncidentDatesInFuture(getBoolean(cursor, selectIncidentDatesInFuture))
+                    .captureCoordinates(getBoolean(cursor, captureCoordinates))
+                    .useFirstStageDuringRegistration(getBoolean(cursor, useFirstStageDuringRegistration))
+                    .displayFrontPageList(getBoolean(cursor, displayFrontPageList))
+                    .programType(getEnum(cursor, programType, ProgramType.class))
+                    .relationshipType(getString(cursor, relationshipType))
+                    .relationshipText(getString(cursor, relationshipText))
+                    .relatedProgram(getString(cursor, relatedProgram))
+                    .trackedEntity(getString(cursor, trackedEntity))
+                    .build();
+        }
+    }
+}
@@ -27,6 +27,9 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
+
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -34,11 +37,14 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class ProgramRuleHandler {
     private final ProgramRuleStore programRuleStore;
     private final ProgramRuleActionHandler programRuleActionHandler;
+    private final MetadataChanges metadataChanges;
 
     public ProgramRuleHandler(ProgramRuleStore programRuleStore,
-                              ProgramRuleActionHandler programRuleActionHandler) {
+                              ProgramRuleActionHandler programRuleActionHandler,
+                              MetadataChanges metadataChanges) {
         this.programRuleStore = programRuleStore;
         this.programRuleActionHandler = programRuleActionHandler;
+        this.metadataChanges = metadataChanges;
     }
 
     public void handleProgramRules(List<ProgramRule> programRules) {
@@ -61,6 +67,9 @@ public class ProgramRuleHandler {
         for (int i = 0; i < size; i++) {
             ProgramRule programRule = programRules.get(i);
 
+            // a program rule can move to another program, so the cached rules of all programs are dropped
+            metadataChanges.changed(MetadataType.PROGRAM_RULES, null);
+
             if (isDeleted(programRule)) {
                 programRuleStore.delete(programRule.uid());
             } else {
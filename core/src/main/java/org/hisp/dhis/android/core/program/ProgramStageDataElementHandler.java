@@ -28,6 +28,8 @@
 package org.hisp.dhis.android.core.program;
 
 import org.hisp.dhis.android.core.dataelement.DataElementHandler;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
 
 import java.util.List;
 
@@ -36,11 +38,14 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class ProgramStageDataElementHandler {
     private final ProgramStageDataElementStore programStageDataElementStore;
     private final DataElementHandler dataElementHandler;
+    private final MetadataChanges metadataChanges;
 
     public ProgramStageDataElementHandler(ProgramStageDataElementStore programStageDataElementStore,
-                                          DataElementHandler dataElementHandler) {
+                                          DataElementHandler dataElementHandler,
+                                          MetadataChanges metadataChanges) {
         this.programStageDataElementStore = programStageDataElementStore;
         this.dataElementHandler = dataElementHandler;
+        this.metadataChanges = metadataChanges;
     }
 
     public void handleProgramStageDataElements(String programStageSectionUid,
@@ -64,6 +69,10 @@ public class ProgramStageDataElementHandler {
         for (int i = 0; i < size; i++) {
             ProgramStageDataElement programStageDataElement = programStageDataElements.get(i);
 
+            // a program stage data element can move to another stage, so the cached program stage data
+            // elements of all stages are dropped
+            metadataChanges.changed(MetadataType.PROGRAM_STAGE_DATA_ELEMENTS, null);
+
             if (isDeleted(programStageDataElement)) {
                 programStageDataElementStore.delete(programStageDataElement.uid());
             } else {
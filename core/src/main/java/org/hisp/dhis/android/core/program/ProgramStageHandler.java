@@ -27,6 +27,9 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataType;
+
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -35,13 +38,16 @@ public class ProgramStageHandler {
     private final ProgramStageStore programStageStore;
     private final ProgramStageSectionHandler programStageSectionHandler;
     private final ProgramStageDataElementHandler programStageDataElementHandler;
+    private final MetadataChanges metadataChanges;
 
     public ProgramStageHandler(ProgramStageStore programStageStore,
                                ProgramStageSectionHandler programStageSectionHandler,
-                               ProgramStageDataElementHandler programStageDataElementHandler) {
+                               ProgramStageDataElementHandler programStageDataElementHandler,
+                               MetadataChanges metadataChanges) {
         this.programStageStore = programStageStore;
         this.programStageSectionHandler = programStageSectionHandler;
         this.programStageDataElementHandler = programStageDataElementHandler;
+        this.metadataChanges = metadataChanges;
     }
 
     public void handleProgramStage(String programUid, List<ProgramStage> programStages) {
@@ -66,6 +72,7 @@ public class ProgramStageHandler {
 
             if (isDeleted(programStage)) {
                 programStageStore.delete(programStage.uid());
+                metadataChanges.deleted(MetadataType.PROGRAM_STAGE, programStage.uid());
             } else {
 
                 int updatedRow = programStageStore.update(
@@ -95,6 +102,7 @@ public class ProgramStageHandler {
                             programStage.blockEntryForm(), programStage.minDaysFromStart(),
                             programStage.standardInterval(), programUid);
                 }
+                metadataChanges.changed(MetadataType.PROGRAM_STAGE, programStage.uid());
             }
 
             programStageSectionHandler.handleProgramStageSection(
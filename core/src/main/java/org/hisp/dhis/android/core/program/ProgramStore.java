@@ -31,6 +31,8 @@ package org.hisp.dhis.android.core.program;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
+
 import java.util.Date;
 
 public interface ProgramStore {
@@ -101,4 +103,13 @@ public interface ProgramStore {
             @NonNull String whereProgramUid);
 
     int delete(@NonNull String uid);
+
+    @Nullable
+    ProgramModel queryByUid(@NonNull String uid);
+
+    /**
+     * @return lazily mapped programs, which have to be closed after use
+     */
+    @NonNull
+    LazyCursorList<ProgramModel> queryAll();
 }
@@ -32,7 +32,9 @@ import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import org.hisp.dhis.android.core.data.database.CursorMapper;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.LazyCursorList;
 
 import java.util.Date;
 
@@ -114,6 +116,14 @@ public class ProgramStoreImpl implements ProgramStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + ProgramModel.TABLE + " WHERE " +
             ProgramModel.Columns.UID + " =?;";
 
+    private static final String QUERY_BY_UID_STATEMENT = "SELECT * FROM " + ProgramModel.TABLE +
+            " WHERE " + ProgramModel.Columns.UID + " = ?;";
+
+    private static final String QUERY_ALL_STATEMENT = "SELECT * FROM " + ProgramModel.TABLE +
+            " ORDER BY " + ProgramModel.Columns.ID + ";";
+
+    private static final CursorMapper<ProgramModel> MAPPER = new ProgramModelMapper();
+
     private final SQLiteStatement insertStatement;
     private final SQLiteStatement updateStatement;
     private final SQLiteStatement deleteStatement;
@@ -237,6 +247,18 @@ public class ProgramStoreImpl implements ProgramStore {
         return delete;
     }
 
+    @Nullable
+    @Override
+    public ProgramModel queryByUid(@NonNull String uid) {
+        return LazyCursorList.queryFirst(databaseAdapter, MAPPER, QUERY_BY_UID_STATEMENT, uid);
+    }
+
+    @NonNull
+    @Override
+    public LazyCursorList<ProgramModel> queryAll() {
+        return LazyCursorList.query(databaseAdapter, MAPPER, QUERY_ALL_STATEMENT);
+    }
+
     private void bindArguments(@NonNull SQLiteStatement sqLiteStatement,
                                @NonNull String uid,
                                @Nullable String code,
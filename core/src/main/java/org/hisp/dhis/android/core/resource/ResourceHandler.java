@@ -27,6 +27,8 @@
  */
 package org.hisp.dhis.android.core.resource;
 
+import android.support.annotation.Nullable;
+
 import java.util.Date;
 
 public class ResourceHandler {
@@ -47,6 +49,21 @@ public class ResourceHandler {
         }
     }
 
+    /**
+     * Updates the last synced date, and records the HTTP validator of the response which was persisted.
+     */
+    public void handleResource(ResourceModel.Type resourceType, Date serverDate, @Nullable String httpValidator) {
+        handleResource(resourceType, serverDate);
+        if (resourceType != null && serverDate != null) {
+            resourceStore.updateHttpValidator(resourceType, httpValidator);
+        }
+    }
+
+    @Nullable
+    public String getHttpValidator(ResourceModel.Type type) {
+        return resourceStore.getHttpValidator(type);
+    }
+
     /**
      * A wrapper to expose resourceStore.getLastUpdated(str).
      *
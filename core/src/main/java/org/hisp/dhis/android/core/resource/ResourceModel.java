@@ -48,9 +48,20 @@ public abstract class ResourceModel extends BaseModel {
     public static class Columns extends BaseModel.Columns {
         public static final String RESOURCE_TYPE = "resourceType";
         public static final String LAST_SYNCED = "lastSynced";
+        public static final String HTTP_VALIDATOR = "httpValidator";
     }
 
-    public enum Type {SYSTEM_INFO, USER, ORGANISATION_UNIT, PROGRAM, OPTION_SET, TRACKED_ENTITY}
+    public enum Type {
+        SYSTEM_INFO, USER, ORGANISATION_UNIT, PROGRAM, OPTION_SET, TRACKED_ENTITY,
+
+        // metadata nested in programs and option sets, tracked separately by incremental syncs
+        PROGRAM_STAGE, PROGRAM_STAGE_SECTION, PROGRAM_STAGE_DATA_ELEMENT, DATA_ELEMENT, PROGRAM_RULE,
+        PROGRAM_RULE_ACTION, PROGRAM_RULE_VARIABLE, PROGRAM_INDICATOR, PROGRAM_TRACKED_ENTITY_ATTRIBUTE,
+        TRACKED_ENTITY_ATTRIBUTE, RELATIONSHIP_TYPE, OPTION,
+
+        // data
+        TRACKED_ENTITY_INSTANCE
+    }
 
     @Nullable
     @ColumnName(Columns.RESOURCE_TYPE)
@@ -61,6 +72,13 @@ public abstract class ResourceModel extends BaseModel {
     @ColumnAdapter(DbDateColumnAdapter.class)
     public abstract Date lastSynced();
 
+    /**
+     * ETag, or else Last-Modified date, of the response which was persisted last.
+     */
+    @Nullable
+    @ColumnName(Columns.HTTP_VALIDATOR)
+    public abstract String httpValidator();
+
     @NonNull
     public abstract ContentValues toContentValues();
 
@@ -80,6 +98,8 @@ public abstract class ResourceModel extends BaseModel {
 
         public abstract Builder lastSynced(@Nullable Date lastSynced);
 
+        public abstract Builder httpValidator(@Nullable String httpValidator);
+
         public abstract ResourceModel build();
     }
 
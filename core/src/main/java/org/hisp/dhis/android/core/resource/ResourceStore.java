@@ -43,4 +43,29 @@ public interface ResourceStore {
     int delete(@NonNull String resourceType);
 
     String getLastUpdated(ResourceModel.Type type);
+
+    /**
+     * Records the HTTP validator of the response which has been persisted for the given type.
+     */
+    int updateHttpValidator(@NonNull ResourceModel.Type type, @Nullable String httpValidator);
+
+    @Nullable
+    String getHttpValidator(@NonNull ResourceModel.Type type);
+
+    /*
+     * Page cursors of paged downloads, which are stored in their own table, one per type and scope.
+     */
+
+    long insertCursor(@NonNull ResourceModel.Type type, @NonNull String scope,
+                      @NonNull Date started, @Nullable Integer nextPage);
+
+    int updateCursor(@NonNull ResourceModel.Type type, @NonNull String scope, @Nullable Integer nextPage);
+
+    @Nullable
+    ResourceCursorModel queryCursor(@NonNull ResourceModel.Type type, @NonNull String scope);
+
+    /**
+     * Deletes all page cursors of the given type.
+     */
+    int deleteCursors(@NonNull ResourceModel.Type type);
 }
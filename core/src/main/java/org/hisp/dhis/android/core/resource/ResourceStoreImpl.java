@@ -50,19 +50,59 @@ public class ResourceStoreImpl implements ResourceStore {
             Columns.LAST_SYNCED + "=? " + " WHERE " +
             Columns.RESOURCE_TYPE + " = ?;";
 
+    private static final String UPDATE_HTTP_VALIDATOR_STATEMENT = "UPDATE " + ResourceModel.TABLE + " SET " +
+            Columns.HTTP_VALIDATOR + " =? WHERE " +
+            Columns.RESOURCE_TYPE + " = ?;";
+
+    private static final String QUERY_HTTP_VALIDATOR_STATEMENT = "SELECT " +
+            Columns.HTTP_VALIDATOR + " FROM " + ResourceModel.TABLE +
+            " WHERE " + Columns.RESOURCE_TYPE + " = ?;";
+
     private static final String DELETE_STATEMENT = "DELETE FROM " + ResourceModel.TABLE +
             " WHERE " + Columns.RESOURCE_TYPE + " =?;";
-    
+
+    private static final String INSERT_CURSOR_STATEMENT = "INSERT INTO " + ResourceCursorModel.TABLE + " (" +
+            ResourceCursorModel.Columns.RESOURCE_TYPE + ", " +
+            ResourceCursorModel.Columns.SCOPE + ", " +
+            ResourceCursorModel.Columns.STARTED + ", " +
+            ResourceCursorModel.Columns.NEXT_PAGE + ") " +
+            "VALUES(?, ?, ?, ?);";
+
+    private static final String UPDATE_CURSOR_STATEMENT = "UPDATE " + ResourceCursorModel.TABLE + " SET " +
+            ResourceCursorModel.Columns.NEXT_PAGE + " =? WHERE " +
+            ResourceCursorModel.Columns.RESOURCE_TYPE + " = ? AND " +
+            ResourceCursorModel.Columns.SCOPE + " = ?;";
+
+    private static final String DELETE_CURSORS_STATEMENT = "DELETE FROM " + ResourceCursorModel.TABLE +
+            " WHERE " + ResourceCursorModel.Columns.RESOURCE_TYPE + " = ?;";
+
+    private static final String QUERY_CURSOR_STATEMENT = "SELECT " +
+            ResourceCursorModel.Columns.ID + ", " +
+            ResourceCursorModel.Columns.RESOURCE_TYPE + ", " +
+            ResourceCursorModel.Columns.SCOPE + ", " +
+            ResourceCursorModel.Columns.STARTED + ", " +
+            ResourceCursorModel.Columns.NEXT_PAGE + " FROM " + ResourceCursorModel.TABLE +
+            " WHERE " + ResourceCursorModel.Columns.RESOURCE_TYPE + " = ? AND " +
+            ResourceCursorModel.Columns.SCOPE + " = ?;";
+
     private final DatabaseAdapter databaseAdapter;
     private final SQLiteStatement insertStatement;
     private final SQLiteStatement updateStatement;
     private final SQLiteStatement deleteStatement;
+    private final SQLiteStatement updateHttpValidatorStatement;
+    private final SQLiteStatement insertCursorStatement;
+    private final SQLiteStatement updateCursorStatement;
+    private final SQLiteStatement deleteCursorsStatement;
 
     public ResourceStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
         this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
         this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
         this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.updateHttpValidatorStatement = databaseAdapter.compileStatement(UPDATE_HTTP_VALIDATOR_STATEMENT);
+        this.insertCursorStatement = databaseAdapter.compileStatement(INSERT_CURSOR_STATEMENT);
+        this.updateCursorStatement = databaseAdapter.compileStatement(UPDATE_CURSOR_STATEMENT);
+        this.deleteCursorsStatement = databaseAdapter.compileStatement(DELETE_CURSORS_STATEMENT);
     }
 
     @Override
@@ -113,4 +153,72 @@ public class ResourceStoreImpl implements ResourceStore {
         }
         return lastUpdated;
     }
+
+    @Override
+    public int updateHttpValidator(@NonNull ResourceModel.Type type, @Nullable String httpValidator) {
+        sqLiteBind(updateHttpValidatorStatement, 1, httpValidator);
+        sqLiteBind(updateHttpValidatorStatement, 2, type.name());
+
+        int returnValue = databaseAdapter.executeUpdateDelete(ResourceModel.TABLE, updateHttpValidatorStatement);
+        updateHttpValidatorStatement.clearBindings();
+        return returnValue;
+    }
+
+    @Nullable
+    @Override
+    public String getHttpValidator(@NonNull ResourceModel.Type type) {
+        Cursor cursor = databaseAdapter.query(QUERY_HTTP_VALIDATOR_STATEMENT, type.name());
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public long insertCursor(@NonNull ResourceModel.Type type, @NonNull String scope,
+                             @NonNull Date started, @Nullable Integer nextPage) {
+        sqLiteBind(insertCursorStatement, 1, type.name());
+        sqLiteBind(insertCursorStatement, 2, scope);
+        sqLiteBind(insertCursorStatement, 3, started);
+        sqLiteBind(insertCursorStatement, 4, nextPage);
+
+        long returnValue = databaseAdapter.executeInsert(ResourceCursorModel.TABLE, insertCursorStatement);
+        insertCursorStatement.clearBindings();
+        return returnValue;
+    }
+
+    @Override
+    public int updateCursor(@NonNull ResourceModel.Type type, @NonNull String scope, @Nullable Integer nextPage) {
+        sqLiteBind(updateCursorStatement, 1, nextPage);
+        sqLiteBind(updateCursorStatement, 2, type.name());
+        sqLiteBind(updateCursorStatement, 3, scope);
+
+        int returnValue = databaseAdapter.executeUpdateDelete(ResourceCursorModel.TABLE, updateCursorStatement);
+        updateCursorStatement.clearBindings();
+        return returnValue;
+    }
+
+    @Nullable
+    @Override
+    public ResourceCursorModel queryCursor(@NonNull ResourceModel.Type type, @NonNull String scope) {
+        Cursor cursor = databaseAdapter.query(QUERY_CURSOR_STATEMENT, type.name(), scope);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return cursor.moveToFirst() ? ResourceCursorModel.create(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public int deleteCursors(@NonNull ResourceModel.Type type) {
+        sqLiteBind(deleteCursorsStatement, 1, type.name());
+
+        int returnValue = databaseAdapter.executeUpdateDelete(ResourceCursorModel.TABLE, deleteCursorsStatement);
+        deleteCursorsStatement.clearBindings();
+        return returnValue;
+    }
 }
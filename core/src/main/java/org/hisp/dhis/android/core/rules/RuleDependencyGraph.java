@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableSourceType;
+import org.hisp.dhis.android.core.rules.RuleEngine.CompiledAction;
+import org.hisp.dhis.android.core.rules.RuleEngine.CompiledRule;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which variables depend on a data element or an attribute, and which rule conditions and action data read
+ * a variable. The graph is built once per {@link RuleEngine}, so that a changed value dirties only the
+ * rules and actions which depend on it, without scanning all of them.
+ * <p>
+ * Rules are identified by their index in {@link RuleEngine#rules()}, which is the order of their
+ * priority, and actions by {@link CompiledAction#index}. All arrays of indexes are ascending.
+ */
+final class RuleDependencyGraph {
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, int[]> slotsByDataElement;
+    private final Map<String, int[]> slotsByAttribute;
+
+    // by slot
+    private final int[][] conditionReaders;
+    private final int[][] actionReaders;
+    private final int[][] assigners;
+
+    // by action
+    private final int[] ruleOfAction;
+
+    // by rule
+    private final int[][] calculatedReads;
+
+    RuleDependencyGraph(@NonNull List<ProgramRuleVariableModel> variables, @NonNull CompiledRule[] rules,
+                        int slotCount, int actionCount) {
+        Map<String, List<Integer>> byDataElement = new HashMap<>();
+        Map<String, List<Integer>> byAttribute = new HashMap<>();
+        BitSet calculated = new BitSet(slotCount);
+        for (int slot = 0; slot < variables.size(); slot++) {
+            ProgramRuleVariableModel variable = variables.get(slot);
+            ProgramRuleVariableSourceType sourceType = variable.programRuleVariableSourceType();
+            if (sourceType == ProgramRuleVariableSourceType.TEI_ATTRIBUTE) {
+                add(byAttribute, variable.trackedEntityAttribute(), slot);
+            } else if (sourceType == ProgramRuleVariableSourceType.CALCULATED_VALUE) {
+                calculated.set(slot);
+            } else if (sourceType != null) {
+                add(byDataElement, variable.dataElement(), slot);
+            }
+        }
+        this.slotsByDataElement = toArrays(byDataElement);
+        this.slotsByAttribute = toArrays(byAttribute);
+
+        List<List<Integer>> conditions = lists(slotCount);
+        List<List<Integer>> actions = lists(slotCount);
+        List<List<Integer>> assignments = lists(slotCount);
+        this.ruleOfAction = new int[actionCount];
+        this.calculatedReads = new int[rules.length][];
+        for (int rule = 0; rule < rules.length; rule++) {
+            BitSet ruleReferences = (BitSet) rules[rule].conditionReferences.clone();
+            addReaders(conditions, rules[rule].conditionReferences, rule);
+            for (CompiledAction action : rules[rule].actions) {
+                ruleOfAction[action.index] = rule;
+                addReaders(actions, action.references, action.index);
+                ruleReferences.or(action.references);
+                if (action.assignedSlot >= 0) {
+                    assignments.get(action.assignedSlot).add(action.index);
+                }
+            }
+            ruleReferences.and(calculated);
+            calculatedReads[rule] = toArray(ruleReferences);
+        }
+        this.conditionReaders = toArrays(conditions);
+        this.actionReaders = toArrays(actions);
+        this.assigners = toArrays(assignments);
+    }
+
+    /**
+     * @return the slots of the variables whose value is taken from the data element
+     */
+    @NonNull
+    int[] dataElementSlots(@NonNull String dataElement) {
+        int[] slots = slotsByDataElement.get(dataElement);
+        return slots == null ? NONE : slots;
+    }
+
+    /**
+     * @return the slots of the variables whose value is taken from the tracked entity attribute
+     */
+    @NonNull
+    int[] attributeSlots(@NonNull String trackedEntityAttribute) {
+        int[] slots = slotsByAttribute.get(trackedEntityAttribute);
+        return slots == null ? NONE : slots;
+    }
+
+    /**
+     * @return the rules whose condition reads the slot
+     */
+    @NonNull
+    int[] conditionReaders(int slot) {
+        return conditionReaders[slot];
+    }
+
+    /**
+     * @return the actions whose data reads the slot
+     */
+    @NonNull
+    int[] actionReaders(int slot) {
+        return actionReaders[slot];
+    }
+
+    /**
+     * @return the assign actions which assign the calculated variable of the slot
+     */
+    @NonNull
+    int[] assigners(int slot) {
+        return assigners[slot];
+    }
+
+    int ruleOfAction(int action) {
+        return ruleOfAction[action];
+    }
+
+    /**
+     * @return the calculated variables read by the condition or the actions of the rule
+     */
+    @NonNull
+    int[] calculatedReads(int rule) {
+        return calculatedReads[rule];
+    }
+
+    private static void add(Map<String, List<Integer>> map, String key, int value) {
+        if (key == null) {
+            return;
+        }
+        List<Integer> values = map.get(key);
+        if (values == null) {
+            values = new ArrayList<>();
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static void addReaders(List<List<Integer>> readers, BitSet slots, int reader) {
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            readers.get(slot).add(reader);
+        }
+    }
+
+    private static List<List<Integer>> lists(int size) {
+        List<List<Integer>> lists = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            lists.add(new ArrayList<Integer>());
+        }
+        return lists;
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> map) {
+        Map<String, int[]> arrays = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+            arrays.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(arrays);
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] arrays = new int[lists.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = toArray(lists.get(i));
+        }
+        return arrays;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        if (list.isEmpty()) {
+            return NONE;
+        }
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static int[] toArray(BitSet bits) {
+        int[] array = new int[bits.cardinality()];
+        int i = 0;
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            array[i++] = bit;
+        }
+        return array;
+    }
+}
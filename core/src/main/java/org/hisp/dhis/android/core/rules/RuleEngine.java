@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.program.ProgramRuleActionModel;
+import org.hisp.dhis.android.core.program.ProgramRuleActionType;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableSourceType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The program rules of a program, compiled once so that they can be evaluated on every change of a value
+ * during data entry. The conditions and action data are parsed into {@link RuleExpression}s whose
+ * variables are resolved to slots, and the rules are ordered by priority. Rules which cannot be compiled
+ * are left out and reported by {@link #invalidRules()}. A {@link RuleDependencyGraph} links the data
+ * elements and attributes to the rules and actions which depend on them.
+ * <p>
+ * The values are evaluated in {@link RuleSession}s, one for each event or enrollment which is entered.
+ * A rule engine is immutable and can be shared between threads.
+ */
+public final class RuleEngine {
+    static final String CURRENT_DATE = "current_date";
+    static final String EVENT_DATE = "event_date";
+    static final String EVENT_COUNT = "event_count";
+    static final String ENROLLMENT_DATE = "enrollment_date";
+    static final String INCIDENT_DATE = "incident_date";
+
+    // environment variables have the slots after the program rule variables, in this order
+    static final List<String> ENVIRONMENT = Collections.unmodifiableList(Arrays.asList(
+            CURRENT_DATE, EVENT_DATE, EVENT_COUNT, ENROLLMENT_DATE, INCIDENT_DATE));
+
+    // actions whose data is an expression
+    private static final Set<ProgramRuleActionType> EXPRESSION_ACTIONS = EnumSet.of(
+            ProgramRuleActionType.ASSIGN, ProgramRuleActionType.DISPLAYTEXT,
+            ProgramRuleActionType.DISPLAYKEYVALUEPAIR, ProgramRuleActionType.SHOWWARNING,
+            ProgramRuleActionType.SHOWERROR, ProgramRuleActionType.WARNINGONCOMPLETE,
+            ProgramRuleActionType.ERRORONCOMPLETE);
+
+    // rules without a priority are evaluated last
+    private static final Comparator<ProgramRuleModel> PRIORITY = new Comparator<ProgramRuleModel>() {
+        @Override
+        public int compare(ProgramRuleModel left, ProgramRuleModel right) {
+            if (left.priority() == null || right.priority() == null) {
+                return left.priority() == null ? (right.priority() == null ? 0 : 1) : -1;
+            }
+            return left.priority().compareTo(right.priority());
+        }
+    };
+
+    private final List<ProgramRuleVariableModel> variables;
+    private final CompiledRule[] rules;
+    private final int actionCount;
+    private final RuleDependencyGraph dependencies;
+    private final List<String> invalidRules;
+
+    private RuleEngine(List<ProgramRuleVariableModel> variables, CompiledRule[] rules, int actionCount,
+                       List<String> invalidRules) {
+        this.variables = variables;
+        this.rules = rules;
+        this.actionCount = actionCount;
+        this.dependencies = new RuleDependencyGraph(variables, rules, slotCount(), actionCount);
+        this.invalidRules = invalidRules;
+    }
+
+    /**
+     * Compiles the rules, actions and variables of a program.
+     */
+    @NonNull
+    public static RuleEngine create(@NonNull List<ProgramRuleModel> programRules,
+                                    @NonNull List<ProgramRuleActionModel> programRuleActions,
+                                    @NonNull List<ProgramRuleVariableModel> programRuleVariables) {
+        List<ProgramRuleVariableModel> variables = Collections.unmodifiableList(
+                new ArrayList<>(programRuleVariables));
+
+        Map<String, Integer> variableSlots = new HashMap<>();
+        for (int slot = 0; slot < variables.size(); slot++) {
+            ProgramRuleVariableModel variable = variables.get(slot);
+            if (variable.name() != null && !variableSlots.containsKey(variable.name())) {
+                variableSlots.put(variable.name(), slot);
+            }
+        }
+        Map<String, Integer> environmentSlots = new HashMap<>();
+        for (int i = 0; i < ENVIRONMENT.size(); i++) {
+            environmentSlots.put(ENVIRONMENT.get(i), variables.size() + i);
+        }
+
+        Map<String, List<ProgramRuleActionModel>> actionsByRule = new HashMap<>();
+        for (ProgramRuleActionModel action : programRuleActions) {
+            List<ProgramRuleActionModel> actions = actionsByRule.get(action.programRule());
+            if (actions == null) {
+                actions = new ArrayList<>();
+                actionsByRule.put(action.programRule(), actions);
+            }
+            actions.add(action);
+        }
+
+        List<ProgramRuleModel> sortedRules = new ArrayList<>(programRules);
+        Collections.sort(sortedRules, PRIORITY);
+
+        List<CompiledRule> rules = new ArrayList<>(sortedRules.size());
+        List<String> invalidRules = new ArrayList<>();
+        int actionCount = 0;
+        for (ProgramRuleModel rule : sortedRules) {
+            List<ProgramRuleActionModel> actions = actionsByRule.get(rule.uid());
+            try {
+                CompiledRule compiledRule = compile(rule,
+                        actions == null ? Collections.<ProgramRuleActionModel>emptyList() : actions,
+                        actionCount, variableSlots, environmentSlots, variables);
+                rules.add(compiledRule);
+                actionCount += compiledRule.actions.length;
+            } catch (IllegalArgumentException exception) {
+                invalidRules.add(rule.uid());
+            }
+        }
+
+        return new RuleEngine(variables, rules.toArray(new CompiledRule[rules.size()]), actionCount,
+                Collections.unmodifiableList(invalidRules));
+    }
+
+    private static CompiledRule compile(ProgramRuleModel rule, List<ProgramRuleActionModel> actions,
+                                        int firstAction, Map<String, Integer> variableSlots,
+                                        Map<String, Integer> environmentSlots,
+                                        List<ProgramRuleVariableModel> variables) {
+        if (rule.condition() == null || rule.condition().trim().isEmpty()) {
+            throw new IllegalArgumentException("Rule without condition: " + rule.uid());
+        }
+        RuleExpressionParser conditionParser = new RuleExpressionParser(variableSlots, environmentSlots);
+        RuleExpression condition = conditionParser.parse(rule.condition());
+
+        CompiledAction[] compiledActions = new CompiledAction[actions.size()];
+        for (int i = 0; i < compiledActions.length; i++) {
+            ProgramRuleActionModel action = actions.get(i);
+            RuleExpressionParser dataParser = new RuleExpressionParser(variableSlots, environmentSlots);
+            RuleExpression data = null;
+            if (EXPRESSION_ACTIONS.contains(action.programRuleActionType())
+                    && action.data() != null && !action.data().trim().isEmpty()) {
+                data = dataParser.parse(action.data());
+            }
+            compiledActions[i] = new CompiledAction(action, firstAction + i, data, dataParser.references(),
+                    assignedSlot(action, variableSlots, variables));
+        }
+        return new CompiledRule(rule, condition, conditionParser.references(), compiledActions);
+    }
+
+    /**
+     * @return the slot of the calculated variable named by the content of an assign action, or -1
+     */
+    private static int assignedSlot(ProgramRuleActionModel action, Map<String, Integer> variableSlots,
+                                    List<ProgramRuleVariableModel> variables) {
+        if (action.programRuleActionType() != ProgramRuleActionType.ASSIGN || action.content() == null) {
+            return -1;
+        }
+        String name = action.content().trim();
+        if ((name.startsWith("#{") || name.startsWith("A{")) && name.endsWith("}")) {
+            name = name.substring(2, name.length() - 1).trim();
+        }
+        Integer slot = variableSlots.get(name);
+        if (slot == null || variables.get(slot).programRuleVariableSourceType()
+                != ProgramRuleVariableSourceType.CALCULATED_VALUE) {
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * Starts the evaluation of the rules for the entry of an event or an enrollment.
+     *
+     * @param enrollment   the enrollment of the event, or null for an event without registration
+     * @param currentEvent the event which is entered, or null if the enrollment is entered
+     * @param events       the other events of the enrollment
+     */
+    @NonNull
+    public RuleSession session(@Nullable RuleEnrollment enrollment, @Nullable RuleEvent currentEvent,
+                               @NonNull List<RuleEvent> events) {
+        return new RuleSession(this, enrollment, currentEvent, events);
+    }
+
+    /**
+     * @return the uids of the rules which are not evaluated, because their condition or the data of one of
+     * their actions could not be compiled
+     */
+    @NonNull
+    public List<String> invalidRules() {
+        return invalidRules;
+    }
+
+    @NonNull
+    List<ProgramRuleVariableModel> variables() {
+        return variables;
+    }
+
+    @NonNull
+    CompiledRule[] rules() {
+        return rules;
+    }
+
+    int actionCount() {
+        return actionCount;
+    }
+
+    @NonNull
+    RuleDependencyGraph dependencies() {
+        return dependencies;
+    }
+
+    int slotCount() {
+        return variables.size() + ENVIRONMENT.size();
+    }
+
+    static final class CompiledRule {
+        final ProgramRuleModel rule;
+        final RuleExpression condition;
+        final BitSet conditionReferences;
+        final CompiledAction[] actions;
+
+        CompiledRule(ProgramRuleModel rule, RuleExpression condition, BitSet conditionReferences,
+                     CompiledAction[] actions) {
+            this.rule = rule;
+            this.condition = condition;
+            this.conditionReferences = conditionReferences;
+            this.actions = actions;
+        }
+    }
+
+    static final class CompiledAction {
+        final ProgramRuleActionModel action;
+
+        // index among the actions of all rules of the engine
+        final int index;
+
+        @Nullable
+        final RuleExpression data;
+        final BitSet references;
+
+        // the calculated variable which the action assigns, or -1
+        final int assignedSlot;
+
+        CompiledAction(ProgramRuleActionModel action, int index, @Nullable RuleExpression data,
+                       BitSet references, int assignedSlot) {
+            this.action = action;
+            this.index = index;
+            this.data = data;
+            this.references = references;
+            this.assignedSlot = assignedSlot;
+        }
+    }
+}
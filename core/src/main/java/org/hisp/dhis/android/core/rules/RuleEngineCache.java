@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The compiled rule engines by program, so that the rules of a program are read and compiled only once.
+ * The cache is owned by {@link org.hisp.dhis.android.core.D2}; the calls which persist program rules have to
+ * {@link #invalidate()} it after their transaction has been committed.
+ */
+public final class RuleEngineCache {
+    private final RuleStore ruleStore;
+    private final Map<String, RuleEngine> ruleEngines = new HashMap<>();
+
+    // incremented on every invalidation, so that a stale engine is not cached
+    private int generation;
+
+    public RuleEngineCache(@NonNull RuleStore ruleStore) {
+        this.ruleStore = ruleStore;
+    }
+
+    /**
+     * Returns the rule engine of a program, compiling its rules only if they are not cached. The store is
+     * queried without holding a lock, since the query can wait for a transaction which invalidates the cache.
+     */
+    @NonNull
+    public RuleEngine get(@NonNull String program) {
+        int queryGeneration;
+        synchronized (this) {
+            RuleEngine ruleEngine = ruleEngines.get(program);
+            if (ruleEngine != null) {
+                return ruleEngine;
+            }
+            queryGeneration = generation;
+        }
+
+        RuleEngine ruleEngine = RuleEngine.create(ruleStore.queryProgramRules(program),
+                ruleStore.queryProgramRuleActions(program), ruleStore.queryProgramRuleVariables(program));
+
+        synchronized (this) {
+            if (queryGeneration == generation) {
+                ruleEngines.put(program, ruleEngine);
+            }
+        }
+        return ruleEngine;
+    }
+
+    public void invalidate() {
+        synchronized (this) {
+            generation++;
+            ruleEngines.clear();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiled program rule expression. Variables are resolved to slots when the expression is compiled,
+ * so that an evaluation does not look up names or parse the expression again. Values are strings as
+ * stored in the database, or the numbers and booleans computed from them.
+ */
+abstract class RuleExpression {
+    static final String DATE_PATTERN = "yyyy-MM-dd";
+
+    enum Operator {
+        OR, AND, EQUAL, NOT_EQUAL, LESS, LESS_OR_EQUAL, GREATER, GREATER_OR_EQUAL,
+        PLUS, MINUS, MULTIPLY, DIVIDE, MODULUS, NOT, NEGATE
+    }
+
+    enum Function {
+        CEIL(1, 1), FLOOR(1, 1), ROUND(1, 1), MODULUS(2, 2), ZING(1, 1), OIZP(1, 1), LENGTH(1, 1),
+        CONCATENATE(1, Integer.MAX_VALUE), DAYS_BETWEEN(2, 2);
+
+        private final int minArguments;
+        private final int maxArguments;
+
+        Function(int minArguments, int maxArguments) {
+            this.minArguments = minArguments;
+            this.maxArguments = maxArguments;
+        }
+
+        boolean accepts(int argumentCount) {
+            return argumentCount >= minArguments && argumentCount <= maxArguments;
+        }
+    }
+
+    @Nullable
+    abstract Object evaluate(@NonNull Object[] slots);
+
+    boolean isConstant() {
+        return false;
+    }
+
+    static RuleExpression constant(@Nullable Object value) {
+        return new Constant(value);
+    }
+
+    static RuleExpression variable(int slot) {
+        return new Variable(slot);
+    }
+
+    static RuleExpression hasValue(int slot) {
+        return new HasValue(slot);
+    }
+
+    static RuleExpression unary(@NonNull Operator operator, @NonNull RuleExpression operand) {
+        return fold(new Unary(operator, operand), operand.isConstant());
+    }
+
+    static RuleExpression binary(@NonNull Operator operator, @NonNull RuleExpression left,
+                                 @NonNull RuleExpression right) {
+        return fold(new Binary(operator, left, right), left.isConstant() && right.isConstant());
+    }
+
+    static RuleExpression function(@NonNull Function function, @NonNull RuleExpression... arguments) {
+        boolean constant = true;
+        for (RuleExpression argument : arguments) {
+            constant = constant && argument.isConstant();
+        }
+        return fold(new Call(function, arguments), constant);
+    }
+
+    // expressions of constants are evaluated once, when they are compiled
+    private static RuleExpression fold(RuleExpression expression, boolean constant) {
+        return constant ? new Constant(expression.evaluate(new Object[0])) : expression;
+    }
+
+    static boolean isTrue(@Nullable Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Double) {
+            return (Double) value != 0;
+        }
+        if (value instanceof String) {
+            String text = (String) value;
+            if (isNumeric(text)) {
+                return Double.parseDouble(text) != 0;
+            }
+            return Boolean.parseBoolean(text);
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of the value, 0 if there is no value, or NaN if the value is not a number
+     */
+    static double toNumber(@Nullable Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        String text = (String) value;
+        if (text.isEmpty()) {
+            return 0;
+        }
+        return isNumeric(text) ? Double.parseDouble(text) : Double.NaN;
+    }
+
+    /**
+     * @return the value as it would be stored, the empty string if there is no value
+     */
+    @NonNull
+    static String toText(@Nullable Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Double) {
+            double number = (Double) value;
+            if (number == Math.rint(number) && !Double.isInfinite(number) && Math.abs(number) < 1e15) {
+                return Long.toString((long) number);
+            }
+            return Double.toString(number);
+        }
+        return value.toString();
+    }
+
+    private static boolean isNumber(@Nullable Object value) {
+        return value instanceof Double || value instanceof String && isNumeric((String) value);
+    }
+
+    // cheaper than catching the exception of Double.parseDouble() for every text value which is compared
+    private static boolean isNumeric(String text) {
+        int length = text.length();
+        int start = length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+        boolean digits = false;
+        boolean point = false;
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    private static int compare(@Nullable Object left, @Nullable Object right) {
+        if (isNumber(left) && isNumber(right)) {
+            return Double.compare(toNumber(left), toNumber(right));
+        }
+        if (left instanceof Boolean || right instanceof Boolean) {
+            return Boolean.valueOf(isTrue(left)).compareTo(isTrue(right));
+        }
+        return toText(left).compareTo(toText(right));
+    }
+
+    private static final class Constant extends RuleExpression {
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(@NonNull Object[] slots) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    private static final class Variable extends RuleExpression {
+        private final int slot;
+
+        Variable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object evaluate(@NonNull Object[] slots) {
+            return slots[slot];
+        }
+    }
+
+    private static final class HasValue extends RuleExpression {
+        private final int slot;
+
+        HasValue(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object evaluate(@NonNull Object[] slots) {
+            Object value = slots[slot];
+            return value != null && !(value instanceof String && ((String) value).isEmpty());
+        }
+    }
+
+    private static final class Unary extends RuleExpression {
+        private final Operator operator;
+        private final RuleExpression operand;
+
+        Unary(Operator operator, RuleExpression operand) {
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        @Override
+        Object evaluate(@NonNull Object[] slots) {
+            Object value = operand.evaluate(slots);
+            return operator == Operator.NOT ? !isTrue(value) : -toNumber(value);
+        }
+    }
+
+    private static final class Binary extends RuleExpression {
+        private final Operator operator;
+        private final RuleExpression left;
+        private final RuleExpression right;
+
+        Binary(Operator operator, RuleExpression left, RuleExpression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+        Object evaluate(@NonNull Object[] slots) {
+            if (operator == Operator.AND) {
+                return isTrue(left.evaluate(slots)) && isTrue(right.evaluate(slots));
+            }
+            if (operator == Operator.OR) {
+                return isTrue(left.evaluate(slots)) || isTrue(right.evaluate(slots));
+            }
+
+            Object leftValue = left.evaluate(slots);
+            Object rightValue = right.evaluate(slots);
+            switch (operator) {
+                case EQUAL:
+                    return compare(leftValue, rightValue) == 0;
+                case NOT_EQUAL:
+                    return compare(leftValue, rightValue) != 0;
+                case LESS:
+                    return compare(leftValue, rightValue) < 0;
+                case LESS_OR_EQUAL:
+                    return compare(leftValue, rightValue) <= 0;
+                case GREATER:
+                    return compare(leftValue, rightValue) > 0;
+                case GREATER_OR_EQUAL:
+                    return compare(leftValue, rightValue) >= 0;
+                case PLUS:
+                    // the plus of two values which are not both numbers or missing concatenates them
+                    if ((leftValue == null || isNumber(leftValue)) && (rightValue == null || isNumber(rightValue))) {
+                        return toNumber(leftValue) + toNumber(rightValue);
+                    }
+                    return toText(leftValue) + toText(rightValue);
+                case MINUS:
+                    return toNumber(leftValue) - toNumber(rightValue);
+                case MULTIPLY:
+                    return toNumber(leftValue) * toNumber(rightValue);
+                case DIVIDE:
+                    return toNumber(leftValue) / toNumber(rightValue);
+                case MODULUS:
+                    return toNumber(leftValue) % toNumber(rightValue);
+                default:
+                    throw new IllegalStateException("Not a binary operator: " + operator);
+            }
+        }
+    }
+
+    private static final class Call extends RuleExpression {
+        private final Function function;
+        private final RuleExpression[] arguments;
+
+        Call(Function function, RuleExpression[] arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        private Object argument(Object[] slots, int index) {
+            return arguments[index].evaluate(slots);
+        }
+
+        @Override
+        @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+        Object evaluate(@NonNull Object[] slots) {
+            switch (function) {
+                case CEIL:
+                    return Math.ceil(toNumber(argument(slots, 0)));
+                case FLOOR:
+                    return Math.floor(toNumber(argument(slots, 0)));
+                case ROUND:
+                    return (double) Math.round(toNumber(argument(slots, 0)));
+                case MODULUS:
+                    return toNumber(argument(slots, 0)) % toNumber(argument(slots, 1));
+                case ZING:
+                    return Math.max(0, toNumber(argument(slots, 0)));
+                case OIZP:
+                    return toNumber(argument(slots, 0)) >= 0 ? 1.0 : 0.0;
+                case LENGTH:
+                    return (double) toText(argument(slots, 0)).length();
+                case CONCATENATE:
+                    StringBuilder builder = new StringBuilder();
+                    for (int i = 0; i < arguments.length; i++) {
+                        builder.append(toText(argument(slots, i)));
+                    }
+                    return builder.toString();
+                case DAYS_BETWEEN:
+                    return daysBetween(toText(argument(slots, 0)), toText(argument(slots, 1)));
+                default:
+                    throw new IllegalStateException("Unknown function: " + function);
+            }
+        }
+
+        @Nullable
+        private static Double daysBetween(String start, String end) {
+            if (start.isEmpty() || end.isEmpty()) {
+                return null;
+            }
+            SimpleDateFormat format = new SimpleDateFormat(DATE_PATTERN, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                long millis = format.parse(end).getTime() - format.parse(start).getTime();
+                return (double) TimeUnit.MILLISECONDS.toDays(millis);
+            } catch (ParseException exception) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.rules.RuleExpression.Function;
+import org.hisp.dhis.android.core.rules.RuleExpression.Operator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles program rule conditions and action data, such as
+ * {@code d2:hasValue('weight') && #{weight} / (#{height} * #{height}) > 25}, into {@link RuleExpression}s.
+ * Variables ({@code #{name}}, {@code A{name}}) and environment variables ({@code V{name}}) are resolved
+ * to slots; the slots an expression reads are collected in {@link #references()}.
+ */
+final class RuleExpressionParser {
+    private final Map<String, Integer> variableSlots;
+    private final Map<String, Integer> environmentSlots;
+    private final BitSet references = new BitSet();
+
+    private String source;
+    private int position;
+
+    RuleExpressionParser(@NonNull Map<String, Integer> variableSlots,
+                         @NonNull Map<String, Integer> environmentSlots) {
+        this.variableSlots = variableSlots;
+        this.environmentSlots = environmentSlots;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not valid or reads an unknown variable
+     */
+    @NonNull
+    RuleExpression parse(@NonNull String expression) {
+        source = expression;
+        position = 0;
+
+        RuleExpression result = or();
+        skipWhitespace();
+        if (position < source.length()) {
+            throw error("Unexpected '" + source.charAt(position) + "'");
+        }
+        return result;
+    }
+
+    /**
+     * @return the slots read by the expressions parsed so far
+     */
+    @NonNull
+    BitSet references() {
+        return references;
+    }
+
+    private RuleExpression or() {
+        RuleExpression left = and();
+        while (match("||") || matchWord("or")) {
+            left = RuleExpression.binary(Operator.OR, left, and());
+        }
+        return left;
+    }
+
+    private RuleExpression and() {
+        RuleExpression left = equality();
+        while (match("&&") || matchWord("and")) {
+            left = RuleExpression.binary(Operator.AND, left, equality());
+        }
+        return left;
+    }
+
+    private RuleExpression equality() {
+        RuleExpression left = relation();
+        while (true) {
+            if (match("==")) {
+                left = RuleExpression.binary(Operator.EQUAL, left, relation());
+            } else if (match("!=")) {
+                left = RuleExpression.binary(Operator.NOT_EQUAL, left, relation());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private RuleExpression relation() {
+        RuleExpression left = additive();
+        while (true) {
+            if (match("<=")) {
+                left = RuleExpression.binary(Operator.LESS_OR_EQUAL, left, additive());
+            } else if (match(">=")) {
+                left = RuleExpression.binary(Operator.GREATER_OR_EQUAL, left, additive());
+            } else if (match("<")) {
+                left = RuleExpression.binary(Operator.LESS, left, additive());
+            } else if (match(">")) {
+                left = RuleExpression.binary(Operator.GREATER, left, additive());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private RuleExpression additive() {
+        RuleExpression left = multiplicative();
+        while (true) {
+            if (match("+")) {
+                left = RuleExpression.binary(Operator.PLUS, left, multiplicative());
+            } else if (match("-")) {
+                left = RuleExpression.binary(Operator.MINUS, left, multiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private RuleExpression multiplicative() {
+        RuleExpression left = unary();
+        while (true) {
+            if (match("*")) {
+                left = RuleExpression.binary(Operator.MULTIPLY, left, unary());
+            } else if (match("/")) {
+                left = RuleExpression.binary(Operator.DIVIDE, left, unary());
+            } else if (match("%")) {
+                left = RuleExpression.binary(Operator.MODULUS, left, unary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private RuleExpression unary() {
+        if (match("!") || matchWord("not")) {
+            return RuleExpression.unary(Operator.NOT, unary());
+        }
+        if (match("-")) {
+            return RuleExpression.unary(Operator.NEGATE, unary());
+        }
+        if (match("+")) {
+            return unary();
+        }
+        return primary();
+    }
+
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+    private RuleExpression primary() {
+        skipWhitespace();
+        if (position >= source.length()) {
+            throw error("Unexpected end");
+        }
+
+        char c = source.charAt(position);
+        if (match("(")) {
+            RuleExpression expression = or();
+            expect(")");
+            return expression;
+        }
+        if (match("#{") || match("A{")) {
+            return RuleExpression.variable(slot(variableSlots, name()));
+        }
+        if (match("V{")) {
+            return RuleExpression.variable(slot(environmentSlots, name()));
+        }
+        if (match("d2:")) {
+            return function();
+        }
+        if (c == '\'' || c == '"') {
+            return RuleExpression.constant(string(c));
+        }
+        if (c >= '0' && c <= '9' || c == '.') {
+            return RuleExpression.constant(number());
+        }
+        if (matchWord("true")) {
+            return RuleExpression.constant(Boolean.TRUE);
+        }
+        if (matchWord("false")) {
+            return RuleExpression.constant(Boolean.FALSE);
+        }
+        throw error("Unexpected '" + c + "'");
+    }
+
+    private RuleExpression function() {
+        int start = position;
+        while (position < source.length() && Character.isLetter(source.charAt(position))) {
+            position++;
+        }
+        String name = source.substring(start, position);
+        expect("(");
+
+        if ("hasValue".equals(name)) {
+            return hasValue();
+        }
+
+        Function function = function(name);
+        List<RuleExpression> arguments = new ArrayList<>();
+        if (!match(")")) {
+            do {
+                arguments.add(or());
+            } while (match(","));
+            expect(")");
+        }
+        if (!function.accepts(arguments.size())) {
+            throw error("Wrong number of arguments for d2:" + name);
+        }
+        return RuleExpression.function(function, arguments.toArray(new RuleExpression[arguments.size()]));
+    }
+
+    // d2:hasValue() accepts the name of a variable as well as a reference to it
+    private RuleExpression hasValue() {
+        skipWhitespace();
+        String name;
+        if (match("#{") || match("A{")) {
+            name = name();
+        } else if (position < source.length()
+                && (source.charAt(position) == '\'' || source.charAt(position) == '"')) {
+            name = string(source.charAt(position));
+        } else {
+            throw error("Expected a variable");
+        }
+        expect(")");
+        return RuleExpression.hasValue(slot(variableSlots, name));
+    }
+
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+    private Function function(String name) {
+        switch (name) {
+            case "ceil":
+                return Function.CEIL;
+            case "floor":
+                return Function.FLOOR;
+            case "round":
+                return Function.ROUND;
+            case "modulus":
+                return Function.MODULUS;
+            case "zing":
+                return Function.ZING;
+            case "oizp":
+                return Function.OIZP;
+            case "length":
+                return Function.LENGTH;
+            case "concatenate":
+                return Function.CONCATENATE;
+            case "daysBetween":
+                return Function.DAYS_BETWEEN;
+            default:
+                throw error("Unsupported function d2:" + name);
+        }
+    }
+
+    private int slot(Map<String, Integer> slots, String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            throw error("Unknown variable " + name);
+        }
+        references.set(slot);
+        return slot;
+    }
+
+    private String name() {
+        int end = source.indexOf('}', position);
+        if (end < 0) {
+            throw error("Expected '}'");
+        }
+        String name = source.substring(position, end).trim();
+        position = end + 1;
+        return name;
+    }
+
+    private String string(char quote) {
+        StringBuilder builder = new StringBuilder();
+        position++;
+        while (position < source.length()) {
+            char c = source.charAt(position++);
+            if (c == quote) {
+                return builder.toString();
+            }
+            if (c == '\\' && position < source.length()) {
+                c = source.charAt(position++);
+            }
+            builder.append(c);
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double number() {
+        int start = position;
+        while (position < source.length()
+                && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+            position++;
+        }
+        try {
+            return Double.valueOf(source.substring(start, position));
+        } catch (NumberFormatException exception) {
+            throw error("Invalid number");
+        }
+    }
+
+    private boolean match(String token) {
+        skipWhitespace();
+        if (source.startsWith(token, position)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    // words such as 'and' must not match the beginning of a longer word
+    private boolean matchWord(String word) {
+        skipWhitespace();
+        int end = position + word.length();
+        if (source.startsWith(word, position)
+                && (end == source.length() || !Character.isLetterOrDigit(source.charAt(end)))) {
+            position = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!match(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + position + " in: " + source);
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableSourceType;
+import org.hisp.dhis.android.core.rules.RuleEngine.CompiledAction;
+import org.hisp.dhis.android.core.rules.RuleEngine.CompiledRule;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The evaluation of the rules of a {@link RuleEngine} for the entry of an event or an enrollment. The session
+ * keeps the values of the variables and the effects of every action. A changed value dirties only the rules
+ * whose condition, and the actions whose data, read a variable which depends on it; they are re-evaluated in
+ * the order of the rule priorities. An assign action which assigns a different value dirties the rules and
+ * actions after it which read the calculated variable. Rules of a program stage are only evaluated for events
+ * of that stage.
+ * <p>
+ * A session is not thread-safe.
+ */
+public final class RuleSession {
+    private static final Comparator<EventValues> NEWEST_FIRST = new Comparator<EventValues>() {
+        @Override
+        public int compare(EventValues left, EventValues right) {
+            // an event without a date has not been saved yet, and is newer than all others
+            if (left.eventDate == null || right.eventDate == null) {
+                return left.eventDate == null ? (right.eventDate == null ? 0 : -1) : 1;
+            }
+            return right.eventDate.compareTo(left.eventDate);
+        }
+    };
+
+    private final RuleEngine engine;
+    private final CompiledRule[] rules;
+    private final RuleDependencyGraph dependencies;
+    private final Object[] slots;
+
+    // by rule
+    private final boolean[] active;
+    private final boolean[] fired;
+
+    // by action: the effect if the rule has fired, and the value an assign action has assigned
+    private final RuleEffect[] effects;
+    private final String[] assignments;
+
+    // rules and actions to evaluate; a rule is dirty if its condition or one of its actions is
+    private final BitSet dirtyRules = new BitSet();
+    private final BitSet dirtyConditions = new BitSet();
+    private final BitSet dirtyActions = new BitSet();
+
+    private final Map<String, String> attributeValues;
+
+    @Nullable
+    private final EventValues currentEvent;
+
+    // the events of the enrollment, including the current event, newest first
+    private final List<EventValues> events;
+
+    private boolean evaluated;
+    private int conditionEvaluations;
+
+    RuleSession(@NonNull RuleEngine engine, @Nullable RuleEnrollment enrollment,
+                @Nullable RuleEvent currentEvent, @NonNull List<RuleEvent> events) {
+        this.engine = engine;
+        this.rules = engine.rules();
+        this.dependencies = engine.dependencies();
+        this.slots = new Object[engine.slotCount()];
+        this.fired = new boolean[rules.length];
+        this.effects = new RuleEffect[engine.actionCount()];
+        this.assignments = new String[engine.actionCount()];
+
+        this.attributeValues = enrollment == null ? new HashMap<String, String>()
+                : new HashMap<>(enrollment.attributeValues());
+
+        this.events = new ArrayList<>(events.size() + 1);
+        this.currentEvent = currentEvent == null ? null : new EventValues(currentEvent);
+        if (this.currentEvent != null) {
+            this.events.add(this.currentEvent);
+        }
+        for (RuleEvent event : events) {
+            this.events.add(new EventValues(event));
+        }
+        Collections.sort(this.events, NEWEST_FIRST);
+
+        this.active = new boolean[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            String programStage = rules[i].rule.programStage();
+            active[i] = programStage == null
+                    || this.currentEvent != null && programStage.equals(this.currentEvent.programStage);
+        }
+
+        List<ProgramRuleVariableModel> variables = engine.variables();
+        for (int slot = 0; slot < variables.size(); slot++) {
+            slots[slot] = resolve(variables.get(slot));
+        }
+        initEnvironment(enrollment);
+    }
+
+    private void initEnvironment(@Nullable RuleEnrollment enrollment) {
+        SimpleDateFormat format = new SimpleDateFormat(RuleExpression.DATE_PATTERN, Locale.US);
+        int offset = engine.variables().size();
+
+        slots[offset + RuleEngine.ENVIRONMENT.indexOf(RuleEngine.CURRENT_DATE)] = format.format(new Date());
+        slots[offset + RuleEngine.ENVIRONMENT.indexOf(RuleEngine.EVENT_COUNT)] = (double) events.size();
+        if (currentEvent != null && currentEvent.eventDate != null) {
+            slots[offset + RuleEngine.ENVIRONMENT.indexOf(RuleEngine.EVENT_DATE)] =
+                    format.format(currentEvent.eventDate);
+        }
+        if (enrollment != null && enrollment.enrollmentDate() != null) {
+            slots[offset + RuleEngine.ENVIRONMENT.indexOf(RuleEngine.ENROLLMENT_DATE)] =
+                    format.format(enrollment.enrollmentDate());
+        }
+        if (enrollment != null && enrollment.incidentDate() != null) {
+            slots[offset + RuleEngine.ENVIRONMENT.indexOf(RuleEngine.INCIDENT_DATE)] =
+                    format.format(enrollment.incidentDate());
+        }
+    }
+
+    /**
+     * Evaluates all rules.
+     *
+     * @return the effects of the rules whose condition is true, in the order of the rules
+     */
+    @NonNull
+    public List<RuleEffect> evaluate() {
+        dirtyRules.set(0, rules.length);
+        dirtyConditions.set(0, rules.length);
+        return run();
+    }
+
+    /**
+     * @return the effects of the last evaluation, evaluating all rules if this session has not been
+     * evaluated yet
+     */
+    @NonNull
+    public List<RuleEffect> effects() {
+        return evaluated ? collectEffects() : evaluate();
+    }
+
+    /**
+     * Changes a value of the current event and re-evaluates the rules which depend on it.
+     *
+     * @param value the new value, null or empty if the value has been removed
+     * @return the effects of all rules whose condition is true
+     */
+    @NonNull
+    public List<RuleEffect> setDataValue(@NonNull String dataElement, @Nullable String value) {
+        if (currentEvent == null) {
+            throw new IllegalStateException("The session has no current event");
+        }
+        put(currentEvent.dataValues, dataElement, value);
+        return update(dependencies.dataElementSlots(dataElement));
+    }
+
+    /**
+     * Changes an attribute value of the enrollment and re-evaluates the rules which depend on it.
+     *
+     * @param value the new value, null or empty if the value has been removed
+     * @return the effects of all rules whose condition is true
+     */
+    @NonNull
+    public List<RuleEffect> setAttributeValue(@NonNull String trackedEntityAttribute, @Nullable String value) {
+        put(attributeValues, trackedEntityAttribute, value);
+        return update(dependencies.attributeSlots(trackedEntityAttribute));
+    }
+
+    /**
+     * @return the number of rule conditions evaluated by this session
+     */
+    int conditionEvaluations() {
+        return conditionEvaluations;
+    }
+
+    private static void put(Map<String, String> values, String key, @Nullable String value) {
+        if (value == null || value.isEmpty()) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+        }
+    }
+
+    private List<RuleEffect> update(int[] variableSlots) {
+        List<ProgramRuleVariableModel> variables = engine.variables();
+        for (int slot : variableSlots) {
+            Object value = resolve(variables.get(slot));
+            if (!equal(value, slots[slot])) {
+                slots[slot] = value;
+                dirtyReaders(slot, -1);
+            }
+        }
+        return evaluated ? run() : evaluate();
+    }
+
+    @Nullable
+    @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity"})
+    private String resolve(ProgramRuleVariableModel variable) {
+        ProgramRuleVariableSourceType sourceType = variable.programRuleVariableSourceType();
+        if (sourceType == null) {
+            return null;
+        }
+        switch (sourceType) {
+            case TEI_ATTRIBUTE:
+                return variable.trackedEntityAttribute() == null ? null
+                        : attributeValues.get(variable.trackedEntityAttribute());
+            case DATAELEMENT_CURRENT_EVENT:
+                return currentEvent == null || variable.dataElement() == null ? null
+                        : currentEvent.dataValues.get(variable.dataElement());
+            case DATAELEMENT_NEWEST_EVENT_PROGRAM:
+                return newest(variable.dataElement(), null, false);
+            case DATAELEMENT_NEWEST_EVENT_PROGRAM_STAGE:
+                return variable.programStage() == null ? null
+                        : newest(variable.dataElement(), variable.programStage(), false);
+            case DATAELEMENT_PREVIOUS_EVENT:
+                return newest(variable.dataElement(), null, true);
+            default:
+                // calculated values are assigned by the rules
+                return null;
+        }
+    }
+
+    /**
+     * @return the value of the newest event which has one, only of events older than the current event
+     * if previous is true
+     */
+    @Nullable
+    private String newest(@Nullable String dataElement, @Nullable String programStage, boolean previous) {
+        if (dataElement == null || previous && currentEvent == null) {
+            return null;
+        }
+        boolean older = !previous;
+        for (EventValues event : events) {
+            if (event == currentEvent && previous) {
+                older = true;
+                continue;
+            }
+            if (!older || programStage != null && !programStage.equals(event.programStage)) {
+                continue;
+            }
+            String value = event.dataValues.get(dataElement);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Dirties the rule conditions and actions which read the slot, if they are after the given rule.
+     */
+    private void dirtyReaders(int slot, int afterRule) {
+        for (int rule : dependencies.conditionReaders(slot)) {
+            if (rule > afterRule) {
+                dirtyConditions.set(rule);
+                dirtyRules.set(rule);
+            }
+        }
+        for (int action : dependencies.actionReaders(slot)) {
+            int rule = dependencies.ruleOfAction(action);
+            if (rule > afterRule) {
+                dirtyActions.set(action);
+                dirtyRules.set(rule);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the dirty rules in the order of their priority. Evaluating a rule can only dirty the rules
+     * after it, so every rule is evaluated at most once.
+     */
+    private List<RuleEffect> run() {
+        for (int rule = dirtyRules.nextSetBit(0); rule >= 0; rule = dirtyRules.nextSetBit(rule + 1)) {
+            if (!active[rule]) {
+                continue;
+            }
+            loadCalculatedValues(rule);
+            if (dirtyConditions.get(rule)) {
+                evaluateRule(rule);
+            } else if (fired[rule]) {
+                for (CompiledAction action : rules[rule].actions) {
+                    if (dirtyActions.get(action.index)) {
+                        evaluateAction(rule, action);
+                    }
+                }
+            }
+        }
+        dirtyRules.clear();
+        dirtyConditions.clear();
+        dirtyActions.clear();
+
+        evaluated = true;
+        return collectEffects();
+    }
+
+    /**
+     * Sets the calculated variables read by a rule to the values assigned by the last fired rule before it.
+     */
+    private void loadCalculatedValues(int rule) {
+        for (int slot : dependencies.calculatedReads(rule)) {
+            String value = null;
+            int[] assigners = dependencies.assigners(slot);
+            for (int i = assigners.length - 1; i >= 0; i--) {
+                int assigningRule = dependencies.ruleOfAction(assigners[i]);
+                if (assigningRule < rule && fired[assigningRule]) {
+                    value = assignments[assigners[i]];
+                    break;
+                }
+            }
+            slots[slot] = value;
+        }
+    }
+
+    private void evaluateRule(int rule) {
+        conditionEvaluations++;
+        boolean fires = RuleExpression.isTrue(rules[rule].condition.evaluate(slots));
+        fired[rule] = fires;
+
+        for (CompiledAction action : rules[rule].actions) {
+            if (fires) {
+                evaluateAction(rule, action);
+            } else {
+                effects[action.index] = null;
+                assign(rule, action, null);
+            }
+        }
+    }
+
+    private void evaluateAction(int rule, CompiledAction action) {
+        String data = action.data == null ? null : RuleExpression.toText(action.data.evaluate(slots));
+        effects[action.index] = RuleEffect.create(action.action, data);
+        assign(rule, action, data);
+    }
+
+    // the rules after this one read a changed calculated variable if the action assigns a different value
+    private void assign(int rule, CompiledAction action, @Nullable String value) {
+        if (action.assignedSlot >= 0 && !equal(assignments[action.index], value)) {
+            assignments[action.index] = value;
+            dirtyReaders(action.assignedSlot, rule);
+        }
+    }
+
+    private List<RuleEffect> collectEffects() {
+        List<RuleEffect> allEffects = new ArrayList<>();
+        for (int rule = 0; rule < rules.length; rule++) {
+            if (fired[rule]) {
+                for (CompiledAction action : rules[rule].actions) {
+                    allEffects.add(effects[action.index]);
+                }
+            }
+        }
+        return Collections.unmodifiableList(allEffects);
+    }
+
+    private static boolean equal(@Nullable Object left, @Nullable Object right) {
+        return left == null ? right == null : left.equals(right);
+    }
+
+    private static final class EventValues {
+        final String programStage;
+        final Date eventDate;
+        final Map<String, String> dataValues;
+
+        EventValues(RuleEvent event) {
+            this.programStage = event.programStage();
+            this.eventDate = event.eventDate();
+            this.dataValues = new HashMap<>(event.dataValues());
+        }
+    }
+}
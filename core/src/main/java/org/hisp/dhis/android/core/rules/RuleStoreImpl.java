@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.program.ProgramRuleActionModel;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RuleStoreImpl implements RuleStore {
+    private static final String QUERY_PROGRAM_RULES = "SELECT * FROM " + ProgramRuleModel.TABLE +
+            " WHERE " + ProgramRuleModel.Columns.PROGRAM + " = ?;";
+
+    private static final String QUERY_PROGRAM_RULE_ACTIONS = "SELECT " + ProgramRuleActionModel.TABLE + ".*" +
+            " FROM " + ProgramRuleActionModel.TABLE + " INNER JOIN " + ProgramRuleModel.TABLE +
+            " ON " + ProgramRuleActionModel.TABLE + "." + ProgramRuleActionModel.Columns.PROGRAM_RULE + " = " +
+            ProgramRuleModel.TABLE + "." + ProgramRuleModel.Columns.UID +
+            " WHERE " + ProgramRuleModel.TABLE + "." + ProgramRuleModel.Columns.PROGRAM + " = ?;";
+
+    private static final String QUERY_PROGRAM_RULE_VARIABLES = "SELECT * FROM " + ProgramRuleVariableModel.TABLE +
+            " WHERE " + ProgramRuleVariableModel.Columns.PROGRAM + " = ?;";
+
+    private final DatabaseAdapter databaseAdapter;
+
+    public RuleStoreImpl(@NonNull DatabaseAdapter databaseAdapter) {
+        this.databaseAdapter = databaseAdapter;
+    }
+
+    @NonNull
+    @Override
+    public List<ProgramRuleModel> queryProgramRules(@NonNull String program) {
+        List<ProgramRuleModel> programRules = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_PROGRAM_RULES, program);
+        try {
+            while (cursor.moveToNext()) {
+                programRules.add(ProgramRuleModel.create(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return programRules;
+    }
+
+    @NonNull
+    @Override
+    public List<ProgramRuleActionModel> queryProgramRuleActions(@NonNull String program) {
+        List<ProgramRuleActionModel> programRuleActions = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_PROGRAM_RULE_ACTIONS, program);
+        try {
+            while (cursor.moveToNext()) {
+                programRuleActions.add(ProgramRuleActionModel.create(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return programRuleActions;
+    }
+
+    @NonNull
+    @Override
+    public List<ProgramRuleVariableModel> queryProgramRuleVariables(@NonNull String program) {
+        List<ProgramRuleVariableModel> programRuleVariables = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_PROGRAM_RULE_VARIABLES, program);
+        try {
+            while (cursor.moveToNext()) {
+                programRuleVariables.add(ProgramRuleVariableModel.create(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return programRuleVariables;
+    }
+}
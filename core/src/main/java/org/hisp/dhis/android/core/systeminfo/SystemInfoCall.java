@@ -27,7 +27,7 @@
  */
 package org.hisp.dhis.android.core.systeminfo;
 
-import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.StagedCall;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
@@ -39,7 +39,14 @@ import java.io.IOException;
 
 import retrofit2.Response;
 
-public class SystemInfoCall implements Call<Response<SystemInfo>> {
+public class SystemInfoCall implements StagedCall<SystemInfo> {
+    private static final Fields<SystemInfo> FIELDS = Fields.<SystemInfo>builder().fields(
+            SystemInfo.serverDateTime,
+            SystemInfo.dateFormat,
+            SystemInfo.version,
+            SystemInfo.contextPath
+    ).build();
+
     private final DatabaseAdapter databaseAdapter;
     private final SystemInfoStore systemInfoStore;
     private final SystemInfoService systemInfoService;
@@ -67,6 +74,19 @@ public class SystemInfoCall implements Call<Response<SystemInfo>> {
 
     @Override
     public Response<SystemInfo> call() throws Exception {
+        prepare();
+
+        Response<SystemInfo> response = download();
+        if (response.isSuccessful()) {
+            persist(response);
+        }
+
+
+        return response;
+    }
+
+    @Override
+    public void prepare() {
         synchronized (this) {
             if (isExecuted) {
                 throw new IllegalStateException("Already executed");
@@ -74,17 +94,15 @@ public class SystemInfoCall implements Call<Response<SystemInfo>> {
 
             isExecuted = true;
         }
+    }
 
-        Response<SystemInfo> response = getSystemInfo();
-        if (response.isSuccessful()) {
-            insertOrUpdateSystemInfo(response);
-        }
-
-
-        return response;
+    @Override
+    public Response<SystemInfo> download() throws Exception {
+        return getSystemInfo();
     }
 
-    private void insertOrUpdateSystemInfo(Response<SystemInfo> response) {
+    @Override
+    public void persist(Response<SystemInfo> response) {
         SystemInfoHandler systemInfoHandler = new SystemInfoHandler(systemInfoStore);
         ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
 
@@ -104,13 +122,6 @@ public class SystemInfoCall implements Call<Response<SystemInfo>> {
     }
 
     private Response<SystemInfo> getSystemInfo() throws IOException {
-        return systemInfoService.getSystemInfo(
-                Fields.<SystemInfo>builder().fields(
-                        SystemInfo.serverDateTime,
-                        SystemInfo.dateFormat,
-                        SystemInfo.version,
-                        SystemInfo.contextPath
-                ).build()
-        ).execute();
+        return systemInfoService.getSystemInfo(FIELDS).execute();
     }
 }
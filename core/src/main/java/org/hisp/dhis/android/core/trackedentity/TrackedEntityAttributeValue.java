@@ -34,11 +34,16 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 
+import org.hisp.dhis.android.core.data.api.Field;
+
 @AutoValue
 public abstract class TrackedEntityAttributeValue {
     private static final String ATTRIBUTE = "attribute";
     private static final String VALUE = "value";
 
+    public static final Field<TrackedEntityAttributeValue, String> trackedEntityAttribute = Field.create(ATTRIBUTE);
+    public static final Field<TrackedEntityAttributeValue, String> value = Field.create(VALUE);
+
     @Nullable
     @JsonProperty(ATTRIBUTE)
     public abstract String trackedEntityAttribute();
@@ -30,8 +30,13 @@ package org.hisp.dhis.android.core.trackedentity;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.CachedResponses;
+import org.hisp.dhis.android.core.common.DeletedObject;
+import org.hisp.dhis.android.core.common.MetadataDelta;
+import org.hisp.dhis.android.core.common.MetadataDeltaService;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.StagedCall;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
@@ -40,35 +45,64 @@ import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import retrofit2.Response;
 
-public class TrackedEntityCall implements Call<Response<Payload<TrackedEntity>>> {
+public class TrackedEntityCall implements StagedCall<Payload<TrackedEntity>> {
+    private static final Fields<TrackedEntity> FIELDS = Fields.<TrackedEntity>builder().fields(
+            TrackedEntity.uid, TrackedEntity.code, TrackedEntity.name,
+            TrackedEntity.displayName, TrackedEntity.created, TrackedEntity.lastUpdated,
+            TrackedEntity.shortName, TrackedEntity.displayShortName,
+            TrackedEntity.description, TrackedEntity.displayDescription,
+            TrackedEntity.deleted
+    ).build();
 
     private final TrackedEntityService service;
+    private final MetadataDeltaService deltaService;
     private final DatabaseAdapter databaseAdapter;
     private final TrackedEntityStore trackedEntityStore;
     private final ResourceStore resourceStore;
     private final Set<String> uidSet;
     private final Date serverDate;
     private final ResourceModel.Type resourceType = ResourceModel.Type.TRACKED_ENTITY;
+    private final int maxConcurrentChunks;
     private Boolean isExecuted = false;
 
+    // state resolved in prepare()
+    private String lastUpdated;
+    private String httpValidator;
+    private Set<String> storedUids;
+
+    // deletions listed by download() in incremental mode
+    private List<DeletedObject> deletedObjects = Collections.emptyList();
+
+    /**
+     * @param deltaService if not null, all tracked entities which have been synced before are checked for
+     *                     changes, the given ones which are not stored yet are downloaded regardless of their
+     *                     lastUpdated date, and deletions are reconciled
+     */
     public TrackedEntityCall(@Nullable Set<String> uidSet,
                              @NonNull DatabaseAdapter databaseAdapter,
                              @NonNull TrackedEntityStore trackedEntityStore,
                              @NonNull ResourceStore resourceStore,
                              @NonNull TrackedEntityService service,
-                             @NonNull Date serverDate) {
+                             @Nullable MetadataDeltaService deltaService,
+                             @NonNull Date serverDate,
+                             int maxConcurrentChunks) {
         this.uidSet = uidSet;
+        this.deltaService = deltaService;
         this.databaseAdapter = databaseAdapter;
         this.trackedEntityStore = trackedEntityStore;
         this.resourceStore = resourceStore;
         this.service = service;
         this.serverDate = new Date(serverDate.getTime());
+        this.maxConcurrentChunks = maxConcurrentChunks;
     }
 
     @Override
@@ -80,59 +114,132 @@ public class TrackedEntityCall implements Call<Response<Payload<TrackedEntity>>>
 
     @Override
     public Response<Payload<TrackedEntity>> call() throws Exception {
+        prepare();
+
+        Response<Payload<TrackedEntity>> response = download();
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+
+            if (response != null && response.isSuccessful()) {
+                handleTrackedEntities(response);
+                transaction.setSuccessful();
+            }
+        } finally {
+            transaction.end();
+        }
+        return response;
+    }
+
+    @Override
+    public void prepare() {
         synchronized (this) {
             if (isExecuted) {
                 throw new IllegalStateException("Already executed");
             }
             isExecuted = true;
         }
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
 
-        if (uidSet.size() > MAX_UIDS) {
-            throw new IllegalArgumentException("Can't handle the amount of tracked entities: " + uidSet.size() + ". " +
-                    "Max size is: " + MAX_UIDS);
+        lastUpdated = resourceHandler.getLastUpdated(resourceType);
+        httpValidator = resourceHandler.getHttpValidator(resourceType);
+        if (deltaService != null && lastUpdated != null && uidSet != null) {
+            storedUids = MetadataDelta.storedUids(databaseAdapter, TrackedEntityModel.TABLE);
         }
-        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+    }
 
-        String lastUpdated = resourceHandler.getLastUpdated(resourceType);
-        Response<Payload<TrackedEntity>> response = getTrackedEntities(lastUpdated);
+    @Override
+    public Response<Payload<TrackedEntity>> download() throws Exception {
+        if (storedUids != null) {
+            return downloadChanges();
+        }
+        return getTrackedEntities(uidSet, lastUpdated);
+    }
 
-        TrackedEntityHandler trackedEntityHandler = new TrackedEntityHandler(trackedEntityStore);
+    /**
+     * Tracked entities have no nested metadata, so the stored ones are filtered by their own lastUpdated date
+     * directly; the given uids which are not stored yet are downloaded without that filter.
+     */
+    private Response<Payload<TrackedEntity>> downloadChanges() throws Exception {
+        Response<Payload<DeletedObject>> deleted = new MetadataDelta(deltaService, MAX_UIDS, maxConcurrentChunks)
+                .deletedObjects(Collections.singletonList("TrackedEntity"), lastUpdated);
+        if (!deleted.isSuccessful()) {
+            return MetadataDelta.failure(deleted);
+        }
+        deletedObjects = deleted.body().items();
+
+        Set<String> newUids = new HashSet<>(uidSet);
+        newUids.removeAll(storedUids);
+
+        Response<Payload<TrackedEntity>> changed = storedUids.isEmpty()
+                ? Response.success(new Payload<>(Collections.<TrackedEntity>emptyList()))
+                : getTrackedEntities(storedUids, lastUpdated);
+        if (!changed.isSuccessful() || newUids.isEmpty()) {
+            return changed;
+        }
+
+        Response<Payload<TrackedEntity>> added = getTrackedEntities(newUids, null);
+        if (!added.isSuccessful()) {
+            changed.body().close();
+            return added;
+        }
+        return Response.success(Payload.concat(Arrays.asList(changed.body(), added.body())), added.raw());
+    }
+
+    @Override
+    public void persist(Response<Payload<TrackedEntity>> response) {
         Transaction transaction = databaseAdapter.beginNewTransaction();
         try {
-
-            if (response != null && response.isSuccessful()) {
-                List<TrackedEntity> trackedEntities = response.body().items();
-                int size = trackedEntities.size();
-
-                for (int i = 0; i < size; i++) {
-                    TrackedEntity trackedEntity = trackedEntities.get(i);
-
-                    trackedEntityHandler.handleTrackedEntity(trackedEntity);
-                }
-                resourceHandler.handleResource(
-                        resourceType,
-                        serverDate
-                );
-                transaction.setSuccessful();
-            }
+            handleTrackedEntities(response);
+            transaction.setSuccessful();
         } finally {
             transaction.end();
         }
-        return response;
     }
 
-    private Response<Payload<TrackedEntity>> getTrackedEntities(String lastUpdated) throws IOException {
-        return service.trackedEntities(
-                Fields.<TrackedEntity>builder().fields(
-                        TrackedEntity.uid, TrackedEntity.code, TrackedEntity.name,
-                        TrackedEntity.displayName, TrackedEntity.created, TrackedEntity.lastUpdated,
-                        TrackedEntity.shortName, TrackedEntity.displayShortName,
-                        TrackedEntity.description, TrackedEntity.displayDescription,
-                        TrackedEntity.deleted
-                ).build(),
-                TrackedEntity.uid.in(uidSet),
-                TrackedEntity.lastUpdated.gt(lastUpdated),
-                false
-        ).execute();
+    private void handleTrackedEntities(Response<Payload<TrackedEntity>> response) {
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+        TrackedEntityHandler trackedEntityHandler = new TrackedEntityHandler(trackedEntityStore);
+
+        // tracked entities which the server reports as not modified have been persisted by the last sync
+        if (!CachedResponses.isUnchanged(response, httpValidator)) {
+            List<TrackedEntity> trackedEntities = response.body().items();
+            int size = trackedEntities.size();
+
+            for (int i = 0; i < size; i++) {
+                TrackedEntity trackedEntity = trackedEntities.get(i);
+
+                trackedEntityHandler.handleTrackedEntity(trackedEntity);
+            }
+        }
+
+        int deletedSize = deletedObjects.size();
+        for (int i = 0; i < deletedSize; i++) {
+            DeletedObject deletedObject = deletedObjects.get(i);
+            if (deletedObject.uid() != null) {
+                trackedEntityStore.delete(deletedObject.uid());
+            }
+        }
+        resourceHandler.handleResource(
+                resourceType,
+                serverDate,
+                CachedResponses.validator(response)
+        );
+    }
+
+    private Response<Payload<TrackedEntity>> getTrackedEntities(Set<String> uids,
+                                                                final String lastUpdated) throws Exception {
+        return new UidChunkedDownloader<TrackedEntity>(MAX_UIDS, maxConcurrentChunks).download(uids,
+                new UidChunkedDownloader.ChunkRequest<TrackedEntity>() {
+                    @Override
+                    public Response<Payload<TrackedEntity>> request(Set<String> chunk) throws IOException {
+                        return service.trackedEntities(
+                                FIELDS,
+                                TrackedEntity.uid.in(chunk),
+                                TrackedEntity.lastUpdated.gt(lastUpdated),
+                                false
+                        ).execute();
+                    }
+                });
     }
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.PayloadBatches;
+import org.hisp.dhis.android.core.common.PipelinedPageDownloader;
+import org.hisp.dhis.android.core.data.api.Fields;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.event.Event;
+import org.hisp.dhis.android.core.resource.ResourceCursorModel;
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import retrofit2.Response;
+
+/**
+ * Downloads the tracked entity instances of each pair of organisation unit and program page by page,
+ * together with their enrollments and events. Parsing the next page overlaps with persisting the current
+ * one, see {@link PipelinedPageDownloader}. Instances with changes which have not been uploaded yet are
+ * kept as they are.
+ */
+public class TrackedEntityInstanceCall implements Call<Response<Payload<TrackedEntityInstance>>> {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    private static final String SCOPE_SEPARATOR = "/";
+    private static final ResourceModel.Type RESOURCE_TYPE = ResourceModel.Type.TRACKED_ENTITY_INSTANCE;
+
+    private static final Fields<TrackedEntityInstance> FIELDS = Fields.<TrackedEntityInstance>builder().fields(
+            TrackedEntityInstance.uid, TrackedEntityInstance.created, TrackedEntityInstance.lastUpdated,
+            TrackedEntityInstance.organisationUnit, TrackedEntityInstance.trackedEntity,
+            TrackedEntityInstance.trackedEntityAttributes.with(
+                    TrackedEntityAttributeValue.trackedEntityAttribute, TrackedEntityAttributeValue.value),
+            TrackedEntityInstance.enrollments.with(
+                    Enrollment.uid, Enrollment.created, Enrollment.lastUpdated, Enrollment.organisationUnit,
+                    Enrollment.program, Enrollment.dateOfEnrollment, Enrollment.dateOfIncident,
+                    Enrollment.followUp, Enrollment.enrollmentStatus, Enrollment.trackedEntityInstance,
+                    Enrollment.coordinate,
+                    Enrollment.events.with(
+                            Event.uid, Event.enrollment, Event.created, Event.lastUpdated, Event.status,
+                            Event.coordinate, Event.program, Event.programStage, Event.organisationUnit,
+                            Event.eventDate, Event.completedDate, Event.dueDate,
+                            Event.trackedEntityDataValues.with(
+                                    TrackedEntityDataValue.dataElement, TrackedEntityDataValue.storedBy,
+                                    TrackedEntityDataValue.value, TrackedEntityDataValue.created,
+                                    TrackedEntityDataValue.lastUpdated, TrackedEntityDataValue.providedElsewhere
+                            )
+                    )
+            )
+    ).build();
+
+    private final TrackedEntityInstanceService service;
+    private final DatabaseAdapter database;
+    private final TrackedEntityInstanceStore trackedEntityInstanceStore;
+    private final TrackedEntityInstanceHandler trackedEntityInstanceHandler;
+    private final ResourceStore resourceStore;
+    private final Collection<String> organisationUnitUids;
+    private final Collection<String> programUids;
+    private final Date serverDate;
+    private final int pageSize;
+    private boolean isExecuted;
+
+    // state resolved in prepare()
+    private Map<String, Integer> firstPages;
+    private Set<String> scopesWithCursor;
+    private Date started;
+
+    public TrackedEntityInstanceCall(@NonNull TrackedEntityInstanceService service,
+                                     @NonNull DatabaseAdapter database,
+                                     @NonNull TrackedEntityInstanceStore trackedEntityInstanceStore,
+                                     @NonNull TrackedEntityInstanceHandler trackedEntityInstanceHandler,
+                                     @NonNull ResourceStore resourceStore,
+                                     @NonNull Collection<String> organisationUnitUids,
+                                     @NonNull Collection<String> programUids,
+                                     @NonNull Date serverDate,
+                                     int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        this.service = service;
+        this.database = database;
+        this.trackedEntityInstanceStore = trackedEntityInstanceStore;
+        this.trackedEntityInstanceHandler = trackedEntityInstanceHandler;
+        this.resourceStore = resourceStore;
+        this.organisationUnitUids = organisationUnitUids;
+        this.programUids = programUids;
+        this.serverDate = new Date(serverDate.getTime());
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        synchronized (this) {
+            return isExecuted;
+        }
+    }
+
+    /**
+     * Returns the first unsuccessful response, keeping the cursors of the downloads which are not complete,
+     * or the response of the last page. Returns null if there was nothing left to download.
+     */
+    @Override
+    public Response<Payload<TrackedEntityInstance>> call() throws Exception {
+        prepare();
+
+        Response<Payload<TrackedEntityInstance>> response = new PipelinedPageDownloader<TrackedEntityInstance>(
+                database, pageSize, PayloadBatches.DEFAULT_BATCH_SIZE, PipelinedPageDownloader.DEFAULT_QUEUE_CAPACITY
+        ).download(firstPages, new PipelinedPageDownloader.PageRequest<TrackedEntityInstance>() {
+            @Override
+            public Response<Payload<TrackedEntityInstance>> request(@NonNull String scope, int page)
+                    throws IOException {
+                String[] uids = scope.split(SCOPE_SEPARATOR);
+                return service.trackedEntityInstances(uids[0], uids[1], FIELDS, page, pageSize).execute();
+            }
+        }, new PipelinedPageDownloader.PageWriter<TrackedEntityInstance>() {
+            @Override
+            public void write(@NonNull List<TrackedEntityInstance> batch) {
+                trackedEntityInstanceHandler.handleTrackedEntityInstances(withoutLocalChanges(batch));
+            }
+
+            @Override
+            public void pageWritten(@NonNull String scope, Integer nextPage) {
+                if (scopesWithCursor.add(scope)) {
+                    resourceStore.insertCursor(RESOURCE_TYPE, scope, serverDate, nextPage);
+                } else {
+                    resourceStore.updateCursor(RESOURCE_TYPE, scope, nextPage);
+                }
+            }
+        });
+
+        if (response != null && !response.isSuccessful()) {
+            return response;
+        }
+
+        Transaction transaction = database.beginNewTransaction();
+        try {
+            new ResourceHandler(resourceStore).handleResource(RESOURCE_TYPE, started);
+
+            // a complete download supersedes the pages of an interrupted one
+            resourceStore.deleteCursors(RESOURCE_TYPE);
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+        return response;
+    }
+
+    /**
+     * Resolves the page at which the download of each scope continues. Scopes which were completed by an
+     * interrupted download are not downloaded again, and the resource is marked with the server date at which
+     * the earliest of the interrupted downloads started.
+     */
+    private void prepare() {
+        synchronized (this) {
+            if (isExecuted) {
+                throw new IllegalStateException("Already executed");
+            }
+            isExecuted = true;
+        }
+
+        firstPages = new LinkedHashMap<>();
+        scopesWithCursor = new HashSet<>();
+        started = serverDate;
+
+        for (String organisationUnitUid : organisationUnitUids) {
+            for (String programUid : programUids) {
+                String scope = organisationUnitUid + SCOPE_SEPARATOR + programUid;
+
+                ResourceCursorModel cursor = resourceStore.queryCursor(RESOURCE_TYPE, scope);
+                if (cursor == null) {
+                    firstPages.put(scope, 1);
+                    continue;
+                }
+
+                scopesWithCursor.add(scope);
+                if (cursor.started() != null && cursor.started().before(started)) {
+                    started = cursor.started();
+                }
+                if (cursor.nextPage() != null) {
+                    firstPages.put(scope, cursor.nextPage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs within the transaction of the page, so that changes made while the download is running are
+     * seen and cannot be made between this lookup and persisting the batch.
+     */
+    private List<TrackedEntityInstance> withoutLocalChanges(List<TrackedEntityInstance> batch) {
+        List<String> uids = new ArrayList<>(batch.size());
+        for (TrackedEntityInstance trackedEntityInstance : batch) {
+            uids.add(trackedEntityInstance.uid());
+        }
+
+        Set<String> uidsWithLocalChanges = trackedEntityInstanceStore.queryUidsWithLocalChanges(uids);
+        if (uidsWithLocalChanges.isEmpty()) {
+            return batch;
+        }
+
+        List<TrackedEntityInstance> unchanged = new ArrayList<>(batch.size());
+        for (TrackedEntityInstance trackedEntityInstance : batch) {
+            if (!uidsWithLocalChanges.contains(trackedEntityInstance.uid())) {
+                unchanged.add(trackedEntityInstance);
+            }
+        }
+        return unchanged;
+    }
+}
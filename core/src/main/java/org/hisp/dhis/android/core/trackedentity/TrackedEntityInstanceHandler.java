@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.Coordinates;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStore;
+import org.hisp.dhis.android.core.event.Event;
+import org.hisp.dhis.android.core.event.EventStore;
+
+import java.util.List;
+
+/**
+ * Replaces tracked entity instances, together with their attribute values, enrollments, events
+ * and data values, by the versions downloaded from the server.
+ */
+public class TrackedEntityInstanceHandler {
+    private final TrackedEntityInstanceStore trackedEntityInstanceStore;
+    private final TrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
+    private final EnrollmentStore enrollmentStore;
+    private final EventStore eventStore;
+    private final TrackedEntityDataValueStore trackedEntityDataValueStore;
+
+    public TrackedEntityInstanceHandler(TrackedEntityInstanceStore trackedEntityInstanceStore,
+                                        TrackedEntityAttributeValueStore trackedEntityAttributeValueStore,
+                                        EnrollmentStore enrollmentStore,
+                                        EventStore eventStore,
+                                        TrackedEntityDataValueStore trackedEntityDataValueStore) {
+        this.trackedEntityInstanceStore = trackedEntityInstanceStore;
+        this.trackedEntityAttributeValueStore = trackedEntityAttributeValueStore;
+        this.enrollmentStore = enrollmentStore;
+        this.eventStore = eventStore;
+        this.trackedEntityDataValueStore = trackedEntityDataValueStore;
+    }
+
+    public void handleTrackedEntityInstances(@NonNull List<TrackedEntityInstance> trackedEntityInstances) {
+        int size = trackedEntityInstances.size();
+        for (int i = 0; i < size; i++) {
+            handleTrackedEntityInstance(trackedEntityInstances.get(i));
+        }
+    }
+
+    private void handleTrackedEntityInstance(TrackedEntityInstance trackedEntityInstance) {
+        // enrollments and attribute values of the previous version are removed through the cascade
+        trackedEntityInstanceStore.delete(trackedEntityInstance.uid());
+        trackedEntityInstanceStore.insert(trackedEntityInstance.uid(), trackedEntityInstance.created(),
+                trackedEntityInstance.lastUpdated(), trackedEntityInstance.organisationUnit(),
+                trackedEntityInstance.trackedEntity(), State.SYNCED);
+
+        List<TrackedEntityAttributeValue> attributeValues = trackedEntityInstance.trackedEntityAttributeValues();
+        if (attributeValues != null) {
+            for (TrackedEntityAttributeValue attributeValue : attributeValues) {
+                trackedEntityAttributeValueStore.insert(State.SYNCED, attributeValue.value(),
+                        attributeValue.trackedEntityAttribute(), trackedEntityInstance.uid());
+            }
+        }
+
+        List<Enrollment> enrollments = trackedEntityInstance.enrollments();
+        if (enrollments != null) {
+            for (Enrollment enrollment : enrollments) {
+                handleEnrollment(trackedEntityInstance.uid(), enrollment);
+            }
+        }
+    }
+
+    private void handleEnrollment(String trackedEntityInstanceUid, Enrollment enrollment) {
+        enrollmentStore.insert(enrollment.uid(), enrollment.created(), enrollment.lastUpdated(),
+                enrollment.organisationUnit(), enrollment.program(), enrollment.dateOfEnrollment(),
+                enrollment.dateOfIncident(), enrollment.followUp(), enrollment.enrollmentStatus(),
+                trackedEntityInstanceUid, latitude(enrollment.coordinate()), longitude(enrollment.coordinate()),
+                State.SYNCED);
+
+        List<Event> events = enrollment.events();
+        if (events != null) {
+            for (Event event : events) {
+                handleEvent(enrollment.uid(), event);
+            }
+        }
+    }
+
+    private void handleEvent(String enrollmentUid, Event event) {
+        // events are not linked to their enrollment by a foreign key, data values are removed through the cascade
+        eventStore.delete(event.uid());
+        eventStore.insert(event.uid(), enrollmentUid, event.created(), event.lastUpdated(), event.status(),
+                latitude(event.coordinates()), longitude(event.coordinates()), event.program(),
+                event.programStage(), event.organisationUnit(), event.eventDate(), event.completedDate(),
+                event.dueDate(), State.SYNCED);
+
+        List<TrackedEntityDataValue> dataValues = event.trackedEntityDataValues();
+        if (dataValues != null) {
+            for (TrackedEntityDataValue dataValue : dataValues) {
+                trackedEntityDataValueStore.insert(event.uid(), dataValue.created(), dataValue.lastUpdated(),
+                        dataValue.dataElement(), dataValue.storedBy(), dataValue.value(),
+                        dataValue.providedElsewhere());
+            }
+        }
+    }
+
+    @Nullable
+    private static String latitude(@Nullable Coordinates coordinates) {
+        return coordinates == null || coordinates.latitude() == null ? null : coordinates.latitude().toString();
+    }
+
+    @Nullable
+    private static String longitude(@Nullable Coordinates coordinates) {
+        return coordinates == null || coordinates.longitude() == null ? null : coordinates.longitude().toString();
+    }
+}
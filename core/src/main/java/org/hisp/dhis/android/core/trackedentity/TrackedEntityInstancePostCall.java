@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.event.Event;
+import org.hisp.dhis.android.core.imports.ImportStatus;
+import org.hisp.dhis.android.core.imports.ImportSummaries;
+import org.hisp.dhis.android.core.imports.ImportSummary;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Response;
+
+/**
+ * Uploads tracked entity instances, enrollments and events which have been created or changed locally.
+ * The instances are posted in batches, each one as a single request which contains the changed enrollments
+ * and events of the instances. The import summaries of a batch are applied to the state of the uploaded rows
+ * in a single transaction: imported rows are {@link State#SYNCED}, rejected ones are set to {@link State#ERROR}.
+ * Rows which have been changed locally while the batch was uploaded keep their new state.
+ */
+public class TrackedEntityInstancePostCall implements Call<Response<ImportSummaries>> {
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final String STRATEGY = "CREATE_AND_UPDATE";
+
+    private final TrackedEntityInstanceService service;
+    private final DatabaseAdapter database;
+    private final TrackerUploadStore trackerUploadStore;
+    private final Converter<ResponseBody, ImportSummaries> errorConverter;
+    private final int batchSize;
+    private boolean isExecuted;
+
+    /**
+     * @param errorConverter reads the import summaries of a response which reports conflicts
+     */
+    public TrackedEntityInstancePostCall(@NonNull TrackedEntityInstanceService service,
+                                         @NonNull DatabaseAdapter database,
+                                         @NonNull TrackerUploadStore trackerUploadStore,
+                                         @NonNull Converter<ResponseBody, ImportSummaries> errorConverter,
+                                         int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.service = service;
+        this.database = database;
+        this.trackerUploadStore = trackerUploadStore;
+        this.errorConverter = errorConverter;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        synchronized (this) {
+            return isExecuted;
+        }
+    }
+
+    /**
+     * Returns the first response without import summaries, after which no further batches are uploaded,
+     * or the response of the last batch. Returns null if there was nothing to upload.
+     */
+    @Override
+    public Response<ImportSummaries> call() throws Exception {
+        synchronized (this) {
+            if (isExecuted) {
+                throw new IllegalStateException("Already executed");
+            }
+            isExecuted = true;
+        }
+
+        List<String> uids = trackerUploadStore.queryTrackedEntityInstanceUidsToUpload();
+
+        Response<ImportSummaries> response = null;
+        int size = uids.size();
+        for (int start = 0; start < size; start += batchSize) {
+            TrackerUploadBatch batch = trackerUploadStore.queryTrackedEntityInstancesToUpload(
+                    uids.subList(start, Math.min(start + batchSize, size)));
+
+            response = service.postTrackedEntityInstances(
+                    new TrackedEntityInstanceRequestBody(batch.trackedEntityInstances()), STRATEGY).execute();
+
+            ImportSummaries importSummaries = importSummaries(response);
+            if (importSummaries == null) {
+                // the rows of this and later batches keep their state
+                return response;
+            }
+            handleImportSummaries(batch, importSummaries);
+        }
+        return response;
+    }
+
+    /**
+     * @return the summaries of a successful response, or of a response which reports conflicts
+     */
+    @Nullable
+    private ImportSummaries importSummaries(Response<ImportSummaries> response) throws IOException {
+        if (response.isSuccessful()) {
+            return response.body();
+        }
+        if (response.code() == HttpURLConnection.HTTP_CONFLICT && response.errorBody() != null) {
+            return errorConverter.convert(response.errorBody());
+        }
+        return null;
+    }
+
+    /**
+     * Enrollments and events without a summary of their own take the status of the summary they are
+     * nested in. Instances without a summary keep their state and are uploaded again by the next call.
+     * The new states are keyed by the state each row had when the batch was read.
+     */
+    private void handleImportSummaries(TrackerUploadBatch batch, ImportSummaries importSummaries) {
+        Map<State, Map<State, List<String>>> trackedEntityInstanceStates = new EnumMap<>(State.class);
+        Map<State, Map<State, List<String>>> enrollmentStates = new EnumMap<>(State.class);
+        Map<State, Map<State, List<String>>> eventStates = new EnumMap<>(State.class);
+
+        Map<String, ImportSummary> summaries = importSummaries.byReference();
+        for (TrackedEntityInstance trackedEntityInstance : batch.trackedEntityInstances()) {
+            ImportSummary summary = summaries.get(trackedEntityInstance.uid());
+            if (summary == null || summary.status() == null) {
+                continue;
+            }
+            State state = state(summary.status());
+            add(trackedEntityInstanceStates, batch.trackedEntityInstanceState(trackedEntityInstance.uid()), state,
+                    trackedEntityInstance.uid());
+
+            Map<String, ImportSummary> enrollmentSummaries = byReference(summary.enrollments());
+            for (Enrollment enrollment : nonNull(trackedEntityInstance.enrollments())) {
+                ImportSummary enrollmentSummary = enrollmentSummaries.get(enrollment.uid());
+                State enrollmentState = state(enrollmentSummary, state);
+                add(enrollmentStates, batch.enrollmentState(enrollment.uid()), enrollmentState, enrollment.uid());
+
+                Map<String, ImportSummary> eventSummaries = byReference(
+                        enrollmentSummary == null ? null : enrollmentSummary.events());
+                for (Event event : nonNull(enrollment.events())) {
+                    add(eventStates, batch.eventState(event.uid()),
+                            state(eventSummaries.get(event.uid()), enrollmentState), event.uid());
+                }
+            }
+        }
+
+        Transaction transaction = database.beginNewTransaction();
+        try {
+            for (Map.Entry<State, Map<State, List<String>>> expected : trackedEntityInstanceStates.entrySet()) {
+                for (Map.Entry<State, List<String>> entry : expected.getValue().entrySet()) {
+                    trackerUploadStore.setTrackedEntityInstanceState(entry.getValue(), expected.getKey(),
+                            entry.getKey());
+                }
+            }
+            for (Map.Entry<State, Map<State, List<String>>> expected : enrollmentStates.entrySet()) {
+                for (Map.Entry<State, List<String>> entry : expected.getValue().entrySet()) {
+                    trackerUploadStore.setEnrollmentState(entry.getValue(), expected.getKey(), entry.getKey());
+                }
+            }
+            for (Map.Entry<State, Map<State, List<String>>> expected : eventStates.entrySet()) {
+                for (Map.Entry<State, List<String>> entry : expected.getValue().entrySet()) {
+                    trackerUploadStore.setEventState(entry.getValue(), expected.getKey(), entry.getKey());
+                }
+            }
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private static State state(@Nullable ImportSummary summary, State parentState) {
+        if (summary == null || summary.status() == null) {
+            return parentState;
+        }
+        return state(summary.status());
+    }
+
+    private static State state(@NonNull ImportStatus status) {
+        return status == ImportStatus.ERROR ? State.ERROR : State.SYNCED;
+    }
+
+    private static Map<String, ImportSummary> byReference(@Nullable ImportSummaries importSummaries) {
+        return importSummaries == null ? Collections.<String, ImportSummary>emptyMap()
+                : importSummaries.byReference();
+    }
+
+    private static <T> List<T> nonNull(@Nullable List<T> list) {
+        return list == null ? Collections.<T>emptyList() : list;
+    }
+
+    private static void add(Map<State, Map<State, List<String>>> states, @Nullable State expectedState,
+                            State state, String uid) {
+        if (expectedState == null) {
+            // the row has not been read with the batch
+            return;
+        }
+        Map<State, List<String>> byState = states.get(expectedState);
+        if (byState == null) {
+            byState = new EnumMap<>(State.class);
+            states.put(expectedState, byState);
+        }
+        List<String> uids = byState.get(state);
+        if (uids == null) {
+            uids = new ArrayList<>();
+            byState.put(state, uids);
+        }
+        uids.add(uid);
+    }
+}
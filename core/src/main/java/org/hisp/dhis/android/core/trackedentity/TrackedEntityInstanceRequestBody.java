@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.Coordinates;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.event.Event;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Request body which writes tracked entity instances, together with their enrollments, events and
+ * data values, straight into the request as it is sent, without building the JSON document in memory.
+ * Properties which are managed by the server, like created and lastUpdated, are not sent.
+ */
+public final class TrackedEntityInstanceRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final List<TrackedEntityInstance> trackedEntityInstances;
+
+    public TrackedEntityInstanceRequestBody(@NonNull List<TrackedEntityInstance> trackedEntityInstances) {
+        this.trackedEntityInstances = trackedEntityInstances;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    /**
+     * The body can be written more than once, for example if the request is retried after an
+     * authentication challenge.
+     */
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(sink.outputStream(), JsonEncoding.UTF8);
+        try {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("trackedEntityInstances");
+            for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+                writeTrackedEntityInstance(generator, trackedEntityInstance);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } finally {
+            // flushes the generator, but leaves the sink open for OkHttp
+            generator.close();
+        }
+    }
+
+    private static void writeTrackedEntityInstance(JsonGenerator generator,
+                                                   TrackedEntityInstance trackedEntityInstance) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "trackedEntityInstance", trackedEntityInstance.uid());
+        writeString(generator, "trackedEntity", trackedEntityInstance.trackedEntity());
+        writeString(generator, "orgUnit", trackedEntityInstance.organisationUnit());
+
+        generator.writeArrayFieldStart("attributes");
+        if (trackedEntityInstance.trackedEntityAttributeValues() != null) {
+            for (TrackedEntityAttributeValue attributeValue : trackedEntityInstance.trackedEntityAttributeValues()) {
+                generator.writeStartObject();
+                writeString(generator, "attribute", attributeValue.trackedEntityAttribute());
+                writeString(generator, "value", attributeValue.value());
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("enrollments");
+        if (trackedEntityInstance.enrollments() != null) {
+            for (Enrollment enrollment : trackedEntityInstance.enrollments()) {
+                writeEnrollment(generator, enrollment);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeEnrollment(JsonGenerator generator, Enrollment enrollment) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "enrollment", enrollment.uid());
+        writeString(generator, "trackedEntityInstance", enrollment.trackedEntityInstance());
+        writeString(generator, "program", enrollment.program());
+        writeString(generator, "orgUnit", enrollment.organisationUnit());
+        writeDate(generator, "enrollmentDate", enrollment.dateOfEnrollment());
+        writeDate(generator, "incidentDate", enrollment.dateOfIncident());
+        if (enrollment.followUp() != null) {
+            generator.writeBooleanField("followup", enrollment.followUp());
+        }
+        if (enrollment.enrollmentStatus() != null) {
+            generator.writeStringField("status", enrollment.enrollmentStatus().name());
+        }
+        writeCoordinates(generator, enrollment.coordinate());
+
+        generator.writeArrayFieldStart("events");
+        if (enrollment.events() != null) {
+            for (Event event : enrollment.events()) {
+                writeEvent(generator, event);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeEvent(JsonGenerator generator, Event event) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "event", event.uid());
+        writeString(generator, "enrollment", event.enrollmentUid());
+        writeString(generator, "program", event.program());
+        writeString(generator, "programStage", event.programStage());
+        writeString(generator, "orgUnit", event.organisationUnit());
+        if (event.status() != null) {
+            generator.writeStringField("status", event.status().name());
+        }
+        writeDate(generator, "eventDate", event.eventDate());
+        writeDate(generator, "completedDate", event.completedDate());
+        writeDate(generator, "dueDate", event.dueDate());
+        writeCoordinates(generator, event.coordinates());
+
+        generator.writeArrayFieldStart("dataValues");
+        if (event.trackedEntityDataValues() != null) {
+            for (TrackedEntityDataValue dataValue : event.trackedEntityDataValues()) {
+                generator.writeStartObject();
+                writeString(generator, "dataElement", dataValue.dataElement());
+                writeString(generator, "value", dataValue.value());
+                writeString(generator, "storedBy", dataValue.storedBy());
+                if (dataValue.providedElsewhere() != null) {
+                    generator.writeBooleanField("providedElsewhere", dataValue.providedElsewhere());
+                }
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, String name, @Nullable String value)
+            throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    private static void writeDate(JsonGenerator generator, String name, @Nullable Date value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, BaseIdentifiableObject.DATE_CODEC.format(value));
+        }
+    }
+
+    private static void writeCoordinates(JsonGenerator generator, @Nullable Coordinates coordinates)
+            throws IOException {
+        if (coordinates != null && coordinates.latitude() != null && coordinates.longitude() != null) {
+            generator.writeObjectFieldStart("coordinate");
+            generator.writeNumberField("latitude", coordinates.latitude());
+            generator.writeNumberField("longitude", coordinates.longitude());
+            generator.writeEndObject();
+        }
+    }
+}
@@ -33,7 +33,9 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.Set;
 
 public interface TrackedEntityInstanceStore {
     long insert(
@@ -42,5 +44,18 @@ public interface TrackedEntityInstanceStore {
 
     int delete();
 
+    /**
+     * Deletes a single tracked entity instance. Enrollments and attribute values of the
+     * instance are removed together with it through the cascading foreign keys.
+     */
+    int delete(@NonNull String uid);
+
+    /**
+     * @return uids of the given tracked entity instances which have not been synced themselves, or which
+     * have enrollments or events of enrollments which have not been synced
+     */
+    @NonNull
+    Set<String> queryUidsWithLocalChanges(@NonNull Collection<String> uids);
+
     void close();
 }
@@ -28,18 +28,26 @@
 
 package org.hisp.dhis.android.core.trackedentity;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.event.EventModel;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
-class TrackedEntityInstanceStoreImpl implements TrackedEntityInstanceStore {
+public class TrackedEntityInstanceStoreImpl implements TrackedEntityInstanceStore {
     private static final String INSERT_STATEMENT = "INSERT INTO " +
             TrackedEntityInstanceModel.TABLE + " (" +
             TrackedEntityInstanceModel.Columns.UID + ", " +
@@ -50,12 +58,21 @@ class TrackedEntityInstanceStoreImpl implements TrackedEntityInstanceStore {
             TrackedEntityInstanceModel.Columns.STATE +
             ") " + "VALUES (?, ?, ?, ?, ?, ?)";
 
+    private static final String DELETE_STATEMENT = "DELETE FROM " + TrackedEntityInstanceModel.TABLE +
+            " WHERE " + TrackedEntityInstanceModel.Columns.UID + " =?;";
+
+    // every uid is bound once for each of the three tables, which has to stay below the
+    // limit of 999 arguments of a SQLite statement
+    private static final int MAX_QUERY_UIDS = 300;
+
     private final SQLiteStatement insertRowStatement;
+    private final SQLiteStatement deleteStatement;
     private final DatabaseAdapter databaseAdapter;
 
-    TrackedEntityInstanceStoreImpl(DatabaseAdapter databaseAdapter) {
+    public TrackedEntityInstanceStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
         this.insertRowStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
     }
 
     @Override
@@ -78,8 +95,67 @@ class TrackedEntityInstanceStoreImpl implements TrackedEntityInstanceStore {
         return databaseAdapter.delete(TrackedEntityInstanceModel.TABLE);
     }
 
+    @Override
+    public int delete(@NonNull String uid) {
+        sqLiteBind(deleteStatement, 1, uid);
+
+        int delete = databaseAdapter.executeUpdateDelete(TrackedEntityInstanceModel.TABLE, deleteStatement);
+        deleteStatement.clearBindings();
+
+        return delete;
+    }
+
+    @NonNull
+    @Override
+    public Set<String> queryUidsWithLocalChanges(@NonNull Collection<String> uids) {
+        Set<String> uidsWithLocalChanges = new HashSet<>();
+        List<String> uidList = new ArrayList<>(uids);
+
+        int size = uidList.size();
+        for (int start = 0; start < size; start += MAX_QUERY_UIDS) {
+            int count = Math.min(MAX_QUERY_UIDS, size - start);
+
+            String[] arguments = new String[3 * count];
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                String uid = uidList.get(start + i);
+                arguments[i] = uid;
+                arguments[count + i] = uid;
+                arguments[2 * count + i] = uid;
+                placeholders.append(i == 0 ? "?" : ",?");
+            }
+
+            Cursor cursor = databaseAdapter.query(queryLocalChangesStatement(placeholders.toString()), arguments);
+            try {
+                while (cursor.moveToNext()) {
+                    uidsWithLocalChanges.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return uidsWithLocalChanges;
+    }
+
+    private static String queryLocalChangesStatement(String placeholders) {
+        return "SELECT " + TrackedEntityInstanceModel.Columns.UID + " FROM " + TrackedEntityInstanceModel.TABLE +
+                " WHERE " + TrackedEntityInstanceModel.Columns.STATE + " <> '" + State.SYNCED + "'" +
+                " AND " + TrackedEntityInstanceModel.Columns.UID + " IN (" + placeholders + ")" +
+                " UNION SELECT " + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " FROM " + EnrollmentModel.TABLE +
+                " WHERE " + EnrollmentModel.Columns.STATE + " <> '" + State.SYNCED + "'" +
+                " AND " + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " IN (" + placeholders + ")" +
+                " UNION SELECT " + EnrollmentModel.TABLE + "." + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE +
+                " FROM " + EventModel.TABLE + " INNER JOIN " + EnrollmentModel.TABLE + " ON " +
+                EventModel.TABLE + "." + EventModel.Columns.ENROLLMENT_UID + " = " +
+                EnrollmentModel.TABLE + "." + EnrollmentModel.Columns.UID +
+                " WHERE " + EventModel.TABLE + "." + EventModel.Columns.STATE + " <> '" + State.SYNCED + "'" +
+                " AND " + EnrollmentModel.TABLE + "." + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE +
+                " IN (" + placeholders + ");";
+    }
+
     @Override
     public void close() {
         insertRowStatement.close();
+        deleteStatement.close();
     }
 }
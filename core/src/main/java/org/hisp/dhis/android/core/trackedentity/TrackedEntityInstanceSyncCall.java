@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStore;
+import org.hisp.dhis.android.core.event.EventStore;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.systeminfo.SystemInfo;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoCall;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
+
+import java.util.Collection;
+
+import retrofit2.Response;
+
+/**
+ * Syncs the system info to learn the server date, then downloads the tracked entity instances
+ * through a {@link TrackedEntityInstanceCall}.
+ */
+public class TrackedEntityInstanceSyncCall implements Call<Response> {
+    private final DatabaseAdapter databaseAdapter;
+    private final SystemInfoService systemInfoService;
+    private final SystemInfoStore systemInfoStore;
+    private final TrackedEntityInstanceService trackedEntityInstanceService;
+    private final TrackedEntityInstanceStore trackedEntityInstanceStore;
+    private final TrackedEntityInstanceHandler trackedEntityInstanceHandler;
+    private final ResourceStore resourceStore;
+    private final Collection<String> organisationUnitUids;
+    private final Collection<String> programUids;
+    private final int pageSize;
+    private boolean isExecuted;
+
+    public TrackedEntityInstanceSyncCall(@NonNull DatabaseAdapter databaseAdapter,
+                                         @NonNull SystemInfoService systemInfoService,
+                                         @NonNull SystemInfoStore systemInfoStore,
+                                         @NonNull TrackedEntityInstanceService trackedEntityInstanceService,
+                                         @NonNull TrackedEntityInstanceStore trackedEntityInstanceStore,
+                                         @NonNull TrackedEntityAttributeValueStore trackedEntityAttributeValueStore,
+                                         @NonNull EnrollmentStore enrollmentStore,
+                                         @NonNull EventStore eventStore,
+                                         @NonNull TrackedEntityDataValueStore trackedEntityDataValueStore,
+                                         @NonNull ResourceStore resourceStore,
+                                         @NonNull Collection<String> organisationUnitUids,
+                                         @NonNull Collection<String> programUids,
+                                         int pageSize) {
+        this.databaseAdapter = databaseAdapter;
+        this.systemInfoService = systemInfoService;
+        this.systemInfoStore = systemInfoStore;
+        this.trackedEntityInstanceService = trackedEntityInstanceService;
+        this.trackedEntityInstanceStore = trackedEntityInstanceStore;
+        this.trackedEntityInstanceHandler = new TrackedEntityInstanceHandler(trackedEntityInstanceStore,
+                trackedEntityAttributeValueStore, enrollmentStore, eventStore, trackedEntityDataValueStore);
+        this.resourceStore = resourceStore;
+        this.organisationUnitUids = organisationUnitUids;
+        this.programUids = programUids;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        synchronized (this) {
+            return isExecuted;
+        }
+    }
+
+    @Override
+    public Response call() throws Exception {
+        synchronized (this) {
+            if (isExecuted) {
+                throw new IllegalStateException("Already executed");
+            }
+            isExecuted = true;
+        }
+
+        Response<SystemInfo> systemInfoResponse = new SystemInfoCall(
+                databaseAdapter, systemInfoStore, systemInfoService, resourceStore).call();
+        if (!systemInfoResponse.isSuccessful()) {
+            return systemInfoResponse;
+        }
+
+        Response<Payload<TrackedEntityInstance>> response = new TrackedEntityInstanceCall(
+                trackedEntityInstanceService, databaseAdapter, trackedEntityInstanceStore,
+                trackedEntityInstanceHandler, resourceStore, organisationUnitUids, programUids,
+                systemInfoResponse.body().serverDate(), pageSize).call();
+        return response == null ? systemInfoResponse : response;
+    }
+}
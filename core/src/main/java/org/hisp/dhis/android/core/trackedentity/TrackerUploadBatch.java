@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.State;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracked entity instances which are about to be uploaded, together with the state each of their rows
+ * had when it was read. The upload only records its outcome for rows which are still in that state.
+ */
+public final class TrackerUploadBatch {
+    private final List<TrackedEntityInstance> trackedEntityInstances;
+    private final Map<String, State> trackedEntityInstanceStates;
+    private final Map<String, State> enrollmentStates;
+    private final Map<String, State> eventStates;
+
+    TrackerUploadBatch(@NonNull List<TrackedEntityInstance> trackedEntityInstances,
+                       @NonNull Map<String, State> trackedEntityInstanceStates,
+                       @NonNull Map<String, State> enrollmentStates,
+                       @NonNull Map<String, State> eventStates) {
+        this.trackedEntityInstances = trackedEntityInstances;
+        this.trackedEntityInstanceStates = trackedEntityInstanceStates;
+        this.enrollmentStates = enrollmentStates;
+        this.eventStates = eventStates;
+    }
+
+    @NonNull
+    public List<TrackedEntityInstance> trackedEntityInstances() {
+        return trackedEntityInstances;
+    }
+
+    @Nullable
+    public State trackedEntityInstanceState(@NonNull String uid) {
+        return trackedEntityInstanceStates.get(uid);
+    }
+
+    @Nullable
+    public State enrollmentState(@NonNull String uid) {
+        return enrollmentStates.get(uid);
+    }
+
+    @Nullable
+    public State eventState(@NonNull String uid) {
+        return eventStates.get(uid);
+    }
+}
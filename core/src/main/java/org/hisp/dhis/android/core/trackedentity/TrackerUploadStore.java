@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.common.State;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads the tracker data which has to be uploaded, selected by {@link State#TO_POST} and
+ * {@link State#TO_UPDATE}, and records the outcome of the upload in bulk.
+ */
+public interface TrackerUploadStore {
+
+    /**
+     * @return uids of the tracked entity instances which have changes themselves, or which have
+     * enrollments or events of enrollments with changes
+     */
+    @NonNull
+    List<String> queryTrackedEntityInstanceUidsToUpload();
+
+    /**
+     * Reads the given tracked entity instances with all of their attribute values. Only enrollments
+     * which have changes or events with changes are included, and only events which have changes,
+     * together with all of their data values.
+     */
+    @NonNull
+    TrackerUploadBatch queryTrackedEntityInstancesToUpload(@NonNull List<String> uids);
+
+    /**
+     * The state setters only update the rows which are still in the expected state, so that a row which
+     * has been changed while it was uploaded keeps its new state and is uploaded again.
+     *
+     * @return the number of updated rows
+     */
+    int setTrackedEntityInstanceState(@NonNull Collection<String> uids, @NonNull State expectedState,
+                                      @NonNull State state);
+
+    int setEnrollmentState(@NonNull Collection<String> uids, @NonNull State expectedState, @NonNull State state);
+
+    int setEventState(@NonNull Collection<String> uids, @NonNull State expectedState, @NonNull State state);
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.BaseDataModel;
+import org.hisp.dhis.android.core.common.Coordinates;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.BulkUpsert;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStatus;
+import org.hisp.dhis.android.core.event.Event;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.event.EventStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hisp.dhis.android.core.data.database.CursorValues.getBoolean;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getDate;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getEnum;
+import static org.hisp.dhis.android.core.data.database.CursorValues.getString;
+import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
+
+@SuppressWarnings("PMD.ExcessiveImports")
+public class TrackerUploadStoreImpl implements TrackerUploadStore {
+    private static final String TO_UPLOAD = " IN ('" + State.TO_POST + "', '" + State.TO_UPDATE + "')";
+
+    private static final String EVENT_JOIN_ENROLLMENT = EventModel.TABLE + " INNER JOIN " + EnrollmentModel.TABLE +
+            " ON " + EventModel.TABLE + "." + EventModel.Columns.ENROLLMENT_UID + " = " +
+            EnrollmentModel.TABLE + "." + EnrollmentModel.Columns.UID;
+
+    // the state indexes let every part of the union skip the rows which have been synced
+    private static final String QUERY_UIDS_TO_UPLOAD_STATEMENT = "SELECT " +
+            TrackedEntityInstanceModel.Columns.UID + " FROM " + TrackedEntityInstanceModel.TABLE +
+            " WHERE " + TrackedEntityInstanceModel.Columns.STATE + TO_UPLOAD +
+            " UNION SELECT " + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " FROM " + EnrollmentModel.TABLE +
+            " WHERE " + EnrollmentModel.Columns.STATE + TO_UPLOAD +
+            " UNION SELECT " + EnrollmentModel.TABLE + "." + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE +
+            " FROM " + EVENT_JOIN_ENROLLMENT +
+            " WHERE " + EventModel.TABLE + "." + EventModel.Columns.STATE + TO_UPLOAD + ";";
+
+    private static final String QUERY_TRACKED_ENTITY_INSTANCES = "SELECT " +
+            TrackedEntityInstanceModel.Columns.UID + ", " +
+            TrackedEntityInstanceModel.Columns.CREATED + ", " +
+            TrackedEntityInstanceModel.Columns.LAST_UPDATED + ", " +
+            TrackedEntityInstanceModel.Columns.ORGANISATION_UNIT + ", " +
+            TrackedEntityInstanceModel.Columns.TRACKED_ENTITY + ", " +
+            TrackedEntityInstanceModel.Columns.STATE +
+            " FROM " + TrackedEntityInstanceModel.TABLE +
+            " WHERE " + TrackedEntityInstanceModel.Columns.UID + " IN ";
+
+    private static final String QUERY_ATTRIBUTE_VALUES = "SELECT " +
+            TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE + ", " +
+            TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_ATTRIBUTE + ", " +
+            TrackedEntityAttributeValueModel.Columns.VALUE +
+            " FROM " + TrackedEntityAttributeValueModel.TABLE +
+            " WHERE " + TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE + " IN ";
+
+    private static final String QUERY_ENROLLMENTS = "SELECT " +
+            EnrollmentModel.Columns.UID + ", " +
+            EnrollmentModel.Columns.CREATED + ", " +
+            EnrollmentModel.Columns.LAST_UPDATED + ", " +
+            EnrollmentModel.Columns.ORGANISATION_UNIT + ", " +
+            EnrollmentModel.Columns.PROGRAM + ", " +
+            EnrollmentModel.Columns.DATE_OF_ENROLLMENT + ", " +
+            EnrollmentModel.Columns.DATE_OF_INCIDENT + ", " +
+            EnrollmentModel.Columns.FOLLOW_UP + ", " +
+            EnrollmentModel.Columns.ENROLLMENT_STATUS + ", " +
+            EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + ", " +
+            EnrollmentModel.Columns.LATITUDE + ", " +
+            EnrollmentModel.Columns.LONGITUDE + ", " +
+            EnrollmentModel.Columns.STATE +
+            " FROM " + EnrollmentModel.TABLE +
+            " WHERE (" + EnrollmentModel.Columns.STATE + TO_UPLOAD + " OR " + EnrollmentModel.Columns.UID +
+            " IN (SELECT " + EventModel.Columns.ENROLLMENT_UID + " FROM " + EventModel.TABLE +
+            " WHERE " + EventModel.Columns.STATE + TO_UPLOAD + "))" +
+            " AND " + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " IN ";
+
+    private static final String QUERY_EVENTS = "SELECT " +
+            EventModel.TABLE + "." + EventModel.Columns.UID + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.ENROLLMENT_UID + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.CREATED + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.LAST_UPDATED + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.PROGRAM + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.PROGRAM_STAGE + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.ORGANISATION_UNIT + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.EVENT_DATE + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.STATUS + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.LATITUDE + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.LONGITUDE + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.COMPLETE_DATE + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.DUE_DATE + ", " +
+            EventModel.TABLE + "." + EventModel.Columns.STATE +
+            " FROM " + EVENT_JOIN_ENROLLMENT +
+            " WHERE " + EventModel.TABLE + "." + EventModel.Columns.STATE + TO_UPLOAD +
+            " AND " + EnrollmentModel.TABLE + "." + EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " IN ";
+
+    private static final String QUERY_DATA_VALUES = "SELECT " +
+            TrackedEntityDataValueModel.Columns.EVENT + ", " +
+            TrackedEntityDataValueModel.Columns.CREATED + ", " +
+            TrackedEntityDataValueModel.Columns.LAST_UPDATED + ", " +
+            TrackedEntityDataValueModel.Columns.DATA_ELEMENT + ", " +
+            TrackedEntityDataValueModel.Columns.STORED_BY + ", " +
+            TrackedEntityDataValueModel.Columns.VALUE + ", " +
+            TrackedEntityDataValueModel.Columns.PROVIDED_ELSEWHERE +
+            " FROM " + TrackedEntityDataValueModel.TABLE +
+            " WHERE " + TrackedEntityDataValueModel.Columns.EVENT + " IN ";
+
+    private final DatabaseAdapter databaseAdapter;
+
+    public TrackerUploadStoreImpl(DatabaseAdapter databaseAdapter) {
+        this.databaseAdapter = databaseAdapter;
+    }
+
+    @NonNull
+    @Override
+    public List<String> queryTrackedEntityInstanceUidsToUpload() {
+        List<String> uids = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_UIDS_TO_UPLOAD_STATEMENT);
+        try {
+            while (cursor.moveToNext()) {
+                uids.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return uids;
+    }
+
+    @NonNull
+    @Override
+    public TrackerUploadBatch queryTrackedEntityInstancesToUpload(@NonNull List<String> uids) {
+        List<TrackedEntityInstance> trackedEntityInstances = new ArrayList<>(uids.size());
+        Map<String, State> trackedEntityInstanceStates = new HashMap<>();
+        Map<String, State> enrollmentStates = new HashMap<>();
+        Map<String, State> eventStates = new HashMap<>();
+
+        int size = uids.size();
+        for (int start = 0; start < size; start += BulkUpsert.MAX_QUERY_UIDS) {
+            List<String> chunk = uids.subList(start, Math.min(start + BulkUpsert.MAX_QUERY_UIDS, size));
+            trackedEntityInstances.addAll(queryChunk(chunk, trackedEntityInstanceStates, enrollmentStates,
+                    eventStates));
+        }
+        return new TrackerUploadBatch(trackedEntityInstances, trackedEntityInstanceStates, enrollmentStates,
+                eventStates);
+    }
+
+    /**
+     * Reads each level of the graphs with a single query and assembles them bottom up. The states of the
+     * rows are collected into the given maps.
+     */
+    private List<TrackedEntityInstance> queryChunk(List<String> uids, Map<String, State> trackedEntityInstanceStates,
+                                                   Map<String, State> enrollmentStates,
+                                                   Map<String, State> eventStates) {
+        Map<String, List<TrackedEntityAttributeValue>> attributeValues = queryAttributeValues(uids);
+        List<Event> events = queryEvents(uids, eventStates);
+        Map<String, List<TrackedEntityDataValue>> dataValues = queryDataValues(events);
+
+        Map<String, List<Event>> eventsByEnrollment = new HashMap<>();
+        for (Event event : events) {
+            add(eventsByEnrollment, event.enrollmentUid(), Event.create(event.uid(), event.enrollmentUid(),
+                    event.created(), event.lastUpdated(), event.program(), event.programStage(),
+                    event.organisationUnit(), event.eventDate(), event.status(), event.coordinates(),
+                    event.completedDate(), event.dueDate(), valuesOf(dataValues, event.uid())));
+        }
+        Map<String, List<Enrollment>> enrollments = queryEnrollments(uids, eventsByEnrollment, enrollmentStates);
+
+        List<TrackedEntityInstance> trackedEntityInstances = new ArrayList<>(uids.size());
+        Cursor cursor = databaseAdapter.query(QUERY_TRACKED_ENTITY_INSTANCES + placeholders(uids.size()),
+                uids.toArray(new String[uids.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                String uid = getString(cursor, 0);
+                trackedEntityInstances.add(TrackedEntityInstance.create(uid, getDate(cursor, 1),
+                        getDate(cursor, 2), getString(cursor, 3), getString(cursor, 4),
+                        valuesOf(attributeValues, uid), null, valuesOf(enrollments, uid)));
+                trackedEntityInstanceStates.put(uid, getEnum(cursor, 5, State.class));
+            }
+        } finally {
+            cursor.close();
+        }
+        return trackedEntityInstances;
+    }
+
+    private Map<String, List<TrackedEntityAttributeValue>> queryAttributeValues(List<String> uids) {
+        Map<String, List<TrackedEntityAttributeValue>> attributeValues = new HashMap<>();
+        Cursor cursor = databaseAdapter.query(QUERY_ATTRIBUTE_VALUES + placeholders(uids.size()),
+                uids.toArray(new String[uids.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                add(attributeValues, getString(cursor, 0),
+                        TrackedEntityAttributeValue.create(getString(cursor, 1), getString(cursor, 2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return attributeValues;
+    }
+
+    private Map<String, List<Enrollment>> queryEnrollments(List<String> uids,
+                                                           Map<String, List<Event>> eventsByEnrollment,
+                                                           Map<String, State> enrollmentStates) {
+        Map<String, List<Enrollment>> enrollments = new HashMap<>();
+        Cursor cursor = databaseAdapter.query(QUERY_ENROLLMENTS + placeholders(uids.size()),
+                uids.toArray(new String[uids.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                String uid = getString(cursor, 0);
+                String trackedEntityInstance = getString(cursor, 9);
+                add(enrollments, trackedEntityInstance, Enrollment.create(uid, getDate(cursor, 1),
+                        getDate(cursor, 2), getString(cursor, 3), getString(cursor, 4), getDate(cursor, 5),
+                        getDate(cursor, 6), getBoolean(cursor, 7), getEnum(cursor, 8, EnrollmentStatus.class),
+                        trackedEntityInstance, coordinates(getString(cursor, 10), getString(cursor, 11)),
+                        valuesOf(eventsByEnrollment, uid)));
+                enrollmentStates.put(uid, getEnum(cursor, 12, State.class));
+            }
+        } finally {
+            cursor.close();
+        }
+        return enrollments;
+    }
+
+    /**
+     * @return events without data values
+     */
+    private List<Event> queryEvents(List<String> uids, Map<String, State> eventStates) {
+        List<Event> events = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_EVENTS + placeholders(uids.size()),
+                uids.toArray(new String[uids.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                String uid = getString(cursor, 0);
+                events.add(Event.create(uid, getString(cursor, 1), getDate(cursor, 2),
+                        getDate(cursor, 3), getString(cursor, 4), getString(cursor, 5), getString(cursor, 6),
+                        getDate(cursor, 7), getEnum(cursor, 8, EventStatus.class),
+                        coordinates(getString(cursor, 9), getString(cursor, 10)), getDate(cursor, 11),
+                        getDate(cursor, 12), null));
+                eventStates.put(uid, getEnum(cursor, 13, State.class));
+            }
+        } finally {
+            cursor.close();
+        }
+        return events;
+    }
+
+    private Map<String, List<TrackedEntityDataValue>> queryDataValues(List<Event> events) {
+        Map<String, List<TrackedEntityDataValue>> dataValues = new HashMap<>();
+
+        int size = events.size();
+        for (int start = 0; start < size; start += BulkUpsert.MAX_QUERY_UIDS) {
+            int end = Math.min(start + BulkUpsert.MAX_QUERY_UIDS, size);
+            String[] eventUids = new String[end - start];
+            for (int i = start; i < end; i++) {
+                eventUids[i - start] = events.get(i).uid();
+            }
+
+            Cursor cursor = databaseAdapter.query(QUERY_DATA_VALUES + placeholders(eventUids.length), eventUids);
+            try {
+                while (cursor.moveToNext()) {
+                    add(dataValues, getString(cursor, 0), TrackedEntityDataValue.create(getDate(cursor, 1),
+                            getDate(cursor, 2), getString(cursor, 3), getString(cursor, 4),
+                            getString(cursor, 5), getBoolean(cursor, 6)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return dataValues;
+    }
+
+    @Override
+    public int setTrackedEntityInstanceState(@NonNull Collection<String> uids, @NonNull State expectedState,
+                                             @NonNull State state) {
+        return setState(TrackedEntityInstanceModel.TABLE, TrackedEntityInstanceModel.Columns.UID, uids,
+                expectedState, state);
+    }
+
+    @Override
+    public int setEnrollmentState(@NonNull Collection<String> uids, @NonNull State expectedState,
+                                  @NonNull State state) {
+        return setState(EnrollmentModel.TABLE, EnrollmentModel.Columns.UID, uids, expectedState, state);
+    }
+
+    @Override
+    public int setEventState(@NonNull Collection<String> uids, @NonNull State expectedState, @NonNull State state) {
+        return setState(EventModel.TABLE, EventModel.Columns.UID, uids, expectedState, state);
+    }
+
+    /**
+     * Updates the state of the rows with a single statement per chunk of uids. Rows which are no longer in
+     * the expected state have been changed in the meantime and are left alone.
+     */
+    private int setState(String table, String uidColumn, Collection<String> uids, State expectedState,
+                         State state) {
+        List<String> uidList = new ArrayList<>(uids);
+        int updated = 0;
+
+        int size = uidList.size();
+        for (int start = 0; start < size; start += BulkUpsert.MAX_QUERY_UIDS) {
+            int end = Math.min(start + BulkUpsert.MAX_QUERY_UIDS, size);
+
+            SQLiteStatement statement = databaseAdapter.compileStatement("UPDATE " + table +
+                    " SET " + BaseDataModel.Columns.STATE + " = ? WHERE " + BaseDataModel.Columns.STATE + " = ?" +
+                    " AND " + uidColumn + " IN " + placeholders(end - start) + ";");
+            try {
+                sqLiteBind(statement, 1, state);
+                sqLiteBind(statement, 2, expectedState);
+                for (int i = start; i < end; i++) {
+                    sqLiteBind(statement, i - start + 3, uidList.get(i));
+                }
+                updated += databaseAdapter.executeUpdateDelete(table, statement);
+            } finally {
+                statement.close();
+            }
+        }
+        return updated;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder("(");
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        return placeholders.append(')').toString();
+    }
+
+    @Nullable
+    private static Coordinates coordinates(@Nullable String latitude, @Nullable String longitude) {
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+        return Coordinates.builder()
+                .latitude(Double.valueOf(latitude))
+                .longitude(Double.valueOf(longitude))
+                .build();
+    }
+
+    private static <T> void add(Map<String, List<T>> map, String key, T value) {
+        List<T> values = map.get(key);
+        if (values == null) {
+            values = new ArrayList<>();
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static <T> List<T> valuesOf(Map<String, List<T>> map, String key) {
+        List<T> values = map.get(key);
+        return values == null ? Collections.<T>emptyList() : values;
+    }
+}
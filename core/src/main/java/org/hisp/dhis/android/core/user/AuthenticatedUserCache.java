@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.user;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-memory copy of the authenticated users, so that credentials do not have to be read from the
+ * database for every request. The cache is created by {@link org.hisp.dhis.android.core.D2.Builder} and
+ * shared by the authenticator and the calls which change the authenticated user. Those calls have to
+ * {@link #invalidate()} the cache after their transaction has been committed.
+ */
+public final class AuthenticatedUserCache {
+    private final AuthenticatedUserStore authenticatedUserStore;
+
+    // null if the users have to be read from the store
+    private volatile List<AuthenticatedUserModel> authenticatedUsers;
+
+    // incremented on every invalidation, so that a stale read does not overwrite it
+    private int generation;
+
+    public AuthenticatedUserCache(@NonNull AuthenticatedUserStore authenticatedUserStore) {
+        this.authenticatedUserStore = authenticatedUserStore;
+    }
+
+    /**
+     * Returns the authenticated users, reading them from the store only if the cache is empty.
+     * The store is queried without holding a lock, since the query can wait for a transaction
+     * which invalidates the cache.
+     */
+    @NonNull
+    public List<AuthenticatedUserModel> get() {
+        List<AuthenticatedUserModel> users = authenticatedUsers;
+        if (users != null) {
+            return users;
+        }
+
+        int queryGeneration;
+        synchronized (this) {
+            queryGeneration = generation;
+        }
+
+        users = Collections.unmodifiableList(authenticatedUserStore.query());
+
+        synchronized (this) {
+            if (queryGeneration == generation) {
+                authenticatedUsers = users;
+            }
+        }
+        return users;
+    }
+
+    public void invalidate() {
+        synchronized (this) {
+            generation++;
+            authenticatedUsers = null;
+        }
+    }
+}
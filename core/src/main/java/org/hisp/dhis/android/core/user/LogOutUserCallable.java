@@ -51,16 +51,21 @@ public class LogOutUserCallable implements Callable<Void> {
     @NonNull
     private final OrganisationUnitStore organisationUnitStore;
 
+    @NonNull
+    private final AuthenticatedUserCache authenticatedUserCache;
+
     public LogOutUserCallable(@NonNull UserStore userStore,
             @NonNull UserCredentialsStore userCredentialsStore,
             @NonNull UserOrganisationUnitLinkStore userOrganisationUnitLinkStore,
             @NonNull AuthenticatedUserStore authenticatedUserStore,
-            @NonNull OrganisationUnitStore organisationUnitStore) {
+            @NonNull OrganisationUnitStore organisationUnitStore,
+            @NonNull AuthenticatedUserCache authenticatedUserCache) {
         this.userStore = userStore;
         this.userCredentialsStore = userCredentialsStore;
         this.userOrganisationUnitLinkStore = userOrganisationUnitLinkStore;
         this.authenticatedUserStore = authenticatedUserStore;
         this.organisationUnitStore = organisationUnitStore;
+        this.authenticatedUserCache = authenticatedUserCache;
     }
 
     @Override
@@ -72,6 +77,9 @@ public class LogOutUserCallable implements Callable<Void> {
         authenticatedUserStore.delete();
         organisationUnitStore.delete();
 
+        // the authenticator must not use the credentials of the logged out user
+        authenticatedUserCache.invalidate();
+
         return null;
     }
 }
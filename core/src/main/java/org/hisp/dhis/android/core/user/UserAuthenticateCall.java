@@ -50,8 +50,41 @@ import static okhttp3.Credentials.basic;
 import static org.hisp.dhis.android.core.data.api.ApiUtils.base64;
 
 // ToDo: ask about API changes
-// ToDo: performance tests? Try to feed in a user instance with thousands organisation units
+// performance with thousands of organisation units: see HandlerBenchmarks.user in the benchmark module
 public final class UserAuthenticateCall implements Call<Response<User>> {
+    private static final Fields<User> FIELDS = Fields.<User>builder().fields(
+            User.uid, User.code, User.name, User.displayName,
+            User.created, User.lastUpdated, User.birthday, User.education,
+            User.gender, User.jobTitle, User.surname, User.firstName,
+            User.introduction, User.employer, User.interests, User.languages,
+            User.email, User.phoneNumber, User.nationality,
+            User.userCredentials.with(
+                    UserCredentials.uid,
+                    UserCredentials.code,
+                    UserCredentials.name,
+                    UserCredentials.displayName,
+                    UserCredentials.created,
+                    UserCredentials.lastUpdated,
+                    UserCredentials.username),
+            User.organisationUnits.with(
+                    OrganisationUnit.uid,
+                    OrganisationUnit.code,
+                    OrganisationUnit.name,
+                    OrganisationUnit.displayName,
+                    OrganisationUnit.created,
+                    OrganisationUnit.lastUpdated,
+                    OrganisationUnit.shortName,
+                    OrganisationUnit.displayShortName,
+                    OrganisationUnit.description,
+                    OrganisationUnit.displayDescription,
+                    OrganisationUnit.path,
+                    OrganisationUnit.openingDate,
+                    OrganisationUnit.closedDate,
+                    OrganisationUnit.level,
+                    OrganisationUnit.parent.with(
+                            OrganisationUnit.uid))
+    ).build();
+
     // retrofit service
     private final UserService userService;
 
@@ -63,6 +96,7 @@ public final class UserAuthenticateCall implements Call<Response<User>> {
     private final ResourceStore resourceStore;
     private final AuthenticatedUserStore authenticatedUserStore;
     private final OrganisationUnitStore organisationUnitStore;
+    private final AuthenticatedUserCache authenticatedUserCache;
 
     // username and password of candidate
     private final String username;
@@ -79,6 +113,7 @@ public final class UserAuthenticateCall implements Call<Response<User>> {
             @NonNull ResourceStore resourceStore,
             @NonNull AuthenticatedUserStore authenticatedUserStore,
             @NonNull OrganisationUnitStore organisationUnitStore,
+            @NonNull AuthenticatedUserCache authenticatedUserCache,
             @NonNull String username,
             @NonNull String password) {
         this.userService = userService;
@@ -90,6 +125,7 @@ public final class UserAuthenticateCall implements Call<Response<User>> {
         this.resourceStore = resourceStore;
         this.authenticatedUserStore = authenticatedUserStore;
         this.organisationUnitStore = organisationUnitStore;
+        this.authenticatedUserCache = authenticatedUserCache;
 
         // credentials
         this.username = username;
@@ -128,38 +164,7 @@ public final class UserAuthenticateCall implements Call<Response<User>> {
     }
 
     private Response<User> authenticate(String credentials) throws IOException {
-        return userService.authenticate(credentials, Fields.<User>builder().fields(
-                User.uid, User.code, User.name, User.displayName,
-                User.created, User.lastUpdated, User.birthday, User.education,
-                User.gender, User.jobTitle, User.surname, User.firstName,
-                User.introduction, User.employer, User.interests, User.languages,
-                User.email, User.phoneNumber, User.nationality,
-                User.userCredentials.with(
-                        UserCredentials.uid,
-                        UserCredentials.code,
-                        UserCredentials.name,
-                        UserCredentials.displayName,
-                        UserCredentials.created,
-                        UserCredentials.lastUpdated,
-                        UserCredentials.username),
-                User.organisationUnits.with(
-                        OrganisationUnit.uid,
-                        OrganisationUnit.code,
-                        OrganisationUnit.name,
-                        OrganisationUnit.displayName,
-                        OrganisationUnit.created,
-                        OrganisationUnit.lastUpdated,
-                        OrganisationUnit.shortName,
-                        OrganisationUnit.displayShortName,
-                        OrganisationUnit.description,
-                        OrganisationUnit.displayDescription,
-                        OrganisationUnit.path,
-                        OrganisationUnit.openingDate,
-                        OrganisationUnit.closedDate,
-                        OrganisationUnit.level,
-                        OrganisationUnit.parent.with(
-                                OrganisationUnit.uid))
-        ).build()).execute();
+        return userService.authenticate(credentials, FIELDS).execute();
     }
 
     private Long saveUser(Response<User> response) {
@@ -237,6 +242,9 @@ public final class UserAuthenticateCall implements Call<Response<User>> {
             transaction.setSuccessful();
         } finally {
             transaction.end();
+
+            // the credentials are only visible to the authenticator once they have been committed
+            authenticatedUserCache.invalidate();
         }
 
         return userId;
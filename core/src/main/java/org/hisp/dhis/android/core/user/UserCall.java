@@ -27,11 +27,14 @@
  */
 package org.hisp.dhis.android.core.user;
 
-import org.hisp.dhis.android.core.common.Call;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.StagedCall;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitClosureStore;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitHandler;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitStore;
@@ -46,7 +49,38 @@ import java.util.List;
 
 import retrofit2.Response;
 
-public final class UserCall implements Call<Response<User>> {
+public final class UserCall implements StagedCall<User> {
+    private static final Fields<User> FIELDS = Fields.<User>builder().fields(
+            User.uid, User.code, User.name, User.displayName,
+            User.created, User.lastUpdated, User.birthday, User.education,
+            User.gender, User.jobTitle, User.surname, User.firstName,
+            User.introduction, User.employer, User.interests, User.languages,
+            User.email, User.phoneNumber, User.nationality,
+            User.userCredentials.with(
+                    UserCredentials.uid,
+                    UserCredentials.code,
+                    UserCredentials.name,
+                    UserCredentials.displayName,
+                    UserCredentials.created,
+                    UserCredentials.lastUpdated,
+                    UserCredentials.username,
+                    UserCredentials.userRoles.with(
+                            UserRole.uid, UserRole.programs.with(
+                                    Program.uid
+                            )
+                    )
+            ),
+            User.organisationUnits.with(
+                    OrganisationUnit.uid,
+                    OrganisationUnit.programs.with(
+                            Program.uid
+                    )
+            ),
+            User.teiSearchOrganisationUnits.with(
+                    OrganisationUnit.uid
+            )
+    ).build();
+
     // retrofit service
     private final UserService userService;
 
@@ -58,6 +92,7 @@ public final class UserCall implements Call<Response<User>> {
     private final UserStore userStore;
     private final UserRoleProgramLinkStore userRoleProgramLinkStore;
     private final UserOrganisationUnitLinkStore userOrganisationUnitLinkStore;
+    private final OrganisationUnitClosureStore organisationUnitClosureStore;
 
     private final ResourceStore resourceStore;
 
@@ -75,7 +110,8 @@ public final class UserCall implements Call<Response<User>> {
                     ResourceStore resourceStore,
                     Date serverDate,
                     UserRoleProgramLinkStore userRoleProgramLinkStore,
-                    UserOrganisationUnitLinkStore userOrganisationUnitLinkStore) {
+                    UserOrganisationUnitLinkStore userOrganisationUnitLinkStore,
+                    @Nullable OrganisationUnitClosureStore organisationUnitClosureStore) {
         this.userService = userService;
         this.databaseAdapter = databaseAdapter;
         this.organisationUnitStore = organisationUnitStore;
@@ -86,6 +122,7 @@ public final class UserCall implements Call<Response<User>> {
         this.serverDate = new Date(serverDate.getTime());
         this.userRoleProgramLinkStore = userRoleProgramLinkStore;
         this.userOrganisationUnitLinkStore = userOrganisationUnitLinkStore;
+        this.organisationUnitClosureStore = organisationUnitClosureStore;
     }
 
     @Override
@@ -97,6 +134,19 @@ public final class UserCall implements Call<Response<User>> {
 
     @Override
     public Response<User> call() throws Exception {
+        prepare();
+
+        Response<User> response = download();
+        if (response.isSuccessful()) {
+            persist(response);
+        }
+
+
+        return response;
+    }
+
+    @Override
+    public void prepare() {
         synchronized (this) {
             if (isExecuted) {
                 throw new IllegalStateException("Already executed");
@@ -104,49 +154,20 @@ public final class UserCall implements Call<Response<User>> {
 
             isExecuted = true;
         }
+    }
 
-        Response<User> response = getUser();
-        if (response.isSuccessful()) {
-            deleteOrPersistUserGraph(response);
-        }
-
+    @Override
+    public Response<User> download() throws Exception {
+        return getUser();
+    }
 
-        return response;
+    @Override
+    public void persist(Response<User> response) {
+        deleteOrPersistUserGraph(response);
     }
 
     private Response<User> getUser() throws IOException {
-        Fields<User> fields = Fields.<User>builder().fields(
-                User.uid, User.code, User.name, User.displayName,
-                User.created, User.lastUpdated, User.birthday, User.education,
-                User.gender, User.jobTitle, User.surname, User.firstName,
-                User.introduction, User.employer, User.interests, User.languages,
-                User.email, User.phoneNumber, User.nationality,
-                User.userCredentials.with(
-                        UserCredentials.uid,
-                        UserCredentials.code,
-                        UserCredentials.name,
-                        UserCredentials.displayName,
-                        UserCredentials.created,
-                        UserCredentials.lastUpdated,
-                        UserCredentials.username,
-                        UserCredentials.userRoles.with(
-                                UserRole.uid, UserRole.programs.with(
-                                        Program.uid
-                                )
-                        )
-                ),
-                User.organisationUnits.with(
-                        OrganisationUnit.uid,
-                        OrganisationUnit.programs.with(
-                                Program.uid
-                        )
-                ),
-                User.teiSearchOrganisationUnits.with(
-                        OrganisationUnit.uid
-                )
-        ).build();
-
-        return userService.getUser(fields).execute();
+        return userService.getUser(FIELDS).execute();
     }
 
     private void deleteOrPersistUserGraph(Response<User> response) {
@@ -154,7 +175,7 @@ public final class UserCall implements Call<Response<User>> {
         UserCredentialsHandler userCredentialsHandler = new UserCredentialsHandler(userCredentialsStore);
         UserRoleHandler userRoleHandler = new UserRoleHandler(userRoleStore, userRoleProgramLinkStore);
         OrganisationUnitHandler organisationUnitHandler = new OrganisationUnitHandler(
-                organisationUnitStore, userOrganisationUnitLinkStore
+                organisationUnitStore, userOrganisationUnitLinkStore, organisationUnitClosureStore
         );
         ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
 
@@ -104,7 +104,7 @@ public final class StoreUtils {
         if (arg == null) {
             sqLiteStatement.bindNull(index);
         } else {
-            sqLiteStatement.bindString(index, BaseIdentifiableObject.DATE_FORMAT.format(arg));
+            sqLiteStatement.bindString(index, BaseIdentifiableObject.DATE_CODEC.format(arg));
         }
     }
 
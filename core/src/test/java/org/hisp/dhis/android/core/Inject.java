@@ -32,6 +32,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.data.api.DateCodecModule;
 
 public class Inject {
     private Inject() {
@@ -44,6 +45,7 @@ public class Inject {
 
         // setting date format which is used across all models
         objectMapper.setDateFormat(BaseIdentifiableObject.DATE_FORMAT.raw());
+        objectMapper.registerModule(DateCodecModule.create(BaseIdentifiableObject.DATE_CODEC));
 
         // don't fail on unknown properties
         objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import org.hisp.dhis.android.core.data.api.HttpCacheCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class CachedResponsesTests {
+    private static final String BODY = "{\"programs\":[]}";
+
+    @Rule
+    public TemporaryFolder cacheDirectory = new TemporaryFolder();
+
+    private MockWebServer server;
+    private HttpCacheCounter counter;
+    private TestService service;
+
+    interface TestService {
+        @GET("programs")
+        Call<ResponseBody> programs();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+
+        counter = new HttpCacheCounter();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(new Cache(cacheDirectory.getRoot(), 1024 * 1024))
+                .addInterceptor(counter)
+                .build();
+
+        service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .build()
+                .create(TestService.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void isUnchanged_shouldReturnTrue_ifServerConfirmsPersistedValidator() throws Exception {
+        server.enqueue(revalidated().setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+        Response<ResponseBody> first = execute();
+        String validator = CachedResponses.validator(first);
+        Response<ResponseBody> second = execute();
+
+        assertThat(validator).isEqualTo("\"v1\"");
+        assertThat(CachedResponses.isUnchanged(first, validator)).isFalse();
+        assertThat(CachedResponses.isUnchanged(second, validator)).isTrue();
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("\"v1\"");
+    }
+
+    @Test
+    public void isUnchanged_shouldReturnFalse_ifCachedResponseWasNotPersisted() throws Exception {
+        server.enqueue(revalidated().setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+        execute();
+        Response<ResponseBody> second = execute();
+
+        // e.g. the transaction of the first sync has been rolled back
+        assertThat(CachedResponses.isUnchanged(second, null)).isFalse();
+        assertThat(CachedResponses.isUnchanged(second, "\"v0\"")).isFalse();
+    }
+
+    @Test
+    public void isUnchanged_shouldReturnFalse_ifServerSendsNewVersion() throws Exception {
+        server.enqueue(revalidated().setBody(BODY));
+        server.enqueue(revalidated().setHeader("ETag", "\"v2\"").setBody(BODY));
+
+        execute();
+        Response<ResponseBody> second = execute();
+
+        assertThat(CachedResponses.isUnchanged(second, "\"v1\"")).isFalse();
+        assertThat(CachedResponses.validator(second)).isEqualTo("\"v2\"");
+    }
+
+    @Test
+    public void validator_shouldFallBackToLastModified() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Last-Modified", "Thu, 09 Feb 2017 10:00:00 GMT")
+                .setBody(BODY));
+
+        assertThat(CachedResponses.validator(execute())).isEqualTo("Thu, 09 Feb 2017 10:00:00 GMT");
+    }
+
+    @Test
+    public void validator_shouldReturnNull_forMergedPayloads() throws Exception {
+        server.enqueue(revalidated().setBody(BODY));
+        okhttp3.Response raw = execute().raw();
+
+        Payload<Object> merged = Payload.concat(Collections.<Payload<Object>>emptyList());
+
+        assertThat(CachedResponses.validator(Response.success(merged, raw))).isNull();
+    }
+
+    @Test
+    public void counter_shouldCountMissesHitsAndNotModifiedResponses() throws Exception {
+        server.enqueue(revalidated().setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=60")
+                .setHeader("ETag", "\"v2\"")
+                .setBody(BODY));
+
+        execute();
+        execute();
+        execute();
+        execute();
+
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        assertThat(counter.missCount()).isEqualTo(2);
+        assertThat(counter.notModifiedCount()).isEqualTo(1);
+        assertThat(counter.hitCount()).isEqualTo(1);
+        assertThat(counter.cachedBytes()).isEqualTo(2L * BODY.length());
+    }
+
+    private Response<ResponseBody> execute() throws IOException {
+        Response<ResponseBody> response = service.programs().execute();
+        response.body().string();
+        return response;
+    }
+
+    private static MockResponse revalidated() {
+        return new MockResponse()
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("ETag", "\"v1\"");
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class DateCodecTests {
+    private static final String[] TIME_ZONES = {
+            "UTC", "Europe/Oslo", "America/New_York", "Africa/Kampala", "Asia/Kathmandu", "Australia/Lord_Howe"
+    };
+
+    // SimpleDateFormat picks up the default zone when it is created
+    private static SafeDateFormat dateFormat(String timeZone) {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+        try {
+            SafeDateFormat dateFormat = new SafeDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+            dateFormat.raw();
+            return dateFormat;
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void format_shouldMatchSimpleDateFormat() {
+        Random random = new Random(42);
+        for (String timeZone : TIME_ZONES) {
+            SafeDateFormat dateFormat = dateFormat(timeZone);
+            DateCodec dateCodec = new DateCodec(dateFormat, TimeZone.getTimeZone(timeZone));
+
+            for (int i = 0; i < 10000; i++) {
+                // roughly between 1900 and 2100
+                Date date = new Date((long) ((random.nextDouble() - 0.65) * 6311390400000L));
+                assertThat(dateCodec.format(date)).isEqualTo(dateFormat.format(date));
+            }
+        }
+    }
+
+    @Test
+    public void parse_shouldMatchSimpleDateFormat() throws ParseException {
+        Random random = new Random(7);
+        for (String timeZone : TIME_ZONES) {
+            SafeDateFormat dateFormat = dateFormat(timeZone);
+            DateCodec dateCodec = new DateCodec(dateFormat, TimeZone.getTimeZone(timeZone));
+
+            for (int i = 0; i < 10000; i++) {
+                String source = String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03d",
+                        1900 + random.nextInt(200), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                        random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000));
+                assertThat(dateCodec.parse(source)).isEqualTo(dateFormat.parse(source));
+            }
+        }
+    }
+
+    @Test
+    public void parse_shouldMatchSimpleDateFormatAroundDaylightSavingTransitions() throws ParseException {
+        SafeDateFormat dateFormat = dateFormat("Europe/Oslo");
+        DateCodec dateCodec = new DateCodec(dateFormat, TimeZone.getTimeZone("Europe/Oslo"));
+
+        // clocks went forward on 2017-03-26 at 02:00 and back on 2017-10-29 at 03:00
+        String[] sources = {
+                "2017-03-26T01:59:59.999", "2017-03-26T02:00:00.000", "2017-03-26T02:30:00.000",
+                "2017-03-26T03:00:00.000", "2017-10-29T01:59:59.999", "2017-10-29T02:00:00.000",
+                "2017-10-29T02:30:00.000", "2017-10-29T03:00:00.000"
+        };
+
+        for (String source : sources) {
+            assertThat(dateCodec.parse(source)).isEqualTo(dateFormat.parse(source));
+        }
+    }
+
+    @Test
+    public void parse_shouldIgnoreTrailingCharacters() throws ParseException {
+        DateCodec dateCodec = new DateCodec(dateFormat("UTC"), TimeZone.getTimeZone("UTC"));
+
+        assertThat(dateCodec.parse("2014-03-28T12:39:39.372+0000"))
+                .isEqualTo(dateCodec.parse("2014-03-28T12:39:39.372"));
+    }
+
+    @Test
+    public void parse_shouldReadCharacterRange() throws ParseException {
+        DateCodec dateCodec = new DateCodec(dateFormat("UTC"), TimeZone.getTimeZone("UTC"));
+        char[] source = "\"2015-09-14T21:17:41.033\"".toCharArray();
+
+        assertThat(dateCodec.parse(source, 1, DateCodec.LENGTH))
+                .isEqualTo(dateCodec.parse("2015-09-14T21:17:41.033"));
+    }
+
+    @Test
+    public void parse_shouldFallBackOnLenientInput() throws ParseException {
+        SafeDateFormat dateFormat = dateFormat("UTC");
+        DateCodec dateCodec = new DateCodec(dateFormat, TimeZone.getTimeZone("UTC"));
+
+        // short fraction and out of range day, which SimpleDateFormat accepts
+        assertThat(dateCodec.parse("2015-09-14T21:17:41.5")).isEqualTo(dateFormat.parse("2015-09-14T21:17:41.5"));
+        assertThat(dateCodec.parse("2015-02-30T21:17:41.500"))
+                .isEqualTo(dateFormat.parse("2015-02-30T21:17:41.500"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void parse_shouldThrowOnMalformedInput() throws ParseException {
+        new DateCodec(dateFormat("UTC"), TimeZone.getTimeZone("UTC")).parse("not a date at all, really");
+    }
+
+    @Test
+    public void formatTo_shouldWriteIntoBufferAtOffset() {
+        DateCodec dateCodec = new DateCodec(dateFormat("UTC"), TimeZone.getTimeZone("UTC"));
+        char[] buffer = new char[DateCodec.LENGTH + 2];
+        buffer[0] = '[';
+        buffer[buffer.length - 1] = ']';
+
+        assertThat(dateCodec.formatTo(1442265461033L, buffer, 1)).isTrue();
+        assertThat(new String(buffer)).isEqualTo("[2015-09-14T21:17:41.033]");
+    }
+
+    @Test
+    public void formatTo_shouldRejectDatesBeforeGregorianCalendar() {
+        DateCodec dateCodec = new DateCodec(dateFormat("UTC"), TimeZone.getTimeZone("UTC"));
+        Date date = new Date(-15000000000000L);
+
+        assertThat(dateCodec.formatTo(date.getTime(), new char[DateCodec.LENGTH], 0)).isFalse();
+        assertThat(dateCodec.format(date)).isEqualTo(dateFormat("UTC").format(date));
+    }
+}
@@ -32,7 +32,10 @@ import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
+import org.hisp.dhis.android.core.metadata.MetadataCache;
+import org.hisp.dhis.android.core.metadata.MetadataStore;
 import org.hisp.dhis.android.core.option.OptionSet;
+import org.hisp.dhis.android.core.option.OptionSetModel;
 import org.hisp.dhis.android.core.option.OptionSetService;
 import org.hisp.dhis.android.core.option.OptionSetStore;
 import org.hisp.dhis.android.core.option.OptionStore;
@@ -54,6 +57,9 @@ import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
 import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.rules.RuleEngine;
+import org.hisp.dhis.android.core.rules.RuleEngineCache;
+import org.hisp.dhis.android.core.rules.RuleStore;
 import org.hisp.dhis.android.core.systeminfo.SystemInfo;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoHandler;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
@@ -78,6 +84,8 @@ import org.junit.runners.JUnit4;
 import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -89,7 +97,11 @@ import retrofit2.Response;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(JUnit4.class)
@@ -252,6 +264,22 @@ public class MetadataCallTests {
 
 
     // object to test
+    @Mock
+    private RuleStore ruleStore;
+
+    @Mock
+    private MetadataStore metadataStore;
+
+    @Mock
+    private OptionSetModel staleOptionSet;
+
+    @Mock
+    private OptionSetModel syncedOptionSet;
+
+    private MetadataCache metadataCache;
+
+    private RuleEngineCache ruleEngineCache;
+
     private MetadataCall metadataCall;
 
 
@@ -290,18 +318,26 @@ public class MetadataCallTests {
 
         when(resourceStore.getLastUpdated(any(ResourceModel.Type.class))).thenReturn("2017-01-01");
 
-        metadataCall = new MetadataCall(
+        metadataCache = new MetadataCache(metadataStore);
+        ruleEngineCache = new RuleEngineCache(ruleStore);
+
+        metadataCall = givenMetadataCall(0);
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+    }
+
+    private MetadataCall givenMetadataCall(int organisationUnitPageSize) {
+        return new MetadataCall(
                 databaseAdapter, systemInfoService, userService,
                 programService, organisationUnitService, trackedEntityService, optionSetService,
                 systemInfoStore, resourceStore, userStore,
                 userCredentialsStore, userRoleStore, userRoleProgramLinkStore, organisationUnitStore,
-                userOrganisationUnitLinkStore, programStore, trackedEntityAttributeStore,
-                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
-                programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore,
-                optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore);
-
-        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+                userOrganisationUnitLinkStore, null, organisationUnitPageSize, programStore,
+                trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
+                programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
+                programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore, metadataCache,
+                ruleEngineCache, null);
     }
 
     @Test
@@ -318,4 +354,95 @@ public class MetadataCallTests {
         // assert that last successful response is returned
         assertThat(response.body()).isEqualTo(optionSetPayload);
     }
+
+    @Test
+    public void call_shouldInvalidateRuleEngines_afterOuterTransactionHasEnded() throws Exception {
+        when(systemInfoCall.execute()).thenReturn(Response.success(systemInfo));
+        when(userCall.execute()).thenReturn(Response.success(user));
+        when(organisationUnitCall.execute()).thenReturn(Response.success(organisationUnitPayload));
+        when(programCall.execute()).thenReturn(Response.success(programPayload));
+        when(trackedEntityCall.execute()).thenReturn(Response.success(trackedEntityPayload));
+        when(optionSetCall.execute()).thenReturn(Response.success(optionSetPayload));
+
+        // a form which is opened while the sync has not been committed yet caches the old rules
+        final RuleEngine[] readDuringSync = new RuleEngine[1];
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                readDuringSync[0] = ruleEngineCache.get("program");
+                return null;
+            }
+        }).when(transaction).end();
+
+        metadataCall.call();
+
+        assertThat(readDuringSync[0]).isNotNull();
+        assertThat(ruleEngineCache.get("program")).isNotSameAs(readDuringSync[0]);
+    }
+
+    @Test
+    public void call_shouldInvalidateMetadataCache_afterOuterTransactionHasEnded() throws Exception {
+        when(systemInfoCall.execute()).thenReturn(Response.success(systemInfo));
+        when(userCall.execute()).thenReturn(Response.success(user));
+        when(organisationUnitCall.execute()).thenReturn(Response.success(organisationUnitPayload));
+        when(programCall.execute()).thenReturn(Response.success(programPayload));
+        when(trackedEntityCall.execute()).thenReturn(Response.success(trackedEntityPayload));
+        when(optionSetCall.execute()).thenReturn(Response.success(optionSetPayload));
+        when(optionSet.uid()).thenReturn("option_set");
+        when(metadataStore.queryOptionSet("option_set")).thenReturn(staleOptionSet, syncedOptionSet);
+
+        // a form which is opened while the sync has not been committed yet caches the old option set
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                metadataCache.optionSet("option_set");
+                return null;
+            }
+        }).when(transaction).end();
+
+        metadataCall.call();
+
+        assertThat(metadataCache.optionSet("option_set")).isSameAs(syncedOptionSet);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void call_shouldDownloadPagedOrganisationUnits_afterOuterTransactionHasEnded() throws Exception {
+        when(systemInfoCall.execute()).thenReturn(Response.success(systemInfo));
+        when(userCall.execute()).thenReturn(Response.success(user));
+        when(organisationUnitCall.execute()).thenReturn(Response.success(organisationUnitPayload));
+        when(organisationUnitPayload.pager()).thenReturn(new Pager(1, 1, 1, 1));
+        when(programCall.execute()).thenReturn(Response.success(programPayload));
+        when(trackedEntityCall.execute()).thenReturn(Response.success(trackedEntityPayload));
+        when(optionSetCall.execute()).thenReturn(Response.success(optionSetPayload));
+
+        final int[] endedTransactions = {0};
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                endedTransactions[0]++;
+                return null;
+            }
+        }).when(transaction).end();
+
+        final int[] endedBeforeDownload = {-1};
+        when(organisationUnitService.getOrganisationUnits(anyString(), any(Fields.class), any(Filter.class),
+                anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString())).thenAnswer(
+                new Answer<retrofit2.Call<Payload<OrganisationUnit>>>() {
+                    @Override
+                    public retrofit2.Call<Payload<OrganisationUnit>> answer(InvocationOnMock invocation) {
+                        endedBeforeDownload[0] = endedTransactions[0];
+                        return organisationUnitCall;
+                    }
+                });
+
+        Response response = givenMetadataCall(1).call();
+
+        assertThat(response.body()).isEqualTo(optionSetPayload);
+        verify(organisationUnitService, never()).getOrganisationUnits(
+                anyString(), any(Fields.class), any(Filter.class), anyBoolean(), anyBoolean());
+        // the outer transaction has ended, and the page and the completed download are committed afterwards
+        assertThat(endedBeforeDownload[0]).isGreaterThan(0);
+        assertThat(endedTransactions[0] - endedBeforeDownload[0]).isEqualTo(2);
+    }
 }
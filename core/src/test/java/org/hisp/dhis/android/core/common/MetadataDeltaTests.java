@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
+import org.hisp.dhis.android.core.data.api.FilterConverterFactory;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class MetadataDeltaTests {
+    private static final MetadataDelta.Probe SECTION_PROBE = MetadataDelta.Probe.create(
+            ResourceModel.Type.PROGRAM_STAGE_SECTION, "programStageSections", "programStage.program");
+
+    private MockWebServer server;
+    private MetadataDelta delta;
+    private Map<ResourceModel.Type, String> lastSynced;
+    private Set<String> knownUids;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+
+        ObjectMapper objectMapper = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .addConverterFactory(FieldsConverterFactory.create())
+                .addConverterFactory(FilterConverterFactory.create())
+                .build();
+
+        delta = new MetadataDelta(retrofit.create(MetadataDeltaService.class), 64, 3);
+
+        lastSynced = new EnumMap<>(ResourceModel.Type.class);
+        lastSynced.put(ResourceModel.Type.PROGRAM_STAGE_SECTION, "2017-02-09T10:00:00.000");
+
+        knownUids = new LinkedHashSet<>(Arrays.asList("program_a", "program_b"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void changedUids_shouldRequestParentsOfChangedObjects_withLastUpdatedOfProbeType() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"programStageSections\":[" +
+                "{\"programStage\":{\"program\":{\"id\":\"program_b\"}}}," +
+                "{\"programStage\":{\"program\":{\"id\":\"program_unknown\"}}}," +
+                "{\"programStage\":{}}]}"));
+
+        Response<Set<String>> response = delta.changedUids(
+                Collections.singletonList(SECTION_PROBE), lastSynced, knownUids);
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.body()).containsOnly("program_b");
+        assertThat(server.takeRequest().getPath()).isEqualTo("/programStageSections" +
+                "?fields=programStage[program[id]]" +
+                "&filter=lastUpdated:gt:2017-02-09T10:00:00.000" +
+                "&filter=programStage.program.id:in:[program_a,program_b]" +
+                "&paging=false");
+    }
+
+    @Test
+    public void changedUids_shouldFilterByReferencedObject_andMatchAll_ifTypeWasNeverSynced() throws Exception {
+        MetadataDelta.Probe probe = MetadataDelta.Probe.create(ResourceModel.Type.DATA_ELEMENT,
+                "programStageDataElements", "programStage.program", "dataElement.lastUpdated");
+        server.enqueue(new MockResponse().setBody("{\"programStageDataElements\":[]}"));
+        server.enqueue(new MockResponse().setBody("{\"programStageDataElements\":[]}"));
+
+        delta.changedUids(Collections.singletonList(probe), lastSynced, knownUids);
+        lastSynced.put(ResourceModel.Type.DATA_ELEMENT, "2017-02-09T10:00:00.000");
+        delta.changedUids(Collections.singletonList(probe), lastSynced, knownUids);
+
+        assertThat(server.takeRequest().getPath()).doesNotContain("lastUpdated");
+        assertThat(server.takeRequest().getPath()).contains("&filter=dataElement.lastUpdated:gt:2017-02-09");
+    }
+
+    @Test
+    public void changedUids_shouldIncludeChangedParents_ofAllProbes() throws Exception {
+        List<MetadataDelta.Probe> probes = Arrays.asList(
+                MetadataDelta.Probe.create(ResourceModel.Type.PROGRAM, "programs", ""),
+                SECTION_PROBE);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/programs?")) {
+                    return new MockResponse().setBody("{\"programs\":[{\"id\":\"program_a\"}]}");
+                }
+                return new MockResponse().setBody("{\"programStageSections\":[]}");
+            }
+        });
+
+        Response<Set<String>> response = delta.changedUids(probes, lastSynced, knownUids);
+
+        assertThat(response.body()).containsOnly("program_a");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void changedUids_shouldNotSendRequests_withoutKnownUids() throws Exception {
+        Response<Set<String>> response = delta.changedUids(
+                Collections.singletonList(SECTION_PROBE), lastSynced, Collections.<String>emptySet());
+
+        assertThat(response.body()).isEmpty();
+        assertThat(server.getRequestCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void changedUids_shouldReturnUnsuccessfulResponse() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND));
+
+        Response<Set<String>> response = delta.changedUids(
+                Collections.singletonList(SECTION_PROBE), lastSynced, knownUids);
+
+        assertThat(response.isSuccessful()).isFalse();
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_NOT_FOUND);
+    }
+
+    @Test
+    public void deletedObjects_shouldListDeletionsSinceLastSync() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"deletedObjects\":[" +
+                "{\"uid\":\"stage_uid\",\"klass\":\"ProgramStage\",\"deletedAt\":\"2017-02-10T10:00:00.000\"}]}"));
+
+        Response<Payload<DeletedObject>> response = delta.deletedObjects(
+                Arrays.asList("Program", "ProgramStage"), "2017-02-09T10:00:00.000");
+
+        assertThat(response.body().items()).containsExactly(
+                DeletedObject.builder().uid("stage_uid").klass("ProgramStage").build());
+        assertThat(server.takeRequest().getPath()).isEqualTo("/deletedObjects?fields=uid,klass" +
+                "&klass=Program&klass=ProgramStage&deletedAt=2017-02-09T10:00:00.000&paging=false");
+    }
+
+    @Test
+    public void deletedObjects_shouldNotSendRequest_ifNeverSynced() throws Exception {
+        Response<Payload<DeletedObject>> response = delta.deletedObjects(
+                Collections.singletonList("Program"), null);
+
+        assertThat(response.body().items()).isEmpty();
+        assertThat(server.getRequestCount()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.common;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class PipelinedPageDownloaderTests {
+
+    @Mock
+    private DatabaseAdapter database;
+
+    @Mock
+    private Transaction transaction;
+
+    private List<String> requests;
+    private List<String> written;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(database.beginNewTransaction()).thenReturn(transaction);
+
+        requests = Collections.synchronizedList(new ArrayList<String>());
+        written = new ArrayList<>();
+    }
+
+    private static Response<Payload<String>> page(String... items) {
+        return Response.success(new Payload<>(Arrays.asList(items)));
+    }
+
+    private PipelinedPageDownloader.PageRequest<String> pages(final Map<String, Response<Payload<String>>> pages) {
+        return new PipelinedPageDownloader.PageRequest<String>() {
+            @Override
+            public Response<Payload<String>> request(String scope, int page) throws IOException {
+                requests.add(scope + page);
+                Response<Payload<String>> response = pages.get(scope + page);
+                if (response == null) {
+                    throw new IOException("Unexpected page: " + scope + page);
+                }
+                return response;
+            }
+        };
+    }
+
+    private PipelinedPageDownloader.PageWriter<String> writer() {
+        return new PipelinedPageDownloader.PageWriter<String>() {
+            @Override
+            public void write(List<String> batch) {
+                written.addAll(batch);
+            }
+
+            @Override
+            public void pageWritten(String scope, Integer nextPage) {
+                written.add(scope + "->" + nextPage);
+            }
+        };
+    }
+
+    @Test
+    public void download_shouldWritePages_untilPageIsNotFull() throws Exception {
+        Map<String, Response<Payload<String>>> pages = new LinkedHashMap<>();
+        pages.put("a1", page("x", "y", "z"));
+        pages.put("a2", page("w"));
+
+        Response<Payload<String>> response = new PipelinedPageDownloader<String>(database, 3, 2, 1)
+                .download(Collections.singletonMap("a", 1), pages(pages), writer());
+
+        assertThat(response).isEqualTo(pages.get("a2"));
+        assertThat(requests).containsExactly("a1", "a2");
+        assertThat(written).containsExactly("x", "y", "z", "a->2", "w", "a->null");
+
+        // one transaction per page
+        verify(database, times(2)).beginNewTransaction();
+        verify(transaction, times(2)).setSuccessful();
+        verify(transaction, times(2)).end();
+    }
+
+    @Test
+    public void download_shouldStartScopes_atGivenPages() throws Exception {
+        Map<String, Response<Payload<String>>> pages = new LinkedHashMap<>();
+        pages.put("a3", page("x"));
+        pages.put("b1", page());
+
+        Map<String, Integer> firstPages = new LinkedHashMap<>();
+        firstPages.put("a", 3);
+        firstPages.put("b", 1);
+
+        new PipelinedPageDownloader<String>(database, 2, 2, 1).download(firstPages, pages(pages), writer());
+
+        assertThat(requests).containsExactly("a3", "b1");
+        assertThat(written).containsExactly("x", "a->null", "b->null");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void download_shouldFollowPageCount_ifKnown() throws Exception {
+        Payload<String> firstPage = mock(Payload.class);
+        when(firstPage.items()).thenReturn(Collections.singletonList("x"));
+        when(firstPage.pager()).thenReturn(new Pager(1, 2, 2, 3));
+
+        Map<String, Response<Payload<String>>> pages = new LinkedHashMap<>();
+        pages.put("a1", Response.success(firstPage));
+        pages.put("a2", page("y"));
+
+        new PipelinedPageDownloader<String>(database, 2, 2, 1)
+                .download(Collections.singletonMap("a", 1), pages(pages), writer());
+
+        assertThat(requests).containsExactly("a1", "a2");
+        verify(firstPage).close();
+    }
+
+    @Test
+    public void download_shouldStop_atUnsuccessfulResponse() throws Exception {
+        Response<Payload<String>> errorResponse = Response.error(HttpURLConnection.HTTP_BAD_REQUEST,
+                ResponseBody.create(MediaType.parse("application/json"), "{}"));
+
+        Map<String, Response<Payload<String>>> pages = new LinkedHashMap<>();
+        pages.put("a1", page("x"));
+        pages.put("a2", errorResponse);
+
+        Map<String, Integer> firstPages = new LinkedHashMap<>();
+        firstPages.put("a", 1);
+        firstPages.put("b", 1);
+
+        Response<Payload<String>> response = new PipelinedPageDownloader<String>(database, 1, 1, 1)
+                .download(firstPages, pages(pages), writer());
+
+        assertThat(response).isEqualTo(errorResponse);
+        assertThat(requests).containsExactly("a1", "a2");
+        assertThat(written).containsExactly("x", "a->2");
+    }
+
+    @Test
+    public void download_shouldKeepWrittenPages_ifReadingFails() throws Exception {
+        Map<String, Response<Payload<String>>> pages = new LinkedHashMap<>();
+        pages.put("a1", page("x", "y"));
+
+        try {
+            new PipelinedPageDownloader<String>(database, 2, 1, 1)
+                    .download(Collections.singletonMap("a", 1), pages(pages), writer());
+            fail("Expected an IOException");
+        } catch (IOException exception) {
+            assertThat(exception).hasMessage("Unexpected page: a2");
+        }
+
+        assertThat(written).containsExactly("x", "y", "a->2");
+        verify(transaction).setSuccessful();
+        verify(transaction).end();
+    }
+
+    @Test
+    public void download_shouldRollBackPage_andStopReading_ifWritingFails() throws Exception {
+        Map<String, Response<Payload<String>>> pages = new LinkedHashMap<>();
+        for (int page = 1; page <= 100; page++) {
+            pages.put("a" + page, page("x", "y"));
+        }
+
+        try {
+            new PipelinedPageDownloader<String>(database, 2, 1, 1).download(Collections.singletonMap("a", 1),
+                    pages(pages), new PipelinedPageDownloader.PageWriter<String>() {
+                        @Override
+                        public void write(List<String> batch) {
+                            throw new IllegalArgumentException("Failed to write");
+                        }
+
+                        @Override
+                        public void pageWritten(String scope, Integer nextPage) {
+                            // not reached
+                        }
+                    });
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException exception) {
+            assertThat(exception).hasMessage("Failed to write");
+        }
+
+        verify(transaction, never()).setSuccessful();
+        verify(transaction).end();
+
+        // the bounded queue keeps the reader from running ahead
+        assertThat(requests.size()).isLessThan(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldFail_forNonPositivePageSize() {
+        new PipelinedPageDownloader<String>(database, 0, 1, 1);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class SyncSchedulerTests {
+
+    @Mock
+    private StagedCall<String> firstCall;
+
+    @Mock
+    private StagedCall<String> secondCall;
+
+    private ExecutorService executor;
+
+    private SyncScheduler scheduler;
+
+    private Response<String> errorResponse;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        executor = Executors.newFixedThreadPool(2);
+        scheduler = new SyncScheduler(executor);
+
+        errorResponse = Response.error(HttpURLConnection.HTTP_BAD_REQUEST,
+                ResponseBody.create(MediaType.parse("application/json"), "{}"));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void persistAll_shouldPersistResponses_inSubmissionOrder() throws Exception {
+        Response<String> firstResponse = Response.success("first");
+        Response<String> secondResponse = Response.success("second");
+        when(firstCall.download()).thenReturn(firstResponse);
+        when(secondCall.download()).thenReturn(secondResponse);
+
+        scheduler.submit("first", firstCall);
+        scheduler.submit("second", secondCall);
+
+        assertThat(scheduler.firstUnsuccessful()).isNull();
+        scheduler.persistAll();
+
+        InOrder inOrder = inOrder(firstCall, secondCall);
+        inOrder.verify(firstCall).prepare();
+        inOrder.verify(secondCall).prepare();
+        inOrder.verify(firstCall).persist(firstResponse);
+        inOrder.verify(secondCall).persist(secondResponse);
+
+        List<SyncStageTiming> timings = scheduler.timings();
+        assertThat(timings.size()).isEqualTo(2);
+        assertThat(timings.get(0).stage()).isEqualTo("first");
+        assertThat(timings.get(1).stage()).isEqualTo("second");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void firstUnsuccessful_shouldReturnFirstFailedResponse() throws Exception {
+        when(firstCall.download()).thenReturn(Response.success("first"));
+        when(secondCall.download()).thenReturn(errorResponse);
+
+        scheduler.submit("first", firstCall);
+        scheduler.submit("second", secondCall);
+
+        assertThat(scheduler.firstUnsuccessful()).isEqualTo(errorResponse);
+        verify(firstCall, never()).persist(any(Response.class));
+        verify(secondCall, never()).persist(any(Response.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void persistAll_shouldSkipEmptyResponses() throws Exception {
+        when(firstCall.download()).thenReturn(null);
+
+        scheduler.submit("first", firstCall);
+
+        assertThat(scheduler.firstUnsuccessful()).isNull();
+        scheduler.persistAll();
+
+        verify(firstCall, never()).persist(any(Response.class));
+    }
+
+    @Test
+    public void await_shouldRethrowDownloadException() throws Exception {
+        when(firstCall.download()).thenThrow(new IOException("test"));
+
+        try {
+            SyncScheduler.await(scheduler.submit("first", firstCall));
+            fail("IOException should be thrown");
+        } catch (IOException ioException) {
+            assertThat(ioException.getMessage()).isEqualTo("test");
+        }
+    }
+}
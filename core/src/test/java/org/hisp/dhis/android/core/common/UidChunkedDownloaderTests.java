@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+@RunWith(JUnit4.class)
+public class UidChunkedDownloaderTests {
+
+    private static Set<String> uids(int count) {
+        Set<String> uids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            uids.add("uid" + i);
+        }
+        return uids;
+    }
+
+    @Test
+    public void partition_shouldSplitUids_intoChunksOfMaxSize() {
+        List<Set<String>> chunks = UidChunkedDownloader.partition(uids(150), 64);
+
+        assertThat(chunks.size()).isEqualTo(3);
+        assertThat(chunks.get(0).size()).isEqualTo(64);
+        assertThat(chunks.get(1).size()).isEqualTo(64);
+        assertThat(chunks.get(2).size()).isEqualTo(22);
+    }
+
+    @Test
+    public void partition_shouldKeepSmallOrEmptySets_inSingleChunk() {
+        assertThat(UidChunkedDownloader.partition(uids(64), 64).size()).isEqualTo(1);
+        assertThat(UidChunkedDownloader.partition(Collections.<String>emptySet(), 64).size()).isEqualTo(1);
+        assertThat(UidChunkedDownloader.partition(null, 64).get(0)).isNull();
+    }
+
+    @Test
+    public void download_shouldMergeItems_ofAllChunks() throws Exception {
+        Response<Payload<String>> response = new UidChunkedDownloader<String>(10, 3).download(uids(95),
+                new UidChunkedDownloader.ChunkRequest<String>() {
+                    @Override
+                    public Response<Payload<String>> request(Set<String> chunk) throws IOException {
+                        return Response.success(new Payload<>(new ArrayList<>(chunk)));
+                    }
+                });
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(new HashSet<>(response.body().items())).isEqualTo(uids(95));
+    }
+
+    @Test
+    public void download_shouldReturnUnsuccessfulResponse_ifAnyChunkFails() throws Exception {
+        final Response<Payload<String>> errorResponse = Response.error(HttpURLConnection.HTTP_BAD_REQUEST,
+                ResponseBody.create(MediaType.parse("application/json"), "{}"));
+
+        Response<Payload<String>> response = new UidChunkedDownloader<String>(10, 2).download(uids(30),
+                new UidChunkedDownloader.ChunkRequest<String>() {
+                    @Override
+                    public Response<Payload<String>> request(Set<String> chunk) throws IOException {
+                        return chunk.contains("uid7") ? errorResponse
+                                : Response.success(new Payload<>(new ArrayList<>(chunk)));
+                    }
+                });
+
+        assertThat(response).isEqualTo(errorResponse);
+    }
+
+    @Test
+    public void download_shouldClosePayloadsOfAllChunks_ifAnyChunkFails() throws Exception {
+        final Response<Payload<String>> errorResponse = Response.error(HttpURLConnection.HTTP_BAD_REQUEST,
+                ResponseBody.create(MediaType.parse("application/json"), "{}"));
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+
+        Response<Payload<String>> response = new UidChunkedDownloader<String>(10, 2).download(uids(50),
+                new UidChunkedDownloader.ChunkRequest<String>() {
+                    @Override
+                    public Response<Payload<String>> request(Set<String> chunk) throws IOException {
+                        if (chunk.contains("uid7")) {
+                            return errorResponse;
+                        }
+                        created.incrementAndGet();
+                        return Response.success(closeCounting(chunk, closed));
+                    }
+                });
+
+        assertThat(response).isEqualTo(errorResponse);
+        // chunks which were not started yet are cancelled, the payloads of all others are closed
+        assertThat(closed.get()).isEqualTo(created.get());
+    }
+
+    @Test
+    public void download_shouldClosePayloadsOfAllChunks_ifAnyChunkThrows() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+
+        try {
+            new UidChunkedDownloader<String>(10, 2).download(uids(50),
+                    new UidChunkedDownloader.ChunkRequest<String>() {
+                        @Override
+                        public Response<Payload<String>> request(Set<String> chunk) throws IOException {
+                            if (chunk.contains("uid7")) {
+                                throw new IOException("connection reset");
+                            }
+                            created.incrementAndGet();
+                            return Response.success(closeCounting(chunk, closed));
+                        }
+                    });
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // chunks which were not started yet are cancelled, the payloads of all others are closed
+            assertThat(closed.get()).isEqualTo(created.get());
+        }
+    }
+
+    private static Payload<String> closeCounting(Set<String> chunk, final AtomicInteger closed) {
+        return new Payload<String>(new ArrayList<>(chunk)) {
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
+        };
+    }
+}
@@ -28,6 +28,8 @@
 
 package org.hisp.dhis.android.core.data.api;
 
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.user.AuthenticatedUserCache;
 import org.hisp.dhis.android.core.user.AuthenticatedUserModel;
 import org.hisp.dhis.android.core.user.AuthenticatedUserStore;
 import org.junit.After;
@@ -44,13 +46,17 @@ import java.util.Arrays;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 
 import static okhttp3.Credentials.basic;
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
 import static org.hisp.dhis.android.core.data.api.ApiUtils.base64;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 // ToDo: Solve problem with INFO logs from MockWebServer being interpreted as errors in gradle
@@ -60,6 +66,10 @@ public class BasicAuthenticatorTests {
     @Mock
     private AuthenticatedUserStore authenticatedUserStore;
 
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    private AuthenticatedUserCache authenticatedUserCache;
     private MockWebServer mockWebServer;
     private OkHttpClient okHttpClient;
 
@@ -71,8 +81,9 @@ public class BasicAuthenticatorTests {
         mockWebServer.enqueue(new MockResponse());
         mockWebServer.start();
 
+        authenticatedUserCache = new AuthenticatedUserCache(authenticatedUserStore);
         okHttpClient = new OkHttpClient.Builder()
-                .addInterceptor(new BasicAuthenticator(authenticatedUserStore))
+                .addInterceptor(new BasicAuthenticator(authenticatedUserCache))
                 .build();
     }
 
@@ -111,6 +122,76 @@ public class BasicAuthenticatorTests {
         assertThat(recordedRequest.getHeader("Authorization")).isNull();
     }
 
+    @Test
+    public void authenticator_shouldQueryDatabaseOnlyOnceUntilInvalidated() throws IOException {
+        AuthenticatedUserModel authenticatedUserModel =
+                AuthenticatedUserModel.builder()
+                        .user("test_user")
+                        .credentials(base64("test_user", "test_password"))
+                        .build();
+        when(authenticatedUserStore.query()).thenReturn(Arrays.asList(authenticatedUserModel));
+
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse());
+            executeRequest();
+        }
+        verify(authenticatedUserStore, times(1)).query();
+
+        authenticatedUserCache.invalidate();
+        executeRequest();
+
+        verify(authenticatedUserStore, times(2)).query();
+    }
+
+    @Test
+    public void factory_shouldReturnCacheOfAuthenticatorsItCreated() {
+        Authenticator authenticator = BasicAuthenticatorFactory.create(authenticatedUserCache);
+
+        assertThat(BasicAuthenticatorFactory.authenticatedUserCache(authenticator))
+                .isSameAs(authenticatedUserCache);
+    }
+
+    @Test
+    public void factory_shouldNotReturnCacheOfOtherAuthenticators() {
+        Authenticator authenticator = new Authenticator() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                return chain.proceed(chain.request());
+            }
+        };
+
+        assertThat(BasicAuthenticatorFactory.authenticatedUserCache(authenticator)).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedFactory_shouldThrowIllegalArgumentExceptionWhenNoDatabaseAdapter() {
+        try {
+            BasicAuthenticatorFactory.create((DatabaseAdapter) null);
+
+            fail("IllegalArgumentException was expected, but was not thrown");
+        } catch (IllegalArgumentException illegalArgumentException) {
+            // swallow exception
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedFactory_shouldCreateAuthenticatorWithCacheOfItsOwn() {
+        Authenticator authenticator = BasicAuthenticatorFactory.create(databaseAdapter);
+
+        assertThat(BasicAuthenticatorFactory.authenticatedUserCache(authenticator)).isNotNull();
+    }
+
+    private void executeRequest() throws IOException {
+        okHttpClient.newCall(
+                new Request.Builder()
+                        .url(mockWebServer.url("/api/me/"))
+                        .build())
+                .execute()
+                .close();
+    }
+
     @After
     public void tearDown() throws IOException {
         mockWebServer.shutdown();
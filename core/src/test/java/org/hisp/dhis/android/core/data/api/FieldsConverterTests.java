@@ -145,4 +145,32 @@ public class FieldsConverterTests {
         assertThat(queryStringOne).isEqualTo("id,displayName,programs");
         assertThat(queryStringTwo).isEqualTo("id,displayName,programs[id,displayName]");
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void converter_shouldSeparateNestedFieldsFromFollowingProperties() throws IOException {
+        String queryString = fieldsConverter.convert(
+                Fields.builder().fields(
+                        NestedField.create("relatedProgram").with(Field.create("id")),
+                        NestedField.create("trackedEntity"),
+                        Field.create("id")
+                ).build());
+
+        assertThat(queryString).isEqualTo("relatedProgram[id],trackedEntity,id");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void compactConverter_shouldLeaveOutDuplicatedDisplayProperties() throws IOException {
+        Fields fields = Fields.builder().fields(
+                Field.create("id"), Field.create("name"), Field.create("displayName"),
+                NestedField.create("programStages").with(
+                        Field.create("id"), Field.create("displayName"), Field.create("displayFormName"))
+        ).build();
+
+        assertThat(new FieldsConverter(true).convert(fields))
+                .isEqualTo("id,name,programStages[id,displayName,displayFormName]");
+        assertThat(fieldsConverter.convert(fields))
+                .isEqualTo("id,name,displayName,programStages[id,displayName,displayFormName]");
+    }
 }
@@ -28,14 +28,19 @@
 
 package org.hisp.dhis.android.core.data.api;
 
+import org.hisp.dhis.android.core.common.Property;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import nl.jqno.equalsverifier.EqualsVerifier;
 import nl.jqno.equalsverifier.Warning;
 
 import static junit.framework.Assert.fail;
+import static org.assertj.core.api.Java6Assertions.assertThat;
 
 @RunWith(JUnit4.class)
 public class FieldsTests {
@@ -70,10 +75,83 @@ public class FieldsTests {
         }
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void compact_shouldLeaveOutDisplayPropertiesOfRequestedProperties() {
+        Fields<String> fields = Fields.<String>builder()
+                .fields(
+                        Field.<String, String>create("name"),
+                        Field.<String, String>create("displayName"),
+                        Field.<String, String>create("displayShortName"),
+                        Field.<String, String>create("description"),
+                        Field.<String, String>create("displayDescription"),
+                        Field.<String, String>create("displayInReports"))
+                .build();
+
+        assertThat(names(fields.compact().fields()))
+                .containsExactly("name", "displayShortName", "description", "displayInReports");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void compact_shouldRequestPropertiesOnce_andCompactNestedFields() {
+        NestedField<String, ?> dataElement = NestedField.<String, String>create("dataElement").with(
+                Field.<String, String>create("formName"), Field.<String, String>create("displayFormName"));
+        Fields<String> fields = Fields.<String>builder()
+                .fields(
+                        Field.<String, String>create("id"),
+                        dataElement,
+                        Field.<String, String>create("id"))
+                .build();
+
+        List<Property<String, ?>> compacted = fields.compact().fields();
+
+        assertThat(names(compacted)).containsExactly("id", "dataElement");
+        assertThat(names(((NestedField<String, Object>) compacted.get(1)).children()))
+                .containsExactly("formName");
+        assertThat(fields.fields()).hasSize(3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void build_shouldNotBeAffectedByLaterChangesOfBuilder() {
+        Fields.Builder<String> builder = Fields.<String>builder().fields(Field.<String, String>create("one"));
+        Fields<String> fields = builder.build();
+
+        builder.fields(Field.<String, String>create("two"));
+
+        assertThat(fields.fields()).hasSize(1);
+        assertThat(fields.queryString()).isEqualTo("one");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void queryString_shouldBeRenderedOnce() {
+        Fields<String> fields = Fields.<String>builder()
+                .fields(
+                        Field.<String, String>create("id"),
+                        NestedField.<String, String>create("programs").with(Field.<String, String>create("id")))
+                .build();
+
+        String queryString = fields.queryString();
+
+        assertThat(queryString).isEqualTo("id,programs[id]");
+        assertThat(fields.queryString()).isSameAs(queryString);
+        assertThat(fields.compactQueryString()).isSameAs(fields.compactQueryString());
+    }
+
     @Test
     public void equals_shouldConformToContract() {
         EqualsVerifier.forClass(Fields.builder().build().getClass())
                 .suppress(Warning.NULL_FIELDS)
                 .verify();
     }
+
+    private static <T> List<String> names(List<Property<T, ?>> properties) {
+        List<String> names = new ArrayList<>();
+        for (Property<T, ?> property : properties) {
+            names.add(property.name());
+        }
+        return names;
+    }
 }
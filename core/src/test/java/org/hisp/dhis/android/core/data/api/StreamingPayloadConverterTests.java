@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.PayloadBatches;
+import org.hisp.dhis.android.core.common.StreamingPayload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.Streaming;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class StreamingPayloadConverterTests {
+    private MockWebServer mockWebServer;
+    private TestService testService;
+
+    @Rule
+    public TemporaryFolder bufferDirectory = new TemporaryFolder();
+
+    public static class TestItem {
+        @JsonProperty("id")
+        String id;
+    }
+
+    interface TestService {
+        @GET("api/items")
+        @Streaming
+        retrofit2.Call<Payload<TestItem>> streamed();
+
+        @GET("api/items")
+        retrofit2.Call<Payload<TestItem>> buffered();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        ObjectMapper objectMapper = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(mockWebServer.url("/"))
+                .addConverterFactory(StreamingPayloadConverterFactory.create(objectMapper, bufferDirectory.getRoot()))
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .build();
+
+        testService = retrofit.create(TestService.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void converter_shouldStreamItemsInBatches() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"pager\":{\"page\":1,\"pageCount\":1," +
+                "\"pageSize\":50,\"total\":3},\"items\":[{\"id\":\"a\"},{\"id\":\"b\"},{\"id\":\"c\"}]}"));
+
+        Payload<TestItem> payload = testService.streamed().execute().body();
+        assertThat(payload).isInstanceOf(StreamingPayload.class);
+        assertThat(payload.pager().total()).isEqualTo(3);
+
+        final List<List<String>> batches = new ArrayList<>();
+        int count = PayloadBatches.process(payload, 2, new PayloadBatches.Processor<TestItem>() {
+            @Override
+            public void process(@NonNull List<TestItem> batch) {
+                List<String> ids = new ArrayList<>();
+                for (TestItem item : batch) {
+                    ids.add(item.id);
+                }
+                batches.add(ids);
+            }
+        });
+
+        assertThat(count).isEqualTo(3);
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).containsExactly("a", "b");
+        assertThat(batches.get(1)).containsExactly("c");
+    }
+
+    @Test
+    public void converter_shouldReadPagerAfterItems() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"items\":[{\"id\":\"a\",\"values\":[1,2]}]," +
+                "\"pager\":{\"page\":2,\"pageCount\":2,\"pageSize\":1,\"total\":2}}"));
+
+        Payload<TestItem> payload = testService.streamed().execute().body();
+        assertThat(payload.pager()).isNull();
+
+        assertThat(payload.items()).hasSize(1);
+        assertThat(payload.items().get(0).id).isEqualTo("a");
+        assertThat(payload.pager().page()).isEqualTo(2);
+    }
+
+    @Test
+    public void converter_shouldKeepItemsReadThroughItems() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"items\":[{\"id\":\"a\"},{\"id\":\"b\"}]}"));
+
+        Payload<TestItem> payload = testService.streamed().execute().body();
+        assertThat(payload.items()).hasSize(2);
+
+        final List<TestItem> processed = new ArrayList<>();
+        int count = PayloadBatches.process(payload, 10, new PayloadBatches.Processor<TestItem>() {
+            @Override
+            public void process(@NonNull List<TestItem> batch) {
+                processed.addAll(batch);
+            }
+        });
+
+        assertThat(count).isEqualTo(2);
+        assertThat(processed).containsExactlyElementsOf(payload.items());
+    }
+
+    @Test
+    public void converter_shouldReturnEmptyPayloadWithoutItems() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"pager\":{\"page\":1,\"pageCount\":0," +
+                "\"pageSize\":50,\"total\":0}}"));
+
+        Payload<TestItem> payload = testService.streamed().execute().body();
+
+        assertThat(payload.items()).isEmpty();
+        assertThat(payload.pager().total()).isEqualTo(0);
+    }
+
+    @Test
+    public void converter_shouldReadResponseBeforeItemsAreRead() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"items\":[{\"id\":\"a\"},{\"id\":\"b\"}]}"));
+
+        Payload<TestItem> payload = testService.streamed().execute().body();
+        mockWebServer.shutdown();
+
+        assertThat(bufferDirectory.getRoot().list()).hasSize(1);
+        assertThat(payload.items()).hasSize(2);
+    }
+
+    @Test
+    public void converter_shouldDeleteBufferWhenPayloadIsClosed() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"items\":[{\"id\":\"a\"}]}"));
+
+        Payload<TestItem> payload = testService.streamed().execute().body();
+        payload.close();
+
+        assertThat(bufferDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void converter_shouldIgnoreMethodsWithoutStreaming() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setBody("{\"items\":[{\"id\":\"a\"}]}"));
+
+        Payload<TestItem> payload = testService.buffered().execute().body();
+
+        assertThat(payload).isNotInstanceOf(StreamingPayload.class);
+        assertThat(payload.items()).hasSize(1);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class TransferCounterTests {
+    private static final String BODY = "{\"programs\":[{\"id\":\"program_a\"},{\"id\":\"program_b\"}]}";
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void intercept_shouldCountCompressedBytes() throws Exception {
+        Buffer gzipped = gzip(BODY);
+        long compressedSize = gzipped.size();
+        server.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setBody(gzipped));
+
+        TransferCounter counter = new TransferCounter(true);
+        OkHttpClient client = new OkHttpClient.Builder().addNetworkInterceptor(counter).build();
+
+        assertThat(execute(client)).isEqualTo(BODY);
+        assertThat(server.takeRequest().getHeader("Accept-Encoding")).isEqualTo("gzip");
+        assertThat(counter.requestCount()).isEqualTo(1);
+        assertThat(counter.gzipResponseCount()).isEqualTo(1);
+        assertThat(counter.sentBytes()).isGreaterThan(0);
+        assertThat(counter.receivedBytes()).isGreaterThan(compressedSize);
+        assertThat(counter.receivedBytes()).isLessThan(compressedSize + 100);
+    }
+
+    @Test
+    public void intercept_shouldRequestAndDecompressGzip_ifRequestRefusedIt() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setBody(gzip(BODY)));
+
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(acceptEncoding("identity"))
+                .addNetworkInterceptor(new TransferCounter(true))
+                .build();
+
+        assertThat(execute(client)).isEqualTo(BODY);
+        assertThat(server.takeRequest().getHeader("Accept-Encoding")).isEqualTo("gzip");
+    }
+
+    @Test
+    public void intercept_shouldNotChangeRequest_ifGzipIsNotRequired() throws Exception {
+        server.enqueue(new MockResponse().setBody(BODY));
+
+        TransferCounter counter = new TransferCounter(false);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(acceptEncoding("identity"))
+                .addNetworkInterceptor(counter)
+                .build();
+
+        assertThat(execute(client)).isEqualTo(BODY);
+        assertThat(server.takeRequest().getHeader("Accept-Encoding")).isEqualTo("identity");
+        assertThat(counter.gzipResponseCount()).isEqualTo(0);
+        assertThat(counter.receivedBytes()).isGreaterThan(BODY.length());
+
+        counter.reset();
+        assertThat(counter.requestCount()).isEqualTo(0);
+        assertThat(counter.receivedBytes()).isEqualTo(0);
+    }
+
+    private String execute(OkHttpClient client) throws IOException {
+        Response response = client.newCall(new Request.Builder().url(server.url("/programs")).build()).execute();
+        return response.body().string();
+    }
+
+    private static Interceptor acceptEncoding(final String encoding) {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                return chain.proceed(chain.request().newBuilder().header("Accept-Encoding", encoding).build());
+            }
+        };
+    }
+
+    private static Buffer gzip(String body) throws IOException {
+        Buffer buffer = new Buffer();
+        BufferedSink sink = Okio.buffer(new GzipSink(buffer));
+        sink.writeUtf8(body);
+        sink.close();
+        return buffer;
+    }
+}
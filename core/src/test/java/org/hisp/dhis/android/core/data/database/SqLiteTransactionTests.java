@@ -35,6 +35,8 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,6 +55,7 @@ public class SqLiteTransactionTests {
         MockitoAnnotations.initMocks(this);
 
         when(dbOpenHelper.getWritableDatabase()).thenReturn(database);
+        when(dbOpenHelper.tuning()).thenReturn(DbTuning.defaults());
 
         transaction = new SqLiteTransaction(dbOpenHelper);
     }
@@ -61,6 +64,17 @@ public class SqLiteTransactionTests {
     public void beginTransactionIsRunOnSqlDatabase() throws Exception {
         transaction.begin();
         verify(database).beginTransaction();
+        verify(database, never()).execSQL(anyString());
+    }
+
+    @Test
+    public void beginTransaction_shouldDeferForeignKeysWhenTuned() throws Exception {
+        when(dbOpenHelper.tuning()).thenReturn(DbTuning.performance());
+
+        transaction.begin();
+
+        verify(database).beginTransaction();
+        verify(database).execSQL("PRAGMA defer_foreign_keys = ON;");
     }
 
     @Test
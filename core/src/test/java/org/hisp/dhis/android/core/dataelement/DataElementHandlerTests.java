@@ -28,8 +28,8 @@
 package org.hisp.dhis.android.core.dataelement;
 
 import org.hisp.dhis.android.core.common.ValueType;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.hisp.dhis.android.core.option.OptionSet;
-import org.hisp.dhis.android.core.option.OptionSetHandler;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,6 +42,7 @@ import java.util.Date;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -53,9 +54,6 @@ public class DataElementHandlerTests {
     @Mock
     private DataElementStore dataElementStore;
 
-    @Mock
-    private OptionSetHandler optionSetHandler;
-
     @Mock
     private DataElement dataElement;
 
@@ -68,9 +66,10 @@ public class DataElementHandlerTests {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        dataElementHandler = new DataElementHandler(dataElementStore, optionSetHandler);
+        dataElementHandler = new DataElementHandler(dataElementStore, null, new MetadataChanges());
         when(dataElement.uid()).thenReturn("test_data_element_uid");
         when(dataElement.optionSet()).thenReturn(optionSet);
+        when(optionSet.uid()).thenReturn("test_option_set_uid");
     }
 
     @Test
@@ -89,9 +88,6 @@ public class DataElementHandlerTests {
                 any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
                 any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
                 anyString(), anyString(), anyString());
-
-        // verify that option set handler is never called
-        verify(optionSetHandler, never()).handleOptionSet(any(OptionSet.class));
     }
 
     @Test
@@ -114,9 +110,6 @@ public class DataElementHandlerTests {
                 any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
                 any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
                 anyString(), anyString(), anyString());
-
-        // verify that option set handler is called once
-        verify(optionSetHandler, times(1)).handleOptionSet(any(OptionSet.class));
     }
 
     @Test
@@ -140,10 +133,6 @@ public class DataElementHandlerTests {
                 any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
                 any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
                 anyString(), anyString(), anyString());
-
-        // verify that option set handler is called once
-        verify(optionSetHandler, times(1)).handleOptionSet(any(OptionSet.class));
-
     }
 
     @Test
@@ -169,8 +158,24 @@ public class DataElementHandlerTests {
 
         // verify that delete is never called
         verify(dataElementStore, never()).delete(anyString());
+    }
+
+    @Test
+    public void insert_shouldPersistOnlyUidOfOptionSet() throws Exception {
+        when(dataElementStore.update(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
+                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), anyString(), anyString())).thenReturn(0);
+
+        dataElementHandler.handleDataElement(dataElement);
+
+        verify(dataElementStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
+                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), eq("test_option_set_uid"));
 
-        // verify that option set handler is called once
-        verify(optionSetHandler, times(1)).handleOptionSet(any(OptionSet.class));
+        // programs only request the uid and version of option sets, so nothing else of them is persisted here
+        verify(optionSet, never()).name();
+        verify(optionSet, never()).valueType();
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.Inject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ImportSummariesTests {
+
+    @Test
+    public void importSummaries_shouldMapFromJsonString() throws IOException {
+        ObjectMapper objectMapper = Inject.objectMapper();
+        ImportSummaries importSummaries = objectMapper.readValue("{\n" +
+                "    \"responseType\": \"ImportSummaries\",\n" +
+                "    \"status\": \"SUCCESS\",\n" +
+                "    \"imported\": 1,\n" +
+                "    \"importSummaries\": [\n" +
+                "        {\n" +
+                "            \"responseType\": \"ImportSummary\",\n" +
+                "            \"status\": \"SUCCESS\",\n" +
+                "            \"reference\": \"CVUuL8RIpPI\",\n" +
+                "            \"enrollments\": {\n" +
+                "                \"importSummaries\": [\n" +
+                "                    {\n" +
+                "                        \"status\": \"WARNING\",\n" +
+                "                        \"reference\": \"FvXSCxP6Hf2\",\n" +
+                "                        \"events\": {\n" +
+                "                            \"importSummaries\": [\n" +
+                "                                { \"status\": \"ERROR\", \"reference\": \"lJTx9EZ1dk1\" }\n" +
+                "                            ]\n" +
+                "                        }\n" +
+                "                    }\n" +
+                "                ]\n" +
+                "            }\n" +
+                "        }\n" +
+                "    ]\n" +
+                "}", ImportSummaries.class);
+
+        Map<String, ImportSummary> summaries = importSummaries.byReference();
+        assertThat(summaries).containsOnlyKeys("CVUuL8RIpPI");
+
+        ImportSummary summary = summaries.get("CVUuL8RIpPI");
+        assertThat(summary.status()).isEqualTo(ImportStatus.SUCCESS);
+        assertThat(summary.events()).isNull();
+
+        ImportSummary enrollment = summary.enrollments().byReference().get("FvXSCxP6Hf2");
+        assertThat(enrollment.status()).isEqualTo(ImportStatus.WARNING);
+        assertThat(enrollment.events().byReference().get("lJTx9EZ1dk1").status()).isEqualTo(ImportStatus.ERROR);
+    }
+
+    @Test
+    public void importSummaries_shouldMapFromConflictResponse() throws IOException {
+        ObjectMapper objectMapper = Inject.objectMapper();
+        ImportSummaries importSummaries = objectMapper.readValue("{\n" +
+                "    \"httpStatus\": \"Conflict\",\n" +
+                "    \"httpStatusCode\": 409,\n" +
+                "    \"status\": \"ERROR\",\n" +
+                "    \"response\": {\n" +
+                "        \"responseType\": \"ImportSummaries\",\n" +
+                "        \"importSummaries\": [\n" +
+                "            { \"status\": \"ERROR\", \"reference\": \"CVUuL8RIpPI\" },\n" +
+                "            { \"status\": \"SUCCESS\", \"reference\": \"PgmUFEQYZdt\" }\n" +
+                "        ]\n" +
+                "    }\n" +
+                "}", ImportSummaries.class);
+
+        Map<String, ImportSummary> summaries = importSummaries.byReference();
+        assertThat(summaries).containsOnlyKeys("CVUuL8RIpPI", "PgmUFEQYZdt");
+        assertThat(summaries.get("CVUuL8RIpPI").status()).isEqualTo(ImportStatus.ERROR);
+        assertThat(summaries.get("PgmUFEQYZdt").status()).isEqualTo(ImportStatus.SUCCESS);
+    }
+}
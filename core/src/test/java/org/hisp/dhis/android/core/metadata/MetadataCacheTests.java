@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.metadata;
+
+import org.hisp.dhis.android.core.dataelement.DataElementModel;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramStageDataElementModel;
+import org.hisp.dhis.android.core.program.ProgramStageModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class MetadataCacheTests {
+
+    @Mock
+    private MetadataStore metadataStore;
+
+    @Mock
+    private ProgramStageModel programStage;
+
+    @Mock
+    private ProgramStageDataElementModel programStageDataElement;
+
+    @Mock
+    private DataElementModel dataElement;
+
+    @Mock
+    private OptionModel option;
+
+    @Mock
+    private ProgramRuleModel programRule;
+
+    private MetadataCache metadataCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(metadataStore.queryProgramStage("stage")).thenReturn(programStage);
+        when(metadataStore.queryProgramStageDataElements("stage"))
+                .thenReturn(Collections.singletonList(programStageDataElement));
+        when(metadataStore.queryDataElement("data_element")).thenReturn(dataElement);
+        when(metadataStore.queryDataElement("other_data_element")).thenReturn(dataElement);
+        when(metadataStore.queryOptions("option_set")).thenReturn(Collections.singletonList(option));
+        when(metadataStore.queryProgramRules("program")).thenReturn(Collections.singletonList(programRule));
+
+        metadataCache = new MetadataCache(metadataStore);
+    }
+
+    @Test
+    public void get_shouldReadFromStoreOnce() {
+        assertThat(metadataCache.programStage("stage")).isSameAs(programStage);
+        assertThat(metadataCache.programStage("stage")).isSameAs(programStage);
+        assertThat(metadataCache.programStageDataElements("stage")).containsExactly(programStageDataElement);
+        assertThat(metadataCache.programStageDataElements("stage")).containsExactly(programStageDataElement);
+        assertThat(metadataCache.options("option_set")).containsExactly(option);
+        assertThat(metadataCache.options("option_set")).containsExactly(option);
+        assertThat(metadataCache.programRules("program")).containsExactly(programRule);
+        assertThat(metadataCache.programRules("program")).containsExactly(programRule);
+
+        verify(metadataStore, times(1)).queryProgramStage("stage");
+        verify(metadataStore, times(1)).queryProgramStageDataElements("stage");
+        verify(metadataStore, times(1)).queryOptions("option_set");
+        verify(metadataStore, times(1)).queryProgramRules("program");
+    }
+
+    @Test
+    public void get_shouldNotCacheMissingRows() {
+        assertThat(metadataCache.optionSet("option_set")).isNull();
+        assertThat(metadataCache.optionSet("option_set")).isNull();
+
+        verify(metadataStore, times(2)).queryOptionSet("option_set");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void get_shouldReturnUnmodifiableLists() {
+        metadataCache.options("option_set").clear();
+    }
+
+    @Test
+    public void invalidate_shouldOnlyDropChangedKeys() {
+        metadataCache.dataElement("data_element");
+        metadataCache.dataElement("other_data_element");
+        metadataCache.options("option_set");
+
+        MetadataChanges changes = new MetadataChanges();
+        changes.changed(MetadataType.DATA_ELEMENT, "data_element");
+        metadataCache.invalidate(changes);
+
+        metadataCache.dataElement("data_element");
+        metadataCache.dataElement("other_data_element");
+        metadataCache.options("option_set");
+
+        verify(metadataStore, times(2)).queryDataElement("data_element");
+        verify(metadataStore, times(1)).queryDataElement("other_data_element");
+        verify(metadataStore, times(1)).queryOptions("option_set");
+    }
+
+    @Test
+    public void invalidate_shouldDropCascadedTypes_onDeletion() {
+        metadataCache.programStage("stage");
+        metadataCache.programStageDataElements("stage");
+        metadataCache.programRules("program");
+        metadataCache.dataElement("data_element");
+
+        MetadataChanges changes = new MetadataChanges();
+        changes.deleted(MetadataType.PROGRAM_STAGE, "other_stage");
+        metadataCache.invalidate(changes);
+
+        metadataCache.programStage("stage");
+        metadataCache.programStageDataElements("stage");
+        metadataCache.programRules("program");
+        metadataCache.dataElement("data_element");
+
+        verify(metadataStore, times(1)).queryProgramStage("stage");
+        verify(metadataStore, times(2)).queryProgramStageDataElements("stage");
+        verify(metadataStore, times(2)).queryProgramRules("program");
+        verify(metadataStore, times(1)).queryDataElement("data_element");
+    }
+
+    @Test
+    public void invalidate_shouldDropEverything_whenAllChanged() {
+        metadataCache.programStage("stage");
+        metadataCache.options("option_set");
+
+        MetadataChanges changes = new MetadataChanges();
+        changes.changedAll();
+        metadataCache.invalidate(changes);
+
+        metadataCache.programStage("stage");
+        metadataCache.options("option_set");
+
+        verify(metadataStore, times(2)).queryProgramStage("stage");
+        verify(metadataStore, times(2)).queryOptions("option_set");
+    }
+
+    @Test
+    public void get_shouldNotCacheRead_whichRacedWithInvalidation() {
+        when(metadataStore.queryDataElement("data_element")).thenAnswer(new Answer<DataElementModel>() {
+            @Override
+            public DataElementModel answer(InvocationOnMock invocation) {
+                // a sync commits while the row is being read
+                metadataCache.invalidateAll();
+                return dataElement;
+            }
+        });
+
+        assertThat(metadataCache.dataElement("data_element")).isSameAs(dataElement);
+        metadataCache.dataElement("data_element");
+
+        verify(metadataStore, times(2)).queryDataElement("data_element");
+    }
+
+    @Test
+    public void stats_shouldReportUsage() {
+        Map<MetadataType, Integer> capacities = new EnumMap<>(MetadataType.class);
+        capacities.put(MetadataType.DATA_ELEMENT, 1);
+        metadataCache = new MetadataCache(metadataStore, capacities);
+
+        metadataCache.dataElement("data_element");
+        metadataCache.dataElement("data_element");
+        metadataCache.dataElement("other_data_element");
+
+        MetadataCacheStats dataElementStats = null;
+        List<MetadataCacheStats> stats = metadataCache.stats();
+        for (MetadataCacheStats typeStats : stats) {
+            if (typeStats.type() == MetadataType.DATA_ELEMENT) {
+                dataElementStats = typeStats;
+            }
+        }
+
+        assertThat(stats).hasSize(MetadataType.values().length);
+        assertThat(dataElementStats).isEqualTo(MetadataCacheStats.create(MetadataType.DATA_ELEMENT, 1, 1, 1, 2, 1));
+    }
+}
@@ -27,6 +27,9 @@
  */
 package org.hisp.dhis.android.core.option;
 
+import org.hisp.dhis.android.core.metadata.MetadataCache;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
+import org.hisp.dhis.android.core.metadata.MetadataStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,10 +38,12 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -50,6 +55,12 @@ public class OptionHandlerTests {
     @Mock
     private OptionStore optionStore;
 
+    @Mock
+    private OptionSearchStore optionSearchStore;
+
+    @Mock
+    private MetadataStore metadataStore;
+
     @Mock
     private Option option;
 
@@ -65,7 +76,7 @@ public class OptionHandlerTests {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        optionHandler = new OptionHandler(optionStore);
+        optionHandler = new OptionHandler(optionStore, null, null, new MetadataChanges());
 
         when(optionSet.uid()).thenReturn("test_option_set_uid");
         when(option.uid()).thenReturn("test_option_uid");
@@ -83,6 +94,7 @@ public class OptionHandlerTests {
                 any(Date.class), anyString());
         verify(optionStore, never()).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyString(), anyString());
+        verify(optionStore, never()).upsert(anyListOf(Option.class));
     }
 
     @Test
@@ -100,43 +112,65 @@ public class OptionHandlerTests {
         verify(optionStore, never()).update(
                 anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyString(), anyString());
+        verify(optionStore, never()).upsert(anyListOf(Option.class));
     }
 
     @Test
-    public void update_shouldUpdateOption() throws Exception {
-        when(optionStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString())).thenReturn(1);
-
+    public void upsert_shouldUpsertOptions() throws Exception {
         optionHandler.handleOptions(options);
 
-        // verify that update is called once
-        verify(optionStore, times(1)).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString());
+        // verify that options are written in bulk
+        verify(optionStore, times(1)).upsert(options);
 
-        // verify that insert and delete is never called
+        // verify that single row insert, update and delete are never called
         verify(optionStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyString());
+        verify(optionStore, never()).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString());
         verify(optionStore, never()).delete(anyString());
-
     }
 
     @Test
-    public void insert_shouldInsertOption() throws Exception {
-        when(optionStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString())).thenReturn(0);
-
-        optionHandler.handleOptions(options);
+    public void upsert_shouldUpdateSearchTokens() throws Exception {
+        when(option.code()).thenReturn("A09");
+        when(option.name()).thenReturn("Diarrhoea");
+        when(option.displayName()).thenReturn("Diarrhoea");
+        OptionHandler searchingOptionHandler = new OptionHandler(optionStore, null, optionSearchStore,
+                new MetadataChanges());
+
+        searchingOptionHandler.handleOptions(options);
+
+        verify(optionStore, times(1)).upsert(options);
+        verify(optionSearchStore, times(1)).update("test_option_uid", "test_option_set_uid", "A09",
+                "Diarrhoea", "Diarrhoea");
+    }
 
-        // verify that insert is called once
-        verify(optionStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString());
+    @Test
+    public void delete_shouldDeleteSearchTokens() throws Exception {
+        when(option.deleted()).thenReturn(Boolean.TRUE);
+        OptionHandler searchingOptionHandler = new OptionHandler(optionStore, null, optionSearchStore,
+                new MetadataChanges());
 
-        // verify that update is called once since we try to update before we insert
-        verify(optionStore, times(1)).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString());
+        searchingOptionHandler.handleOptions(options);
 
-        // verify that delete is never called
-        verify(optionStore, never()).delete(anyString());
+        verify(optionSearchStore, times(1)).delete("test_option_uid");
+        verify(optionSearchStore, never()).update(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
 
+    @Test
+    public void upsert_shouldInvalidateCachedOptionsOfAllSets() throws Exception {
+        // the option may have been moved from another set, which still caches it
+        when(metadataStore.queryOptions("other_option_set_uid")).thenReturn(Collections.<OptionModel>emptyList());
+        MetadataCache metadataCache = new MetadataCache(metadataStore);
+        metadataCache.options("other_option_set_uid");
+        MetadataChanges changes = new MetadataChanges();
+        OptionHandler recordingOptionHandler = new OptionHandler(optionStore, null, null, changes);
+
+        recordingOptionHandler.handleOptions(options);
+        metadataCache.invalidate(changes);
+        metadataCache.options("other_option_set_uid");
+
+        verify(optionStore, times(1)).upsert(options);
+        verify(metadataStore, times(2)).queryOptions("other_option_set_uid");
     }
 }
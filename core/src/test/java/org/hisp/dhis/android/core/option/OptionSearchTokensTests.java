@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.option;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.entry;
+
+@RunWith(JUnit4.class)
+public class OptionSearchTokensTests {
+
+    @Test
+    public void words_shouldNormalizeAndSplitText() {
+        assertThat(OptionSearchTokens.words("Fi\u00e8vre  Typho\u00efde (s\u00e9v\u00e8re)"))
+                .containsExactly("fievre", "typhoide", "severe");
+        assertThat(OptionSearchTokens.words("A09.0")).containsExactly("a09", "0");
+        assertThat(OptionSearchTokens.words(" - ")).isEmpty();
+        assertThat(OptionSearchTokens.words(null)).isEmpty();
+    }
+
+    @Test
+    public void tokens_shouldRankCodeAndFirstWordsFirst() {
+        Map<String, Integer> tokens = OptionSearchTokens.tokens("A09.0", "Infectious gastroenteritis",
+                "Gastroenteritis, infectious");
+
+        assertThat(tokens).containsOnly(
+                entry("a090", OptionSearchTokens.PRIORITY_CODE),
+                entry("a09", OptionSearchTokens.PRIORITY_WORD),
+                entry("0", OptionSearchTokens.PRIORITY_WORD),
+                entry("gastroenteritis", OptionSearchTokens.PRIORITY_FIRST_WORD),
+                entry("infectious", OptionSearchTokens.PRIORITY_FIRST_WORD));
+    }
+
+    @Test
+    public void tokens_shouldAllowMissingCodeAndNames() {
+        assertThat(OptionSearchTokens.tokens(null, null, "Yes")).containsOnly(
+                entry("yes", OptionSearchTokens.PRIORITY_FIRST_WORD));
+        assertThat(OptionSearchTokens.tokens(null, null, null)).isEmpty();
+        assertThat(OptionSearchTokens.sortName("Name", null)).isEqualTo("name");
+    }
+}
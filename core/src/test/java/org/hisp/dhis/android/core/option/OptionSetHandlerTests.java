@@ -27,7 +27,9 @@
  */
 package org.hisp.dhis.android.core.option;
 
+import org.hisp.dhis.android.core.common.PersistedUidRegistry;
 import org.hisp.dhis.android.core.common.ValueType;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -37,8 +39,10 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.Date;
 
+import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -62,7 +66,7 @@ public class OptionSetHandlerTests {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        optionSetHandler = new OptionSetHandler(optionSetStore, optionHandler);
+        optionSetHandler = new OptionSetHandler(optionSetStore, optionHandler, null, new MetadataChanges());
         when(optionSet.uid()).thenReturn("test_option_set_uid");
     }
 
@@ -135,4 +139,21 @@ public class OptionSetHandlerTests {
         // verify that delete is never called
         verify(optionSetStore, never()).delete(anyString());
     }
+
+    @Test
+    public void registry_shouldPersistSharedOptionSetOnce() throws Exception {
+        PersistedUidRegistry registry = new PersistedUidRegistry();
+        optionSetHandler = new OptionSetHandler(optionSetStore, optionHandler, registry,
+                new MetadataChanges());
+
+        optionSetHandler.handleOptionSet(optionSet);
+        optionSetHandler.handleOptionSet(optionSet);
+
+        // verify that option set and its options are written only once
+        verify(optionSetStore, times(1)).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyInt(), any(ValueType.class), anyString());
+        verify(optionHandler, times(1)).handleOptions(anyListOf(Option.class));
+
+        assertThat(registry.skippedWrites()).isEqualTo(1);
+    }
 }
@@ -29,6 +29,7 @@ package org.hisp.dhis.android.core.organisationunit;
 
 import android.database.Cursor;
 
+import org.hisp.dhis.android.core.common.Pager;
 import org.hisp.dhis.android.core.common.Payload;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
@@ -36,6 +37,7 @@ import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.program.Program;
 import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceCursorModel;
 import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 import org.hisp.dhis.android.core.user.User;
@@ -106,6 +108,12 @@ public class OrganisationUnitCallUnitTests {
     @Mock
     private OrganisationUnitService organisationUnitService;
 
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private retrofit2.Call<Payload<OrganisationUnit>> secondPageCall;
+
+    @Mock
+    private Payload<OrganisationUnit> secondPage;
+
     //Captors for the organisationUnitService arguments:
     @Captor
     private ArgumentCaptor<String> uidCaptor;
@@ -196,7 +204,7 @@ public class OrganisationUnitCallUnitTests {
         organisationUnitCall = new OrganisationUnitCall(user, organisationUnitService, database,
                 organisationUnitStore,
                 resourceStore,
-                serverDate, userOrganisationUnitLinkStore);
+                serverDate, userOrganisationUnitLinkStore, null, 0);
 
         //Return only one organisationUnit.
         when(user.organisationUnits()).thenReturn(Collections.singletonList(organisationUnit));
@@ -304,11 +312,7 @@ public class OrganisationUnitCallUnitTests {
         verify(transaction, times(1)).setSuccessful();
         verify(transaction, times(1)).end();
 
-        verify(organisationUnitStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
+        verify(organisationUnitStore, times(1)).upsert(Collections.singletonList(organisationUnit));
         verify(resourceStore, times(1)).insert(anyString(), any(Date.class));
     }
 
@@ -367,4 +371,107 @@ public class OrganisationUnitCallUnitTests {
             assertThat(organisationUnitCall.isExecuted()).isTrue();
         }
     }
+
+    @Test
+    public void call_shouldCommitEachPage_whenPaged() throws Exception {
+        OrganisationUnitCall pagedCall = givenPagedCall();
+
+        Response<Payload<OrganisationUnit>> response = pagedCall.call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        // one transaction per page, and one to complete the download
+        verify(database, times(3)).beginNewTransaction();
+        verify(transaction, times(3)).setSuccessful();
+        verify(transaction, times(3)).end();
+
+        verify(organisationUnitStore, times(1)).upsert(Collections.singletonList(organisationUnit));
+        verify(organisationUnitStore, times(1)).upsert(Collections.singletonList(organisationUnit2));
+        verify(resourceStore).insertCursor(eq(ResourceModel.Type.ORGANISATION_UNIT), eq("orgUnitUid1"),
+                any(Date.class), eq(2));
+        verify(resourceStore).updateCursor(ResourceModel.Type.ORGANISATION_UNIT, "orgUnitUid1", null);
+        verify(resourceStore).insert(eq(ResourceModel.Type.ORGANISATION_UNIT.name()), any(Date.class));
+        verify(resourceStore).deleteCursors(ResourceModel.Type.ORGANISATION_UNIT);
+        verify(payload).close();
+        verify(secondPage).close();
+    }
+
+    @Test
+    public void call_shouldResumeAtCursor_whenPaged() throws Exception {
+        Date started = new Date(-1000L);
+        when(resourceStore.queryCursor(ResourceModel.Type.ORGANISATION_UNIT, "orgUnitUid1")).thenReturn(
+                ResourceCursorModel.builder().resourceType(ResourceModel.Type.ORGANISATION_UNIT.name())
+                        .scope("orgUnitUid1").started(started).nextPage(2).build());
+        OrganisationUnitCall pagedCall = givenPagedCall();
+
+        pagedCall.call();
+
+        verify(organisationUnitService, never()).getOrganisationUnits(anyString(), any(Fields.class),
+                any(Filter.class), any(Boolean.class), any(Boolean.class), eq(1), anyInt(), anyString());
+        verify(organisationUnitStore, never()).upsert(Collections.singletonList(organisationUnit));
+        verify(organisationUnitStore, times(1)).upsert(Collections.singletonList(organisationUnit2));
+        verify(resourceStore, never()).insertCursor(any(ResourceModel.Type.class), anyString(),
+                any(Date.class), any(Integer.class));
+        // the resource is marked as synced at the start of the interrupted download
+        verify(resourceStore).insert(ResourceModel.Type.ORGANISATION_UNIT.name(), started);
+    }
+
+    @Test
+    public void call_shouldKeepCursor_ifPageFails() throws Exception {
+        OrganisationUnitCall pagedCall = givenPagedCall();
+        when(secondPageCall.execute()).thenReturn(Response.<Payload<OrganisationUnit>>error(
+                HttpsURLConnection.HTTP_CLIENT_TIMEOUT,
+                ResponseBody.create(MediaType.parse("application/json"), "{}")));
+
+        Response<Payload<OrganisationUnit>> response = pagedCall.call();
+
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_CLIENT_TIMEOUT);
+        // the first page is committed together with its cursor
+        verify(transaction, times(1)).setSuccessful();
+        verify(resourceStore).insertCursor(eq(ResourceModel.Type.ORGANISATION_UNIT), eq("orgUnitUid1"),
+                any(Date.class), eq(2));
+        verify(resourceStore, never()).deleteCursors(any(ResourceModel.Type.class));
+        verify(resourceStore, never()).insert(anyString(), any(Date.class));
+    }
+
+    @Test
+    public void call_shouldFail_ifPageHasNoPager() throws Exception {
+        OrganisationUnitCall pagedCall = givenPagedCall();
+        when(payload.pager()).thenReturn(null);
+
+        try {
+            pagedCall.call();
+            fail("IOException should be thrown");
+        } catch (IOException exception) {
+            // the page is rolled back, and neither the cursor nor the resource are committed
+            verify(transaction, never()).setSuccessful();
+            verify(transaction).end();
+            verify(resourceStore, never()).insert(anyString(), any(Date.class));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void download_shouldFail_whenPaged() throws Exception {
+        OrganisationUnitCall pagedCall = givenPagedCall();
+        pagedCall.prepare();
+        pagedCall.download();
+    }
+
+    @SuppressWarnings("unchecked")
+    private OrganisationUnitCall givenPagedCall() throws IOException {
+        when(organisationUnit2.uid()).thenReturn("orgUnitUid2");
+        when(organisationUnit2.path()).thenReturn("/root/orgUnitUid1/orgUnitUid2");
+        when(payload.items()).thenReturn(Collections.singletonList(organisationUnit));
+        when(payload.pager()).thenReturn(new Pager(1, 2, 1, 2));
+        when(secondPage.items()).thenReturn(Collections.singletonList(organisationUnit2));
+        when(secondPage.pager()).thenReturn(new Pager(2, 2, 1, 2));
+
+        when(organisationUnitService.getOrganisationUnits(anyString(), any(Fields.class), any(Filter.class),
+                any(Boolean.class), any(Boolean.class), eq(1), eq(1), eq("id:asc"))).thenReturn(retrofitCall);
+        when(organisationUnitService.getOrganisationUnits(anyString(), any(Fields.class), any(Filter.class),
+                any(Boolean.class), any(Boolean.class), eq(2), eq(1), eq("id:asc"))).thenReturn(secondPageCall);
+        when(secondPageCall.execute()).thenReturn(Response.success(secondPage));
+
+        return new OrganisationUnitCall(user, organisationUnitService, database, organisationUnitStore,
+                resourceStore, new Date(), userOrganisationUnitLinkStore, null, 1);
+    }
 }
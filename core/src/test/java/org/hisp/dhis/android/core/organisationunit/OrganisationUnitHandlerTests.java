@@ -42,6 +42,7 @@ import java.util.List;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -56,6 +57,9 @@ public class OrganisationUnitHandlerTests {
     @Mock
     private UserOrganisationUnitLinkStore userOrganisationUnitLinkStore;
 
+    @Mock
+    private OrganisationUnitClosureStore organisationUnitClosureStore;
+
     @Mock
     private OrganisationUnit organisationUnit;
 
@@ -75,7 +79,7 @@ public class OrganisationUnitHandlerTests {
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
         organisationUnitHandler = new OrganisationUnitHandler(
-                organisationUnitStore, userOrganisationUnitLinkStore
+                organisationUnitStore, userOrganisationUnitLinkStore, null
         );
 
         when(organisationUnit.uid()).thenReturn("test_organisation_unit_uid");
@@ -113,6 +117,7 @@ public class OrganisationUnitHandlerTests {
                 anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyString(), anyInt());
+        verify(organisationUnitStore, never()).upsert(anyListOf(OrganisationUnit.class));
 
         // verify that link store is never invoked
         verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
@@ -122,36 +127,20 @@ public class OrganisationUnitHandlerTests {
     }
 
     @Test
-    public void update_shouldUpdateOrganisationUnitAndLinkStore() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(1);
-
+    public void upsert_shouldUpsertOrganisationUnitAndUpdateLinkStore() throws Exception {
         when(userOrganisationUnitLinkStore.update(
                 anyString(), anyString(), anyString(), anyString(), anyString())
         ).thenReturn(1);
 
         organisationUnitHandler.handleOrganisationUnits(organisationUnits, scope, user.uid());
 
-        // verify that update is called once
-        verify(organisationUnitStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
-
-        // verify that insert and delete is never called
-        verify(organisationUnitStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
-
-        verify(organisationUnitStore, never()).delete(anyString());
+        // verify that organisation units are written in bulk
+        verify(organisationUnitStore, times(1)).upsert(organisationUnits);
+        verifyNoSingleRowWrites();
 
         // verify that link store #update method is called once
         verify(userOrganisationUnitLinkStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(),anyString()
+                anyString(), anyString(), anyString(), anyString(), anyString()
         );
 
         // verify that insert in link store is never called
@@ -159,109 +148,87 @@ public class OrganisationUnitHandlerTests {
     }
 
     @Test
-    public void update_shouldUpdateOrganisationUnit() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(1);
-
-        // we pass in null as scope parameter for not invoking the link store
-        organisationUnitHandler.handleOrganisationUnits(organisationUnits, null, user.uid());
+    public void upsert_shouldUpsertOrganisationUnitAndInsertInLinkStore() throws Exception {
+        when(userOrganisationUnitLinkStore.update(
+                anyString(), anyString(), anyString(), anyString(), anyString())
+        ).thenReturn(0);
 
-        // verify that update is called once
-        verify(organisationUnitStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
+        organisationUnitHandler.handleOrganisationUnits(organisationUnits, scope, user.uid());
 
-        // verify that insert and delete is never called
-        verify(organisationUnitStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
+        // verify that organisation units are written in bulk
+        verify(organisationUnitStore, times(1)).upsert(organisationUnits);
+        verifyNoSingleRowWrites();
 
-        verify(organisationUnitStore, never()).delete(anyString());
+        // verify that insert in link store is called once
+        verify(userOrganisationUnitLinkStore, times(1)).insert(anyString(), anyString(), anyString());
 
-        // verify that link store #update method is called once
-        verify(userOrganisationUnitLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(),anyString()
+        // verify that link store #update method is called once since we try to update before inserting
+        verify(userOrganisationUnitLinkStore, times(1)).update(
+                anyString(), anyString(), anyString(), anyString(), anyString()
         );
-
-        // verify that insert in link store is never called
-        verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
     }
 
     @Test
-    public void insert_shouldInsertOrganisationUnitAndInLinkStore() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(0);
-
-        when(userOrganisationUnitLinkStore.update(
-                anyString(), anyString(), anyString(), anyString(), anyString())
-        ).thenReturn(0);
+    public void upsert_shouldUpsertOrganisationUnit() throws Exception {
+        // we pass in null as scope parameter for not invoking the link store
+        organisationUnitHandler.handleOrganisationUnits(organisationUnits, null, null);
 
-        organisationUnitHandler.handleOrganisationUnits(organisationUnits, scope, user.uid());
+        // verify that organisation units are written in bulk
+        verify(organisationUnitStore, times(1)).upsert(organisationUnits);
+        verifyNoSingleRowWrites();
 
-        // verify that insert is called once
-        verify(organisationUnitStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
+        // verify that link store is never called
+        verify(userOrganisationUnitLinkStore, never()).update(
+                anyString(), anyString(), anyString(), anyString(), anyString()
         );
+        verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
+    }
 
-        // verify that update is called once since we try to update before we insert
-        verify(organisationUnitStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
+    @Test
+    public void upsert_shouldNotTouchClosureTable_whenNotEnabled() throws Exception {
+        organisationUnitHandler.handleOrganisationUnits(organisationUnits, null, null);
 
-        // verify that delete is never called
-        verify(organisationUnitStore, never()).delete(anyString());
+        verify(organisationUnitClosureStore, never()).update(anyString(), anyString());
+    }
 
-        // verify that insert in link store is called once
-        verify(userOrganisationUnitLinkStore, times(1)).insert(anyString(), anyString(), anyString());
+    @Test
+    public void upsert_shouldUpdateClosureTable() throws Exception {
+        when(organisationUnit.path()).thenReturn("/root_uid/test_organisation_unit_uid");
+        organisationUnitHandler = new OrganisationUnitHandler(
+                organisationUnitStore, userOrganisationUnitLinkStore, organisationUnitClosureStore);
 
+        organisationUnitHandler.handleOrganisationUnits(organisationUnits, null, null);
 
-        // verify that link store #update method is called once since we try to update before inserting
-        verify(userOrganisationUnitLinkStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(),anyString()
-        );
+        verify(organisationUnitStore, times(1)).upsert(organisationUnits);
+        verify(organisationUnitClosureStore, times(1)).update(
+                "test_organisation_unit_uid", "/root_uid/test_organisation_unit_uid");
+        verify(organisationUnitClosureStore, never()).delete(anyString());
     }
 
     @Test
-    public void insert_shouldInsertOrganisationUnit() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(0);
-
+    public void delete_shouldDeleteFromClosureTable() throws Exception {
+        when(organisationUnit.deleted()).thenReturn(Boolean.TRUE);
+        organisationUnitHandler = new OrganisationUnitHandler(
+                organisationUnitStore, userOrganisationUnitLinkStore, organisationUnitClosureStore);
 
         organisationUnitHandler.handleOrganisationUnits(organisationUnits, null, null);
 
-        // verify that insert is called once
-        verify(organisationUnitStore, times(1)).insert(
+        verify(organisationUnitStore, times(1)).delete("test_organisation_unit_uid");
+        verify(organisationUnitClosureStore, times(1)).delete("test_organisation_unit_uid");
+        verify(organisationUnitClosureStore, never()).update(anyString(), anyString());
+    }
+
+    private void verifyNoSingleRowWrites() {
+        verify(organisationUnitStore, never()).update(
                 anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
+                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
         );
-
-        // verify that update is called once since we try to update before we insert
-        verify(organisationUnitStore, times(1)).update(
+        verify(organisationUnitStore, never()).insert(
                 anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
+                any(Date.class), any(Date.class), anyString(), anyInt()
         );
-
-        // verify that delete is never called
         verify(organisationUnitStore, never()).delete(anyString());
-
-        // verify that link store is never called
-        verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
-
-        verify(userOrganisationUnitLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(),anyString()
-        );
     }
 }
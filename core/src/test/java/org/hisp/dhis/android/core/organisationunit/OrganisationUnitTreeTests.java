@@ -157,4 +157,31 @@ public class OrganisationUnitTreeTests {
         Set<String> rootUids = OrganisationUnitTree.findRoots(null);
         assertThat(rootUids.isEmpty()).isTrue();
     }
+
+    @Test
+    public void findRoots_shouldNotMatchUidPrefixes() {
+        List<OrganisationUnit> orgUnits = new ArrayList<>();
+        orgUnits.add(OrganisationUnit.create("Level1", null, null, null, null, null, null, null, null, null,
+                null, "/Level1", null, null, null, null, false));
+        orgUnits.add(OrganisationUnit.create("Level11", null, null, null, null, null, null, null, null, null,
+                null, "/Level11", null, null, null, null, false));
+        orgUnits.add(OrganisationUnit.create("Level111", null, null, null, null, null, null, null, null, null,
+                null, "/Level11/Level111", null, null, null, null, false));
+
+        Set<String> rootUids = OrganisationUnitTree.findRoots(orgUnits);
+
+        assertThat(rootUids).containsExactly("Level1", "Level11");
+    }
+
+    @Test
+    public void pathUids_shouldReturnUidsFromRoot() {
+        assertThat(OrganisationUnitTree.pathUids("/RootOrgUnit/Level11/Level21"))
+                .containsExactly("RootOrgUnit", "Level11", "Level21");
+        assertThat(OrganisationUnitTree.pathUids("/RootOrgUnit//Level11/")).containsExactly("RootOrgUnit", "Level11");
+    }
+
+    @Test
+    public void pathUids_shouldReturnEmptyList_NullPath() {
+        assertThat(OrganisationUnitTree.pathUids(null)).isEmpty();
+    }
 }
@@ -29,17 +29,21 @@ package org.hisp.dhis.android.core.program;
 
 import android.database.Cursor;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.DeletedObject;
+import org.hisp.dhis.android.core.common.MetadataDeltaService;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.dataelement.DataElement;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.hisp.dhis.android.core.option.OptionSet;
-import org.hisp.dhis.android.core.option.OptionSetStore;
-import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.relationship.RelationshipType;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
 import org.hisp.dhis.android.core.resource.ResourceModel;
@@ -64,6 +68,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import okhttp3.MediaType;
@@ -116,12 +121,6 @@ public class ProgramCallTests {
     @Mock
     private ProgramRuleStore programRuleStore;
 
-    @Mock
-    private OptionStore optionStore;
-
-    @Mock
-    private OptionSetStore optionSetStore;
-
     @Mock
     private DataElementStore dataElementStore;
 
@@ -140,6 +139,18 @@ public class ProgramCallTests {
     @Mock
     private ResourceStore resourceStore;
 
+    @Mock
+    private MetadataDeltaService deltaService;
+
+    @Mock
+    private retrofit2.Call<Payload<JsonNode>> referencesCall;
+
+    @Mock
+    private retrofit2.Call<Payload<DeletedObject>> deletedObjectsCall;
+
+    @Mock
+    private Cursor programUidCursor;
+
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private retrofit2.Call<Payload<Program>> programCall;
 
@@ -189,8 +200,9 @@ public class ProgramCallTests {
                 resourceStore, uids, programStore, serverDate, trackedEntityAttributeStore,
                 programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
                 programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore,
-                optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                programStageSectionStore, programStageStore, relationshipStore
+                dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, new MetadataChanges(), null,
+                UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS
         );
 
         when(program.uid()).thenReturn("test_program_uid");
@@ -517,6 +529,80 @@ public class ProgramCallTests {
                 any(ProgramType.class), anyString(), anyString(), anyString(), anyString());
     }
 
+    @SuppressWarnings("unchecked")
+    private Call<Response<Payload<Program>>> incrementalProgramCall(String storedUid,
+                                                                     List<DeletedObject> deletedObjects)
+            throws IOException {
+        when(resourceStore.getLastUpdated(any(ResourceModel.Type.class))).thenReturn("2017-02-09T10:00:00.000");
+        when(databaseAdapter.query("SELECT uid FROM " + ProgramModel.TABLE)).thenReturn(programUidCursor);
+        when(programUidCursor.moveToNext()).thenReturn(Boolean.TRUE, Boolean.FALSE);
+        when(programUidCursor.getString(0)).thenReturn(storedUid);
+
+        when(deltaService.references(anyString(), any(Fields.class), any(Filter.class), any(Filter.class),
+                anyBoolean())).thenReturn(referencesCall);
+        when(referencesCall.execute()).thenReturn(
+                Response.success(new Payload<>(Collections.<JsonNode>emptyList())));
+        when(deltaService.deletedObjects(any(Fields.class), any(List.class), anyString(), anyBoolean()))
+                .thenReturn(deletedObjectsCall);
+        when(deletedObjectsCall.execute()).thenReturn(Response.success(new Payload<>(deletedObjects)));
+
+        return new ProgramCall(programService, databaseAdapter,
+                resourceStore, uids, programStore, serverDate, trackedEntityAttributeStore,
+                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
+                programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore,
+                dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, new MetadataChanges(), deltaService, 3
+        );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void call_shouldDownloadOnlyNewPrograms_withoutLastUpdatedFilter_ifNothingChanged() throws Exception {
+        when(programCall.execute()).thenReturn(Response.success(payload));
+        when(programService.getPrograms(
+                any(Fields.class), lastUpdatedFilter.capture(), idInFilter.capture(), anyBoolean())
+        ).thenReturn(programCall);
+
+        incrementalProgramCall("test_program_uid", Collections.<DeletedObject>emptyList()).call();
+
+        assertThat(lastUpdatedFilter.getValue()).isNull();
+        assertThat(idInFilter.getValue().values()).containsExactly("test_program1_uid");
+
+        // programs and each of the 11 resource types nested in them are marked as synced,
+        // programs once more together with the HTTP validator of the response
+        verify(resourceStore, times(13))
+                .update(anyString(), any(Date.class), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void call_shouldNotDownloadPrograms_ifNothingChangedSinceLastSync() throws Exception {
+        uids.remove("test_program1_uid");
+
+        Response<Payload<Program>> response = incrementalProgramCall(
+                "test_program_uid", Collections.<DeletedObject>emptyList()).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.body().items()).isEmpty();
+        verify(programService, never()).getPrograms(
+                any(Fields.class), any(Filter.class), any(Filter.class), anyBoolean());
+    }
+
+    @Test
+    public void call_shouldDeleteObjectsWhichWereDeletedOnServer() throws Exception {
+        uids.remove("test_program1_uid");
+
+        incrementalProgramCall("test_program_uid", Arrays.asList(
+                DeletedObject.builder().uid("stage_uid").klass("ProgramStage").build(),
+                DeletedObject.builder().uid("rule_uid").klass("ProgramRule").build(),
+                DeletedObject.builder().uid("user_uid").klass("User").build())).call();
+
+        verify(programStageStore).delete("stage_uid");
+        verify(programRuleStore).delete("rule_uid");
+        verify(programStore, never()).delete(anyString());
+        verify(transaction).setSuccessful();
+    }
+
     @Test
     public void call_shouldMarkCallAsExecutedOnSuccess() throws Exception {
         when(programCall.execute()).thenReturn(Response.success(payload));
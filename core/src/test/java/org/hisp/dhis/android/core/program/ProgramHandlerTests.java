@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.hisp.dhis.android.core.relationship.RelationshipType;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
@@ -97,7 +98,7 @@ public class ProgramHandlerTests {
                 programStore, programRuleVariableHandler,
                 programStageHandler, programIndicatorHandler,
                 programRuleHandler, programTrackedEntityAttributeHandler,
-                relationshipTypeHandler);
+                relationshipTypeHandler, new MetadataChanges());
         when(relationshipType.uid()).thenReturn("relationshipTypeUid");
 
         when(program.uid()).thenReturn("test_program_uid");
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.program;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class ProgramIndicatorSqlCompilerTests {
+    private static final String EVENTS = " WHERE Event.program = ? AND (Event.state IS NULL OR Event.state <> 'TO_DELETE')";
+
+    private ProgramIndicatorSqlCompiler compiler;
+
+    @Before
+    public void setUp() {
+        compiler = new ProgramIndicatorSqlCompiler();
+    }
+
+    @Test
+    public void compile_shouldCountEvents() {
+        ProgramIndicatorQuery query = compiler.compile("program", "V{event_count}", null, null, null);
+
+        assertThat(query.sql()).isEqualTo("SELECT SUM(1) FROM Event" + EVENTS);
+        assertThat(query.arguments()).containsExactly("program");
+    }
+
+    @Test
+    public void compile_shouldJoinEachDataValueOnce() {
+        ProgramIndicatorQuery query = compiler.compile("program",
+                "#{stage.weight} / (#{stage.height} * #{stage.height})", null, 1, null);
+
+        assertThat(query.sql()).isEqualTo("SELECT ROUND(SUM((COALESCE(CAST(dv0.value AS REAL), 0) / "
+                + "(COALESCE(CAST(dv1.value AS REAL), 0) * COALESCE(CAST(dv1.value AS REAL), 0)))), 1) FROM Event"
+                + " LEFT JOIN TrackedEntityDataValue dv0 ON dv0.event = Event.uid AND dv0.dataElement = ?"
+                + " AND Event.programStage = ?"
+                + " LEFT JOIN TrackedEntityDataValue dv1 ON dv1.event = Event.uid AND dv1.dataElement = ?"
+                + " AND Event.programStage = ?" + EVENTS);
+        assertThat(query.arguments()).containsExactly("weight", "stage", "height", "stage", "program");
+    }
+
+    @Test
+    public void compile_shouldJoinAttributesThroughEnrollment() {
+        ProgramIndicatorQuery query = compiler.compile("program", "V{event_count}",
+                "A{gender} == 'Female' && #{visit} > 2", null, "enrollment");
+
+        assertThat(query.sql()).isEqualTo("SELECT SUM(1) FROM Event"
+                + " LEFT JOIN TrackedEntityDataValue dv0 ON dv0.event = Event.uid AND dv0.dataElement = ?"
+                + " LEFT JOIN Enrollment ON Enrollment.enrollment = Event.enrollment"
+                + " LEFT JOIN TrackedEntityAttributeValue av0 ON av0.trackedEntityInstance = "
+                + "Enrollment.trackedEntityInstance AND av0.trackedEntityAttribute = ?"
+                + EVENTS + " AND Event.enrollment = ?"
+                + " AND ((av0.value = 'Female') AND (CAST(dv0.value AS REAL) > 2.0))");
+        assertThat(query.arguments()).containsExactly("visit", "gender", "program", "enrollment");
+    }
+
+    @Test
+    public void compile_shouldTranslateFunctions() {
+        assertThat(compiler.compile("program", "d2:condition('#{pregnant} == true', d2:zing(#{weight}), 0)",
+                null, null, null).sql()).startsWith("SELECT SUM((CASE WHEN ((dv0.value = 'true') = 1) "
+                + "THEN MAX(0, COALESCE(CAST(dv1.value AS REAL), 0)) ELSE 0.0 END))");
+        assertThat(compiler.compile("program", "d2:daysBetween(V{enrollment_date}, V{event_date})",
+                "d2:hasValue(#{weight})", null, null).sql()).isEqualTo("SELECT SUM((julianday(date(Event.eventDate))"
+                + " - julianday(date(Enrollment.enrollmentDate)))) FROM Event"
+                + " LEFT JOIN TrackedEntityDataValue dv0 ON dv0.event = Event.uid AND dv0.dataElement = ?"
+                + " LEFT JOIN Enrollment ON Enrollment.enrollment = Event.enrollment"
+                + EVENTS + " AND (dv0.value IS NOT NULL)");
+    }
+
+    @Test
+    public void compile_shouldInlineConstantsAndEscapeText() {
+        assertThat(compiler.compile("program", "#{weight} * C{factor}", "#{name} != 'O\\'Brien'", null, null)
+                .sql()).contains("(COALESCE(CAST(dv0.value AS REAL), 0) * COALESCE(CAST((SELECT value FROM Constant"
+                + " WHERE uid = 'factor') AS REAL), 0))").endsWith("AND (dv1.value <> 'O''Brien')");
+    }
+
+    @Test
+    public void compile_shouldCountMissingValuesAsZero_onlyInCalculations() {
+        assertThat(compiler.compile("program", "#{weight} + 1", "#{weight} < 100 || !d2:hasValue(#{weight})",
+                null, null).sql()).startsWith("SELECT SUM((COALESCE(CAST(dv0.value AS REAL), 0) + 1.0)) FROM Event")
+                .endsWith(" AND ((CAST(dv0.value AS REAL) < 100.0) OR (NOT (dv0.value IS NOT NULL)))");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_shouldRejectUnsupportedVariables() {
+        compiler.compile("program", "V{tei_count}", null, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_shouldRejectUnsupportedFunctions() {
+        compiler.compile("program", "d2:relationshipCount()", null, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_shouldRejectInvalidExpressions() {
+        compiler.compile("program", "#{weight} +", null, null, null);
+    }
+}
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -73,7 +74,8 @@ public class ProgramRuleHandlerTests {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler);
+        programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler,
+                new MetadataChanges());
 
         when(programRule.uid()).thenReturn("test_program_rule_uid");
         when(programRule.program()).thenReturn(program);
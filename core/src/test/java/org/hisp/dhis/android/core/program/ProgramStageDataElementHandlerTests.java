@@ -29,6 +29,7 @@ package org.hisp.dhis.android.core.program;
 
 import org.hisp.dhis.android.core.dataelement.DataElement;
 import org.hisp.dhis.android.core.dataelement.DataElementHandler;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -76,7 +77,7 @@ public class ProgramStageDataElementHandlerTests {
         MockitoAnnotations.initMocks(this);
 
         programStageDataElementHandler = new ProgramStageDataElementHandler(
-                programStageDataElementStore, dataElementHandler
+                programStageDataElementStore, dataElementHandler, new MetadataChanges()
         );
 
         when(programStageDataElement.uid()).thenReturn("test_psde_uid");
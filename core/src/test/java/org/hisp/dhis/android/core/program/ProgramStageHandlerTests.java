@@ -28,6 +28,7 @@
 package org.hisp.dhis.android.core.program;
 
 import org.hisp.dhis.android.core.common.FormType;
+import org.hisp.dhis.android.core.metadata.MetadataChanges;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -75,7 +76,7 @@ public class ProgramStageHandlerTests {
 
         programStageHandler = new ProgramStageHandler(
                 programStageStore, programStageSectionHandler,
-                programStageDataElementHandler
+                programStageDataElementHandler, new MetadataChanges()
         );
 
         when(programStage.uid()).thenReturn("test_program_stage_uid");
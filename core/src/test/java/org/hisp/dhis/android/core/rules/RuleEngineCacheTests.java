@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import org.hisp.dhis.android.core.program.ProgramRuleActionModel;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class RuleEngineCacheTests {
+
+    @Mock
+    private RuleStore ruleStore;
+
+    private RuleEngineCache ruleEngineCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(ruleStore.queryProgramRules("program"))
+                .thenReturn(Collections.singletonList(RuleSessionTests.rule("rule", 1, "true")));
+        when(ruleStore.queryProgramRuleActions("program"))
+                .thenReturn(Collections.<ProgramRuleActionModel>emptyList());
+        when(ruleStore.queryProgramRuleVariables("program"))
+                .thenReturn(Collections.<ProgramRuleVariableModel>emptyList());
+
+        ruleEngineCache = new RuleEngineCache(ruleStore);
+    }
+
+    @Test
+    public void get_shouldCompileRulesOnce() {
+        RuleEngine ruleEngine = ruleEngineCache.get("program");
+
+        assertThat(ruleEngineCache.get("program")).isSameAs(ruleEngine);
+        assertThat(ruleEngine.rules()).hasSize(1);
+        verify(ruleStore, times(1)).queryProgramRules("program");
+    }
+
+    @Test
+    public void get_shouldCompileRulesAgain_afterInvalidation() {
+        RuleEngine ruleEngine = ruleEngineCache.get("program");
+        when(ruleStore.queryProgramRules("program")).thenReturn(Collections.<ProgramRuleModel>emptyList());
+
+        ruleEngineCache.invalidate();
+
+        assertThat(ruleEngineCache.get("program")).isNotSameAs(ruleEngine);
+        assertThat(ruleEngineCache.get("program").rules()).isEmpty();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class RuleExpressionParserTests {
+    private RuleExpressionParser parser;
+    private Object[] slots;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> variables = new HashMap<>();
+        variables.put("weight", 0);
+        variables.put("height", 1);
+        variables.put("name", 2);
+        variables.put("pregnant", 3);
+        Map<String, Integer> environment = new HashMap<>();
+        environment.put("current_date", 4);
+
+        parser = new RuleExpressionParser(variables, environment);
+        slots = new Object[]{"80", "2", "Anna", "true", "2017-05-10"};
+    }
+
+    private Object evaluate(String expression) {
+        return parser.parse(expression).evaluate(slots);
+    }
+
+    @Test
+    public void parse_shouldRespectPrecedence() {
+        assertThat(evaluate("1 + 2 * 3")).isEqualTo(7.0);
+        assertThat(evaluate("(1 + 2) * 3")).isEqualTo(9.0);
+        assertThat(evaluate("10 - 4 - 3")).isEqualTo(3.0);
+        assertThat(evaluate("-2 + 5 % 3")).isEqualTo(0.0);
+        assertThat(evaluate("1 < 2 && 2 < 1 || true")).isEqualTo(true);
+        assertThat(evaluate("!(1 == 1) or not false and 3 >= 3")).isEqualTo(true);
+    }
+
+    @Test
+    public void parse_shouldResolveVariables() {
+        assertThat(evaluate("#{weight} / (#{height} * #{height}) > 18.5")).isEqualTo(true);
+        assertThat(evaluate("A{name} == 'Anna'")).isEqualTo(true);
+        assertThat(evaluate("#{pregnant} && d2:hasValue('name')")).isEqualTo(true);
+        assertThat(evaluate("V{current_date} == \"2017-05-10\"")).isEqualTo(true);
+        assertThat(parser.references().cardinality()).isEqualTo(5);
+    }
+
+    @Test
+    public void evaluate_shouldTreatMissingValues() {
+        slots[0] = null;
+
+        assertThat(evaluate("d2:hasValue(#{weight})")).isEqualTo(false);
+        assertThat(evaluate("#{weight} + 1")).isEqualTo(1.0);
+        assertThat(evaluate("#{weight} == ''")).isEqualTo(true);
+        assertThat(evaluate("#{weight}")).isNull();
+    }
+
+    @Test
+    public void evaluate_shouldCompareTextAndNumbers() {
+        assertThat(evaluate("#{weight} > 9")).isEqualTo(true);
+        assertThat(evaluate("'80' > '9'")).isEqualTo(true);
+        assertThat(evaluate("A{name} + ' ' + #{weight}")).isEqualTo("Anna 80");
+        assertThat(evaluate("#{weight} + #{height}")).isEqualTo(82.0);
+        assertThat(evaluate("'Anna' < 'Bob'")).isEqualTo(true);
+    }
+
+    @Test
+    public void evaluate_shouldCallFunctions() {
+        assertThat(evaluate("d2:floor(7 / 2) + d2:ceil(0.2) + d2:round(1.5)")).isEqualTo(6.0);
+        assertThat(evaluate("d2:modulus(7, 3)")).isEqualTo(1.0);
+        assertThat(evaluate("d2:zing(-4) + d2:oizp(0)")).isEqualTo(1.0);
+        assertThat(evaluate("d2:length(A{name})")).isEqualTo(4.0);
+        assertThat(evaluate("d2:concatenate(A{name}, '-', 1)")).isEqualTo("Anna-1");
+        assertThat(evaluate("d2:daysBetween('2017-05-01', V{current_date})")).isEqualTo(9.0);
+    }
+
+    @Test
+    public void parse_shouldFoldConstants() {
+        assertThat(parser.parse("1 + 2 * 3 > 6 && 'a' != 'b'").isConstant()).isTrue();
+        assertThat(parser.parse("#{weight} > 1 + 2").isConstant()).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_shouldFail_ifVariableIsUnknown() {
+        parser.parse("#{unknown} > 2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_shouldFail_ifFunctionIsUnsupported() {
+        parser.parse("d2:unknown(1)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_shouldFail_ifFunctionHasNoArguments() {
+        parser.parse("d2:round() > 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_shouldFail_ifFunctionHasTooFewArguments() {
+        parser.parse("d2:modulus(#{weight})");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_shouldFail_ifFunctionHasTooManyArguments() {
+        parser.parse("d2:daysBetween('2017-05-01', V{current_date}, 1)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_shouldFail_ifExpressionIsIncomplete() {
+        parser.parse("(#{weight} > 2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_shouldFail_ifExpressionHasTrailingInput() {
+        parser.parse("#{weight} > 2 3");
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.rules;
+
+import org.hisp.dhis.android.core.program.ProgramRuleActionModel;
+import org.hisp.dhis.android.core.program.ProgramRuleActionType;
+import org.hisp.dhis.android.core.program.ProgramRuleModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableModel;
+import org.hisp.dhis.android.core.program.ProgramRuleVariableSourceType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class RuleSessionTests {
+    private static final String PROGRAM = "program";
+    private static final String STAGE = "stage";
+
+    static ProgramRuleModel rule(String uid, Integer priority, String condition) {
+        return ProgramRuleModel.builder().uid(uid).program(PROGRAM).priority(priority).condition(condition).build();
+    }
+
+    static ProgramRuleActionModel action(String uid, String rule, ProgramRuleActionType type,
+                                         String content, String data) {
+        return ProgramRuleActionModel.builder().uid(uid).programRule(rule).programRuleActionType(type)
+                .content(content).data(data).build();
+    }
+
+    static ProgramRuleVariableModel variable(String name, ProgramRuleVariableSourceType sourceType,
+                                             String dataElement, String attribute) {
+        return ProgramRuleVariableModel.builder().uid(name + "_uid").name(name).program(PROGRAM)
+                .programStage(STAGE).programRuleVariableSourceType(sourceType)
+                .dataElement(dataElement).trackedEntityAttribute(attribute).build();
+    }
+
+    private static RuleEvent event(String uid, long time, String... dataValues) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < dataValues.length; i += 2) {
+            values.put(dataValues[i], dataValues[i + 1]);
+        }
+        return RuleEvent.create(uid, STAGE, time < 0 ? null : new Date(time), values);
+    }
+
+    private static List<String> actions(List<RuleEffect> effects) {
+        List<String> actions = new ArrayList<>();
+        for (RuleEffect effect : effects) {
+            actions.add(effect.action().uid() + (effect.data() == null ? "" : "=" + effect.data()));
+        }
+        return actions;
+    }
+
+    @Test
+    public void evaluate_shouldResolveVariablesBySourceType() {
+        RuleEngine engine = RuleEngine.create(Arrays.asList(
+                rule("current", 1, "#{current} == 'c'"),
+                rule("newest", 2, "#{newest} == 'b'"),
+                rule("previous", 3, "#{previous} == 'a'"),
+                rule("attribute", 4, "A{attribute} == 'x'"),
+                rule("count", 5, "V{event_count} == 3")),
+                Arrays.asList(
+                        action("current_action", "current", ProgramRuleActionType.SHOWWARNING, null, null),
+                        action("newest_action", "newest", ProgramRuleActionType.SHOWWARNING, null, null),
+                        action("previous_action", "previous", ProgramRuleActionType.SHOWWARNING, null, null),
+                        action("attribute_action", "attribute", ProgramRuleActionType.SHOWWARNING, null, null),
+                        action("count_action", "count", ProgramRuleActionType.SHOWWARNING, null, null)),
+                Arrays.asList(
+                        variable("current", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "de", null),
+                        variable("newest", ProgramRuleVariableSourceType.DATAELEMENT_NEWEST_EVENT_PROGRAM,
+                                "other", null),
+                        variable("previous", ProgramRuleVariableSourceType.DATAELEMENT_PREVIOUS_EVENT,
+                                "de", null),
+                        variable("attribute", ProgramRuleVariableSourceType.TEI_ATTRIBUTE, null, "te_attr")));
+
+        RuleSession session = engine.session(
+                RuleEnrollment.create(null, null, Collections.singletonMap("te_attr", "x")),
+                event("current_event", 3000, "de", "c"),
+                Arrays.asList(event("old", 1000, "de", "a", "other", "a"), event("new", 2000, "other", "b")));
+
+        assertThat(actions(session.evaluate())).containsExactly("current_action", "newest_action",
+                "previous_action", "attribute_action", "count_action");
+    }
+
+    @Test
+    public void setDataValue_shouldReevaluateOnlyDependentRules() {
+        RuleEngine engine = RuleEngine.create(Arrays.asList(
+                rule("weight_rule", 1, "#{weight} > 100"),
+                rule("height_rule", 1, "#{height} > 200")),
+                Arrays.asList(
+                        action("weight_warning", "weight_rule", ProgramRuleActionType.SHOWWARNING, null,
+                                "'weight: ' + #{weight}"),
+                        action("height_warning", "height_rule", ProgramRuleActionType.SHOWWARNING, null, null)),
+                Arrays.asList(
+                        variable("weight", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "w", null),
+                        variable("height", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "h", null)));
+        RuleSession session = engine.session(null, event("event", -1, "h", "210"),
+                Collections.<RuleEvent>emptyList());
+
+        assertThat(actions(session.evaluate())).containsExactly("height_warning");
+        assertThat(actions(session.setDataValue("w", "120")))
+                .containsExactly("weight_warning=weight: 120", "height_warning");
+        assertThat(actions(session.setDataValue("h", ""))).containsExactly("weight_warning=weight: 120");
+        assertThat(actions(session.setDataValue("unused", "1"))).containsExactly("weight_warning=weight: 120");
+        assertThat(actions(session.effects())).containsExactly("weight_warning=weight: 120");
+    }
+
+    @Test
+    public void setDataValue_shouldPropagateAssignedValuesInPriorityOrder() {
+        RuleEngine engine = RuleEngine.create(Arrays.asList(
+                rule("bmi_warning", 2, "#{bmi} > 25"),
+                rule("bmi", 1, "d2:hasValue('weight') && d2:hasValue('height')")),
+                Arrays.asList(
+                        action("warning", "bmi_warning", ProgramRuleActionType.SHOWWARNING, null, "#{bmi}"),
+                        action("assign", "bmi", ProgramRuleActionType.ASSIGN, "#{bmi}",
+                                "d2:round(#{weight} / (#{height} * #{height}))")),
+                Arrays.asList(
+                        variable("weight", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "w", null),
+                        variable("height", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "h", null),
+                        variable("bmi", ProgramRuleVariableSourceType.CALCULATED_VALUE, null, null)));
+        RuleSession session = engine.session(null, event("event", -1, "w", "60", "h", "2"),
+                Collections.<RuleEvent>emptyList());
+
+        assertThat(actions(session.evaluate())).containsExactly("assign=15");
+        assertThat(actions(session.setDataValue("w", "120"))).containsExactly("assign=30", "warning=30");
+        assertThat(actions(session.setDataValue("h", null))).isEmpty();
+    }
+
+    @Test
+    public void setDataValue_shouldEvaluateOnlyDirtyConditionsAndActions() {
+        RuleEngine engine = RuleEngine.create(Arrays.asList(
+                rule("weight_rule", 1, "#{weight} > 100"),
+                rule("height_rule", 2, "#{height} > 200"),
+                rule("always", 3, "true")),
+                Arrays.asList(
+                        action("weight_text", "weight_rule", ProgramRuleActionType.DISPLAYTEXT, null,
+                                "'height ' + #{height}"),
+                        action("height_text", "height_rule", ProgramRuleActionType.DISPLAYTEXT, null, null),
+                        action("always_text", "always", ProgramRuleActionType.DISPLAYTEXT, null, null)),
+                Arrays.asList(
+                        variable("weight", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "w", null),
+                        variable("height", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "h", null)));
+        RuleSession session = engine.session(null, event("event", -1, "w", "120", "h", "150"),
+                Collections.<RuleEvent>emptyList());
+
+        session.evaluate();
+        assertThat(session.conditionEvaluations()).isEqualTo(3);
+
+        // only the condition of height_rule reads the height, the data of weight_text is evaluated again
+        assertThat(actions(session.setDataValue("h", "210")))
+                .containsExactly("weight_text=height 210", "height_text", "always_text");
+        assertThat(session.conditionEvaluations()).isEqualTo(4);
+
+        // the same value does not dirty any rule
+        session.setDataValue("h", "210");
+        session.setDataValue("unknown", "1");
+        assertThat(session.conditionEvaluations()).isEqualTo(4);
+    }
+
+    @Test
+    public void setDataValue_shouldDirtyOnlyRulesAfterAssignment() {
+        RuleEngine engine = RuleEngine.create(Arrays.asList(
+                rule("before", 1, "d2:hasValue('total')"),
+                rule("assign", 2, "true"),
+                rule("after", 3, "#{total} > 10"),
+                rule("reassign", 4, "#{total} > 100"),
+                rule("last", 5, "#{total} == 0")),
+                Arrays.asList(
+                        action("before_text", "before", ProgramRuleActionType.DISPLAYTEXT, null, null),
+                        action("assign_total", "assign", ProgramRuleActionType.ASSIGN, "total", "#{value} * 2"),
+                        action("after_text", "after", ProgramRuleActionType.DISPLAYTEXT, null, "#{total}"),
+                        action("reassign_total", "reassign", ProgramRuleActionType.ASSIGN, "#{total}", "0"),
+                        action("last_text", "last", ProgramRuleActionType.DISPLAYTEXT, null, null)),
+                Arrays.asList(
+                        variable("value", ProgramRuleVariableSourceType.DATAELEMENT_CURRENT_EVENT, "v", null),
+                        variable("total", ProgramRuleVariableSourceType.CALCULATED_VALUE, null, null)));
+        RuleSession session = engine.session(null, event("event", -1, "v", "3"),
+                Collections.<RuleEvent>emptyList());
+
+        assertThat(actions(session.evaluate())).containsExactly("assign_total=6");
+        assertThat(actions(session.setDataValue("v", "10")))
+                .containsExactly("assign_total=20", "after_text=20");
+        assertThat(actions(session.setDataValue("v", "60")))
+                .containsExactly("assign_total=120", "after_text=120", "reassign_total=0", "last_text");
+
+        // only the data of assign_total reads the value, and 'before' reads the total before it is assigned
+        assertThat(session.conditionEvaluations()).isEqualTo(5 + 3 + 3);
+    }
+
+    @Test
+    public void evaluate_shouldSkipRulesOfOtherProgramStages() {
+        ProgramRuleModel stageRule = ProgramRuleModel.builder().uid("stage_rule").program(PROGRAM)
+                .programStage("other_stage").condition("true").build();
+        RuleEngine engine = RuleEngine.create(Arrays.asList(stageRule, rule("program_rule", null, "true")),
+                Arrays.asList(
+                        action("stage_text", "stage_rule", ProgramRuleActionType.DISPLAYTEXT, null, null),
+                        action("program_text", "program_rule", ProgramRuleActionType.DISPLAYTEXT, null, null)),
+                Collections.<ProgramRuleVariableModel>emptyList());
+
+        assertThat(actions(engine.session(null, event("event", -1), Collections.<RuleEvent>emptyList())
+                .evaluate())).containsExactly("program_text");
+        assertThat(actions(engine.session(null, RuleEvent.create("event", "other_stage", null,
+                Collections.<String, String>emptyMap()), Collections.<RuleEvent>emptyList()).evaluate()))
+                .containsExactly("stage_text", "program_text");
+    }
+
+    @Test
+    public void create_shouldReportInvalidRules() {
+        RuleEngine engine = RuleEngine.create(Arrays.asList(
+                rule("valid", null, "true"),
+                rule("unknown_variable", null, "#{unknown} > 1"),
+                rule("invalid_action", null, "true"),
+                rule("no_condition", null, null),
+                rule("no_arguments", null, "d2:ceil() > 1"),
+                rule("missing_argument", null, "d2:daysBetween(V{current_date}) > 1")),
+                Arrays.asList(
+                        action("valid_action", "valid", ProgramRuleActionType.DISPLAYTEXT, null, "1 + 1"),
+                        action("invalid", "invalid_action", ProgramRuleActionType.DISPLAYTEXT, null, "1 +")),
+                Collections.<ProgramRuleVariableModel>emptyList());
+
+        assertThat(engine.invalidRules()).containsOnly("unknown_variable", "invalid_action", "no_condition",
+                "no_arguments", "missing_argument");
+        assertThat(actions(engine.session(null, null, Collections.<RuleEvent>emptyList()).evaluate()))
+                .containsExactly("valid_action=2");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setDataValue_shouldFail_withoutCurrentEvent() {
+        RuleEngine engine = RuleEngine.create(Collections.<ProgramRuleModel>emptyList(),
+                Collections.<ProgramRuleActionModel>emptyList(), Collections.<ProgramRuleVariableModel>emptyList());
+
+        engine.session(null, null, Collections.<RuleEvent>emptyList()).setDataValue("data_element", "value");
+    }
+}
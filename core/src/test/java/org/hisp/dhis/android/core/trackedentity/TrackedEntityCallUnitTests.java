@@ -31,6 +31,7 @@ import android.database.Cursor;
 
 import org.assertj.core.util.Sets;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.UidChunkedDownloader;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
@@ -135,7 +136,8 @@ public class TrackedEntityCallUnitTests {
         when(trackedEntity.displayDescription()).thenReturn("display_description");
 
         call = new TrackedEntityCall(Sets.newLinkedHashSet(trackedEntity.uid()), database,
-                trackedEntityStore, resourceStore, service, serverDate);
+                trackedEntityStore, resourceStore, service, null, serverDate,
+                UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS);
 
         when(database.beginNewTransaction()).thenReturn(transaction);
         when(service.trackedEntities(
@@ -229,7 +231,8 @@ public class TrackedEntityCallUnitTests {
     @SuppressWarnings("unchecked")
     public void call_shouldNotFail_onEmptyInput() throws IOException {
         TrackedEntityCall call = new TrackedEntityCall(new HashSet<String>(), database,
-                trackedEntityStore, resourceStore, service, serverDate);
+                trackedEntityStore, resourceStore, service, null, serverDate,
+                UidChunkedDownloader.DEFAULT_MAX_CONCURRENT_CHUNKS);
         when(service.trackedEntities(
                 fieldsCaptor.capture(),
                 idFilterCaptor.capture(),
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
+import org.hisp.dhis.android.core.data.api.StreamingPayloadConverterFactory;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.resource.ResourceCursorModel;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class TrackedEntityInstanceCallUnitTests {
+    private static final ResourceModel.Type TYPE = ResourceModel.Type.TRACKED_ENTITY_INSTANCE;
+
+    @Mock
+    private DatabaseAdapter database;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private TrackedEntityInstanceStore trackedEntityInstanceStore;
+
+    @Mock
+    private TrackedEntityInstanceHandler trackedEntityInstanceHandler;
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    private MockWebServer server;
+    private TrackedEntityInstanceService service;
+    private Date serverDate;
+    private List<String> handledUids;
+    private Set<String> uidsWithLocalChanges;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(database.beginNewTransaction()).thenReturn(transaction);
+
+        uidsWithLocalChanges = new HashSet<>();
+        when(trackedEntityInstanceStore.queryUidsWithLocalChanges(anyCollectionOf(String.class)))
+                .thenAnswer(new Answer<Set<String>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Set<String> answer(InvocationOnMock invocation) {
+                        Set<String> uids = new HashSet<>((Collection<String>) invocation.getArguments()[0]);
+                        uids.retainAll(uidsWithLocalChanges);
+                        return uids;
+                    }
+                });
+
+        handledUids = new ArrayList<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(InvocationOnMock invocation) {
+                for (TrackedEntityInstance instance : (List<TrackedEntityInstance>) invocation.getArguments()[0]) {
+                    handledUids.add(instance.uid());
+                }
+                return null;
+            }
+        }).when(trackedEntityInstanceHandler).handleTrackedEntityInstances(anyListOf(TrackedEntityInstance.class));
+
+        server = new MockWebServer();
+        server.start();
+
+        ObjectMapper objectMapper = Inject.objectMapper();
+        service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(StreamingPayloadConverterFactory.create(objectMapper))
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .addConverterFactory(FieldsConverterFactory.create())
+                .build()
+                .create(TrackedEntityInstanceService.class);
+
+        serverDate = new Date();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static MockResponse page(String... uids) {
+        StringBuilder body = new StringBuilder("{\"trackedEntityInstances\":[");
+        for (int i = 0; i < uids.length; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"trackedEntityInstance\":\"").append(uids[i])
+                    .append("\",\"orgUnit\":\"ou\",\"trackedEntity\":\"te\"}");
+        }
+        return new MockResponse().setBody(body.append("]}").toString());
+    }
+
+    private TrackedEntityInstanceCall givenCall(List<String> organisationUnitUids, List<String> programUids) {
+        return new TrackedEntityInstanceCall(service, database, trackedEntityInstanceStore,
+                trackedEntityInstanceHandler, resourceStore, organisationUnitUids, programUids, serverDate, 2);
+    }
+
+    @Test
+    public void call_shouldDownloadPages_ofEachScope() throws Exception {
+        server.enqueue(page("tei1", "tei2"));
+        server.enqueue(page("tei3"));
+        server.enqueue(page());
+
+        Response<Payload<TrackedEntityInstance>> response =
+                givenCall(Arrays.asList("ou1", "ou2"), Collections.singletonList("program")).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(handledUids).containsExactly("tei1", "tei2", "tei3");
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getPath()).startsWith("/trackedEntityInstances?ou=ou1&program=program&fields=");
+        assertThat(request.getPath()).endsWith("&page=1&pageSize=2");
+        assertThat(server.takeRequest().getPath()).endsWith("&page=2&pageSize=2");
+        assertThat(server.takeRequest().getPath()).contains("ou=ou2").endsWith("&page=1&pageSize=2");
+
+        verify(resourceStore).insertCursor(TYPE, "ou1/program", serverDate, 2);
+        verify(resourceStore).updateCursor(TYPE, "ou1/program", null);
+        verify(resourceStore).insertCursor(TYPE, "ou2/program", serverDate, null);
+        verify(resourceStore).insert(eq(TYPE.name()), any(Date.class));
+        verify(resourceStore).deleteCursors(TYPE);
+    }
+
+    @Test
+    public void call_shouldKeepInstances_withLocalChanges() throws Exception {
+        uidsWithLocalChanges.add("tei2");
+        server.enqueue(page("tei1", "tei2"));
+        server.enqueue(page("tei3"));
+
+        givenCall(Collections.singletonList("ou"), Collections.singletonList("program")).call();
+
+        assertThat(handledUids).containsExactly("tei1", "tei3");
+    }
+
+    @Test
+    public void call_shouldKeepInstances_changedWhileDownloading() throws Exception {
+        server.enqueue(page("tei1", "tei2"));
+        server.enqueue(page("tei3"));
+        // the user edits an instance of the second page after the first page has been written
+        doAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                uidsWithLocalChanges.add("tei3");
+                return 1L;
+            }
+        }).when(resourceStore).insertCursor(TYPE, "ou/program", serverDate, 2);
+
+        givenCall(Collections.singletonList("ou"), Collections.singletonList("program")).call();
+
+        assertThat(handledUids).containsExactly("tei1", "tei2");
+        verify(trackedEntityInstanceStore).queryUidsWithLocalChanges(Collections.singletonList("tei3"));
+    }
+
+    @Test
+    public void call_shouldResumeAtCursors() throws Exception {
+        Date started = new Date(serverDate.getTime() - 1000);
+        when(resourceStore.queryCursor(TYPE, "ou/program1")).thenReturn(ResourceCursorModel.builder()
+                .resourceType(TYPE.name()).scope("ou/program1").started(started).nextPage(null).build());
+        when(resourceStore.queryCursor(TYPE, "ou/program2")).thenReturn(ResourceCursorModel.builder()
+                .resourceType(TYPE.name()).scope("ou/program2").started(serverDate).nextPage(3).build());
+        server.enqueue(page("tei1"));
+
+        givenCall(Collections.singletonList("ou"), Arrays.asList("program1", "program2")).call();
+
+        // the completed scope is not downloaded again
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(server.takeRequest().getPath()).contains("program=program2").endsWith("&page=3&pageSize=2");
+
+        verify(resourceStore).updateCursor(TYPE, "ou/program2", null);
+        verify(resourceStore, never()).insertCursor(any(ResourceModel.Type.class), anyString(),
+                any(Date.class), any(Integer.class));
+
+        ArgumentCaptor<Date> lastSynced = ArgumentCaptor.forClass(Date.class);
+        verify(resourceStore).insert(eq(TYPE.name()), lastSynced.capture());
+        assertThat(lastSynced.getValue()).isEqualTo(started);
+    }
+
+    @Test
+    public void call_shouldKeepCursor_ifPageFails() throws Exception {
+        server.enqueue(page("tei1", "tei2"));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_INTERNAL_ERROR));
+
+        Response<Payload<TrackedEntityInstance>> response =
+                givenCall(Collections.singletonList("ou"), Collections.singletonList("program")).call();
+
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        assertThat(handledUids).containsExactly("tei1", "tei2");
+        verify(resourceStore).insertCursor(TYPE, "ou/program", serverDate, 2);
+        verify(resourceStore, never()).deleteCursors(any(ResourceModel.Type.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void call_shouldFail_ifExecutedTwice() throws Exception {
+        TrackedEntityInstanceCall call = givenCall(Collections.<String>emptyList(), Collections.<String>emptyList());
+        call.call();
+        call.call();
+    }
+}
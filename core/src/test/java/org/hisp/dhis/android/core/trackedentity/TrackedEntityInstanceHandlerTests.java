@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStatus;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStore;
+import org.hisp.dhis.android.core.event.EventStatus;
+import org.hisp.dhis.android.core.event.EventStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.inOrder;
+
+@RunWith(JUnit4.class)
+public class TrackedEntityInstanceHandlerTests {
+    private static final String TRACKED_ENTITY_INSTANCE = "{" +
+            "\"trackedEntityInstance\":\"teiUid\"," +
+            "\"created\":\"2017-01-20T10:44:03.222\"," +
+            "\"lastUpdated\":\"2017-01-20T10:44:03.222\"," +
+            "\"orgUnit\":\"orgUnitUid\"," +
+            "\"trackedEntity\":\"trackedEntityUid\"," +
+            "\"attributes\":[{\"attribute\":\"attributeUid\",\"value\":\"Makda\"}]," +
+            "\"enrollments\":[{" +
+            "    \"enrollment\":\"enrollmentUid\"," +
+            "    \"orgUnit\":\"orgUnitUid\"," +
+            "    \"program\":\"programUid\"," +
+            "    \"status\":\"ACTIVE\"," +
+            "    \"followup\":false," +
+            "    \"trackedEntityInstance\":\"teiUid\"," +
+            "    \"events\":[{" +
+            "        \"event\":\"eventUid\"," +
+            "        \"enrollment\":\"enrollmentUid\"," +
+            "        \"status\":\"COMPLETED\"," +
+            "        \"coordinate\":{\"latitude\":59.9,\"longitude\":10.7}," +
+            "        \"program\":\"programUid\"," +
+            "        \"programStage\":\"programStageUid\"," +
+            "        \"orgUnit\":\"orgUnitUid\"," +
+            "        \"dataValues\":[{\"dataElement\":\"dataElementUid\",\"value\":\"42\"," +
+            "            \"storedBy\":\"admin\",\"providedElsewhere\":false}]" +
+            "    }]" +
+            "}]" +
+            "}";
+
+    @Mock
+    private TrackedEntityInstanceStore trackedEntityInstanceStore;
+
+    @Mock
+    private TrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
+
+    @Mock
+    private EnrollmentStore enrollmentStore;
+
+    @Mock
+    private EventStore eventStore;
+
+    @Mock
+    private TrackedEntityDataValueStore trackedEntityDataValueStore;
+
+    private TrackedEntityInstanceHandler handler;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        handler = new TrackedEntityInstanceHandler(trackedEntityInstanceStore, trackedEntityAttributeValueStore,
+                enrollmentStore, eventStore, trackedEntityDataValueStore);
+    }
+
+    @Test
+    public void handle_shouldReplaceInstance_withEnrollmentsAndEvents() throws Exception {
+        TrackedEntityInstance trackedEntityInstance = Inject.objectMapper()
+                .readValue(TRACKED_ENTITY_INSTANCE, TrackedEntityInstance.class);
+
+        handler.handleTrackedEntityInstances(Collections.singletonList(trackedEntityInstance));
+
+        InOrder inOrder = inOrder(trackedEntityInstanceStore, trackedEntityAttributeValueStore, enrollmentStore,
+                eventStore, trackedEntityDataValueStore);
+        inOrder.verify(trackedEntityInstanceStore).delete("teiUid");
+        inOrder.verify(trackedEntityInstanceStore).insert(eq("teiUid"), any(Date.class), any(Date.class),
+                eq("orgUnitUid"), eq("trackedEntityUid"), eq(State.SYNCED));
+        inOrder.verify(trackedEntityAttributeValueStore).insert(State.SYNCED, "Makda", "attributeUid", "teiUid");
+        inOrder.verify(enrollmentStore).insert(eq("enrollmentUid"), isNull(Date.class), isNull(Date.class),
+                eq("orgUnitUid"), eq("programUid"), isNull(Date.class), isNull(Date.class), eq(false),
+                eq(EnrollmentStatus.ACTIVE), eq("teiUid"), isNull(String.class), isNull(String.class),
+                eq(State.SYNCED));
+        inOrder.verify(eventStore).delete("eventUid");
+        inOrder.verify(eventStore).insert(eq("eventUid"), eq("enrollmentUid"), isNull(Date.class),
+                isNull(Date.class), eq(EventStatus.COMPLETED), eq("59.9"), eq("10.7"), eq("programUid"),
+                eq("programStageUid"), eq("orgUnitUid"), isNull(Date.class), isNull(Date.class),
+                isNull(Date.class), eq(State.SYNCED));
+        inOrder.verify(trackedEntityDataValueStore).insert(eq("eventUid"), isNull(Date.class), isNull(Date.class),
+                eq("dataElementUid"), eq("admin"), eq("42"), eq(false));
+    }
+}
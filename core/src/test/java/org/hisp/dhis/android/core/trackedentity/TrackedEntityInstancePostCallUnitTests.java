@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.trackedentity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.event.Event;
+import org.hisp.dhis.android.core.imports.ImportSummaries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class TrackedEntityInstancePostCallUnitTests {
+
+    @Mock
+    private DatabaseAdapter database;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private TrackerUploadStore trackerUploadStore;
+
+    private MockWebServer server;
+    private Retrofit retrofit;
+    private ObjectMapper objectMapper;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(database.beginNewTransaction()).thenReturn(transaction);
+
+        server = new MockWebServer();
+        server.start();
+
+        objectMapper = Inject.objectMapper();
+        retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private TrackedEntityInstancePostCall postCall(int batchSize) {
+        return new TrackedEntityInstancePostCall(retrofit.create(TrackedEntityInstanceService.class), database,
+                trackerUploadStore, retrofit.<ImportSummaries>responseBodyConverter(
+                ImportSummaries.class, new Annotation[0]), batchSize);
+    }
+
+    private static TrackedEntityInstance trackedEntityInstance(String uid, Enrollment... enrollments) {
+        return TrackedEntityInstance.create(uid, null, null, "organisation_unit", "tracked_entity",
+                Collections.singletonList(TrackedEntityAttributeValue.create("attribute", "value")),
+                null, Arrays.asList(enrollments));
+    }
+
+    private static Enrollment enrollment(String uid, Event... events) {
+        return Enrollment.create(uid, null, null, "organisation_unit", "program", null, null, null, null,
+                "tracked_entity_instance", null, Arrays.asList(events));
+    }
+
+    /**
+     * @return a batch in which all rows of the instances have been read in the given state
+     */
+    private static TrackerUploadBatch batch(State state, List<TrackedEntityInstance> trackedEntityInstances) {
+        Map<String, State> trackedEntityInstanceStates = new HashMap<>();
+        Map<String, State> enrollmentStates = new HashMap<>();
+        Map<String, State> eventStates = new HashMap<>();
+        for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+            trackedEntityInstanceStates.put(trackedEntityInstance.uid(), state);
+            for (Enrollment enrollment : trackedEntityInstance.enrollments()) {
+                enrollmentStates.put(enrollment.uid(), state);
+                for (Event event : enrollment.events()) {
+                    eventStates.put(event.uid(), state);
+                }
+            }
+        }
+        return new TrackerUploadBatch(trackedEntityInstances, trackedEntityInstanceStates, enrollmentStates,
+                eventStates);
+    }
+
+    private static Event event(String uid) {
+        return Event.create(uid, "enrollment", null, null, "program", "program_stage", "organisation_unit",
+                null, null, null, null, null, Collections.singletonList(
+                        TrackedEntityDataValue.create(null, null, "data_element", "user", "value", null)));
+    }
+
+    @Test
+    public void call_shouldNotPost_ifNothingChanged() throws Exception {
+        when(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload())
+                .thenReturn(Collections.<String>emptyList());
+
+        assertThat(postCall(50).call()).isNull();
+        assertThat(server.getRequestCount()).isEqualTo(0);
+        verifyZeroInteractions(database);
+    }
+
+    @Test
+    public void call_shouldPostGraphAndApplyImportSummaries() throws Exception {
+        List<TrackedEntityInstance> instances = Collections.singletonList(trackedEntityInstance("tei",
+                enrollment("enrollment", event("event_ok"), event("event_rejected"))));
+        when(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload())
+                .thenReturn(Collections.singletonList("tei"));
+        when(trackerUploadStore.queryTrackedEntityInstancesToUpload(Collections.singletonList("tei")))
+                .thenReturn(batch(State.TO_UPDATE, instances));
+
+        server.enqueue(new MockResponse().setBody("{\"importSummaries\":[{\"status\":\"SUCCESS\"," +
+                "\"reference\":\"tei\",\"enrollments\":{\"importSummaries\":[{\"status\":\"SUCCESS\"," +
+                "\"reference\":\"enrollment\",\"events\":{\"importSummaries\":[{\"status\":\"ERROR\"," +
+                "\"reference\":\"event_rejected\"}]}}]}}]}"));
+
+        Response<ImportSummaries> response = postCall(50).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getMethod()).isEqualTo("POST");
+        assertThat(request.getPath()).isEqualTo("/trackedEntityInstances?strategy=CREATE_AND_UPDATE");
+
+        JsonNode trackedEntityInstance = objectMapper.readTree(request.getBody().readUtf8())
+                .get("trackedEntityInstances").get(0);
+        assertThat(trackedEntityInstance.get("trackedEntityInstance").asText()).isEqualTo("tei");
+        assertThat(trackedEntityInstance.get("attributes").get(0).get("value").asText()).isEqualTo("value");
+        assertThat(trackedEntityInstance.has("created")).isFalse();
+
+        JsonNode enrollment = trackedEntityInstance.get("enrollments").get(0);
+        assertThat(enrollment.get("enrollment").asText()).isEqualTo("enrollment");
+        assertThat(enrollment.get("events")).hasSize(2);
+        assertThat(enrollment.get("events").get(0).get("dataValues").get(0).get("dataElement").asText())
+                .isEqualTo("data_element");
+
+        verify(trackerUploadStore).setTrackedEntityInstanceState(Collections.singletonList("tei"),
+                State.TO_UPDATE, State.SYNCED);
+        verify(trackerUploadStore).setEnrollmentState(Collections.singletonList("enrollment"),
+                State.TO_UPDATE, State.SYNCED);
+        verify(trackerUploadStore).setEventState(Collections.singletonList("event_ok"),
+                State.TO_UPDATE, State.SYNCED);
+        verify(trackerUploadStore).setEventState(Collections.singletonList("event_rejected"),
+                State.TO_UPDATE, State.ERROR);
+        verify(transaction).setSuccessful();
+        verify(transaction).end();
+    }
+
+    @Test
+    public void call_shouldOnlyUpdateRowsInTheStateTheyWereReadIn() throws Exception {
+        TrackedEntityInstance trackedEntityInstance = trackedEntityInstance("tei", enrollment("enrollment",
+                event("event")));
+        Map<String, State> eventStates = new HashMap<>();
+        eventStates.put("event", State.TO_POST);
+        TrackerUploadBatch batch = new TrackerUploadBatch(Collections.singletonList(trackedEntityInstance),
+                Collections.singletonMap("tei", State.SYNCED), Collections.singletonMap("enrollment", State.SYNCED),
+                eventStates);
+        when(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload())
+                .thenReturn(Collections.singletonList("tei"));
+        when(trackerUploadStore.queryTrackedEntityInstancesToUpload(Collections.singletonList("tei")))
+                .thenReturn(batch);
+
+        server.enqueue(new MockResponse().setBody(
+                "{\"importSummaries\":[{\"status\":\"SUCCESS\",\"reference\":\"tei\"}]}"));
+
+        postCall(50).call();
+
+        verify(trackerUploadStore).setTrackedEntityInstanceState(Collections.singletonList("tei"),
+                State.SYNCED, State.SYNCED);
+        verify(trackerUploadStore).setEnrollmentState(Collections.singletonList("enrollment"),
+                State.SYNCED, State.SYNCED);
+        verify(trackerUploadStore).setEventState(Collections.singletonList("event"), State.TO_POST, State.SYNCED);
+    }
+
+    @Test
+    public void call_shouldApplyImportSummariesOfConflict() throws Exception {
+        List<TrackedEntityInstance> instances = Arrays.asList(
+                trackedEntityInstance("tei_rejected", enrollment("enrollment", event("event"))),
+                trackedEntityInstance("tei_imported"),
+                trackedEntityInstance("tei_unknown"));
+        List<String> uids = Arrays.asList("tei_rejected", "tei_imported", "tei_unknown");
+        when(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload()).thenReturn(uids);
+        when(trackerUploadStore.queryTrackedEntityInstancesToUpload(uids)).thenReturn(batch(State.TO_POST, instances));
+
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_CONFLICT)
+                .setBody("{\"httpStatusCode\":409,\"response\":{\"importSummaries\":[" +
+                        "{\"status\":\"ERROR\",\"reference\":\"tei_rejected\"}," +
+                        "{\"status\":\"SUCCESS\",\"reference\":\"tei_imported\"}]}}"));
+
+        postCall(50).call();
+
+        verify(trackerUploadStore).setTrackedEntityInstanceState(
+                Collections.singletonList("tei_rejected"), State.TO_POST, State.ERROR);
+        verify(trackerUploadStore).setTrackedEntityInstanceState(
+                Collections.singletonList("tei_imported"), State.TO_POST, State.SYNCED);
+        verify(trackerUploadStore).setEnrollmentState(Collections.singletonList("enrollment"),
+                State.TO_POST, State.ERROR);
+        verify(trackerUploadStore).setEventState(Collections.singletonList("event"), State.TO_POST, State.ERROR);
+        verify(trackerUploadStore, times(2)).setTrackedEntityInstanceState(
+                anyCollectionOf(String.class), any(State.class), any(State.class));
+    }
+
+    @Test
+    public void call_shouldPostInBatchesAndStop_ifResponseHasNoImportSummaries() throws Exception {
+        List<String> uids = Arrays.asList("tei_1", "tei_2", "tei_3");
+        when(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload()).thenReturn(uids);
+        when(trackerUploadStore.queryTrackedEntityInstancesToUpload(uids.subList(0, 2)))
+                .thenReturn(batch(State.TO_POST,
+                        Arrays.asList(trackedEntityInstance("tei_1"), trackedEntityInstance("tei_2"))));
+
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_INTERNAL_ERROR));
+
+        Response<ImportSummaries> response = postCall(2).call();
+
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        verify(trackerUploadStore, never()).queryTrackedEntityInstancesToUpload(uids.subList(2, 3));
+        verify(trackerUploadStore, never()).setTrackedEntityInstanceState(
+                anyCollectionOf(String.class), any(State.class), any(State.class));
+        verify(database, never()).beginNewTransaction();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void call_shouldFail_ifExecutedTwice() throws Exception {
+        when(trackerUploadStore.queryTrackedEntityInstanceUidsToUpload())
+                .thenReturn(Collections.<String>emptyList());
+
+        TrackedEntityInstancePostCall call = postCall(50);
+        call.call();
+        call.call();
+    }
+}
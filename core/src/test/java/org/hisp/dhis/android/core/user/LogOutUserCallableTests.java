@@ -36,9 +36,12 @@ import org.junit.runners.JUnit4;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
 import java.util.concurrent.Callable;
 
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(JUnit4.class)
 public class LogOutUserCallableTests {
@@ -58,15 +61,18 @@ public class LogOutUserCallableTests {
     @Mock
     private OrganisationUnitStore organisationUnitStore;
 
+    private AuthenticatedUserCache authenticatedUserCache;
+
     private Callable<Void> logOutUserCallable;
 
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
 
+        authenticatedUserCache = new AuthenticatedUserCache(authenticatedUserStore);
         logOutUserCallable = new LogOutUserCallable(
                 userStore, userCredentialsStore, userOrganisationUnitLinkStore,
-                authenticatedUserStore, organisationUnitStore
+                authenticatedUserStore, organisationUnitStore, authenticatedUserCache
         );
     }
 
@@ -80,4 +86,17 @@ public class LogOutUserCallableTests {
         verify(authenticatedUserStore).delete();
         verify(organisationUnitStore).delete();
     }
+
+    @Test
+    public void logOut_shouldInvalidateCachedCredentials() throws Exception {
+        when(authenticatedUserStore.query()).thenReturn(new ArrayList<AuthenticatedUserModel>());
+        authenticatedUserCache.get();
+        authenticatedUserCache.get();
+        verify(authenticatedUserStore, times(1)).query();
+
+        logOutUserCallable.call();
+        authenticatedUserCache.get();
+
+        verify(authenticatedUserStore, times(2)).query();
+    }
 }
@@ -131,6 +131,8 @@ public class UserAuthenticateCallUnitTests {
     @Mock
     private AuthenticatedUserModel authenticatedUser;
 
+    private AuthenticatedUserCache authenticatedUserCache;
+
     // call we are testing
     private Call<Response<User>> userAuthenticateCall;
 
@@ -139,9 +141,10 @@ public class UserAuthenticateCallUnitTests {
     public void setUp() throws IOException {
         MockitoAnnotations.initMocks(this);
 
+        authenticatedUserCache = new AuthenticatedUserCache(authenticatedUserStore);
         userAuthenticateCall = new UserAuthenticateCall(userService, databaseAdapter, userStore,
                 userCredentialsStore, userOrganisationUnitLinkStore, resourceStore, authenticatedUserStore,
-                organisationUnitStore, "test_user_name", "test_user_password");
+                organisationUnitStore, authenticatedUserCache, "test_user_name", "test_user_password");
 
         when(userCredentials.uid()).thenReturn("test_user_credentials_uid");
         when(userCredentials.code()).thenReturn("test_user_credentials_code");
@@ -401,6 +404,22 @@ public class UserAuthenticateCallUnitTests {
                 anyString(), anyString(), anyString());
     }
 
+    @Test
+    public void call_shouldInvalidateCachedCredentials() throws Exception {
+        when(userCall.execute()).thenReturn(Response.success(user));
+
+        // cache the empty list of authenticated users
+        authenticatedUserCache.get();
+        verify(authenticatedUserStore, times(1)).query();
+
+        // queries the store once to check that nobody is signed in
+        userAuthenticateCall.call();
+        verify(authenticatedUserStore, times(2)).query();
+
+        authenticatedUserCache.get();
+        verify(authenticatedUserStore, times(3)).query();
+    }
+
     @Test
     public void call_shouldMarkCallAsExecutedOnSuccess() throws Exception {
         when(userCall.execute()).thenReturn(Response.success(user));
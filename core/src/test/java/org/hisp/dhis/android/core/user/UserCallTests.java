@@ -59,6 +59,7 @@ import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.assertj.core.api.Java6Assertions.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -138,7 +139,7 @@ public class UserCallTests {
         userSyncCall = new UserCall(
                 userService, databaseAdapter, organisationUnitStore,
                 userStore, userCredentialsStore, userRoleStore, resourceStore,
-                serverDate, userRoleProgramLinkStore, userOrganisationUnitLinkStore
+                serverDate, userRoleProgramLinkStore, userOrganisationUnitLinkStore, null
         );
 
         when(userCredentials.uid()).thenReturn("user_credentials_uid");
@@ -303,6 +304,7 @@ public class UserCallTests {
             );
 
             verify(organisationUnitStore, never()).delete(anyString());
+            verify(organisationUnitStore, never()).upsert(anyListOf(OrganisationUnit.class));
         }
     }
 
@@ -364,7 +366,7 @@ public class UserCallTests {
         );
 
         verify(organisationUnitStore, never()).delete(anyString());
-
+        verify(organisationUnitStore, never()).upsert(anyListOf(OrganisationUnit.class));
     }
 
     @Test
@@ -430,11 +432,7 @@ public class UserCallTests {
         verify(userRoleProgramLinkStore, times(1)).insert(anyString(), anyString());
 
         // check that it is invoked twice; once for assigned orgunits and once for teiSearchOrgUnits
-        verify(organisationUnitStore, times(2)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
+        verify(organisationUnitStore, times(2)).upsert(anyListOf(OrganisationUnit.class));
 
         verify(resourceStore, times(1)).insert(anyString(), any(Date.class));
 